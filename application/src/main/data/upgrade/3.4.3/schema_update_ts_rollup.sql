@@ -0,0 +1,58 @@
+--
+-- Copyright © 2016-2023 The Comm360 Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup
+(
+    entity_id  uuid             NOT NULL,
+    key        int              NOT NULL,
+    period     bigint           NOT NULL,
+    ts         bigint           NOT NULL,
+    bool_count bigint           NOT NULL,
+    str_count  bigint           NOT NULL,
+    json_count bigint           NOT NULL,
+    long_count bigint           NOT NULL,
+    long_sum   numeric          NOT NULL,
+    long_min   bigint,
+    long_max   bigint,
+    dbl_count  bigint           NOT NULL,
+    dbl_sum    double precision NOT NULL,
+    dbl_min    double precision,
+    dbl_max    double precision,
+    str_min    varchar(10000000),
+    str_max    varchar(10000000),
+    str_max_ts bigint,
+    max_ts     bigint           NOT NULL,
+    CONSTRAINT ts_kv_rollup_pkey PRIMARY KEY (entity_id, key, period, ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup_state
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    start_ts  bigint NOT NULL,
+    last_ts   bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_state_pkey PRIMARY KEY (entity_id, key)
+);
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup_dirty
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    start_ts  bigint NOT NULL,
+    end_ts    bigint NOT NULL,
+    marked_ts bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_dirty_pkey PRIMARY KEY (entity_id, key)
+);
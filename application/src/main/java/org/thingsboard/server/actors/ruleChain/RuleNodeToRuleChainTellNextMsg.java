@@ -56,7 +56,17 @@ class RuleNodeToRuleChainTellNextMsg extends TbRuleEngineActorMsg implements Ser
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", ruleChainId.getId()) : String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        String message;
+        switch (reason) {
+            case STOPPED:
+                message = String.format("Rule chain [%s] stopped", ruleChainId.getId());
+                break;
+            case MAILBOX_OVERFLOW:
+                message = String.format("Rule chain [%s] mailbox is full", ruleChainId.getId());
+                break;
+            default:
+                message = String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        }
         msg.getCallback().onFailure(new RuleEngineException(message));
     }
 
@@ -36,7 +36,17 @@ public abstract class TbToRuleNodeActorMsg extends TbRuleEngineActorMsg {
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? "Rule node stopped" : "Failed to initialize rule node!";
+        String message;
+        switch (reason) {
+            case STOPPED:
+                message = "Rule node stopped";
+                break;
+            case MAILBOX_OVERFLOW:
+                message = "Rule node mailbox is full";
+                break;
+            default:
+                message = "Failed to initialize rule node!";
+        }
         msg.getCallback().onFailure(new RuleNodeException(message, ctx.getRuleChainName(), ctx.getSelf()));
     }
 }
@@ -21,11 +21,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.TbActorMailboxOverflowPolicy;
+import org.thingsboard.server.actors.TbActorMailboxSettings;
+import org.thingsboard.server.actors.TbActorMailboxStats;
+import org.thingsboard.server.actors.TbActorMailboxType;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.actors.TbActorSystemSettings;
@@ -33,12 +38,16 @@ import org.thingsboard.server.actors.app.AppActor;
 import org.thingsboard.server.actors.app.AppInitMsg;
 import org.thingsboard.server.actors.stats.StatsActor;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
 import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
 import org.thingsboard.server.queue.util.AfterStartUp;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -51,13 +60,21 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     public static final String DEVICE_DISPATCHER_NAME = "device-dispatcher";
     public static final String RULE_DISPATCHER_NAME = "rule-dispatcher";
 
+    private static final String MAILBOX_STATS_KEY = "actors.mailbox";
+    private static final String ACTOR_TYPE_TAG = "actorType";
+
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     private TbActorSystem system;
 
     private TbActorRef appActor;
 
+    private final Set<String> mailboxStatsActorTypes = ConcurrentHashMap.newKeySet();
+
     @Value("${actors.system.throughput:5}")
     private int actorThroughput;
 
@@ -79,17 +96,79 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:4}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.app_dispatcher_executor_type:WORK_STEALING}")
+    private DispatcherExecutorType appDispatcherExecutorType;
+
+    @Value("${actors.system.tenant_dispatcher_executor_type:WORK_STEALING}")
+    private DispatcherExecutorType tenantDispatcherExecutorType;
+
+    @Value("${actors.system.device_dispatcher_executor_type:WORK_STEALING}")
+    private DispatcherExecutorType deviceDispatcherExecutorType;
+
+    @Value("${actors.system.rule_dispatcher_executor_type:WORK_STEALING}")
+    private DispatcherExecutorType ruleDispatcherExecutorType;
+
+    @Value("${actors.system.virtual_thread_carrier_pool_size:0}")
+    private int virtualThreadCarrierPoolSize;
+
+    @Value("${actors.system.mailbox.app_dispatcher_type:DEFAULT}")
+    private TbActorMailboxType appDispatcherMailboxType;
+
+    @Value("${actors.system.mailbox.tenant_dispatcher_type:DEFAULT}")
+    private TbActorMailboxType tenantDispatcherMailboxType;
+
+    @Value("${actors.system.mailbox.device_dispatcher_type:DEFAULT}")
+    private TbActorMailboxType deviceDispatcherMailboxType;
+
+    @Value("${actors.system.mailbox.rule_dispatcher_type:DEFAULT}")
+    private TbActorMailboxType ruleDispatcherMailboxType;
+
+    @Value("${actors.system.mailbox.app_dispatcher_capacity:0}")
+    private int appDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.app_dispatcher_overflow_policy:REJECT}")
+    private TbActorMailboxOverflowPolicy appDispatcherMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.tenant_dispatcher_capacity:0}")
+    private int tenantDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.tenant_dispatcher_overflow_policy:REJECT}")
+    private TbActorMailboxOverflowPolicy tenantDispatcherMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.device_dispatcher_capacity:0}")
+    private int deviceDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.device_dispatcher_overflow_policy:REJECT}")
+    private TbActorMailboxOverflowPolicy deviceDispatcherMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.rule_dispatcher_capacity:0}")
+    private int ruleDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.rule_dispatcher_overflow_policy:REJECT}")
+    private TbActorMailboxOverflowPolicy ruleDispatcherMailboxOverflowPolicy;
+
+    @Value("${actors.system.mailbox.max_throughput:1000}")
+    private int mailboxMaxThroughput;
+
+    @Value("${actors.system.mailbox.target_processing_time_ms:1}")
+    private long mailboxTargetProcessingTimeMs;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
         TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
+        settings.setMailboxSettings(APP_DISPATCHER_NAME, initMailboxSettings(appDispatcherMailboxType, appDispatcherMailboxCapacity, appDispatcherMailboxOverflowPolicy));
+        settings.setMailboxSettings(TENANT_DISPATCHER_NAME, initMailboxSettings(tenantDispatcherMailboxType, tenantDispatcherMailboxCapacity, tenantDispatcherMailboxOverflowPolicy));
+        settings.setMailboxSettings(DEVICE_DISPATCHER_NAME, initMailboxSettings(deviceDispatcherMailboxType, deviceDispatcherMailboxCapacity, deviceDispatcherMailboxOverflowPolicy));
+        settings.setMailboxSettings(RULE_DISPATCHER_NAME, initMailboxSettings(ruleDispatcherMailboxType, ruleDispatcherMailboxCapacity, ruleDispatcherMailboxOverflowPolicy));
         system = new DefaultTbActorSystem(settings);
 
-        system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
-        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
-        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        ThingsBoardExecutors.setVirtualThreadCarrierPoolSize(virtualThreadCarrierPoolSize);
+        system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize, appDispatcherExecutorType));
+        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize, tenantDispatcherExecutorType));
+        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize, deviceDispatcherExecutorType));
+        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize, ruleDispatcherExecutorType));
 
         actorContext.setActorSystem(system);
 
@@ -102,7 +181,15 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         log.info("Actor system initialized.");
     }
 
-    private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
+    private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize, DispatcherExecutorType executorType) {
+        if (executorType == DispatcherExecutorType.VIRTUAL) {
+            Optional<ExecutorService> executor = ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(dispatcherName);
+            if (executor.isPresent()) {
+                log.info("[{}] Using virtual threads dispatcher", dispatcherName);
+                return executor.get();
+            }
+            log.warn("[{}] Virtual threads are not supported by the current JVM, using work-stealing pool instead", dispatcherName);
+        }
         if (poolSize == 0) {
             int cores = Runtime.getRuntime().availableProcessors();
             poolSize = Math.max(1, cores / 2);
@@ -114,6 +201,25 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         }
     }
 
+    private TbActorMailboxSettings initMailboxSettings(TbActorMailboxType type, int capacity, TbActorMailboxOverflowPolicy overflowPolicy) {
+        return new TbActorMailboxSettings(type, capacity, overflowPolicy, mailboxMaxThroughput, mailboxTargetProcessingTimeMs);
+    }
+
+    @Scheduled(fixedDelayString = "${actors.statistics.mailbox_stats_interval_ms:10000}")
+    public void registerMailboxStats() {
+        if (system != null) {
+            for (TbActorMailboxStats stats : system.getMailboxStats()) {
+                if (mailboxStatsActorTypes.add(stats.getActorType())) {
+                    statsFactory.createGauge(MAILBOX_STATS_KEY + ".pending", stats.getPendingMsgs(), ACTOR_TYPE_TAG, stats.getActorType());
+                    statsFactory.createGauge(MAILBOX_STATS_KEY + ".processed", stats.getProcessedMsgs(), ACTOR_TYPE_TAG, stats.getActorType());
+                    statsFactory.createGauge(MAILBOX_STATS_KEY + ".dropped", stats.getDroppedMsgs(), ACTOR_TYPE_TAG, stats.getActorType());
+                    statsFactory.createGauge(MAILBOX_STATS_KEY + ".maxDepth", stats.getMaxMailboxDepth(), ACTOR_TYPE_TAG, stats.getActorType());
+                    statsFactory.createGauge(MAILBOX_STATS_KEY + ".overloaded", stats.getOverloadedMailboxes(), ACTOR_TYPE_TAG, stats.getActorType());
+                }
+            }
+        }
+    }
+
     @AfterStartUp(order = AfterStartUp.ACTOR_SYSTEM)
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
         log.info("Received application ready event. Sending application init message to actor system");
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+public enum DispatcherExecutorType {
+
+    /**
+     * Fixed size work-stealing pool.
+     */
+    WORK_STEALING,
+    /**
+     * New virtual thread for each mailbox run, so actors that block on DAO futures do not occupy pool threads.
+     * Requires Java 21+.
+     */
+    VIRTUAL
+
+}
@@ -23,6 +23,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
@@ -42,6 +43,8 @@ import org.thingsboard.server.service.security.model.SecurityUser;
 import org.thingsboard.server.service.security.model.UserPrincipal;
 import org.thingsboard.server.service.telemetry.SessionEvent;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketMsgEndpoint;
+import org.thingsboard.server.service.telemetry.TelemetryWebSocketProtoEncoder;
+import org.thingsboard.server.service.telemetry.TelemetryWebSocketProtocol;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketService;
 import org.thingsboard.server.service.telemetry.TelemetryWebSocketSessionRef;
 
@@ -52,6 +55,8 @@ import javax.websocket.Session;
 import java.io.IOException;
 import java.net.URI;
 import java.security.InvalidParameterException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
@@ -65,7 +70,7 @@ import static org.thingsboard.server.service.telemetry.DefaultTelemetryWebSocket
 @Service
 @TbCoreComponent
 @Slf4j
-public class TbWebSocketHandler extends TextWebSocketHandler implements TelemetryWebSocketMsgEndpoint {
+public class TbWebSocketHandler extends TextWebSocketHandler implements TelemetryWebSocketMsgEndpoint, SubProtocolCapable {
 
     private static final ConcurrentMap<String, SessionMetaData> internalSessionMap = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, String> externalSessionMap = new ConcurrentHashMap<>();
@@ -81,6 +86,8 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
     private long sendTimeout;
     @Value("${server.ws.ping_timeout:30000}")
     private long pingTimeout;
+    @Value("${server.ws.protobuf_protocol_enabled:true}")
+    private boolean protobufProtocolEnabled;
 
     private ConcurrentMap<String, TelemetryWebSocketSessionRef> blacklistedSessions = new ConcurrentHashMap<>();
     private ConcurrentMap<String, TbRateLimits> perSessionUpdateLimits = new ConcurrentHashMap<>();
@@ -90,6 +97,11 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
     private ConcurrentMap<UserId, Set<String>> regularUserSessionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<UserId, Set<String>> publicUserSessionsMap = new ConcurrentHashMap<>();
 
+    @Override
+    public List<String> getSubProtocols() {
+        return protobufProtocolEnabled ? Collections.singletonList(TelemetryWebSocketProtocol.PROTOBUF.getSubProtocol()) : Collections.emptyList();
+    }
+
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
@@ -203,7 +215,8 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
             throw new InvalidParameterException("Can't find plugin with specified token!");
         } else {
             SecurityUser currentUser = (SecurityUser) ((Authentication) session.getPrincipal()).getPrincipal();
-            return new TelemetryWebSocketSessionRef(UUID.randomUUID().toString(), currentUser, session.getLocalAddress(), session.getRemoteAddress());
+            return new TelemetryWebSocketSessionRef(UUID.randomUUID().toString(), currentUser, session.getLocalAddress(), session.getRemoteAddress(),
+                    TelemetryWebSocketProtocol.forSubProtocol(session.getAcceptedProtocol()));
         }
     }
 
@@ -281,6 +294,9 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
                 if (TbWebSocketMsgType.TEXT.equals(msg.getType())) {
                     TbWebSocketTextMsg textMsg = (TbWebSocketTextMsg) msg;
                     this.asyncRemote.sendText(textMsg.getMsg(), this);
+                } else if (TbWebSocketMsgType.BINARY.equals(msg.getType())) {
+                    TbWebSocketBinaryMsg binaryMsg = (TbWebSocketBinaryMsg) msg;
+                    this.asyncRemote.sendBinary(binaryMsg.getMsg(), this);
                 } else {
                     TbWebSocketPingMsg pingMsg = (TbWebSocketPingMsg) msg;
                     this.asyncRemote.sendPing(pingMsg.getMsg());
@@ -314,8 +330,18 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
 
     @Override
     public void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException {
+        log.debug("[{}] Processing {}", sessionRef.getSessionId(), msg);
+        send(sessionRef, subscriptionId, new TbWebSocketTextMsg(msg));
+    }
+
+    @Override
+    public void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException {
+        log.debug("[{}] Processing binary msg of [{}] bytes", sessionRef.getSessionId(), msg.length);
+        send(sessionRef, subscriptionId, new TbWebSocketBinaryMsg(msg));
+    }
+
+    private void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, TbWebSocketMsg<?> msg) {
         String externalId = sessionRef.getSessionId();
-        log.debug("[{}] Processing {}", externalId, msg);
         String internalId = externalSessionMap.get(externalId);
         if (internalId != null) {
             SessionMetaData sessionMd = internalSessionMap.get(internalId);
@@ -328,7 +354,12 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
                             if (blacklistedSessions.putIfAbsent(externalId, sessionRef) == null) {
                                 log.info("[{}][{}][{}] Failed to process session update. Max session updates limit reached"
                                         , sessionRef.getSecurityCtx().getTenantId(), sessionRef.getSecurityCtx().getId(), externalId);
-                                sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + ThingsboardErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
+                                if (TelemetryWebSocketProtocol.PROTOBUF.equals(sessionRef.getProtocol())) {
+                                    sessionMd.sendMsg(new TbWebSocketBinaryMsg(TelemetryWebSocketProtoEncoder.encodeError(subscriptionId,
+                                            ThingsboardErrorCode.TOO_MANY_UPDATES.getErrorCode(), "Too many updates!")));
+                                } else {
+                                    sessionMd.sendMsg("{\"subscriptionId\":" + subscriptionId + ", \"errorCode\":" + ThingsboardErrorCode.TOO_MANY_UPDATES.getErrorCode() + ", \"errorMsg\":\"Too many updates!\"}");
+                                }
                             }
                             return;
                         } else {
@@ -364,6 +395,16 @@ public class TbWebSocketHandler extends TextWebSocketHandler implements Telemetr
         }
     }
 
+    @Override
+    public boolean isSending(TelemetryWebSocketSessionRef sessionRef) {
+        String internalId = externalSessionMap.get(sessionRef.getSessionId());
+        if (internalId != null) {
+            SessionMetaData sessionMd = internalSessionMap.get(internalId);
+            return sessionMd != null && sessionMd.isSending;
+        }
+        return false;
+    }
+
     @Override
     public void close(TelemetryWebSocketSessionRef sessionRef, CloseStatus reason) throws IOException {
         String externalId = sessionRef.getSessionId();
@@ -239,6 +239,9 @@ public class ThingsboardInstallService {
                             log.info("Upgrading Comm360 from version 3.4.2 to 3.4.3 ...");
                         case "3.4.3":
                             log.info("Upgrading Comm360 from version 3.4.3 to 3.4.4 ...");
+                            if (databaseTsUpgradeService != null) {
+                                databaseTsUpgradeService.upgradeDatabase("3.4.3");
+                            }
                             break;
 
                         //TODO update CacheCleanupService on the next version upgrade
@@ -123,6 +123,15 @@ public class EntityActionService {
                 msgType = DataConstants.RELATIONS_DELETED;
                 break;
         }
+        if (isEntityChange(actionType)) {
+            TenantId entityTenantId = tenantId;
+            if ((entityTenantId == null || entityTenantId.isNullUid()) && entity instanceof HasTenantId) {
+                entityTenantId = ((HasTenantId) entity).getTenantId();
+            }
+            if (entityTenantId != null) {
+                tbClusterService.broadcastEntityChangeToCore(entityTenantId, entityId);
+            }
+        }
         if (!StringUtils.isEmpty(msgType)) {
             try {
                 TbMsgMetaData metaData = new TbMsgMetaData();
@@ -236,6 +245,26 @@ public class EntityActionService {
         tbClusterService.sendNotificationMsgToEdge(tenantId, null, entityId, null, null, action);
     }
 
+    // single relation changes are broadcast by the relation service, including the ones made by the rule nodes
+    private static boolean isEntityChange(ActionType actionType) {
+        switch (actionType) {
+            case ADDED:
+            case DELETED:
+            case UPDATED:
+            case ASSIGNED_TO_CUSTOMER:
+            case UNASSIGNED_FROM_CUSTOMER:
+            case ASSIGNED_FROM_TENANT:
+            case ASSIGNED_TO_TENANT:
+            case ASSIGNED_TO_EDGE:
+            case UNASSIGNED_FROM_EDGE:
+            case RELATIONS_DELETED:
+            case PROVISION_SUCCESS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private <T> T extractParameter(Class<T> clazz, int index, Object... additionalInfo) {
         T result = null;
         if (additionalInfo != null && additionalInfo.length > index) {
@@ -23,6 +23,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.thingsboard.rule.engine.api.msg.DeviceEdgeUpdateMsg;
 import org.thingsboard.rule.engine.api.msg.DeviceNameOrTypeUpdateMsg;
 import org.thingsboard.server.cluster.TbClusterService;
@@ -48,6 +49,7 @@ import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
 import org.thingsboard.server.common.data.queue.Queue;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.common.msg.edge.EdgeEventUpdateMsg;
@@ -57,6 +59,7 @@ import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.msg.rpc.FromDeviceRpcResponse;
+import org.thingsboard.server.dao.relation.EntityRelationChangedEvent;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
@@ -90,6 +93,8 @@ public class DefaultTbClusterService implements TbClusterService {
     private boolean statsEnabled;
     @Value("${edges.enabled:true}")
     protected boolean edgesEnabled;
+    @Value("${server.ws.dynamic_page_link.incremental_refresh.enabled:false}")
+    private boolean incrementalRefreshEnabled;
 
     private final AtomicInteger toCoreMsgs = new AtomicInteger(0);
     private final AtomicInteger toCoreNfs = new AtomicInteger(0);
@@ -265,6 +270,41 @@ public class DefaultTbClusterService implements TbClusterService {
         broadcast(new ComponentLifecycleMsg(tenantId, entityId, state));
     }
 
+    @Override
+    public void broadcastEntityChangeToCore(TenantId tenantId, EntityId entityId) {
+        if (!incrementalRefreshEnabled) {
+            return;
+        }
+        log.trace("[{}] Processing {} change event: {}", tenantId, entityId.getEntityType(), entityId);
+        TransportProtos.EntityChangeMsg entityChangeMsg = TransportProtos.EntityChangeMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setEntityType(entityId.getEntityType().name())
+                .setEntityIdMSB(entityId.getId().getMostSignificantBits())
+                .setEntityIdLSB(entityId.getId().getLeastSignificantBits())
+                .build();
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setEntityChangeMsg(entityChangeMsg).build();
+        TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNfProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+        Set<String> tbCoreServices = partitionService.getAllServiceIds(ServiceType.TB_CORE);
+        for (String serviceId : tbCoreServices) {
+            TopicPartitionInfo tpi = notificationsTopicService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+            toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(entityId.getId(), toCoreMsg), null);
+            toCoreNfs.incrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRelationChanged(EntityRelationChangedEvent event) {
+        if (!RelationTypeGroup.COMMON.equals(event.getTypeGroup())) {
+            return;
+        }
+        broadcastEntityChangeToCore(event.getTenantId(), event.getFrom());
+        // the entity queries are invalidated per entity type
+        if (!event.getFrom().getEntityType().equals(event.getTo().getEntityType())) {
+            broadcastEntityChangeToCore(event.getTenantId(), event.getTo());
+        }
+    }
+
     @Override
     public void onDeviceProfileChange(DeviceProfile deviceProfile, TbQueueCallback callback) {
         broadcastEntityChangeToTransport(deviceProfile.getTenantId(), deviceProfile.getId(), deviceProfile, callback);
@@ -301,6 +341,12 @@ public class DefaultTbClusterService implements TbClusterService {
         broadcastEntityDeleteToTransport(TenantId.SYS_TENANT_ID, entity.getId(), entity.getName(), callback);
     }
 
+    @Override
+    public void onDeviceCredentialsUpdated(Device device, TbQueueCallback callback) {
+        // the transports that hold no session of the device evict the cached credentials on the device broadcast
+        broadcastEntityChangeToTransport(device.getTenantId(), device.getId(), device, callback);
+    }
+
     @Override
     public void onDeviceDeleted(Device device, TbQueueCallback callback) {
         broadcastEntityDeleteToTransport(device.getTenantId(), device.getId(), device.getName(), callback);
@@ -425,6 +471,9 @@ public class DefaultTbClusterService implements TbClusterService {
             }
             // No need to push notifications twice
             tbRuleEngineServices.removeAll(tbCoreServices);
+        } else {
+            // the core services get the other lifecycle events as entity changes, to refresh the dynamic entity queries
+            broadcastEntityChangeToCore(msg.getTenantId(), msg.getEntityId());
         }
         for (String serviceId : tbRuleEngineServices) {
             TopicPartitionInfo tpi = notificationsTopicService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
@@ -20,6 +20,7 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.JacksonUtil;
@@ -27,10 +28,14 @@ import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.data.alarm.Alarm;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
 import org.thingsboard.server.common.data.rpc.RpcError;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.rpc.FromDeviceRpcResponse;
@@ -43,6 +48,7 @@ import org.thingsboard.server.gen.transport.TransportProtos.DeviceStateServiceMs
 import org.thingsboard.server.gen.transport.TransportProtos.EdgeNotificationMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
 import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionSubscriptionInfoProto;
 import org.thingsboard.server.gen.transport.TransportProtos.SubscriptionMgrMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbAlarmDeleteProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbAlarmUpdateProto;
@@ -73,6 +79,7 @@ import org.thingsboard.server.service.queue.processing.IdMsgPair;
 import org.thingsboard.server.service.rpc.TbCoreDeviceRpcService;
 import org.thingsboard.server.service.rpc.ToDeviceRpcRequestActorMsg;
 import org.thingsboard.server.service.state.DeviceStateService;
+import org.thingsboard.server.service.subscription.EntityChangedEvent;
 import org.thingsboard.server.service.subscription.SubscriptionManagerService;
 import org.thingsboard.server.service.subscription.TbLocalSubscriptionService;
 import org.thingsboard.server.service.subscription.TbSubscriptionUtils;
@@ -120,6 +127,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     private final EdgeNotificationService edgeNotificationService;
     private final OtaPackageStateService firmwareStateService;
     private final GitVersionControlQueueService vcQueueService;
+    private final ApplicationEventPublisher eventPublisher;
     private final TbCoreConsumerStats stats;
     protected final TbQueueConsumer<TbProtoQueueMsg<ToUsageStatsServiceMsg>> usageStatsConsumer;
     private final TbQueueConsumer<TbProtoQueueMsg<ToOtaPackageStateServiceMsg>> firmwareStatesConsumer;
@@ -145,6 +153,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                                         OtaPackageStateService firmwareStateService,
                                         GitVersionControlQueueService vcQueueService,
                                         PartitionService partitionService,
+                                        ApplicationEventPublisher eventPublisher,
                                         Optional<JwtSettingsService> jwtSettingsService) {
         super(actorContext, encodingService, tenantProfileCache, deviceProfileCache, assetProfileCache, apiUsageStateService, partitionService, tbCoreQueueFactory.createToCoreNotificationsMsgConsumer(), jwtSettingsService);
         this.mainConsumer = tbCoreQueueFactory.createToCoreMsgConsumer();
@@ -159,6 +168,7 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         this.statsService = statsService;
         this.firmwareStateService = firmwareStateService;
         this.vcQueueService = vcQueueService;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostConstruct
@@ -232,6 +242,9 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                                 } else if (toCoreMsg.hasToDeviceActorMsg()) {
                                     log.trace("[{}] Forwarding message to device actor {}", id, toCoreMsg.getToDeviceActorMsg());
                                     forwardToDeviceActor(toCoreMsg.getToDeviceActorMsg(), callback);
+                                } else if (toCoreMsg.getSessionActivityBatchCount() > 0) {
+                                    log.trace("[{}] Forwarding activity of {} sessions to device actors", id, toCoreMsg.getSessionActivityBatchCount());
+                                    forwardToDeviceActors(toCoreMsg.getSessionActivityBatchList(), callback);
                                 } else if (toCoreMsg.hasDeviceStateServiceMsg()) {
                                     log.trace("[{}] Forwarding message to state service {}", id, toCoreMsg.getDeviceStateServiceMsg());
                                     forwardToStateService(toCoreMsg.getDeviceStateServiceMsg(), callback);
@@ -306,6 +319,11 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         return packProcessingTimeout;
     }
 
+    @Override
+    protected void onComponentLifecycleMsg(ComponentLifecycleMsg msg) {
+        eventPublisher.publishEvent(new EntityChangedEvent(msg.getTenantId(), msg.getEntityId(), msg.getEvent()));
+    }
+
     @Override
     protected void handleNotification(UUID id, TbProtoQueueMsg<ToCoreNotificationMsg> msg, TbCallback callback) {
         ToCoreNotificationMsg toCoreNotification = msg.getValue();
@@ -335,6 +353,13 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         } else if (toCoreNotification.hasVcResponseMsg()) {
             vcQueueService.processResponse(toCoreNotification.getVcResponseMsg());
             callback.onSuccess();
+        } else if (toCoreNotification.hasEntityChangeMsg()) {
+            TransportProtos.EntityChangeMsg entityChangeMsg = toCoreNotification.getEntityChangeMsg();
+            TenantId tenantId = TenantId.fromUUID(new UUID(entityChangeMsg.getTenantIdMSB(), entityChangeMsg.getTenantIdLSB()));
+            EntityId entityId = EntityIdFactory.getByTypeAndUuid(entityChangeMsg.getEntityType(),
+                    new UUID(entityChangeMsg.getEntityIdMSB(), entityChangeMsg.getEntityIdLSB()));
+            eventPublisher.publishEvent(new EntityChangedEvent(tenantId, entityId, ComponentLifecycleEvent.UPDATED));
+            callback.onSuccess();
         }
         if (statsEnabled) {
             stats.log(toCoreNotification);
@@ -552,6 +577,15 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         actorContext.tell(new TransportToDeviceActorMsgWrapper(toDeviceActorMsg, callback));
     }
 
+    private void forwardToDeviceActors(List<SessionSubscriptionInfoProto> sessionActivityBatch, TbCallback callback) {
+        TbCallback multipleCallback = new MultipleTbCallback(sessionActivityBatch.size(), callback);
+        for (SessionSubscriptionInfoProto sessionActivity : sessionActivityBatch) {
+            forwardToDeviceActor(TransportToDeviceActorMsg.newBuilder()
+                    .setSessionInfo(sessionActivity.getSessionInfo())
+                    .setSubscriptionInfo(sessionActivity.getSubscriptionInfo()).build(), multipleCallback);
+        }
+    }
+
     private void forwardToAppActor(UUID id, Optional<TbActorMsg> actorMsg, TbCallback callback) {
         if (actorMsg.isPresent()) {
             log.trace("[{}] Forwarding message to App Actor {}", id, actorMsg.get());
@@ -16,14 +16,17 @@
 package org.thingsboard.server.service.queue;
 
 import com.google.protobuf.ProtocolStringList;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.common.data.id.QueueId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.queue.Queue;
 import org.thingsboard.server.common.data.rpc.RpcError;
 import org.thingsboard.server.common.msg.TbMsg;
@@ -42,7 +45,9 @@ import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineNotificationMsg;
+import org.thingsboard.server.queue.TbQueueCommitPosition;
 import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueuePositionalConsumer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.discovery.QueueKey;
@@ -65,8 +70,11 @@ import org.thingsboard.server.service.stats.RuleEngineStatisticsService;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -75,10 +83,13 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Service
@@ -93,8 +104,12 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private long pollDuration;
     @Value("${queue.rule-engine.pack-processing-timeout}")
     private long packProcessingTimeout;
+    @Value("${queue.rule-engine.max-backpressure-pause:60000}")
+    private long maxBackpressurePause;
     @Value("${queue.rule-engine.stats.enabled:true}")
     private boolean statsEnabled;
+    @Value("${queue.rule-engine.max-in-flight-packs:}")
+    private String maxInFlightPacksConfig;
     @Value("${queue.rule-engine.prometheus-stats.enabled:false}")
     boolean prometheusStatsEnabled;
 
@@ -113,6 +128,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     private final ConcurrentMap<QueueKey, TbTopicWithConsumerPerPartition> topicsConsumerPerPartition = new ConcurrentHashMap<>();
     final ExecutorService submitExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-submit"));
     final ScheduledExecutorService repartitionExecutor = Executors.newScheduledThreadPool(1, ThingsBoardThreadFactory.forName("tb-rule-engine-consumer-repartition"));
+    private final Map<String, Integer> maxInFlightPacks = new HashMap<>();
+    private ExecutorService packExecutor;
 
     public DefaultTbRuleEngineConsumerService(TbRuleEngineProcessingStrategyFactory processingStrategyFactory,
                                               TbRuleEngineSubmitStrategyFactory submitStrategyFactory,
@@ -141,12 +158,55 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     @PostConstruct
     public void init() {
         super.init("tb-rule-engine-consumer", "tb-rule-engine-notifications-consumer");
+        initPipelinedQueues();
         List<Queue> queues = queueService.findAllQueues();
         for (Queue configuration : queues) {
             initConsumer(configuration);
         }
     }
 
+    void initPipelinedQueues() {
+        maxInFlightPacks.putAll(parseMaxInFlightPacks(maxInFlightPacksConfig));
+        if (!maxInFlightPacks.isEmpty()) {
+            // enough threads for all the packs of a single consumer per queue, packs of additional consumers wait for a free thread
+            int packThreads = maxInFlightPacks.values().stream().mapToInt(Integer::intValue).sum();
+            packExecutor = Executors.newFixedThreadPool(packThreads, ThingsBoardThreadFactory.forName("tb-rule-engine-pack"));
+            log.info("Pipelined processing of the queues: {}", maxInFlightPacks);
+        }
+    }
+
+    /**
+     * Parses the 'queue.rule-engine.max-in-flight-packs' value, e.g. 'Main:4;HighPriority:2'.
+     */
+    static Map<String, Integer> parseMaxInFlightPacks(String config) {
+        Map<String, Integer> result = new HashMap<>();
+        if (StringUtils.isBlank(config)) {
+            return result;
+        }
+        for (String queueConfig : config.split(";")) {
+            if (StringUtils.isBlank(queueConfig)) {
+                continue;
+            }
+            String[] nameAndValue = queueConfig.split(":");
+            if (nameAndValue.length != 2 || StringUtils.isBlank(nameAndValue[0])) {
+                throw new IllegalArgumentException("Invalid max in-flight packs entry '" + queueConfig + "', expected '<queue name>:<number of packs>'");
+            }
+            int value;
+            try {
+                value = Integer.parseInt(nameAndValue[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid max in-flight packs entry '" + queueConfig + "', the number of packs is not a number");
+            }
+            if (value < 1) {
+                throw new IllegalArgumentException("Invalid max in-flight packs entry '" + queueConfig + "', the number of packs should be positive");
+            }
+            if (result.put(nameAndValue[0].trim(), value) != null) {
+                throw new IllegalArgumentException("Invalid max in-flight packs entry '" + queueConfig + "', the queue is already configured");
+            }
+        }
+        return result;
+    }
+
     private void initConsumer(Queue configuration) {
         QueueKey queueKey = new QueueKey(ServiceType.TB_RULE_ENGINE, configuration);
         consumerConfigurations.putIfAbsent(queueKey, configuration);
@@ -163,6 +223,9 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         super.destroy();
         submitExecutor.shutdownNow();
         repartitionExecutor.shutdownNow();
+        if (packExecutor != null) {
+            packExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -240,8 +303,12 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     void removeConsumerForTopicByTpi(String queue, ConcurrentMap<TopicPartitionInfo, TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>>> consumers, TopicPartitionInfo tpi) {
         log.info("[{}] Removing consumer for topic: {}", queue, tpi);
-        consumers.get(tpi).unsubscribe();
-        consumers.remove(tpi);
+        unsubscribe(consumers.remove(tpi));
+    }
+
+    private void unsubscribe(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer) {
+        consumer.unsubscribe();
+        submitStrategyFactory.removeLanes(consumer);
     }
 
     @Override
@@ -251,7 +318,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     @Override
     protected void stopMainConsumers() {
-        consumers.values().forEach(TbQueueConsumer::unsubscribe);
+        consumers.values().forEach(this::unsubscribe);
         topicsConsumerPerPartition.values().forEach(tbTopicWithConsumerPerPartition -> tbTopicWithConsumerPerPartition.getConsumers().keySet()
                 .forEach((tpi) -> removeConsumerForTopicByTpi(tbTopicWithConsumerPerPartition.getTopic(), tbTopicWithConsumerPerPartition.getConsumers(), tpi)));
     }
@@ -262,45 +329,70 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     void consumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, org.thingsboard.server.common.data.queue.Queue configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         updateCurrentThreadName(threadSuffix);
+        int maxInFlight = maxInFlightPacks.getOrDefault(configuration.getName(), 1);
+        if (maxInFlight > 1) {
+            pipelinedConsumerLoop(consumer, configuration, stats, maxInFlight);
+            return;
+        }
         while (!stopped && !consumer.isStopped()) {
             try {
                 List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(pollDuration);
                 if (msgs.isEmpty()) {
                     continue;
                 }
-                final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(configuration);
-                final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
-                submitStrategy.init(msgs);
-                while (!stopped && !consumer.isStopped()) {
-                    TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
-                    submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
-
-                    final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
-
-                    TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
-                    if (timeout) {
-                        printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
-                    }
-                    if (!ctx.getFailedMap().isEmpty()) {
-                        printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
-                    }
-                    ctx.printProfilerStats();
-
-                    TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-                    if (statsEnabled) {
-                        stats.log(result, decision.isCommit());
+                waitForActorSystemCapacity(msgs);
+                processMsgs(consumer, configuration, stats, msgs);
+                consumer.commit();
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.warn("Failed to process messages from queue.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        log.trace("Failed to wait until the server has capacity to handle new requests", e2);
                     }
+                }
+            }
+        }
+        log.info("TB Rule Engine Consumer stopped.");
+    }
 
-                    ctx.cleanup();
-
-                    if (decision.isCommit()) {
-                        submitStrategy.stop();
-                        break;
-                    } else {
-                        submitStrategy.update(decision.getReprocessMap());
+    /**
+     * Keeps polling while up to maxInFlight packs are processed and commits each pack once it and all the previous packs are processed.
+     * Messages of different packs are processed concurrently, so the order of messages is preserved only within a pack.
+     * A pack that failed is processed again, the packs after it are not committed until then.
+     * Consumers that are not {@link TbQueuePositionalConsumer} process and commit each pack before the next poll.
+     */
+    void pipelinedConsumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats, int maxInFlight) {
+        Deque<InFlightPack> inFlight = new ArrayDeque<>(maxInFlight);
+        while (!stopped && !consumer.isStopped()) {
+            try {
+                commitProcessedPacks(consumer, configuration, stats, inFlight);
+                if (inFlight.size() >= maxInFlight) {
+                    awaitPack(inFlight.peekFirst(), pollDuration);
+                    continue;
+                }
+                List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(pollDuration);
+                if (msgs.isEmpty()) {
+                    continue;
+                }
+                waitForActorSystemCapacity(msgs);
+                TbQueueCommitPosition position = consumer instanceof TbQueuePositionalConsumer ?
+                        ((TbQueuePositionalConsumer<?>) consumer).getCommitPosition() : null;
+                if (position == null) {
+                    // the consumer commits all the polled messages at once, so the previous packs should be processed first
+                    while (!stopped && !inFlight.isEmpty()) {
+                        awaitPack(inFlight.peekFirst(), 0);
+                        commitProcessedPacks(consumer, configuration, stats, inFlight);
                     }
+                    processMsgs(consumer, configuration, stats, msgs);
+                    consumer.commit();
+                    continue;
                 }
-                consumer.commit();
+                InFlightPack pack = new InFlightPack(position, msgs);
+                submitPack(consumer, configuration, stats, pack, 0);
+                inFlight.addLast(pack);
+                stats.getInFlightPacks().incrementAndGet();
             } catch (Exception e) {
                 if (!stopped) {
                     log.warn("Failed to process messages from queue.", e);
@@ -312,9 +404,187 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 }
             }
         }
+        stats.getInFlightPacks().addAndGet(-inFlight.size());
         log.info("TB Rule Engine Consumer stopped.");
     }
 
+    /**
+     * Replaces the multi-originator records sent by the transport with one message per originator, keeping their order.
+     * The pack is committed as a whole, so the unpacked messages are acknowledged together with the record they came from.
+     * The unpacked messages get the ids of the batched messages, which are the same when the record is redelivered.
+     * The pack may thus hold up to transport.telemetry_batch.max_msgs_per_record times max_poll_records messages,
+     * all of them processed within the same pack processing timeout.
+     */
+    static List<TbProtoQueueMsg<ToRuleEngineMsg>> unpackBatches(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) {
+        if (msgs.stream().noneMatch(msg -> msg.getValue().getTbMsgBatchCount() > 0)) {
+            return msgs;
+        }
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> result = new ArrayList<>(msgs.size());
+        for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
+            ToRuleEngineMsg value = msg.getValue();
+            if (value.getTbMsgBatchCount() == 0) {
+                result.add(msg);
+                continue;
+            }
+            boolean hasIds = value.getTbMsgBatchIdMSBCount() == value.getTbMsgBatchCount()
+                    && value.getTbMsgBatchIdLSBCount() == value.getTbMsgBatchCount();
+            for (int i = 0; i < value.getTbMsgBatchCount(); i++) {
+                ToRuleEngineMsg unpacked = ToRuleEngineMsg.newBuilder()
+                        .setTenantIdMSB(value.getTenantIdMSB())
+                        .setTenantIdLSB(value.getTenantIdLSB())
+                        .setTbMsg(value.getTbMsgBatch(i))
+                        .build();
+                UUID id = hasIds ? new UUID(value.getTbMsgBatchIdMSB(i), value.getTbMsgBatchIdLSB(i)) : UUID.randomUUID();
+                result.add(new TbProtoQueueMsg<>(id, unpacked, msg.getHeaders()));
+            }
+        }
+        return result;
+    }
+
+    private void submitPack(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats,
+                            InFlightPack pack, long delayMs) {
+        pack.setFuture(packExecutor.submit(() -> {
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            try {
+                processMsgs(consumer, configuration, stats, pack.getMsgs());
+            } finally {
+                pack.setProcessedTs(System.currentTimeMillis());
+            }
+            return null;
+        }));
+    }
+
+    private void commitProcessedPacks(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats,
+                                      Deque<InFlightPack> inFlight) {
+        while (!inFlight.isEmpty() && inFlight.peekFirst().getFuture().isDone()) {
+            InFlightPack pack = inFlight.peekFirst();
+            try {
+                pack.getFuture().get();
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.warn("[{}] Failed to process the pack of {} messages, processing it again", configuration.getName(), pack.getMsgs().size(), e);
+                    submitPack(consumer, configuration, stats, pack, pollDuration);
+                }
+                return;
+            }
+            inFlight.pollFirst();
+            stats.getInFlightPacks().decrementAndGet();
+            // packs are in flight only with the position of a positional consumer
+            ((TbQueuePositionalConsumer<?>) consumer).commit(pack.getPosition());
+            stats.getCommitLagMs().set(System.currentTimeMillis() - pack.getProcessedTs());
+        }
+    }
+
+    private void awaitPack(InFlightPack pack, long timeoutMs) throws InterruptedException {
+        try {
+            if (timeoutMs > 0) {
+                pack.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } else {
+                pack.getFuture().get();
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            // failures are logged on commit
+        }
+    }
+
+    void processMsgs(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats,
+                     List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) throws InterruptedException {
+        msgs = unpackBatches(msgs);
+        final TbRuleEngineSubmitStrategy submitStrategy = getSubmitStrategy(consumer, configuration);
+        final TbRuleEngineProcessingStrategy ackStrategy = getAckStrategy(configuration);
+        submitStrategy.init(msgs);
+        try {
+            processMsgs(consumer, configuration, stats, submitStrategy, ackStrategy);
+        } finally {
+            // also on shutdown and partition revoke, so the messages of the pack that wait in the lanes are not submitted
+            submitStrategy.stop();
+        }
+    }
+
+    private void processMsgs(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration, TbRuleEngineConsumerStats stats,
+                             TbRuleEngineSubmitStrategy submitStrategy, TbRuleEngineProcessingStrategy ackStrategy) throws InterruptedException {
+        while (!stopped && !consumer.isStopped()) {
+            TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), submitStrategy, ackStrategy.isSkipTimeoutMsgs());
+            submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
+
+            final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
+
+            TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
+            if (timeout) {
+                printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
+            }
+            if (!ctx.getFailedMap().isEmpty()) {
+                printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
+            }
+            ctx.printProfilerStats();
+
+            TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+            if (statsEnabled) {
+                stats.log(result, decision.isCommit());
+            }
+
+            ctx.cleanup();
+
+            if (decision.isCommit()) {
+                break;
+            } else {
+                submitStrategy.update(decision.getReprocessMap());
+            }
+        }
+    }
+
+    @Data
+    private static class InFlightPack {
+        private final TbQueueCommitPosition position;
+        private final List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs;
+        private volatile Future<?> future;
+        private volatile long processedTs;
+    }
+
+    /**
+     * Pauses processing of the polled messages while actor mailboxes with BACKPRESSURE overflow policy of the tenants these messages
+     * belong to are overloaded. Consumers that hold no messages of the overloaded tenants are not paused.
+     * The pause is limited to avoid consumer group rebalancing due to the missing polls.
+     */
+    void waitForActorSystemCapacity(List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) throws InterruptedException {
+        TbActorSystem actorSystem = actorContext.getActorSystem();
+        if (actorSystem == null || maxBackpressurePause <= 0) {
+            return;
+        }
+        Set<TenantId> overloadedTenants = getOverloadedTenants(actorSystem, msgs);
+        if (overloadedTenants.isEmpty()) {
+            return;
+        }
+        long pauseStartTs = System.currentTimeMillis();
+        log.debug("Actor mailboxes of tenants {} are overloaded, pausing the consumer", overloadedTenants);
+        while (!stopped) {
+            overloadedTenants.removeIf(tenantId -> !actorSystem.isBackpressureActive(tenantId));
+            if (overloadedTenants.isEmpty()) {
+                log.debug("Actor mailboxes recovered in {} ms, resuming the consumer", System.currentTimeMillis() - pauseStartTs);
+                return;
+            }
+            if (System.currentTimeMillis() - pauseStartTs >= maxBackpressurePause) {
+                log.warn("Actor mailboxes of tenants {} are still overloaded after {} ms, resuming the consumer", overloadedTenants, maxBackpressurePause);
+                return;
+            }
+            Thread.sleep(pollDuration);
+        }
+    }
+
+    private static Set<TenantId> getOverloadedTenants(TbActorSystem actorSystem, List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) {
+        Set<TenantId> tenants = new HashSet<>();
+        Set<TenantId> overloadedTenants = new HashSet<>();
+        for (TbProtoQueueMsg<ToRuleEngineMsg> msg : msgs) {
+            TenantId tenantId = TenantId.fromUUID(new UUID(msg.getValue().getTenantIdMSB(), msg.getValue().getTenantIdLSB()));
+            if (tenants.add(tenantId) && actorSystem.isBackpressureActive(tenantId)) {
+                overloadedTenants.add(tenantId);
+            }
+        }
+        return overloadedTenants;
+    }
+
     void updateCurrentThreadName(String threadSuffix) {
         String name = Thread.currentThread().getName();
         int spliteratorIndex = name.indexOf(THREAD_TOPIC_SEPARATOR);
@@ -329,8 +599,8 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         return processingStrategyFactory.newInstance(configuration.getName(), configuration.getProcessingStrategy());
     }
 
-    TbRuleEngineSubmitStrategy getSubmitStrategy(Queue configuration) {
-        return submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy());
+    TbRuleEngineSubmitStrategy getSubmitStrategy(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, Queue configuration) {
+        return submitStrategyFactory.newInstance(configuration.getName(), configuration.getSubmitStrategy(), configuration.getProcessingStrategy(), consumer);
     }
 
     void submitMessage(Queue configuration, TbRuleEngineConsumerStats stats, TbMsgPackProcessingContext ctx, UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
@@ -356,7 +626,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         log.info("{} to process [{}] messages", prefix, map.size());
         for (Map.Entry<UUID, TbProtoQueueMsg<ToRuleEngineMsg>> pending : map.entrySet()) {
             ToRuleEngineMsg tmp = pending.getValue().getValue();
-            TbMsg tmpMsg = TbMsg.fromBytes(configuration.getName(), tmp.getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+            TbMsg tmpMsg = TbMsg.fromBytes(configuration.getName(), tmp.getTbMsg(), TbMsgCallback.EMPTY);
             RuleNodeInfo ruleNodeInfo = ctx.getLastVisitedRuleNode(pending.getKey());
             if (printAll) {
                 log.trace("[{}] {} to process message: {}, Last Rule Node: {}", TenantId.fromUUID(new UUID(tmp.getTenantIdMSB(), tmp.getTenantIdLSB())), prefix, tmpMsg, ruleNodeInfo);
@@ -421,13 +691,12 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 ReentrantLock lock = consumerPerPartition.getLock();
                 try {
                     lock.lock();
-                    consumerPerPartition.getConsumers().values().forEach(TbQueueConsumer::unsubscribe);
+                    consumerPerPartition.getConsumers().values().forEach(this::unsubscribe);
                 } finally {
                     lock.unlock();
                 }
             } else {
-                TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = consumers.remove(queueKey);
-                consumer.unsubscribe();
+                unsubscribe(consumers.remove(queueKey));
             }
         }
 
@@ -451,13 +720,13 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
             if (queue.isConsumerPerPartition()) {
                 TbTopicWithConsumerPerPartition tbTopicWithConsumerPerPartition = topicsConsumerPerPartition.remove(queueKey);
                 if (tbTopicWithConsumerPerPartition != null) {
-                    tbTopicWithConsumerPerPartition.getConsumers().values().forEach(TbQueueConsumer::unsubscribe);
+                    tbTopicWithConsumerPerPartition.getConsumers().values().forEach(this::unsubscribe);
                     tbTopicWithConsumerPerPartition.getConsumers().clear();
                 }
             } else {
                 TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = consumers.remove(queueKey);
                 if (consumer != null) {
-                    consumer.unsubscribe();
+                    unsubscribe(consumer);
                 }
             }
         }
@@ -465,7 +734,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
     }
 
     private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
-        TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
+        TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg(), callback);
         QueueToRuleEngineMsg msg;
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes = null;
@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.thingsboard.server.common.msg.queue.TbCallback;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notifies the callback once all the parts of a message are processed or on the first failure.
+ */
+public class MultipleTbCallback implements TbCallback {
+
+    private final AtomicInteger pending;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final TbCallback callback;
+
+    public MultipleTbCallback(int count, TbCallback callback) {
+        this.pending = new AtomicInteger(count);
+        this.callback = callback;
+    }
+
+    @Override
+    public void onSuccess() {
+        if (pending.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+            callback.onSuccess();
+        }
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+        if (done.compareAndSet(false, true)) {
+            callback.onFailure(t);
+        }
+    }
+}
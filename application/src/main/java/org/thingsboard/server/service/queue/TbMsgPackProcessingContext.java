@@ -96,6 +96,10 @@ public class TbMsgPackProcessingContext {
             empty = pendingCount.decrementAndGet() == 0;
             failedMap.put(id, msg);
             exceptionsMap.putIfAbsent(tenantId, e);
+            // the messages that have to wait for the retry of the failed one are failed as well, instead of timing out
+            for (UUID blockedId : submitStrategy.onFailure(id)) {
+                onFailure(tenantId, blockedId, e);
+            }
         }
         if (empty) {
             processingTimeoutLatch.countDown();
@@ -17,6 +17,7 @@ package org.thingsboard.server.service.queue;
 
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.queue.RuleEngineException;
@@ -30,6 +31,8 @@ import org.thingsboard.server.common.stats.StatsType;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 public class TbRuleEngineConsumerStats {
@@ -42,6 +45,8 @@ public class TbRuleEngineConsumerStats {
     public static final String FAILED_MSGS = "failedMsgs";
     public static final String SUCCESSFUL_ITERATIONS = "successfulIterations";
     public static final String FAILED_ITERATIONS = "failedIterations";
+    public static final String IN_FLIGHT_PACKS = "inFlightPacks";
+    public static final String COMMIT_LAG_MS = "commitLagMs";
 
     private final StatsFactory statsFactory;
 
@@ -63,6 +68,13 @@ public class TbRuleEngineConsumerStats {
 
     private final String queueName;
 
+    // packs polled and not yet committed in the pipelined mode
+    @Getter
+    private final AtomicInteger inFlightPacks = new AtomicInteger();
+    // time between the processing of the last committed pack and its commit in the pipelined mode
+    @Getter
+    private final AtomicLong commitLagMs = new AtomicLong();
+
     public TbRuleEngineConsumerStats(String queueName, StatsFactory statsFactory) {
         this.queueName = queueName;
         this.statsFactory = statsFactory;
@@ -86,6 +98,9 @@ public class TbRuleEngineConsumerStats {
         counters.add(tmpFailedMsgCounter);
         counters.add(successIterationsCounter);
         counters.add(failedIterationsCounter);
+
+        statsFactory.createGauge(statsKey + "." + IN_FLIGHT_PACKS, inFlightPacks);
+        statsFactory.createGauge(statsKey + "." + COMMIT_LAG_MS, commitLagMs);
     }
 
     public Timer getTimer(TenantId tenantId, String status){
@@ -155,6 +170,10 @@ public class TbRuleEngineConsumerStats {
             counters.forEach(counter -> {
                 stats.append(counter.getName()).append(" = [").append(counter.get()).append("] ");
             });
+            if (inFlightPacks.get() > 0) {
+                stats.append(IN_FLIGHT_PACKS).append(" = [").append(inFlightPacks.get()).append("] ");
+                stats.append(COMMIT_LAG_MS).append(" = [").append(commitLagMs.get()).append("] ");
+            }
             log.info("[{}] Stats: {}", queueName, stats);
         }
     }
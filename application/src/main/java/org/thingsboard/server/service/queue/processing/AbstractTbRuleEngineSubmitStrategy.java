@@ -19,6 +19,7 @@ import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
@@ -36,6 +37,16 @@ public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngine
 
     protected abstract void doOnSuccess(UUID id);
 
+    /**
+     * Called when the message was processed with a failure. The failed message is reprocessed or skipped by the processing
+     * strategy once the whole pack is done, so by default it does not affect the submit order.
+     *
+     * @return the ids of the messages that are not going to be submitted in this attempt because of the failure.
+     */
+    protected List<UUID> doOnFailure(UUID id) {
+        return Collections.emptyList();
+    }
+
     @Override
     public void init(List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs) {
         orderedMsgList = msgs.stream().map(msg -> new IdMsgPair<>(UUID.randomUUID(), msg)).collect(Collectors.toList());
@@ -64,6 +75,11 @@ public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngine
         }
     }
 
+    @Override
+    public List<UUID> onFailure(UUID id) {
+        return stopped ? Collections.emptyList() : doOnFailure(id);
+    }
+
     @Override
     public void stop() {
         stopped = true;
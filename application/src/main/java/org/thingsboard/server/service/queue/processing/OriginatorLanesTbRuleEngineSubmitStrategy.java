@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+@Slf4j
+public class OriginatorLanesTbRuleEngineSubmitStrategy extends AbstractTbRuleEngineSubmitStrategy {
+
+    private final TbRuleEngineOriginatorLanes lanes;
+    private final boolean holdFailedOriginators;
+    private volatile BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer;
+    private volatile ConcurrentMap<UUID, TbRuleEngineOriginatorLanes.LaneMsg> msgToLaneMap = new ConcurrentHashMap<>();
+    private volatile boolean reprocessing;
+    private volatile boolean stopped;
+
+    /**
+     * @param holdFailedOriginators whether the failed messages are retried by the processing strategy, so the following messages
+     *                              of their originators have to wait for the retry. Otherwise a failure releases the lane like a success.
+     */
+    OriginatorLanesTbRuleEngineSubmitStrategy(String queueName, TbRuleEngineOriginatorLanes lanes, boolean holdFailedOriginators) {
+        super(queueName);
+        this.lanes = lanes;
+        this.holdFailedOriginators = holdFailedOriginators;
+    }
+
+    @Override
+    public void init(List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs) {
+        super.init(msgs);
+        initMaps();
+    }
+
+    @Override
+    public void submitAttempt(BiConsumer<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgConsumer) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] submitting [{}] messages to [{}] lanes", queueName, orderedMsgList.size(), lanes.getLaneCount());
+        }
+        this.msgConsumer = msgConsumer;
+        List<TbRuleEngineOriginatorLanes.LaneMsg> laneMsgs = new ArrayList<>(orderedMsgList.size());
+        for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
+            TbRuleEngineOriginatorLanes.LaneMsg laneMsg = msgToLaneMap.get(pair.uuid);
+            if (laneMsg == null) {
+                msgConsumer.accept(pair.uuid, pair.msg);
+            } else if (reprocessing) {
+                laneMsgs.add(laneMsg);
+            } else {
+                lanes.add(laneMsg.getLane(), laneMsg.getOriginator(), this, pair);
+            }
+        }
+        if (reprocessing) {
+            // also releases the originators held by the failed messages, once they are back in the lanes
+            lanes.resubmit(this, laneMsgs);
+        }
+    }
+
+    @Override
+    public void update(ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> reprocessMap) {
+        super.update(reprocessMap);
+        initMaps();
+        reprocessing = true;
+    }
+
+    @Override
+    protected void doOnSuccess(UUID id) {
+        TbRuleEngineOriginatorLanes.LaneMsg laneMsg = msgToLaneMap.get(id);
+        if (laneMsg != null) {
+            lanes.complete(laneMsg.getLane(), id);
+        }
+    }
+
+    @Override
+    protected List<UUID> doOnFailure(UUID id) {
+        TbRuleEngineOriginatorLanes.LaneMsg laneMsg = msgToLaneMap.get(id);
+        if (laneMsg == null) {
+            return Collections.emptyList();
+        }
+        if (!holdFailedOriginators) {
+            lanes.complete(laneMsg.getLane(), id);
+            return Collections.emptyList();
+        }
+        return lanes.fail(laneMsg.getLane(), id);
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        super.stop();
+        lanes.removeAll(this);
+    }
+
+    void submit(IdMsgPair<TransportProtos.ToRuleEngineMsg> pair) {
+        if (!stopped) {
+            msgConsumer.accept(pair.uuid, pair.msg);
+        }
+    }
+
+    private void initMaps() {
+        ConcurrentMap<UUID, TbRuleEngineOriginatorLanes.LaneMsg> msgToLaneMap = new ConcurrentHashMap<>();
+        for (IdMsgPair<TransportProtos.ToRuleEngineMsg> pair : orderedMsgList) {
+            TbRuleEngineOriginatorLanes.LaneMsg laneMsg = getLaneMsg(pair);
+            if (laneMsg != null) {
+                msgToLaneMap.put(pair.uuid, laneMsg);
+            }
+        }
+        this.msgToLaneMap = msgToLaneMap;
+    }
+
+    /**
+     * Reads only the originator id from the serialized TbMsg instead of parsing the whole message with its data and metadata.
+     */
+    private TbRuleEngineOriginatorLanes.LaneMsg getLaneMsg(IdMsgPair<TransportProtos.ToRuleEngineMsg> pair) {
+        TransportProtos.ToRuleEngineMsg msg = pair.msg.getValue();
+        try {
+            CodedInputStream input = msg.getTbMsg().newCodedInput();
+            long msb = 0;
+            long lsb = 0;
+            boolean msbFound = false;
+            boolean lsbFound = false;
+            int tag;
+            while ((!msbFound || !lsbFound) && (tag = input.readTag()) != 0) {
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (field == MsgProtos.TbMsgProto.ENTITYIDMSB_FIELD_NUMBER) {
+                    msb = input.readInt64();
+                    msbFound = true;
+                } else if (field == MsgProtos.TbMsgProto.ENTITYIDLSB_FIELD_NUMBER) {
+                    lsb = input.readInt64();
+                    lsbFound = true;
+                } else if (!input.skipField(tag)) {
+                    break;
+                }
+            }
+            return new TbRuleEngineOriginatorLanes.LaneMsg(lanes.getLane(msb, lsb), new UUID(msb, lsb), pair);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to parse TbMsg: {}", queueName, msg);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fixed set of lanes shared by all packs of one queue consumer. Messages are placed into the lane of their originator
+ * and one message of each lane is submitted at a time, so messages of the same originator are processed one by one
+ * and in the order they were polled, even when several packs of the queue are processed at the same time.
+ * Lane queues outlive the packs: a message of the next pack waits only for the earlier messages of its own lane.
+ * <p>
+ * When a failed message is going to be retried, its originator is held until the pack is resubmitted or stopped:
+ * the following messages of the originator wait, while the other originators of the lane go on.
+ */
+@Slf4j
+class TbRuleEngineOriginatorLanes {
+
+    private final Lane[] lanes;
+
+    TbRuleEngineOriginatorLanes(int laneCount) {
+        if (laneCount <= 0) {
+            throw new IllegalArgumentException("Lane count must be positive: " + laneCount);
+        }
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    int getLaneCount() {
+        return lanes.length;
+    }
+
+    int getLane(long originatorIdMSB, long originatorIdLSB) {
+        long hash = originatorIdMSB ^ originatorIdLSB;
+        int h = (int) (hash ^ (hash >>> 32));
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    void add(int lane, UUID originator, OriginatorLanesTbRuleEngineSubmitStrategy owner, IdMsgPair<TransportProtos.ToRuleEngineMsg> pair) {
+        Lane queue = lanes[lane];
+        LaneEntry next;
+        synchronized (queue) {
+            queue.waiting.add(new LaneEntry(owner, pair, originator));
+            next = queue.pollNext();
+        }
+        submit(next);
+    }
+
+    void complete(int lane, UUID id) {
+        Lane queue = lanes[lane];
+        LaneEntry next = null;
+        synchronized (queue) {
+            if (queue.isRunning(id)) {
+                queue.running = null;
+                next = queue.pollNext();
+            }
+        }
+        submit(next);
+    }
+
+    /**
+     * Holds the originator of the failed message until its pack is resubmitted or stopped.
+     *
+     * @return the ids of the following messages of the originator from the same pack, removed from the lane,
+     * since they can't be processed before the failed message is retried.
+     */
+    List<UUID> fail(int lane, UUID id) {
+        Lane queue = lanes[lane];
+        List<UUID> blocked = new ArrayList<>();
+        LaneEntry next;
+        synchronized (queue) {
+            if (!queue.isRunning(id)) {
+                return Collections.emptyList();
+            }
+            LaneEntry failed = queue.running;
+            queue.running = null;
+            queue.held.put(failed.originator, failed.owner);
+            Iterator<LaneEntry> it = queue.waiting.iterator();
+            while (it.hasNext()) {
+                LaneEntry entry = it.next();
+                if (entry.owner == failed.owner && entry.originator.equals(failed.originator)) {
+                    it.remove();
+                    blocked.add(entry.pair.uuid);
+                }
+            }
+            next = queue.pollNext();
+        }
+        submit(next);
+        return blocked;
+    }
+
+    /**
+     * Replaces the messages of the pack with the ones to reprocess and releases the originators held by the pack.
+     * The messages that still wait in the lanes keep their place, the others are put before the messages of the other packs,
+     * so they are processed before the following messages of their originators.
+     *
+     * @param reprocess the messages to reprocess, in the order of the pack, with the lane and originator of each message.
+     */
+    void resubmit(OriginatorLanesTbRuleEngineSubmitStrategy owner, List<LaneMsg> reprocess) {
+        Map<Integer, List<LaneMsg>> reprocessByLane = new HashMap<>();
+        for (LaneMsg msg : reprocess) {
+            reprocessByLane.computeIfAbsent(msg.getLane(), lane -> new ArrayList<>()).add(msg);
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            Lane queue = lanes[i];
+            List<LaneMsg> laneMsgs = reprocessByLane.getOrDefault(i, Collections.emptyList());
+            LaneEntry next;
+            synchronized (queue) {
+                if (laneMsgs.isEmpty() && !queue.hasEntriesOf(owner)) {
+                    continue;
+                }
+                Set<UUID> reprocessIds = new HashSet<>();
+                laneMsgs.forEach(msg -> reprocessIds.add(msg.getPair().uuid));
+                Set<UUID> waitingIds = new HashSet<>();
+                queue.waiting.removeIf(entry -> entry.owner == owner && !reprocessIds.contains(entry.pair.uuid));
+                queue.waiting.forEach(entry -> {
+                    if (entry.owner == owner) {
+                        waitingIds.add(entry.pair.uuid);
+                    }
+                });
+                if (queue.running != null && queue.running.owner == owner) {
+                    queue.running = null;
+                }
+                queue.held.values().removeIf(holder -> holder == owner);
+                for (int j = laneMsgs.size() - 1; j >= 0; j--) {
+                    LaneMsg msg = laneMsgs.get(j);
+                    if (!waitingIds.contains(msg.getPair().uuid)) {
+                        queue.waiting.addFirst(new LaneEntry(owner, msg.getPair(), msg.getOriginator()));
+                    }
+                }
+                next = queue.pollNext();
+            }
+            submit(next);
+        }
+    }
+
+    /**
+     * Drops the remaining messages of the pack, e.g. when the pack is committed or its consumer is stopped,
+     * and submits the messages of other packs that were waiting behind them.
+     */
+    void removeAll(OriginatorLanesTbRuleEngineSubmitStrategy owner) {
+        resubmit(owner, Collections.emptyList());
+    }
+
+    int size() {
+        int size = 0;
+        for (Lane queue : lanes) {
+            synchronized (queue) {
+                size += queue.waiting.size() + (queue.running != null ? 1 : 0);
+            }
+        }
+        return size;
+    }
+
+    private static void submit(LaneEntry entry) {
+        if (entry != null) {
+            entry.owner.submit(entry.pair);
+        }
+    }
+
+    @Getter
+    static class LaneMsg {
+        private final int lane;
+        private final UUID originator;
+        private final IdMsgPair<TransportProtos.ToRuleEngineMsg> pair;
+
+        LaneMsg(int lane, UUID originator, IdMsgPair<TransportProtos.ToRuleEngineMsg> pair) {
+            this.lane = lane;
+            this.originator = originator;
+            this.pair = pair;
+        }
+    }
+
+    private static class Lane {
+        private final ArrayDeque<LaneEntry> waiting = new ArrayDeque<>();
+        private final Map<UUID, OriginatorLanesTbRuleEngineSubmitStrategy> held = new HashMap<>();
+        private LaneEntry running;
+
+        private boolean isRunning(UUID id) {
+            return running != null && running.pair.uuid.equals(id);
+        }
+
+        private boolean hasEntriesOf(OriginatorLanesTbRuleEngineSubmitStrategy owner) {
+            return (running != null && running.owner == owner) || held.containsValue(owner)
+                    || waiting.stream().anyMatch(entry -> entry.owner == owner);
+        }
+
+        /**
+         * Starts the first waiting message whose originator is not held, if no message of the lane is running.
+         */
+        private LaneEntry pollNext() {
+            if (running != null) {
+                return null;
+            }
+            Iterator<LaneEntry> it = waiting.iterator();
+            while (it.hasNext()) {
+                LaneEntry entry = it.next();
+                if (!held.containsKey(entry.originator)) {
+                    it.remove();
+                    running = entry;
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class LaneEntry {
+        private final OriginatorLanesTbRuleEngineSubmitStrategy owner;
+        private final IdMsgPair<TransportProtos.ToRuleEngineMsg> pair;
+        private final UUID originator;
+
+        private LaneEntry(OriginatorLanesTbRuleEngineSubmitStrategy owner, IdMsgPair<TransportProtos.ToRuleEngineMsg> pair, UUID originator) {
+            this.owner = owner;
+            this.pair = pair;
+            this.originator = originator;
+        }
+    }
+
+}
@@ -35,5 +35,10 @@ public interface TbRuleEngineSubmitStrategy {
 
     void onSuccess(UUID id);
 
+    /**
+     * @return the ids of the messages that can't be processed in this attempt because of the failure, to be reported as failed as well.
+     */
+    List<UUID> onFailure(UUID id);
+
     void stop();
 }
@@ -16,15 +16,27 @@
 package org.thingsboard.server.service.queue.processing;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.queue.ProcessingStrategy;
 import org.thingsboard.server.common.data.queue.SubmitStrategy;
+import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.settings.TbRuleEngineQueueSubmitStrategyConfiguration;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 @Component
 @Slf4j
 public class TbRuleEngineSubmitStrategyFactory {
 
-    public TbRuleEngineSubmitStrategy newInstance(String name, SubmitStrategy submitStrategy) {
+    @Value("${queue.rule-engine.originator-lanes:16}")
+    private int originatorLanes = 16;
+
+    // per consumer, so the partitions and the isolated tenants' queues of the same name don't block each other
+    private final ConcurrentMap<TbQueueConsumer<?>, TbRuleEngineOriginatorLanes> consumerLanes = new ConcurrentHashMap<>();
+
+    public TbRuleEngineSubmitStrategy newInstance(String name, SubmitStrategy submitStrategy, ProcessingStrategy processingStrategy, TbQueueConsumer<?> consumer) {
         switch (submitStrategy.getType()) {
             case BURST:
                 return new BurstTbRuleEngineSubmitStrategy(name);
@@ -36,9 +48,31 @@ public class TbRuleEngineSubmitStrategyFactory {
                 return new SequentialByTenantIdTbRuleEngineSubmitStrategy(name);
             case SEQUENTIAL:
                 return new SequentialTbRuleEngineSubmitStrategy(name);
+            case ORIGINATOR_LANES:
+                return new OriginatorLanesTbRuleEngineSubmitStrategy(name, consumerLanes.computeIfAbsent(consumer, c -> new TbRuleEngineOriginatorLanes(originatorLanes)),
+                        isRetryFailed(processingStrategy));
             default:
                 throw new RuntimeException("TbRuleEngineProcessingStrategy with type " + submitStrategy.getType() + " is not supported!");
         }
     }
 
+    private static boolean isRetryFailed(ProcessingStrategy processingStrategy) {
+        switch (processingStrategy.getType()) {
+            case RETRY_ALL:
+            case RETRY_FAILED:
+            case RETRY_FAILED_AND_TIMED_OUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Drops the lanes of the consumer once it is unsubscribed, e.g. on partition revoke or queue delete.
+     * The packs that are still processed keep the lanes until they are stopped.
+     */
+    public void removeLanes(TbQueueConsumer<?> consumer) {
+        consumerLanes.remove(consumer);
+    }
+
 }
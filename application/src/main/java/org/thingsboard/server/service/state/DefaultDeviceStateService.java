@@ -60,6 +60,7 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.sql.query.EntityQueryRepository;
@@ -87,12 +88,11 @@ import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.DataConstants.ACTIVITY_EVENT;
@@ -116,6 +116,8 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     public static final String INACTIVITY_ALARM_TIME = "inactivityAlarmTime";
     public static final String INACTIVITY_TIMEOUT = "inactivityTimeout";
 
+    private static final String STATS_KEY = "deviceState";
+
     private static final List<EntityKey> PERSISTENT_TELEMETRY_KEYS = Arrays.asList(
             new EntityKey(EntityKeyType.TIME_SERIES, LAST_ACTIVITY_TIME),
             new EntityKey(EntityKeyType.TIME_SERIES, INACTIVITY_ALARM_TIME),
@@ -175,9 +177,22 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     @Getter
     private int initFetchPackSize;
 
+    @Value("${state.inactivityTimerWheelSize:512}")
+    private int inactivityTimerWheelSize;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
     private ListeningExecutorService deviceStateExecutor;
 
-    final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
+    final DeviceStateStore deviceStates = new DeviceStateStore();
+
+    private DeviceInactivityTimerWheel inactivityTimer;
+
+    private final AtomicLong devicesCount = new AtomicLong();
+    private final AtomicLong storeSizeBytes = new AtomicLong();
+    private final AtomicLong inactivityChecksCount = new AtomicLong();
+    private final AtomicLong inactivityCheckTimeMs = new AtomicLong();
 
     public DefaultDeviceStateService(TenantService tenantService, DeviceService deviceService,
                                      AttributesService attributesService, TimeseriesService tsService,
@@ -206,6 +221,13 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         super.init();
         deviceStateExecutor = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newWorkStealingPool(
                 Math.max(4, Runtime.getRuntime().availableProcessors()), "device-state"));
+        inactivityTimer = new DeviceInactivityTimerWheel(TimeUnit.SECONDS.toMillis(defaultStateCheckIntervalInSec), inactivityTimerWheelSize);
+        if (statsFactory != null) {
+            statsFactory.createGauge(STATS_KEY, devicesCount, "stat", "devices");
+            statsFactory.createGauge(STATS_KEY, storeSizeBytes, "stat", "storeSizeBytes");
+            statsFactory.createGauge(STATS_KEY, inactivityChecksCount, "stat", "inactivityChecks");
+            statsFactory.createGauge(STATS_KEY, inactivityCheckTimeMs, "stat", "inactivityCheckTimeMs");
+        }
         scheduledExecutor.scheduleAtFixedRate(this::updateInactivityStateIfExpired, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
     }
 
@@ -265,6 +287,7 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 save(deviceId, ACTIVITY_STATE, true);
                 pushRuleEngineMessage(stateData, ACTIVITY_EVENT);
             }
+            scheduleInactivityCheck(deviceId, stateData);
         } else {
             log.debug("updateActivityState - fetched state IN NULL for device {}, lastReportedActivity {}", deviceId, lastReportedActivity);
             cleanupEntity(deviceId);
@@ -416,13 +439,37 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
                 updateActivityState(deviceId, state, state.getState().getLastActivityTime());
             }
         }
+        scheduleInactivityCheck(deviceId, state);
+    }
+
+    /**
+     * Schedules the check of the device inactivity at the moment the device may become inactive.
+     * Does nothing if an earlier check is already scheduled: the check reschedules itself if the device is still active.
+     */
+    void scheduleInactivityCheck(DeviceId deviceId, DeviceStateData stateData) {
+        if (inactivityTimer == null) {
+            return;
+        }
+        DeviceState state = stateData.getState();
+        if (state.getLastInactivityAlarmTime() != 0L && state.getLastInactivityAlarmTime() >= state.getLastActivityTime()) {
+            // inactivity is already reported, nothing to check until the next activity
+            return;
+        }
+        long checkTs = Math.max(state.getLastActivityTime(), stateData.getDeviceCreationTime() + 1) + state.getInactivityTimeout();
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+        if (deviceStates.scheduleCheck(msb, lsb, checkTs)) {
+            inactivityTimer.schedule(msb, lsb, checkTs);
+        }
     }
 
     private boolean addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
         Set<DeviceId> deviceIds = partitionedEntities.get(tpi);
         if (deviceIds != null) {
             deviceIds.add(state.getDeviceId());
-            deviceStates.putIfAbsent(state.getDeviceId(), state);
+            if (deviceStates.putIfAbsent(state.getDeviceId(), state) == null) {
+                scheduleInactivityCheck(state.getDeviceId(), state);
+            }
             return true;
         } else {
             log.debug("[{}] Device belongs to external partition {}", state.getDeviceId(), tpi.getFullTopicName());
@@ -433,26 +480,35 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
     void updateInactivityStateIfExpired() {
         try {
             final long ts = System.currentTimeMillis();
-            partitionedEntities.forEach((tpi, deviceIds) -> {
-                log.debug("Calculating state updates. tpi {} for {} devices", tpi.getFullTopicName(), deviceIds.size());
-                for (DeviceId deviceId : deviceIds) {
-                    try {
-                        updateInactivityStateIfExpired(ts, deviceId);
-                    } catch (Exception e) {
-                        log.warn("[{}] Failed to update inactivity state", deviceId, e);
-                    }
+            long startTs = System.nanoTime();
+            List<DeviceStateData> dueStates = new ArrayList<>();
+            int checks = inactivityTimer.advance(ts, (msb, lsb, checkTs) -> {
+                DeviceStateData stateData = deviceStates.takeCheck(msb, lsb, checkTs);
+                if (stateData != null) {
+                    dueStates.add(stateData);
                 }
             });
+            for (DeviceStateData stateData : dueStates) {
+                DeviceId deviceId = stateData.getDeviceId();
+                try {
+                    updateInactivityStateIfExpired(ts, deviceId, stateData);
+                    scheduleInactivityCheck(deviceId, stateData);
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to update inactivity state", deviceId, e);
+                }
+            }
+            long timeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs);
+            devicesCount.set(deviceStates.size());
+            storeSizeBytes.set(deviceStates.getTableSizeBytes() + inactivityTimer.getSizeBytes());
+            inactivityChecksCount.set(checks);
+            inactivityCheckTimeMs.set(timeMs);
+            log.debug("Processed {} inactivity checks ({} due) in {} ms. Devices: {}, scheduled checks: {}",
+                    checks, dueStates.size(), timeMs, devicesCount.get(), inactivityTimer.size());
         } catch (Throwable t) {
             log.warn("Failed to update inactivity states", t);
         }
     }
 
-    void updateInactivityStateIfExpired(long ts, DeviceId deviceId) {
-        DeviceStateData stateData = getOrFetchDeviceStateData(deviceId);
-        updateInactivityStateIfExpired(ts, deviceId, stateData);
-    }
-
     void updateInactivityStateIfExpired(long ts, DeviceId deviceId, DeviceStateData stateData) {
         log.trace("Processing state {} for device {}", stateData, deviceId);
         if (stateData != null) {
@@ -497,7 +553,9 @@ public class DefaultDeviceStateService extends AbstractPartitionBasedService<Dev
         }
         try {
             DeviceStateData deviceStateData = fetchDeviceState(device).get();
-            deviceStates.putIfAbsent(deviceId, deviceStateData);
+            if (deviceStates.putIfAbsent(deviceId, deviceStateData) == null) {
+                scheduleInactivityCheck(deviceId, deviceStateData);
+            }
             return deviceStateData;
         } catch (InterruptedException | ExecutionException e) {
             log.warn("[{}] Failed to fetch device state!", deviceId, e);
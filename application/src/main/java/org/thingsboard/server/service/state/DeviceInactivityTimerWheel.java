@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timer wheel of device inactivity checks. Each slot covers one tick and keeps the device ids
+ * and check timestamps in parallel arrays. Checks that are further than one wheel revolution stay in
+ * their slot until the revolution they are due in.
+ */
+class DeviceInactivityTimerWheel {
+
+    interface ExpiredCheckConsumer {
+        void accept(long msb, long lsb, long checkTs);
+    }
+
+    private final long tickMs;
+    private final Slot[] slots;
+    // last tick that is over and will not be visited again
+    private long currentTick = Long.MIN_VALUE;
+    private int size;
+
+    DeviceInactivityTimerWheel(long tickMs, int slotCount) {
+        this.tickMs = Math.max(1, tickMs);
+        this.slots = new Slot[Math.max(1, slotCount)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    synchronized void schedule(long msb, long lsb, long checkTs) {
+        long tick = checkTs / tickMs;
+        if (currentTick != Long.MIN_VALUE && tick <= currentTick) {
+            // passed slots are not visited again, so the check is due on the next advance
+            tick = currentTick + 1;
+        }
+        slots[(int) Math.floorMod(tick, (long) slots.length)].add(msb, lsb, checkTs);
+        size++;
+    }
+
+    /**
+     * Removes and passes to the consumer all the checks due at the given ts.
+     * The consumer is called while holding the lock of the wheel, so it should not block.
+     *
+     * @return the number of the expired checks
+     */
+    synchronized int advance(long ts, ExpiredCheckConsumer consumer) {
+        long tick = ts / tickMs;
+        if (currentTick == Long.MIN_VALUE) {
+            // checks may be scheduled into any slot before the first advance
+            currentTick = tick - slots.length;
+        }
+        long fromTick = Math.max(currentTick + 1, tick - slots.length + 1);
+        int expired = 0;
+        for (long t = fromTick; t <= tick; t++) {
+            Slot slot = slots[(int) Math.floorMod(t, (long) slots.length)];
+            int removed = slot.removeExpired(ts, consumer);
+            expired += removed;
+            size -= removed;
+        }
+        // the slot of the current tick is visited again on the next advance since the tick is not over yet
+        currentTick = Math.max(currentTick, tick - 1);
+        return expired;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getSizeBytes() {
+        long bytes = 0;
+        for (Slot slot : slots) {
+            bytes += (long) slot.checkTs.length * Long.BYTES * 3;
+        }
+        return bytes;
+    }
+
+    private static final class Slot {
+
+        private static final int INITIAL_CAPACITY = 4;
+
+        private long[] msbs = new long[INITIAL_CAPACITY];
+        private long[] lsbs = new long[INITIAL_CAPACITY];
+        private long[] checkTs = new long[INITIAL_CAPACITY];
+        private int size;
+
+        void add(long msb, long lsb, long ts) {
+            if (size == checkTs.length) {
+                int capacity = size * 2;
+                msbs = Arrays.copyOf(msbs, capacity);
+                lsbs = Arrays.copyOf(lsbs, capacity);
+                checkTs = Arrays.copyOf(checkTs, capacity);
+            }
+            msbs[size] = msb;
+            lsbs[size] = lsb;
+            checkTs[size] = ts;
+            size++;
+        }
+
+        int removeExpired(long ts, ExpiredCheckConsumer consumer) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (checkTs[i] <= ts) {
+                    consumer.accept(msbs[i], lsbs[i], checkTs[i]);
+                } else {
+                    msbs[kept] = msbs[i];
+                    lsbs[kept] = lsbs[i];
+                    checkTs[kept] = checkTs[i];
+                    kept++;
+                }
+            }
+            int removed = size - kept;
+            size = kept;
+            if (size == 0 && checkTs.length > INITIAL_CAPACITY * 16) {
+                msbs = new long[INITIAL_CAPACITY];
+                lsbs = new long[INITIAL_CAPACITY];
+                checkTs = new long[INITIAL_CAPACITY];
+            }
+            return removed;
+        }
+    }
+
+}
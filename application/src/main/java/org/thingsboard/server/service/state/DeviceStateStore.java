@@ -0,0 +1,287 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Device states keyed by the two halves of the device UUID.
+ * Each shard is an open addressing (linear probing) hash table stored as parallel arrays,
+ * so no key or entry objects are allocated per device. Besides the state, each slot holds the ts
+ * of the inactivity check scheduled for the device (0 if none).
+ */
+class DeviceStateStore {
+
+    private static final int DEFAULT_SHARDS = 64;
+    private static final int INITIAL_SHARD_CAPACITY = 64;
+
+    private final Shard[] shards;
+    private final int shardMask;
+
+    DeviceStateStore() {
+        this(DEFAULT_SHARDS);
+    }
+
+    DeviceStateStore(int shardCount) {
+        int count = Integer.highestOneBit(Math.max(1, shardCount - 1) << 1);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = count - 1;
+    }
+
+    DeviceStateData get(DeviceId deviceId) {
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+        return shard(msb, lsb).get(msb, lsb);
+    }
+
+    boolean containsKey(DeviceId deviceId) {
+        return get(deviceId) != null;
+    }
+
+    DeviceStateData put(DeviceId deviceId, DeviceStateData state) {
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+        return shard(msb, lsb).put(msb, lsb, state, false);
+    }
+
+    DeviceStateData putIfAbsent(DeviceId deviceId, DeviceStateData state) {
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+        return shard(msb, lsb).put(msb, lsb, state, true);
+    }
+
+    DeviceStateData remove(DeviceId deviceId) {
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+        return shard(msb, lsb).remove(msb, lsb);
+    }
+
+    /**
+     * Stores the ts of the next inactivity check of the device unless an earlier check is already scheduled.
+     *
+     * @return true if the check should be added to the timer
+     */
+    boolean scheduleCheck(long msb, long lsb, long checkTs) {
+        return shard(msb, lsb).scheduleCheck(msb, lsb, checkTs);
+    }
+
+    /**
+     * Clears the scheduled check of the device if it was scheduled at the given ts.
+     *
+     * @return the state of the device or null if the check is outdated or the device is removed
+     */
+    DeviceStateData takeCheck(long msb, long lsb, long checkTs) {
+        return shard(msb, lsb).takeCheck(msb, lsb, checkTs);
+    }
+
+    void forEach(Consumer<DeviceStateData> consumer) {
+        for (Shard shard : shards) {
+            shard.forEach(consumer);
+        }
+    }
+
+    void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Size of the tables, not including the states themselves.
+     */
+    long getTableSizeBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            bytes += shard.getTableSizeBytes();
+        }
+        return bytes;
+    }
+
+    private Shard shard(long msb, long lsb) {
+        return shards[(int) mix(msb, lsb) & shardMask];
+    }
+
+    private static long mix(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Shard {
+
+        private long[] msbs = new long[INITIAL_SHARD_CAPACITY];
+        private long[] lsbs = new long[INITIAL_SHARD_CAPACITY];
+        private long[] checkTs = new long[INITIAL_SHARD_CAPACITY];
+        private DeviceStateData[] states = new DeviceStateData[INITIAL_SHARD_CAPACITY];
+        private int size;
+
+        synchronized DeviceStateData get(long msb, long lsb) {
+            int idx = indexOf(msb, lsb);
+            return idx >= 0 ? states[idx] : null;
+        }
+
+        synchronized DeviceStateData put(long msb, long lsb, DeviceStateData state, boolean onlyIfAbsent) {
+            int idx = indexOf(msb, lsb);
+            if (idx >= 0) {
+                DeviceStateData existing = states[idx];
+                if (!onlyIfAbsent) {
+                    states[idx] = state;
+                    checkTs[idx] = 0;
+                }
+                return existing;
+            }
+            if ((size + 1) * 4 > states.length * 3) {
+                resize(states.length * 2);
+            }
+            insert(msb, lsb, state, 0);
+            size++;
+            return null;
+        }
+
+        synchronized DeviceStateData remove(long msb, long lsb) {
+            int idx = indexOf(msb, lsb);
+            if (idx < 0) {
+                return null;
+            }
+            DeviceStateData existing = states[idx];
+            deleteAt(idx);
+            size--;
+            return existing;
+        }
+
+        synchronized boolean scheduleCheck(long msb, long lsb, long ts) {
+            int idx = indexOf(msb, lsb);
+            if (idx < 0 || (checkTs[idx] != 0 && checkTs[idx] <= ts)) {
+                return false;
+            }
+            checkTs[idx] = ts;
+            return true;
+        }
+
+        synchronized DeviceStateData takeCheck(long msb, long lsb, long ts) {
+            int idx = indexOf(msb, lsb);
+            if (idx < 0 || checkTs[idx] != ts) {
+                return null;
+            }
+            checkTs[idx] = 0;
+            return states[idx];
+        }
+
+        void forEach(Consumer<DeviceStateData> consumer) {
+            DeviceStateData[] snapshot;
+            synchronized (this) {
+                snapshot = Arrays.copyOf(states, states.length);
+            }
+            for (DeviceStateData state : snapshot) {
+                if (state != null) {
+                    consumer.accept(state);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(states, null);
+            size = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long getTableSizeBytes() {
+            return (long) states.length * (Long.BYTES * 3 + Integer.BYTES);
+        }
+
+        private int indexOf(long msb, long lsb) {
+            int mask = states.length - 1;
+            int idx = (int) mix(msb, lsb) >>> 8 & mask;
+            while (states[idx] != null) {
+                if (msbs[idx] == msb && lsbs[idx] == lsb) {
+                    return idx;
+                }
+                idx = (idx + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long msb, long lsb, DeviceStateData state, long ts) {
+            int mask = states.length - 1;
+            int idx = (int) mix(msb, lsb) >>> 8 & mask;
+            while (states[idx] != null) {
+                idx = (idx + 1) & mask;
+            }
+            msbs[idx] = msb;
+            lsbs[idx] = lsb;
+            states[idx] = state;
+            checkTs[idx] = ts;
+        }
+
+        /**
+         * Backward shift deletion, so lookups never need tombstones.
+         */
+        private void deleteAt(int idx) {
+            int mask = states.length - 1;
+            int gap = idx;
+            int next = (gap + 1) & mask;
+            while (states[next] != null) {
+                int home = (int) mix(msbs[next], lsbs[next]) >>> 8 & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    msbs[gap] = msbs[next];
+                    lsbs[gap] = lsbs[next];
+                    states[gap] = states[next];
+                    checkTs[gap] = checkTs[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            states[gap] = null;
+            checkTs[gap] = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldCheckTs = checkTs;
+            DeviceStateData[] oldStates = states;
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            checkTs = new long[capacity];
+            states = new DeviceStateData[capacity];
+            for (int i = 0; i < oldStates.length; i++) {
+                if (oldStates[i] != null) {
+                    insert(oldMsbs[i], oldLsbs[i], oldStates[i], oldCheckTs[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -65,6 +65,7 @@ import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +76,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -110,7 +112,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     @Autowired
     private TbClusterService clusterService;
 
-    private final Map<EntityId, Set<TbSubscription>> subscriptionsByEntityId = new ConcurrentHashMap<>();
+    private final Map<EntityId, TbEntitySubscriptions> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, TbSubscription>> subscriptionsByWsSessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<TopicPartitionInfo, Set<TbSubscription>> partitionedSubscriptions = new ConcurrentHashMap<>();
     private final Set<TopicPartitionInfo> currentPartitions = ConcurrentHashMap.newKeySet();
@@ -146,8 +148,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                     , subscription.getTenantId(), subscription.getEntityId(), tpi.getFullTopicName());
             callback.onFailure(new RuntimeException("Entity belongs to external partition " + tpi.getFullTopicName() + "!"));
         }
-        boolean newSubscription = subscriptionsByEntityId
-                .computeIfAbsent(subscription.getEntityId(), k -> ConcurrentHashMap.newKeySet()).add(subscription);
+        boolean newSubscription = addSubscriptionToEntityMap(subscription);
         subscriptionsByWsSessionId.computeIfAbsent(subscription.getSessionId(), k -> new ConcurrentHashMap<>()).put(subscription.getSubscriptionId(), subscription);
         if (newSubscription) {
             switch (subscription.getType()) {
@@ -210,7 +211,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onTimeSeriesUpdate(TenantId tenantId, EntityId entityId, List<TsKvEntry> ts, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.TIMESERIES, toKeys(ts),
                 s -> {
                     if (TbSubscriptionType.TIMESERIES.equals(s.getType())) {
                         return (TbTimeseriesSubscription) s;
@@ -242,7 +243,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onAttributesUpdate(TenantId tenantId, EntityId entityId, String scope, List<AttributeKvEntry> attributes, boolean notifyDevice, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.ATTRIBUTES, toKeys(attributes),
                 s -> {
                     if (TbSubscriptionType.ATTRIBUTES.equals(s.getType())) {
                         return (TbAttributeSubscription) s;
@@ -327,7 +328,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onAttributesDelete(TenantId tenantId, EntityId entityId, String scope, List<String> keys, boolean notifyDevice, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.ATTRIBUTES, keys,
                 s -> {
                     if (TbSubscriptionType.ATTRIBUTES.equals(s.getType())) {
                         return (TbAttributeSubscription) s;
@@ -362,7 +363,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onTimeSeriesDelete(TenantId tenantId, EntityId entityId, List<String> keys, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.TIMESERIES, keys,
                 s -> {
                     if (TbSubscriptionType.TIMESERIES.equals(s.getType())) {
                         return (TbTimeseriesSubscription) s;
@@ -388,13 +389,15 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     }
 
     private <T extends TbSubscription> void onLocalTelemetrySubUpdate(EntityId entityId,
+                                                                      TbSubscriptionType type,
+                                                                      Collection<String> keys,
                                                                       Function<TbSubscription, T> castFunction,
                                                                       Predicate<T> filterFunction,
                                                                       Function<T, List<TsKvEntry>> processFunction,
                                                                       boolean ignoreEmptyUpdates) {
-        Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
+        TbEntitySubscriptions entitySubscriptions = subscriptionsByEntityId.get(entityId);
         if (entitySubscriptions != null) {
-            entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
+            entitySubscriptions.getSubscriptions(type, keys).stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
                 List<TsKvEntry> subscriptionUpdate = processFunction.apply(s);
                 if (subscriptionUpdate != null && !subscriptionUpdate.isEmpty()) {
                     if (serviceId.equals(s.getServiceId())) {
@@ -415,9 +418,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                                        Function<TbSubscription, TbAlarmsSubscription> castFunction,
                                        Predicate<TbAlarmsSubscription> filterFunction,
                                        Function<TbAlarmsSubscription, Alarm> processFunction, boolean deleted) {
-        Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
+        TbEntitySubscriptions entitySubscriptions = subscriptionsByEntityId.get(entityId);
         if (entitySubscriptions != null) {
-            entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
+            entitySubscriptions.getAlarmSubscriptions().stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
                 Alarm alarm = processFunction.apply(s);
                 if (alarm != null) {
                     if (serviceId.equals(s.getServiceId())) {
@@ -434,14 +437,31 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
         }
     }
 
-    private void removeSubscriptionFromEntityMap(TbSubscription sub) {
-        Set<TbSubscription> entitySubSet = subscriptionsByEntityId.get(sub.getEntityId());
-        if (entitySubSet != null) {
-            entitySubSet.remove(sub);
-            if (entitySubSet.isEmpty()) {
-                subscriptionsByEntityId.remove(sub.getEntityId());
-            }
+    private static List<String> toKeys(List<? extends KvEntry> entries) {
+        List<String> keys = new ArrayList<>(entries.size());
+        for (KvEntry entry : entries) {
+            keys.add(entry.getKey());
         }
+        return keys;
+    }
+
+    private boolean addSubscriptionToEntityMap(TbSubscription sub) {
+        AtomicBoolean added = new AtomicBoolean();
+        subscriptionsByEntityId.compute(sub.getEntityId(), (entityId, entitySubs) -> {
+            if (entitySubs == null) {
+                entitySubs = new TbEntitySubscriptions();
+            }
+            added.set(entitySubs.add(sub));
+            return entitySubs;
+        });
+        return added.get();
+    }
+
+    private void removeSubscriptionFromEntityMap(TbSubscription sub) {
+        subscriptionsByEntityId.computeIfPresent(sub.getEntityId(), (entityId, entitySubs) -> {
+            entitySubs.remove(sub);
+            return entitySubs.isEmpty() ? null : entitySubs;
+        });
     }
 
     private void removeSubscriptionFromPartitionMap(TbSubscription sub) {
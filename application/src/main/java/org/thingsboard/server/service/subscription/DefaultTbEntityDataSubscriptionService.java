@@ -26,15 +26,19 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.CloseStatus;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
 import org.thingsboard.server.common.data.query.AlarmDataQuery;
 import org.thingsboard.server.common.data.query.ComparisonTsValue;
 import org.thingsboard.server.common.data.query.EntityData;
@@ -84,6 +88,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("UnstableApiUsage")
@@ -135,6 +140,18 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private int maxEntitiesPerAlarmSubscription;
     @Value("${server.ws.dynamic_page_link.max_alarm_queries_per_refresh_interval:10}")
     private int maxAlarmQueriesPerRefreshInterval;
+    @Value("${server.ws.dynamic_page_link.incremental_refresh.enabled:false}")
+    private boolean incrementalRefreshEnabled;
+    @Value("${server.ws.dynamic_page_link.incremental_refresh.max_skipped_refreshes:10}")
+    private int maxSkippedRefreshes;
+    @Value("${server.ws.query_cache.enabled:false}")
+    private boolean queryCacheEnabled;
+    @Value("${server.ws.query_cache.ttl_ms:1000}")
+    private long queryCacheTtlMs;
+    @Value("${server.ws.query_cache.load_timeout_ms:10000}")
+    private long queryCacheLoadTimeoutMs;
+    @Value("${server.ws.query_cache.max_size:10000}")
+    private int queryCacheMaxSize;
     @Value("${ui.dashboard.max_datapoints_limit:50000}")
     private int maxDatapointLimit;
 
@@ -142,6 +159,8 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private boolean tsInSqlDB;
     private String serviceId;
     private SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private final ConcurrentMap<TenantId, ConcurrentMap<EntityType, AtomicLong>> entityChangesVersions = new ConcurrentHashMap<>();
+    private TbQueryResultCache queryCache;
 
     @PostConstruct
     public void initExecutor() {
@@ -154,6 +173,10 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         } else {
             scheduler = Executors.newScheduledThreadPool(dynamicPageLinkRefreshPoolSize, tbThreadFactory);
         }
+        queryCache = new TbQueryResultCache(entityService, tsService, stats, queryCacheEnabled, queryCacheTtlMs, queryCacheLoadTimeoutMs, queryCacheMaxSize);
+        if (queryCacheEnabled) {
+            scheduler.scheduleWithFixedDelay(queryCache::cleanUp, queryCacheTtlMs, queryCacheTtlMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
@@ -197,6 +220,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                     }
                 });
             }
+            ctx.setEntityChangesVersion(getEntityChangesVersion(ctx));
             long start = System.currentTimeMillis();
             ctx.fetchData();
             long end = System.currentTimeMillis();
@@ -300,7 +324,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         List<EntityData> entityDataList = ctx.getData().getData();
         List<ReadTsKvQuery> queryList = queries.values().stream().map(ReadTsKvQueryInfo::getQuery).collect(Collectors.toList());
         entityDataList.forEach(entityData -> fetchResultMap.put(entityData,
-                tsService.findAllByQueries(ctx.getTenantId(), entityData.getEntityId(), queryList)));
+                queryCache.findAllByQueries(ctx.getTenantId(), entityData.getEntityId(), queryList)));
         return Futures.transform(Futures.allAsList(fetchResultMap.values()), f -> {
             // Map that holds last ts for each key for each entity.
             Map<EntityData, Map<String, Long>> lastTsEntityMap = new HashMap<>();
@@ -362,6 +386,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         TbEntityCountSubCtx ctx = getSubCtx(session.getSessionId(), cmd.getCmdId());
         if (ctx == null) {
             ctx = createSubCtx(session, cmd);
+            ctx.setEntityChangesVersion(getEntityChangesVersion(ctx));
             long start = System.currentTimeMillis();
             ctx.fetchData();
             long end = System.currentTimeMillis();
@@ -428,9 +453,18 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private void refreshDynamicQuery(TbAbstractSubCtx<?> finalCtx) {
         try {
             if (validate(finalCtx)) {
+                long entityChangesVersion = getEntityChangesVersion(finalCtx);
+                if (canSkipRefresh(finalCtx, entityChangesVersion)) {
+                    log.trace("[{}][{}] Skipping query, no entity changes: {}", finalCtx.getSessionId(), finalCtx.getCmdId(), finalCtx.getQuery());
+                    finalCtx.setSkippedRefreshes(finalCtx.getSkippedRefreshes() + 1);
+                    stats.getDynamicQuerySkipCnt().incrementAndGet();
+                    return;
+                }
                 long start = System.currentTimeMillis();
                 finalCtx.update();
                 long end = System.currentTimeMillis();
+                finalCtx.setEntityChangesVersion(entityChangesVersion);
+                finalCtx.setSkippedRefreshes(0);
                 log.trace("[{}][{}] Executing query: {}", finalCtx.getSessionId(), finalCtx.getCmdId(), finalCtx.getQuery());
                 stats.getDynamicQueryInvocationCnt().incrementAndGet();
                 stats.getDynamicQueryTimeSpent().addAndGet(end - start);
@@ -442,6 +476,53 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         }
     }
 
+    private boolean canSkipRefresh(TbAbstractSubCtx<?> ctx, long entityChangesVersion) {
+        return incrementalRefreshEnabled
+                && ctx.getEntityChangesVersion() == entityChangesVersion
+                && ctx.getSkippedRefreshes() < maxSkippedRefreshes
+                && ctx.isEntityFieldsQuery();
+    }
+
+    /**
+     * Sum of the change versions of the entity types the query depends on. The versions only grow,
+     * so the sum changes whenever an entity of any of these types changes.
+     */
+    private long getEntityChangesVersion(TbAbstractSubCtx<?> ctx) {
+        Map<EntityType, AtomicLong> versions = entityChangesVersions.get(ctx.getTenantId());
+        if (versions == null) {
+            return 0L;
+        }
+        Set<EntityType> entityTypes = ctx.getEntityTypes();
+        long version = 0L;
+        if (entityTypes == null) {
+            for (AtomicLong typeVersion : versions.values()) {
+                version += typeVersion.get();
+            }
+        } else {
+            for (EntityType entityType : entityTypes) {
+                AtomicLong typeVersion = versions.get(entityType);
+                if (typeVersion != null) {
+                    version += typeVersion.get();
+                }
+            }
+        }
+        return version;
+    }
+
+    @EventListener(classes = EntityChangedEvent.class)
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!incrementalRefreshEnabled) {
+            return;
+        }
+        EntityType entityType = event.getEntityId().getEntityType();
+        if (EntityType.TENANT.equals(entityType) && ComponentLifecycleEvent.DELETED.equals(event.getEvent())) {
+            entityChangesVersions.remove(event.getTenantId());
+        } else {
+            entityChangesVersions.computeIfAbsent(event.getTenantId(), id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(entityType, type -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
     private void refreshAlarmQuery(TbAlarmDataSubCtx finalCtx) {
         if (validate(finalCtx)) {
             finalCtx.checkAndResetInvocationCounter();
@@ -457,15 +538,21 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         int regularQueryInvocationCntValue = stats.getRegularQueryInvocationCnt().getAndSet(0);
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
+        int dynamicQuerySkipCntValue = stats.getDynamicQuerySkipCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
+        int queryCacheHitCntValue = stats.getQueryCacheHitCnt().getAndSet(0);
+        int queryCacheMissCntValue = stats.getQueryCacheMissCnt().getAndSet(0);
+        long queryCacheSavedTimeValue = stats.getQueryCacheSavedTime().getAndSet(0);
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().mapToLong(m -> m.values().stream().filter(TbAbstractSubCtx::isDynamic).count()).sum();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
-                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
-                            "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
+                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQuerySkipCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}], " +
+                            "queryCacheHitCnt = [{}], queryCacheMissCnt = [{}], queryCacheSavedTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
-                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
-                    alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
+                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQuerySkipCntValue, dynamicQueryInvocationTimeValue,
+                    alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue,
+                    queryCacheHitCntValue, queryCacheMissCntValue, queryCacheSavedTimeValue);
         }
     }
 
@@ -476,6 +563,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         if (cmd.getQuery() != null) {
             ctx.setAndResolveQuery(cmd.getQuery());
         }
+        ctx.setQueryCache(queryCache);
         sessionSubs.put(cmd.getCmdId(), ctx);
         return ctx;
     }
@@ -487,6 +575,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         if (cmd.getQuery() != null) {
             ctx.setAndResolveQuery(cmd.getQuery());
         }
+        ctx.setQueryCache(queryCache);
         sessionSubs.put(cmd.getCmdId(), ctx);
         return ctx;
     }
@@ -498,6 +587,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                 attributesService, stats, alarmService, sessionRef, cmd.getCmdId(), maxEntitiesPerAlarmSubscription,
                 maxAlarmQueriesPerRefreshInterval);
         ctx.setAndResolveQuery(cmd.getQuery());
+        ctx.setQueryCache(queryCache);
         sessionSubs.put(cmd.getCmdId(), ctx);
         return ctx;
     }
@@ -550,7 +640,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         Map<EntityData, ListenableFuture<List<ReadTsKvQueryResult>>> fetchResultMap = new HashMap<>();
         List<EntityData> entityDataList = ctx.getData().getData();
         entityDataList.forEach(entityData -> fetchResultMap.put(entityData,
-                tsService.findAllByQueries(ctx.getTenantId(), entityData.getEntityId(), finalTsKvQueryList)));
+                queryCache.findAllByQueries(ctx.getTenantId(), entityData.getEntityId(), finalTsKvQueryList)));
         return Futures.transform(Futures.allAsList(fetchResultMap.values()), f -> {
             // Map that holds last ts for each key for each entity.
             Map<EntityData, Map<String, Long>> lastTsEntityMap = new HashMap<>();
@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+
+/**
+ * Published by the core notifications consumer when an entity of the tenant is created, updated, deleted, reassigned
+ * or its relations change on any node of the cluster, i.e. when the results of entity queries of the tenant may change.
+ */
+@Data
+public class EntityChangedEvent {
+    private final TenantId tenantId;
+    private final EntityId entityId;
+    private final ComponentLifecycleEvent event;
+}
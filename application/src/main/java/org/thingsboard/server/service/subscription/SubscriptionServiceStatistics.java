@@ -25,7 +25,11 @@ public class SubscriptionServiceStatistics {
     private AtomicInteger alarmQueryInvocationCnt = new AtomicInteger();
     private AtomicInteger regularQueryInvocationCnt = new AtomicInteger();
     private AtomicInteger dynamicQueryInvocationCnt = new AtomicInteger();
+    private AtomicInteger dynamicQuerySkipCnt = new AtomicInteger();
     private AtomicLong alarmQueryTimeSpent = new AtomicLong();
     private AtomicLong regularQueryTimeSpent = new AtomicLong();
     private AtomicLong dynamicQueryTimeSpent = new AtomicLong();
+    private AtomicInteger queryCacheHitCnt = new AtomicInteger();
+    private AtomicInteger queryCacheMissCnt = new AtomicInteger();
+    private AtomicLong queryCacheSavedTime = new AtomicLong();
 }
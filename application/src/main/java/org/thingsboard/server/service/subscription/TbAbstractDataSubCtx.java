@@ -17,6 +17,7 @@ package org.thingsboard.server.service.subscription;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.page.PageData;
@@ -64,7 +65,9 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
     }
 
     protected PageData<EntityData> findEntityData() {
-        PageData<EntityData> result = entityService.findEntityDataByQuery(getTenantId(), getCustomerId(), buildEntityDataQuery());
+        PageData<EntityData> result = isQueryCacheable() ?
+                queryCache.findEntityDataByQuery(getTenantId(), getCustomerId(), buildEntityDataQuery()) :
+                entityService.findEntityDataByQuery(getTenantId(), getCustomerId(), buildEntityDataQuery());
         if (log.isTraceEnabled()) {
             result.getData().forEach(ed -> {
                 log.trace("[{}][{}] EntityData: {}", getSessionId(), getCmdId(), ed);
@@ -78,6 +81,20 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
         return query != null && query.getPageLink().isDynamic();
     }
 
+    @Override
+    public boolean isEntityFieldsQuery() {
+        if (!super.isEntityFieldsQuery()) {
+            return false;
+        }
+        EntityDataPageLink pageLink = query.getPageLink();
+        if (pageLink.getSortOrder() != null && pageLink.getSortOrder().getKey() != null
+                && !EntityKeyType.ENTITY_FIELD.equals(pageLink.getSortOrder().getKey().getType())) {
+            return false;
+        }
+        // text search matches the latest values as well
+        return StringUtils.isEmpty(pageLink.getTextSearch()) || query.getLatestValues() == null || query.getLatestValues().isEmpty();
+    }
+
     @Override
     protected synchronized void update() {
         PageData<EntityData> newData = findEntityData();
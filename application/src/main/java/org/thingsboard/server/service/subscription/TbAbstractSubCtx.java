@@ -22,6 +22,7 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -31,11 +32,16 @@ import org.thingsboard.server.common.data.query.ComplexFilterPredicate;
 import org.thingsboard.server.common.data.query.DynamicValue;
 import org.thingsboard.server.common.data.query.DynamicValueSourceType;
 import org.thingsboard.server.common.data.query.EntityCountQuery;
+import org.thingsboard.server.common.data.query.EntityFilter;
+import org.thingsboard.server.common.data.query.EntityListFilter;
+import org.thingsboard.server.common.data.query.EntityNameFilter;
+import org.thingsboard.server.common.data.query.EntityTypeFilter;
 import org.thingsboard.server.common.data.query.EntityKeyType;
 import org.thingsboard.server.common.data.query.FilterPredicateType;
 import org.thingsboard.server.common.data.query.KeyFilter;
 import org.thingsboard.server.common.data.query.KeyFilterPredicate;
 import org.thingsboard.server.common.data.query.SimpleKeyFilterPredicate;
+import org.thingsboard.server.common.data.query.SingleEntityFilter;
 import org.thingsboard.server.common.data.query.TsValue;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.entity.EntityService;
@@ -45,6 +51,7 @@ import org.thingsboard.server.service.telemetry.cmd.v2.CmdUpdate;
 import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,6 +86,9 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
     @Setter
     protected volatile ScheduledFuture<?> refreshTask;
     protected volatile boolean stopped;
+    protected volatile long entityChangesVersion;
+    protected volatile int skippedRefreshes;
+    protected TbQueryResultCache queryCache;
 
     public TbAbstractSubCtx(String serviceId, TelemetryWebSocketService wsService,
                             EntityService entityService, TbLocalSubscriptionService localSubscriptionService,
@@ -182,6 +192,71 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
 
     public abstract boolean isDynamic();
 
+    /**
+     * Results of the query may be shared with other sessions unless the query depends on the values resolved
+     * for the current user, customer or tenant.
+     */
+    protected boolean isQueryCacheable() {
+        return queryCache != null && dynamicValues.isEmpty();
+    }
+
+    /**
+     * Types of the entities the query may return, so only their changes invalidate the results.
+     *
+     * @return null if the query follows the relations and may depend on the entities of any type.
+     */
+    public Set<EntityType> getEntityTypes() {
+        if (query == null || query.getEntityFilter() == null) {
+            return null;
+        }
+        EntityFilter filter = query.getEntityFilter();
+        switch (filter.getType()) {
+            case SINGLE_ENTITY:
+                EntityId singleEntity = ((SingleEntityFilter) filter).getSingleEntity();
+                return singleEntity != null ? Collections.singleton(singleEntity.getEntityType()) : null;
+            case ENTITY_LIST:
+                return singletonOrNull(((EntityListFilter) filter).getEntityType());
+            case ENTITY_NAME:
+                return singletonOrNull(((EntityNameFilter) filter).getEntityType());
+            case ENTITY_TYPE:
+                return singletonOrNull(((EntityTypeFilter) filter).getEntityType());
+            case ASSET_TYPE:
+                return Collections.singleton(EntityType.ASSET);
+            case DEVICE_TYPE:
+                return Collections.singleton(EntityType.DEVICE);
+            case ENTITY_VIEW_TYPE:
+                return Collections.singleton(EntityType.ENTITY_VIEW);
+            case EDGE_TYPE:
+                return Collections.singleton(EntityType.EDGE);
+            case API_USAGE_STATE:
+                return Collections.singleton(EntityType.API_USAGE_STATE);
+            default:
+                return null;
+        }
+    }
+
+    private static Set<EntityType> singletonOrNull(EntityType entityType) {
+        return entityType != null ? Collections.singleton(entityType) : null;
+    }
+
+    /**
+     * Whether the result of the query is defined by the entity fields only, so it may change only
+     * when the entities or their relations change and not on telemetry or attribute updates.
+     */
+    public boolean isEntityFieldsQuery() {
+        if (query == null) {
+            return false;
+        }
+        if (query.getKeyFilters() != null) {
+            for (KeyFilter filter : query.getKeyFilters()) {
+                if (!EntityKeyType.ENTITY_FIELD.equals(filter.getKey().getType())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     public abstract void fetchData();
 
     protected abstract void update();
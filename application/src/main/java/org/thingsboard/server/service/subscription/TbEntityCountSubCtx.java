@@ -36,19 +36,25 @@ public class TbEntityCountSubCtx extends TbAbstractSubCtx<EntityCountQuery> {
 
     @Override
     public void fetchData() {
-        result = (int) entityService.countEntitiesByQuery(getTenantId(), getCustomerId(), query);
+        result = countEntities();
         sendWsMsg(new EntityCountUpdate(cmdId, result));
     }
 
     @Override
     protected void update() {
-        int newCount = (int) entityService.countEntitiesByQuery(getTenantId(), getCustomerId(), query);
+        int newCount = countEntities();
         if (newCount != result) {
             result = newCount;
             sendWsMsg(new EntityCountUpdate(cmdId, result));
         }
     }
 
+    private int countEntities() {
+        return (int) (isQueryCacheable() ?
+                queryCache.countEntitiesByQuery(getTenantId(), getCustomerId(), query) :
+                entityService.countEntitiesByQuery(getTenantId(), getCustomerId(), query));
+    }
+
     @Override
     public boolean isDynamic() {
         return true;
@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscriptions of a single entity indexed by type and, for the time series and attribute subscriptions,
+ * by the subscribed keys. Subscriptions to all keys are kept in a separate bucket that matches every key.
+ * The index is modified under the lock of the instance, while the lookups don't lock.
+ */
+public class TbEntitySubscriptions {
+
+    private final Set<TbSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Set<TbSubscription> alarmSubscriptions = ConcurrentHashMap.newKeySet();
+    private final KeyIndex timeseriesSubscriptions = new KeyIndex();
+    private final KeyIndex attributeSubscriptions = new KeyIndex();
+
+    public synchronized boolean add(TbSubscription subscription) {
+        if (!subscriptions.add(subscription)) {
+            return false;
+        }
+        switch (subscription.getType()) {
+            case TIMESERIES:
+                TbTimeseriesSubscription tsSub = (TbTimeseriesSubscription) subscription;
+                timeseriesSubscriptions.add(subscription, tsSub.isAllKeys(), tsSub.getKeyStates());
+                break;
+            case ATTRIBUTES:
+                TbAttributeSubscription attrSub = (TbAttributeSubscription) subscription;
+                attributeSubscriptions.add(subscription, attrSub.isAllKeys(), attrSub.getKeyStates());
+                break;
+            case ALARMS:
+                alarmSubscriptions.add(subscription);
+                break;
+        }
+        return true;
+    }
+
+    public synchronized boolean remove(TbSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return false;
+        }
+        switch (subscription.getType()) {
+            case TIMESERIES:
+                timeseriesSubscriptions.remove(subscription);
+                break;
+            case ATTRIBUTES:
+                attributeSubscriptions.remove(subscription);
+                break;
+            case ALARMS:
+                alarmSubscriptions.remove(subscription);
+                break;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return subscriptions.isEmpty();
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+
+    public Collection<TbSubscription> getAlarmSubscriptions() {
+        return alarmSubscriptions;
+    }
+
+    /**
+     * Returns the time series or attribute subscriptions interested in at least one of the keys.
+     */
+    public Collection<TbSubscription> getSubscriptions(TbSubscriptionType type, Collection<String> keys) {
+        switch (type) {
+            case TIMESERIES:
+                return timeseriesSubscriptions.find(keys);
+            case ATTRIBUTES:
+                return attributeSubscriptions.find(keys);
+            case ALARMS:
+                return alarmSubscriptions;
+            default:
+                return Collections.emptySet();
+        }
+    }
+
+    private static class KeyIndex {
+
+        private final Set<TbSubscription> allKeys = ConcurrentHashMap.newKeySet();
+        private final Map<String, Set<TbSubscription>> byKey = new ConcurrentHashMap<>();
+        // Keys used to index each subscription, since the key states of the subscription are updated with new keys later
+        private final Map<TbSubscription, Set<String>> subscriptionKeys = new ConcurrentHashMap<>();
+
+        void add(TbSubscription subscription, boolean allKeysSubscription, Map<String, Long> keyStates) {
+            if (allKeysSubscription || keyStates == null) {
+                allKeys.add(subscription);
+            } else {
+                Set<String> keys = new HashSet<>(keyStates.keySet());
+                subscriptionKeys.put(subscription, keys);
+                for (String key : keys) {
+                    byKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscription);
+                }
+            }
+        }
+
+        void remove(TbSubscription subscription) {
+            if (!allKeys.remove(subscription)) {
+                Set<String> keys = subscriptionKeys.remove(subscription);
+                if (keys != null) {
+                    for (String key : keys) {
+                        Set<TbSubscription> keySubscriptions = byKey.get(key);
+                        if (keySubscriptions != null) {
+                            keySubscriptions.remove(subscription);
+                            if (keySubscriptions.isEmpty()) {
+                                byKey.remove(key);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        Collection<TbSubscription> find(Collection<String> keys) {
+            if (keys.size() == 1) {
+                Set<TbSubscription> keySubscriptions = byKey.get(keys.iterator().next());
+                if (allKeys.isEmpty()) {
+                    return keySubscriptions != null ? keySubscriptions : Collections.emptySet();
+                } else if (keySubscriptions == null) {
+                    return allKeys;
+                }
+            }
+            Set<TbSubscription> result = new HashSet<>(allKeys);
+            for (String key : keys) {
+                Set<TbSubscription> keySubscriptions = byKey.get(key);
+                if (keySubscriptions != null) {
+                    result.addAll(keySubscriptions);
+                }
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityCountQuery;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Short-living cache of the entity and time series query results shared by the subscriptions of all sessions.
+ * Identical queries issued while the first one is still running wait for its result instead of hitting the database.
+ * <p>
+ * Entity queries are keyed by tenant, customer and the query itself, which is all the database uses to restrict
+ * the result, so users of different customers never share results. Callers get their own copy of the entity data,
+ * since the subscription contexts update it in place.
+ * <p>
+ * A query that is still running after the load timeout no longer blocks others: callers waiting for it run
+ * the query themselves and the next caller replaces the in-flight entry with its own.
+ */
+@Slf4j
+public class TbQueryResultCache {
+
+    private final EntityService entityService;
+    private final TimeseriesService tsService;
+    private final SubscriptionServiceStatistics stats;
+    private final boolean enabled;
+    private final long loadTimeoutMs;
+
+    private final SingleFlightCache<EntityQueryKey, PageData<EntityData>> entityDataResults;
+    private final SingleFlightCache<EntityQueryKey, Long> entityCountResults;
+    private final SingleFlightCache<TsQueryKey, TsQueryResults> tsResults;
+
+    public TbQueryResultCache(EntityService entityService, TimeseriesService tsService, SubscriptionServiceStatistics stats,
+                              boolean enabled, long ttlMs, long loadTimeoutMs, int maxSize) {
+        this.entityService = entityService;
+        this.tsService = tsService;
+        this.stats = stats;
+        this.enabled = enabled;
+        this.loadTimeoutMs = loadTimeoutMs;
+        this.entityDataResults = new SingleFlightCache<>(ttlMs, maxSize);
+        this.entityCountResults = new SingleFlightCache<>(ttlMs, maxSize);
+        this.tsResults = new SingleFlightCache<>(ttlMs, maxSize);
+    }
+
+    public PageData<EntityData> findEntityDataByQuery(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        if (!enabled) {
+            return entityService.findEntityDataByQuery(tenantId, customerId, query);
+        }
+        EntityQueryKey key = new EntityQueryKey(tenantId, customerId, JacksonUtil.toString(query));
+        PageData<EntityData> result = entityDataResults.get(key, () -> entityService.findEntityDataByQuery(tenantId, customerId, query));
+        return result.mapData(TbQueryResultCache::copy);
+    }
+
+    public long countEntitiesByQuery(TenantId tenantId, CustomerId customerId, EntityCountQuery query) {
+        if (!enabled) {
+            return entityService.countEntitiesByQuery(tenantId, customerId, query);
+        }
+        EntityQueryKey key = new EntityQueryKey(tenantId, customerId, JacksonUtil.toString(query));
+        return entityCountResults.get(key, () -> entityService.countEntitiesByQuery(tenantId, customerId, query));
+    }
+
+    /**
+     * Results of the shared query are returned with the ids of the caller's queries, since
+     * {@link ReadTsKvQueryResult#getQueryId()} is used to match the results to the requested keys.
+     */
+    public ListenableFuture<List<ReadTsKvQueryResult>> findAllByQueries(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        if (!enabled) {
+            return tsService.findAllByQueries(tenantId, entityId, queries);
+        }
+        List<TsQueryParams> params = new ArrayList<>(queries.size());
+        for (ReadTsKvQuery query : queries) {
+            params.add(new TsQueryParams(query.getKey(), query.getStartTs(), query.getEndTs(), query.getInterval(),
+                    query.getLimit(), query.getAggregation(), query.getOrder()));
+        }
+        TsQueryKey key = new TsQueryKey(tenantId, entityId, params);
+        ListenableFuture<TsQueryResults> future = tsResults.getAsync(key, () -> Futures.transform(
+                tsService.findAllByQueries(tenantId, entityId, queries), results -> new TsQueryResults(queries, results), MoreExecutors.directExecutor()));
+        return Futures.transform(future, results -> results.forQueries(queries), MoreExecutors.directExecutor());
+    }
+
+    public void cleanUp() {
+        entityDataResults.cleanUp();
+        entityCountResults.cleanUp();
+        tsResults.cleanUp();
+    }
+
+    private static EntityData copy(EntityData entityData) {
+        Map<EntityKeyType, Map<String, TsValue>> latest = null;
+        if (entityData.getLatest() != null) {
+            latest = new HashMap<>();
+            for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : entityData.getLatest().entrySet()) {
+                latest.put(entry.getKey(), new HashMap<>(entry.getValue()));
+            }
+        }
+        Map<String, TsValue[]> timeseries = null;
+        if (entityData.getTimeseries() != null) {
+            timeseries = new HashMap<>();
+            for (Map.Entry<String, TsValue[]> entry : entityData.getTimeseries().entrySet()) {
+                timeseries.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        return new EntityData(entityData.getEntityId(), latest, timeseries,
+                entityData.getAggLatest() != null ? new HashMap<>(entityData.getAggLatest()) : null);
+    }
+
+    @Data
+    private static class EntityQueryKey {
+        private final TenantId tenantId;
+        private final CustomerId customerId;
+        private final String query;
+    }
+
+    @Data
+    private static class TsQueryKey {
+        private final TenantId tenantId;
+        private final EntityId entityId;
+        private final List<TsQueryParams> queries;
+    }
+
+    @Data
+    private static class TsQueryParams {
+        private final String key;
+        private final long startTs;
+        private final long endTs;
+        private final long interval;
+        private final int limit;
+        private final Aggregation aggregation;
+        private final String order;
+    }
+
+    private static class TsQueryResults {
+
+        private final Map<Integer, Integer> queryIdxById = new HashMap<>();
+        private final List<ReadTsKvQueryResult> results;
+
+        TsQueryResults(List<ReadTsKvQuery> queries, List<ReadTsKvQueryResult> results) {
+            for (int i = 0; i < queries.size(); i++) {
+                queryIdxById.put(queries.get(i).getId(), i);
+            }
+            this.results = results;
+        }
+
+        List<ReadTsKvQueryResult> forQueries(List<ReadTsKvQuery> queries) {
+            List<ReadTsKvQueryResult> mapped = new ArrayList<>(results.size());
+            for (ReadTsKvQueryResult result : results) {
+                Integer idx = queryIdxById.get(result.getQueryId());
+                int queryId = idx != null ? queries.get(idx).getId() : result.getQueryId();
+                mapped.add(new ReadTsKvQueryResult(queryId, result.getData(), result.getLastEntryTs()));
+            }
+            return mapped;
+        }
+
+    }
+
+    private class SingleFlightCache<K, V> {
+
+        private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<>();
+        private final long ttlMs;
+        private final int maxSize;
+
+        SingleFlightCache(long ttlMs, int maxSize) {
+            this.ttlMs = ttlMs;
+            this.maxSize = maxSize;
+        }
+
+        V get(K key, Supplier<V> loader) {
+            Entry entry = new Entry();
+            Entry existing = putIfAbsent(key, entry);
+            if (existing == null) {
+                return loader.get();
+            } else if (existing != entry) {
+                return getShared(existing, loader);
+            }
+            long startTs = System.currentTimeMillis();
+            try {
+                V value = loader.get();
+                entry.complete(value, System.currentTimeMillis() - startTs);
+                return value;
+            } catch (Throwable t) {
+                entries.remove(key, entry);
+                entry.future.setException(t);
+                throw t;
+            }
+        }
+
+        ListenableFuture<V> getAsync(K key, Supplier<ListenableFuture<V>> loader) {
+            Entry entry = new Entry();
+            Entry existing = putIfAbsent(key, entry);
+            if (existing == null) {
+                return loader.get();
+            } else if (existing != entry) {
+                onHit(existing);
+                return existing.future;
+            }
+            long startTs = System.currentTimeMillis();
+            ListenableFuture<V> future;
+            try {
+                future = loader.get();
+            } catch (Throwable t) {
+                entries.remove(key, entry);
+                entry.future.setException(t);
+                throw t;
+            }
+            future.addListener(() -> {
+                try {
+                    entry.complete(Futures.getDone(future), System.currentTimeMillis() - startTs);
+                } catch (ExecutionException e) {
+                    entries.remove(key, entry);
+                    entry.future.setException(e.getCause());
+                } catch (Throwable t) {
+                    entries.remove(key, entry);
+                    entry.future.setException(t);
+                }
+            }, MoreExecutors.directExecutor());
+            return entry.future;
+        }
+
+        /**
+         * Returns the entry of the key, the given new entry if it was registered or null if the cache is full.
+         */
+        private Entry putIfAbsent(K key, Entry entry) {
+            while (true) {
+                Entry existing = entries.get(key);
+                if (existing != null && !existing.isExpired()) {
+                    return existing;
+                }
+                if (existing != null) {
+                    entries.remove(key, existing);
+                } else if (entries.size() >= maxSize) {
+                    stats.getQueryCacheMissCnt().incrementAndGet();
+                    return null;
+                }
+                if (entries.putIfAbsent(key, entry) == null) {
+                    stats.getQueryCacheMissCnt().incrementAndGet();
+                    return entry;
+                }
+            }
+        }
+
+        private V getShared(Entry entry, Supplier<V> loader) {
+            onHit(entry);
+            try {
+                return entry.future.get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.debug("Shared query is still running after {} ms, running the query directly", loadTimeoutMs);
+                return loader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new UncheckedExecutionException(e.getCause());
+            }
+        }
+
+        private void onHit(Entry entry) {
+            stats.getQueryCacheHitCnt().incrementAndGet();
+            entry.future.addListener(() -> stats.getQueryCacheSavedTime().addAndGet(entry.loadTime), MoreExecutors.directExecutor());
+        }
+
+        void cleanUp() {
+            entries.values().removeIf(Entry::isExpired);
+        }
+
+        private class Entry {
+            private final SettableFuture<V> future = SettableFuture.create();
+            private volatile long expirationTs = System.currentTimeMillis() + loadTimeoutMs;
+            private volatile long loadTime;
+
+            void complete(V value, long loadTime) {
+                this.loadTime = loadTime;
+                this.expirationTs = System.currentTimeMillis() + ttlMs;
+                future.set(value);
+            }
+
+            boolean isExpired() {
+                return expirationTs < System.currentTimeMillis();
+            }
+        }
+
+    }
+
+}
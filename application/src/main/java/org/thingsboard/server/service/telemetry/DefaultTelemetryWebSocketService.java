@@ -44,6 +44,7 @@ import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
@@ -95,6 +96,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -117,6 +120,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private static final String FAILED_TO_FETCH_ATTRIBUTES = "Failed to fetch attributes!";
     private static final String SESSION_META_DATA_NOT_FOUND = "Session meta-data not found!";
     private static final String FAILED_TO_PARSE_WS_COMMAND = "Failed to parse websocket command!";
+    private static final String STATS_KEY = "wsUpdates";
 
     private final ConcurrentMap<String, WsSessionMetaData> wsSessionsMap = new ConcurrentHashMap<>();
 
@@ -144,9 +148,27 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     @Autowired
     private TbTenantProfileCache tenantProfileCache;
 
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
     @Value("${server.ws.ping_timeout:30000}")
     private long pingTimeout;
 
+    @Value("${server.ws.coalescing.enabled:false}")
+    private boolean coalescingEnabled;
+    @Value("${server.ws.coalescing.tick_ms:100}")
+    private long coalescingTickMs;
+    @Value("${server.ws.coalescing.max_pending_updates:1000}")
+    private int maxPendingUpdates;
+    @Value("${server.ws.coalescing.max_values_per_key:100}")
+    private int maxValuesPerKey;
+
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final AtomicLong conflatedUpdates = new AtomicLong();
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final AtomicLong sentUpdates = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+
     private ConcurrentMap<TenantId, Set<String>> tenantSubscriptionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<CustomerId, Set<String>> customerSubscriptionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<UserId, Set<String>> regularUserSubscriptionsMap = new ConcurrentHashMap<>();
@@ -156,6 +178,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private String serviceId;
 
     private ScheduledExecutorService pingExecutor;
+    private ScheduledExecutorService flushExecutor;
 
     @PostConstruct
     public void initExecutor() {
@@ -164,6 +187,18 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
 
         pingExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("telemetry-web-socket-ping"));
         pingExecutor.scheduleWithFixedDelay(this::sendPing, pingTimeout / NUMBER_OF_PING_ATTEMPTS, pingTimeout / NUMBER_OF_PING_ATTEMPTS, TimeUnit.MILLISECONDS);
+
+        if (coalescingEnabled) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("telemetry-web-socket-flush"));
+            flushExecutor.scheduleWithFixedDelay(this::flushUpdates, coalescingTickMs, coalescingTickMs, TimeUnit.MILLISECONDS);
+            if (statsFactory != null) {
+                statsFactory.createGauge(STATS_KEY, pendingUpdates, "stat", "pending");
+                statsFactory.createGauge(STATS_KEY, conflatedUpdates, "stat", "conflated");
+                statsFactory.createGauge(STATS_KEY, droppedUpdates, "stat", "dropped");
+                statsFactory.createGauge(STATS_KEY, sentUpdates, "stat", "sent");
+                statsFactory.createGauge(STATS_KEY, sentFrames, "stat", "frames");
+            }
+        }
     }
 
     @PreDestroy
@@ -172,6 +207,10 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
             pingExecutor.shutdownNow();
         }
 
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+
         if (executor != null) {
             executor.shutdownNow();
         }
@@ -183,13 +222,20 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
         log.debug(PROCESSING_MSG, sessionId, event);
         switch (event.getEventType()) {
             case ESTABLISHED:
-                wsSessionsMap.put(sessionId, new WsSessionMetaData(sessionRef));
+                WsSessionMetaData sessionMd = new WsSessionMetaData(sessionRef);
+                if (coalescingEnabled) {
+                    sessionMd.setUpdateQueue(new TelemetryWebSocketUpdateQueue(maxPendingUpdates, maxValuesPerKey));
+                }
+                wsSessionsMap.put(sessionId, sessionMd);
                 break;
             case ERROR:
                 log.debug("[{}] Unknown websocket session error: {}. ", sessionId, event.getError().orElse(null));
                 break;
             case CLOSED:
-                wsSessionsMap.remove(sessionId);
+                WsSessionMetaData closedSessionMd = wsSessionsMap.remove(sessionId);
+                if (closedSessionMd != null && closedSessionMd.getUpdateQueue() != null) {
+                    pendingUpdates.addAndGet(-closedSessionMd.getUpdateQueue().drain().size());
+                }
                 oldSubService.cancelAllSessionSubscriptions(sessionId);
                 entityDataSubService.cancelAllSessionSubscriptions(sessionId);
                 processSessionClose(sessionRef);
@@ -610,6 +656,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private void handleWsTimeseriesSubscriptionByKeys(TelemetryWebSocketSessionRef sessionRef,
                                                       TimeseriesSubscriptionCmd cmd, String sessionId, EntityId entityId) {
         long startTs;
+        setKeepHistory(sessionRef, cmd.getCmdId(), cmd.getTimeWindow() > 0);
         if (cmd.getTimeWindow() > 0) {
             List<String> keys = new ArrayList<>(getKeys(cmd).orElse(Collections.emptySet()));
             log.debug("[{}] fetching timeseries data for last {} ms for keys: ({}) for device : {}", sessionId, cmd.getTimeWindow(), cmd.getKeys(), entityId);
@@ -633,6 +680,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
 
     private void handleWsTimeseriesSubscription(TelemetryWebSocketSessionRef sessionRef,
                                                 TimeseriesSubscriptionCmd cmd, String sessionId, EntityId entityId) {
+        setKeepHistory(sessionRef, cmd.getCmdId(), false);
         FutureCallback<List<TsKvEntry>> callback = new FutureCallback<List<TsKvEntry>>() {
             @Override
             public void onSuccess(List<TsKvEntry> data) {
@@ -792,6 +840,24 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     }
 
     private void sendWsMsg(TelemetryWebSocketSessionRef sessionRef, int cmdId, Object update) {
+        if (coalescingEnabled) {
+            WsSessionMetaData md = wsSessionsMap.get(sessionRef.getSessionId());
+            if (md != null && md.getUpdateQueue() != null) {
+                queueWsMsg(md.getUpdateQueue(), sessionRef, update);
+                return;
+            }
+        }
+        if (TelemetryWebSocketProtocol.PROTOBUF.equals(sessionRef.getProtocol())) {
+            byte[] msg = TelemetryWebSocketProtoEncoder.encode(update);
+            executor.submit(() -> {
+                try {
+                    msgEndpoint.send(sessionRef, cmdId, msg);
+                } catch (IOException e) {
+                    log.warn("[{}] Failed to send reply: {}", sessionRef.getSessionId(), update, e);
+                }
+            });
+            return;
+        }
         try {
             String msg = jsonMapper.writeValueAsString(update);
             executor.submit(() -> {
@@ -806,6 +872,77 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
         }
     }
 
+    private void setKeepHistory(TelemetryWebSocketSessionRef sessionRef, int cmdId, boolean keepHistory) {
+        WsSessionMetaData md = wsSessionsMap.get(sessionRef.getSessionId());
+        if (md != null && md.getUpdateQueue() != null) {
+            md.getUpdateQueue().setKeepHistory(cmdId, keepHistory);
+        }
+    }
+
+    private void queueWsMsg(TelemetryWebSocketUpdateQueue updateQueue, TelemetryWebSocketSessionRef sessionRef, Object update) {
+        TelemetryWebSocketUpdateQueue.AddResult result;
+        if (update instanceof TelemetrySubscriptionUpdate) {
+            result = updateQueue.add((TelemetrySubscriptionUpdate) update);
+        } else {
+            result = updateQueue.add((CmdUpdate) update);
+        }
+        switch (result) {
+            case QUEUED:
+                pendingUpdates.incrementAndGet();
+                break;
+            case CONFLATED:
+                conflatedUpdates.incrementAndGet();
+                break;
+            case DROPPED:
+                droppedUpdates.incrementAndGet();
+                log.debug("[{}] Dropped update due to the max pending updates limit: {}", sessionRef.getSessionId(), update);
+                break;
+        }
+    }
+
+    private void flushUpdates() {
+        wsSessionsMap.values().forEach(md -> {
+            TelemetryWebSocketUpdateQueue updateQueue = md.getUpdateQueue();
+            // at most one flush of the session is in flight, the updates queued meanwhile go with the next one.
+            // Skipping the sessions that are still sending keeps merging the updates of the slow clients
+            if (updateQueue != null && updateQueue.size() > 0 && !msgEndpoint.isSending(md.getSessionRef())
+                    && md.getFlushScheduled().compareAndSet(false, true)) {
+                executor.submit(() -> {
+                    try {
+                        flushUpdates(md.getSessionRef(), updateQueue);
+                    } finally {
+                        md.getFlushScheduled().set(false);
+                    }
+                });
+            }
+        });
+    }
+
+    private void flushUpdates(TelemetryWebSocketSessionRef sessionRef, TelemetryWebSocketUpdateQueue updateQueue) {
+        List<Object> updates = updateQueue.drain();
+        if (updates.isEmpty()) {
+            return;
+        }
+        pendingUpdates.addAndGet(-updates.size());
+        Object firstUpdate = updates.get(0);
+        int cmdId = firstUpdate instanceof TelemetrySubscriptionUpdate ?
+                ((TelemetrySubscriptionUpdate) firstUpdate).getSubscriptionId() : ((CmdUpdate) firstUpdate).getCmdId();
+        try {
+            if (TelemetryWebSocketProtocol.PROTOBUF.equals(sessionRef.getProtocol())) {
+                msgEndpoint.send(sessionRef, cmdId, TelemetryWebSocketProtoEncoder.encode(updates));
+            } else {
+                String msg = jsonMapper.writeValueAsString(updates.size() == 1 ? firstUpdate : updates);
+                msgEndpoint.send(sessionRef, cmdId, msg);
+            }
+            sentUpdates.addAndGet(updates.size());
+            sentFrames.incrementAndGet();
+        } catch (JsonProcessingException e) {
+            log.warn("[{}] Failed to encode [{}] updates", sessionRef.getSessionId(), updates.size(), e);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to send [{}] updates", sessionRef.getSessionId(), updates.size(), e);
+        }
+    }
+
     private void sendPing() {
         long currentTime = System.currentTimeMillis();
         wsSessionsMap.values().forEach(md ->
@@ -26,7 +26,11 @@ public interface TelemetryWebSocketMsgEndpoint {
 
     void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, String msg) throws IOException;
 
+    void send(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, byte[] msg) throws IOException;
+
     void sendPing(TelemetryWebSocketSessionRef sessionRef, long currentTime) throws IOException;
 
+    boolean isSending(TelemetryWebSocketSessionRef sessionRef);
+
     void close(TelemetryWebSocketSessionRef sessionRef, CloseStatus withReason) throws IOException;
 }
@@ -0,0 +1,195 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import com.google.protobuf.ByteString;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.ComparisonTsValue;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.gen.ws.WsProtos;
+import org.thingsboard.server.service.telemetry.cmd.v2.CmdUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityCountUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes subscription updates into the binary frames of the {@link TelemetryWebSocketProtocol#PROTOBUF} protocol.
+ * The messages mirror the JSON of the text protocol field by field.
+ */
+public final class TelemetryWebSocketProtoEncoder {
+
+    private TelemetryWebSocketProtoEncoder() {
+    }
+
+    public static byte[] encode(Object update) {
+        return WsProtos.WsUpdatesMsg.newBuilder().addUpdates(toProto(update)).build().toByteArray();
+    }
+
+    public static byte[] encode(List<Object> updates) {
+        WsProtos.WsUpdatesMsg.Builder builder = WsProtos.WsUpdatesMsg.newBuilder();
+        for (Object update : updates) {
+            builder.addUpdates(toProto(update));
+        }
+        return builder.build().toByteArray();
+    }
+
+    public static byte[] encodeError(int subscriptionId, int errorCode, String errorMsg) {
+        return WsProtos.WsUpdatesMsg.newBuilder().addUpdates(WsProtos.WsUpdateMsg.newBuilder()
+                .setTelemetryUpdate(WsProtos.TelemetrySubscriptionUpdateProto.newBuilder()
+                        .setSubscriptionId(subscriptionId)
+                        .setErrorCode(errorCode)
+                        .setErrorMsg(errorMsg))).build().toByteArray();
+    }
+
+    static WsProtos.WsUpdateMsg toProto(Object update) {
+        WsProtos.WsUpdateMsg.Builder builder = WsProtos.WsUpdateMsg.newBuilder();
+        if (update instanceof TelemetrySubscriptionUpdate) {
+            builder.setTelemetryUpdate(toProto((TelemetrySubscriptionUpdate) update));
+        } else if (update instanceof EntityDataUpdate) {
+            builder.setEntityDataUpdate(toProto((EntityDataUpdate) update));
+        } else if (update instanceof EntityCountUpdate) {
+            builder.setEntityCountUpdate(toProto((EntityCountUpdate) update));
+        } else {
+            CmdUpdate cmdUpdate = (CmdUpdate) update;
+            builder.setJsonUpdate(WsProtos.JsonUpdateProto.newBuilder()
+                    .setCmdId(cmdUpdate.getCmdId())
+                    .setCmdUpdateType(cmdUpdate.getCmdUpdateType().name())
+                    .setJson(ByteString.copyFrom(JacksonUtil.writeValueAsBytes(cmdUpdate))));
+        }
+        return builder.build();
+    }
+
+    static WsProtos.TelemetrySubscriptionUpdateProto toProto(TelemetrySubscriptionUpdate update) {
+        WsProtos.TelemetrySubscriptionUpdateProto.Builder builder = WsProtos.TelemetrySubscriptionUpdateProto.newBuilder()
+                .setSubscriptionId(update.getSubscriptionId())
+                .setErrorCode(update.getErrorCode());
+        if (update.getErrorMsg() != null) {
+            builder.setErrorMsg(update.getErrorMsg());
+        }
+        if (update.getData() != null) {
+            update.getData().forEach((key, values) -> {
+                WsProtos.KeyTsValuesProto.Builder keyBuilder = WsProtos.KeyTsValuesProto.newBuilder().setKey(key);
+                for (Object value : values) {
+                    Object[] tsValue = (Object[]) value;
+                    WsProtos.TsValueProto.Builder valueBuilder = WsProtos.TsValueProto.newBuilder().setTs(((Number) tsValue[0]).longValue());
+                    if (tsValue[1] != null) {
+                        valueBuilder.setValue(tsValue[1].toString());
+                    }
+                    keyBuilder.addValues(valueBuilder);
+                }
+                builder.addData(keyBuilder);
+            });
+        }
+        return builder.build();
+    }
+
+    static WsProtos.EntityDataUpdateProto toProto(EntityDataUpdate update) {
+        WsProtos.EntityDataUpdateProto.Builder builder = WsProtos.EntityDataUpdateProto.newBuilder()
+                .setCmdId(update.getCmdId())
+                .setErrorCode(update.getErrorCode())
+                .setAllowedEntities(update.getAllowedEntities());
+        if (update.getErrorMsg() != null) {
+            builder.setErrorMsg(update.getErrorMsg());
+        }
+        PageData<EntityData> data = update.getData();
+        if (data != null) {
+            WsProtos.EntityDataPageProto.Builder pageBuilder = WsProtos.EntityDataPageProto.newBuilder()
+                    .setTotalPages(data.getTotalPages())
+                    .setTotalElements(data.getTotalElements())
+                    .setHasNext(data.hasNext());
+            if (data.getData() != null) {
+                for (EntityData entityData : data.getData()) {
+                    pageBuilder.addData(toProto(entityData));
+                }
+            }
+            builder.setData(pageBuilder);
+        }
+        if (update.getUpdate() != null) {
+            builder.setHasUpdate(true);
+            for (EntityData entityData : update.getUpdate()) {
+                builder.addUpdate(toProto(entityData));
+            }
+        }
+        return builder.build();
+    }
+
+    static WsProtos.EntityCountUpdateProto toProto(EntityCountUpdate update) {
+        WsProtos.EntityCountUpdateProto.Builder builder = WsProtos.EntityCountUpdateProto.newBuilder()
+                .setCmdId(update.getCmdId())
+                .setErrorCode(update.getErrorCode())
+                .setCount(update.getCount());
+        if (update.getErrorMsg() != null) {
+            builder.setErrorMsg(update.getErrorMsg());
+        }
+        return builder.build();
+    }
+
+    static WsProtos.EntityDataProto toProto(EntityData entityData) {
+        WsProtos.EntityDataProto.Builder builder = WsProtos.EntityDataProto.newBuilder()
+                .setEntityType(entityData.getEntityId().getEntityType().name())
+                .setEntityIdMSB(entityData.getEntityId().getId().getMostSignificantBits())
+                .setEntityIdLSB(entityData.getEntityId().getId().getLeastSignificantBits());
+        if (entityData.getLatest() != null) {
+            entityData.getLatest().forEach((keyType, values) -> {
+                WsProtos.LatestValuesProto.Builder latestBuilder = WsProtos.LatestValuesProto.newBuilder().setKeyType(keyType.name());
+                for (Map.Entry<String, TsValue> entry : values.entrySet()) {
+                    latestBuilder.addValues(WsProtos.KeyTsValueProto.newBuilder().setKey(entry.getKey()).setValue(toProto(entry.getValue())));
+                }
+                builder.addLatest(latestBuilder);
+            });
+        }
+        if (entityData.getTimeseries() != null) {
+            entityData.getTimeseries().forEach((key, values) -> {
+                WsProtos.KeyTsValuesProto.Builder keyBuilder = WsProtos.KeyTsValuesProto.newBuilder().setKey(key);
+                for (TsValue value : values) {
+                    keyBuilder.addValues(toProto(value));
+                }
+                builder.addTimeseries(keyBuilder);
+            });
+        }
+        if (entityData.getAggLatest() != null) {
+            for (Map.Entry<Integer, ComparisonTsValue> entry : entityData.getAggLatest().entrySet()) {
+                WsProtos.AggLatestValueProto.Builder aggBuilder = WsProtos.AggLatestValueProto.newBuilder().setId(entry.getKey());
+                ComparisonTsValue value = entry.getValue();
+                if (value.getCurrent() != null) {
+                    aggBuilder.setCurrent(toProto(value.getCurrent()));
+                }
+                if (value.getPrevious() != null) {
+                    aggBuilder.setPrevious(toProto(value.getPrevious()));
+                }
+                builder.addAggLatest(aggBuilder);
+            }
+        }
+        return builder.build();
+    }
+
+    static WsProtos.TsValueProto toProto(TsValue value) {
+        WsProtos.TsValueProto.Builder builder = WsProtos.TsValueProto.newBuilder().setTs(value.getTs());
+        if (value.getValue() != null) {
+            builder.setValue(value.getValue());
+        }
+        if (value.getCount() != null) {
+            builder.setCount(value.getCount());
+        }
+        return builder.build();
+    }
+
+}
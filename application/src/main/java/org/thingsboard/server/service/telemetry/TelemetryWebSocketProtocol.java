@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.Getter;
+
+/**
+ * Protocol of the updates sent to a telemetry websocket session, negotiated with the Sec-WebSocket-Protocol header.
+ * Commands are accepted as JSON text frames by both protocols.
+ */
+public enum TelemetryWebSocketProtocol {
+
+    JSON(null),
+    PROTOBUF("tb.telemetry.protobuf.v1");
+
+    @Getter
+    private final String subProtocol;
+
+    TelemetryWebSocketProtocol(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public static TelemetryWebSocketProtocol forSubProtocol(String subProtocol) {
+        return PROTOBUF.subProtocol.equals(subProtocol) ? PROTOBUF : JSON;
+    }
+
+}
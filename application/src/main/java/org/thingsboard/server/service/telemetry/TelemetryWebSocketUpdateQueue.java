@@ -0,0 +1,273 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.query.ComparisonTsValue;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.service.telemetry.cmd.v2.CmdUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityCountUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Outbound updates of a single websocket session waiting for the next flush.
+ * <p>
+ * A new update of the same subscription is conflated into the pending one when no other update of that subscription
+ * was queued in between: telemetry and attribute values and latest values of entity data are replaced per key
+ * (latest wins), while full entity data pages and entity counts replace the pending update. The subscriptions with
+ * a time window keep the history instead: their values are appended per key, up to the max values per key, after that
+ * the update is queued separately. Errors and alarm updates are never conflated. Once the queue is full, updates that
+ * can't be conflated are dropped, except for errors.
+ */
+class TelemetryWebSocketUpdateQueue {
+
+    enum AddResult {
+        QUEUED, CONFLATED, DROPPED
+    }
+
+    private static final long TELEMETRY_UPDATE = 0L;
+    private static final long CMD_UPDATE = 1L;
+
+    private final int maxPendingUpdates;
+    private final int maxValuesPerKey;
+    private List<Object> pending = new ArrayList<>();
+    private final Map<Long, Integer> conflationTargets = new HashMap<>();
+    private final Set<Integer> historySubscriptions = new HashSet<>();
+
+    TelemetryWebSocketUpdateQueue(int maxPendingUpdates, int maxValuesPerKey) {
+        this.maxPendingUpdates = maxPendingUpdates;
+        this.maxValuesPerKey = maxValuesPerKey;
+    }
+
+    /**
+     * Whether all values of the telemetry subscription are sent, e.g. for the time window subscriptions, or the latest ones only.
+     */
+    synchronized void setKeepHistory(int subscriptionId, boolean keepHistory) {
+        if (keepHistory) {
+            historySubscriptions.add(subscriptionId);
+        } else {
+            historySubscriptions.remove(subscriptionId);
+        }
+    }
+
+    synchronized AddResult add(TelemetrySubscriptionUpdate update) {
+        long key = toKey(TELEMETRY_UPDATE, update.getSubscriptionId());
+        if (update.getErrorCode() != 0) {
+            return append(key, update, false, true);
+        }
+        Integer target = conflationTargets.get(key);
+        if (target != null) {
+            TelemetrySubscriptionUpdate pendingUpdate = (TelemetrySubscriptionUpdate) pending.get(target);
+            if (!historySubscriptions.contains(update.getSubscriptionId())) {
+                pending.set(target, mergeLatest(pendingUpdate, update));
+                return AddResult.CONFLATED;
+            }
+            TelemetrySubscriptionUpdate merged = merge(pendingUpdate, update);
+            if (merged.getData().values().stream().allMatch(values -> values.size() <= maxValuesPerKey)) {
+                pending.set(target, merged);
+                return AddResult.CONFLATED;
+            }
+        }
+        return append(key, update, update.getData() != null, false);
+    }
+
+    synchronized AddResult add(CmdUpdate update) {
+        long key = toKey(CMD_UPDATE, update.getCmdId());
+        if (update.getErrorCode() != 0) {
+            return append(key, update, false, true);
+        }
+        Integer target = conflationTargets.get(key);
+        Object targetUpdate = target != null ? pending.get(target) : null;
+        if (update instanceof EntityCountUpdate) {
+            if (targetUpdate instanceof EntityCountUpdate) {
+                pending.set(target, update);
+                return AddResult.CONFLATED;
+            }
+            return append(key, update, true, false);
+        } else if (update instanceof EntityDataUpdate) {
+            EntityDataUpdate dataUpdate = (EntityDataUpdate) update;
+            if (targetUpdate instanceof EntityDataUpdate) {
+                EntityDataUpdate pendingUpdate = (EntityDataUpdate) targetUpdate;
+                if (dataUpdate.getData() != null) {
+                    pending.set(target, update);
+                    return AddResult.CONFLATED;
+                } else if (pendingUpdate.getData() == null && pendingUpdate.getUpdate() != null && dataUpdate.getUpdate() != null) {
+                    EntityDataUpdate merged = merge(pendingUpdate, dataUpdate);
+                    if (isWithinMaxValuesPerKey(merged)) {
+                        pending.set(target, merged);
+                        return AddResult.CONFLATED;
+                    }
+                }
+            }
+            return append(key, update, true, false);
+        } else {
+            return append(key, update, false, false);
+        }
+    }
+
+    synchronized List<Object> drain() {
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> updates = pending;
+        pending = new ArrayList<>();
+        conflationTargets.clear();
+        return updates;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private AddResult append(long key, Object update, boolean conflatable, boolean mandatory) {
+        if (!mandatory && pending.size() >= maxPendingUpdates) {
+            return AddResult.DROPPED;
+        }
+        pending.add(update);
+        if (conflatable) {
+            conflationTargets.put(key, pending.size() - 1);
+        } else {
+            conflationTargets.remove(key);
+        }
+        return AddResult.QUEUED;
+    }
+
+    private static long toKey(long type, int id) {
+        return (type << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private boolean isWithinMaxValuesPerKey(EntityDataUpdate update) {
+        for (EntityData entityData : update.getUpdate()) {
+            if (entityData.getTimeseries() != null) {
+                for (TsValue[] values : entityData.getTimeseries().values()) {
+                    if (values.length > maxValuesPerKey) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    static TelemetrySubscriptionUpdate mergeLatest(TelemetrySubscriptionUpdate pending, TelemetrySubscriptionUpdate update) {
+        Map<String, List<Object>> data = new TreeMap<>();
+        mergeLatest(data, pending.getData());
+        mergeLatest(data, update.getData());
+        return new TelemetrySubscriptionUpdate(update.getSubscriptionId(), data);
+    }
+
+    private static void mergeLatest(Map<String, List<Object>> target, Map<String, List<Object>> source) {
+        if (source == null) {
+            return;
+        }
+        source.forEach((key, values) -> {
+            for (Object value : values) {
+                List<Object> latest = target.get(key);
+                if (latest == null || getTs(value) >= getTs(latest.get(0))) {
+                    target.put(key, Collections.singletonList(value));
+                }
+            }
+        });
+    }
+
+    private static long getTs(Object value) {
+        return (long) ((Object[]) value)[0];
+    }
+
+    static TelemetrySubscriptionUpdate merge(TelemetrySubscriptionUpdate pending, TelemetrySubscriptionUpdate update) {
+        Map<String, List<Object>> data = new TreeMap<>();
+        if (pending.getData() != null) {
+            pending.getData().forEach((key, values) -> data.put(key, new ArrayList<>(values)));
+        }
+        if (update.getData() != null) {
+            update.getData().forEach((key, values) -> data.computeIfAbsent(key, k -> new ArrayList<>()).addAll(values));
+        }
+        return new TelemetrySubscriptionUpdate(update.getSubscriptionId(), data);
+    }
+
+    static EntityDataUpdate merge(EntityDataUpdate pending, EntityDataUpdate update) {
+        Map<EntityId, EntityData> entities = new LinkedHashMap<>();
+        for (EntityData entityData : pending.getUpdate()) {
+            entities.merge(entityData.getEntityId(), entityData, TelemetryWebSocketUpdateQueue::merge);
+        }
+        for (EntityData entityData : update.getUpdate()) {
+            entities.merge(entityData.getEntityId(), entityData, TelemetryWebSocketUpdateQueue::merge);
+        }
+        return new EntityDataUpdate(update.getCmdId(), null, new ArrayList<>(entities.values()), update.getAllowedEntities());
+    }
+
+    static EntityData merge(EntityData pending, EntityData update) {
+        Map<EntityKeyType, Map<String, TsValue>> latest = null;
+        if (pending.getLatest() != null || update.getLatest() != null) {
+            latest = new HashMap<>();
+            mergeLatest(latest, pending.getLatest());
+            mergeLatest(latest, update.getLatest());
+        }
+        Map<String, TsValue[]> timeseries = null;
+        if (pending.getTimeseries() != null || update.getTimeseries() != null) {
+            timeseries = new HashMap<>();
+            mergeTimeseries(timeseries, pending.getTimeseries());
+            mergeTimeseries(timeseries, update.getTimeseries());
+        }
+        Map<Integer, ComparisonTsValue> aggLatest = null;
+        if (pending.getAggLatest() != null || update.getAggLatest() != null) {
+            aggLatest = new HashMap<>();
+            if (pending.getAggLatest() != null) {
+                aggLatest.putAll(pending.getAggLatest());
+            }
+            if (update.getAggLatest() != null) {
+                aggLatest.putAll(update.getAggLatest());
+            }
+        }
+        return new EntityData(update.getEntityId(), latest, timeseries, aggLatest);
+    }
+
+    private static void mergeLatest(Map<EntityKeyType, Map<String, TsValue>> target, Map<EntityKeyType, Map<String, TsValue>> source) {
+        if (source == null) {
+            return;
+        }
+        source.forEach((keyType, values) -> {
+            Map<String, TsValue> targetValues = target.computeIfAbsent(keyType, t -> new HashMap<>());
+            values.forEach((key, value) -> targetValues.merge(key, value, (a, b) -> b.getTs() >= a.getTs() ? b : a));
+        });
+    }
+
+    private static void mergeTimeseries(Map<String, TsValue[]> target, Map<String, TsValue[]> source) {
+        if (source == null) {
+            return;
+        }
+        source.forEach((key, values) -> target.merge(key, values, (a, b) -> {
+            TsValue[] merged = new TsValue[a.length + b.length];
+            System.arraycopy(a, 0, merged, 0, a.length);
+            System.arraycopy(b, 0, merged, a.length, b.length);
+            return merged;
+        }));
+    }
+
+}
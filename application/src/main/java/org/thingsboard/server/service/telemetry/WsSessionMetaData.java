@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.service.telemetry;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by ashvayka on 27.03.18.
@@ -22,6 +23,8 @@ package org.thingsboard.server.service.telemetry;
 public class WsSessionMetaData {
     private TelemetryWebSocketSessionRef sessionRef;
     private long lastActivityTime;
+    private TelemetryWebSocketUpdateQueue updateQueue;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
 
     public WsSessionMetaData(TelemetryWebSocketSessionRef sessionRef) {
         super();
@@ -45,6 +48,18 @@ public class WsSessionMetaData {
         this.lastActivityTime = lastActivityTime;
     }
 
+    TelemetryWebSocketUpdateQueue getUpdateQueue() {
+        return updateQueue;
+    }
+
+    void setUpdateQueue(TelemetryWebSocketUpdateQueue updateQueue) {
+        this.updateQueue = updateQueue;
+    }
+
+    AtomicBoolean getFlushScheduled() {
+        return flushScheduled;
+    }
+
     @Override
     public String toString() {
         return "WsSessionMetaData [sessionRef=" + sessionRef + ", lastActivityTime=" + lastActivityTime + "]";
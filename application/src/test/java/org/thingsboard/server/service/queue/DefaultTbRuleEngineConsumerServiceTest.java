@@ -0,0 +1,255 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.queue.Queue;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.queue.QueueService;
+import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCommitPosition;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueuePositionalConsumer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.queue.provider.TbRuleEngineQueueFactory;
+import org.thingsboard.server.queue.util.DataDecodingEncodingService;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+import org.thingsboard.server.service.profile.TbAssetProfileCache;
+import org.thingsboard.server.service.profile.TbDeviceProfileCache;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategyFactory;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategyFactory;
+import org.thingsboard.server.service.rpc.TbRuleEngineDeviceRpcService;
+import org.thingsboard.server.service.stats.RuleEngineStatisticsService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultTbRuleEngineConsumerServiceTest {
+
+    private DefaultTbRuleEngineConsumerService service;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        service = spy(new DefaultTbRuleEngineConsumerService(mock(TbRuleEngineProcessingStrategyFactory.class),
+                mock(TbRuleEngineSubmitStrategyFactory.class), mock(TbRuleEngineQueueFactory.class), mock(RuleEngineStatisticsService.class),
+                mock(ActorSystemContext.class), mock(DataDecodingEncodingService.class), mock(TbRuleEngineDeviceRpcService.class),
+                mock(StatsFactory.class), mock(TbDeviceProfileCache.class), mock(TbAssetProfileCache.class), mock(TbTenantProfileCache.class),
+                mock(TbApiUsageStateService.class), mock(PartitionService.class), mock(TbServiceInfoProvider.class), mock(QueueService.class)));
+        ReflectionTestUtils.setField(service, "maxInFlightPacksConfig", "Main:2");
+        service.initPipelinedQueues();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        service.stop();
+    }
+
+    @Test
+    public void givenSecondPackProcessedFirst_whenPipelinedLoop_thenPacksAreCommittedInPollOrder() throws Exception {
+        Queue configuration = new Queue();
+        configuration.setName("Main");
+        TbRuleEngineConsumerStats stats = new TbRuleEngineConsumerStats("Main", mock(StatsFactory.class));
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> firstPack = pack();
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> secondPack = pack();
+        TbQueueCommitPosition firstPosition = mock(TbQueueCommitPosition.class);
+        TbQueueCommitPosition secondPosition = mock(TbQueueCommitPosition.class);
+
+        AtomicBoolean consumerStopped = new AtomicBoolean();
+        TbQueuePositionalConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = mock(TbQueuePositionalConsumer.class);
+        when(consumer.isStopped()).thenAnswer(inv -> consumerStopped.get());
+        when(consumer.poll(anyLong())).thenReturn(firstPack, secondPack, Collections.emptyList());
+        when(consumer.getCommitPosition()).thenReturn(firstPosition, secondPosition);
+
+        CountDownLatch firstPackLatch = new CountDownLatch(1);
+        CountDownLatch secondPackProcessed = new CountDownLatch(1);
+        doAnswer(inv -> {
+            firstPackLatch.await();
+            return null;
+        }).when(service).processMsgs(any(), any(), any(), eq(firstPack));
+        doAnswer(inv -> {
+            secondPackProcessed.countDown();
+            return null;
+        }).when(service).processMsgs(any(), any(), any(), eq(secondPack));
+
+        executor.submit(() -> service.pipelinedConsumerLoop(consumer, configuration, stats, 2));
+
+        assertThat(secondPackProcessed.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        verify(consumer, never()).commit(any(TbQueueCommitPosition.class));
+        assertThat(stats.getInFlightPacks().get()).isEqualTo(2);
+
+        firstPackLatch.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stats.getInFlightPacks().get() == 0);
+        consumerStopped.set(true);
+
+        InOrder inOrder = inOrder(consumer);
+        inOrder.verify(consumer).commit(firstPosition);
+        inOrder.verify(consumer).commit(secondPosition);
+        verify(consumer, never()).commit();
+    }
+
+    @Test
+    public void givenFailedPack_whenPipelinedLoop_thenPackIsProcessedAgainBeforeCommit() throws Exception {
+        ReflectionTestUtils.setField(service, "pollDuration", 10L);
+        Queue configuration = new Queue();
+        configuration.setName("Main");
+        TbRuleEngineConsumerStats stats = new TbRuleEngineConsumerStats("Main", mock(StatsFactory.class));
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> firstPack = pack();
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> secondPack = pack();
+        TbQueueCommitPosition firstPosition = mock(TbQueueCommitPosition.class);
+        TbQueueCommitPosition secondPosition = mock(TbQueueCommitPosition.class);
+
+        AtomicBoolean consumerStopped = new AtomicBoolean();
+        TbQueuePositionalConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = mock(TbQueuePositionalConsumer.class);
+        when(consumer.isStopped()).thenAnswer(inv -> consumerStopped.get());
+        when(consumer.poll(anyLong())).thenReturn(firstPack, secondPack, Collections.emptyList());
+        when(consumer.getCommitPosition()).thenReturn(firstPosition, secondPosition);
+
+        AtomicInteger firstPackAttempts = new AtomicInteger();
+        doAnswer(inv -> {
+            if (firstPackAttempts.incrementAndGet() == 1) {
+                throw new RuntimeException("Failed to process the pack");
+            }
+            return null;
+        }).when(service).processMsgs(any(), any(), any(), eq(firstPack));
+        doAnswer(inv -> null).when(service).processMsgs(any(), any(), any(), eq(secondPack));
+
+        executor.submit(() -> service.pipelinedConsumerLoop(consumer, configuration, stats, 2));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> stats.getInFlightPacks().get() == 0 && firstPackAttempts.get() == 2);
+        consumerStopped.set(true);
+
+        verify(service, times(2)).processMsgs(any(), any(), any(), eq(firstPack));
+        InOrder inOrder = inOrder(consumer);
+        inOrder.verify(consumer).commit(firstPosition);
+        inOrder.verify(consumer).commit(secondPosition);
+    }
+
+    @Test
+    public void givenNotPositionalConsumer_whenPipelinedLoop_thenEachPackIsCommittedBeforeNextPoll() throws Exception {
+        Queue configuration = new Queue();
+        configuration.setName("Main");
+        TbRuleEngineConsumerStats stats = new TbRuleEngineConsumerStats("Main", mock(StatsFactory.class));
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> firstPack = pack();
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> secondPack = pack();
+
+        AtomicBoolean consumerStopped = new AtomicBoolean();
+        TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer = mock(TbQueueConsumer.class);
+        when(consumer.isStopped()).thenAnswer(inv -> consumerStopped.get());
+        when(consumer.poll(anyLong())).thenReturn(firstPack, secondPack, Collections.emptyList());
+        doAnswer(inv -> null).when(service).processMsgs(any(), any(), any(), any(List.class));
+
+        executor.submit(() -> service.pipelinedConsumerLoop(consumer, configuration, stats, 2));
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(consumer, times(2)).commit());
+        consumerStopped.set(true);
+
+        InOrder inOrder = inOrder(service, consumer);
+        inOrder.verify(service).processMsgs(any(), any(), any(), eq(firstPack));
+        inOrder.verify(consumer).commit();
+        inOrder.verify(consumer).poll(anyLong());
+        inOrder.verify(service).processMsgs(any(), any(), any(), eq(secondPack));
+        inOrder.verify(consumer).commit();
+        assertThat(stats.getInFlightPacks().get()).isZero();
+    }
+
+    @Test
+    public void givenMaxInFlightPacksConfig_whenParse_thenLimitPerQueue() {
+        assertThat(DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("Main:4; HighPriority : 2;")).isEqualTo(Map.of("Main", 4, "HighPriority", 2));
+        assertThat(DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("")).isEmpty();
+    }
+
+    @Test
+    public void givenInvalidMaxInFlightPacksConfig_whenParse_thenEntryIsReported() {
+        assertThatThrownBy(() -> DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("Main:4;HighPriority"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'HighPriority'");
+        assertThatThrownBy(() -> DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("Main:four"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'Main:four'");
+        assertThatThrownBy(() -> DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("Main:0"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'Main:0'");
+        assertThatThrownBy(() -> DefaultTbRuleEngineConsumerService.parseMaxInFlightPacks("Main:2;Main:3"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'Main:3'");
+    }
+
+    @Test
+    public void givenBatchRecord_whenUnpack_thenMsgPerOriginatorInOrder() {
+        TbProtoQueueMsg<ToRuleEngineMsg> single = new TbProtoQueueMsg<>(UUID.randomUUID(), ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(1).setTenantIdLSB(2).setTbMsg(ByteString.copyFromUtf8("a")).build());
+        TbProtoQueueMsg<ToRuleEngineMsg> batch = new TbProtoQueueMsg<>(UUID.randomUUID(), ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(1).setTenantIdLSB(2)
+                .addTbMsgBatch(ByteString.copyFromUtf8("b")).addTbMsgBatchIdMSB(3).addTbMsgBatchIdLSB(4)
+                .addTbMsgBatch(ByteString.copyFromUtf8("c")).addTbMsgBatchIdMSB(5).addTbMsgBatchIdLSB(6).build());
+
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> result = DefaultTbRuleEngineConsumerService.unpackBatches(List.of(single, batch));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).isSameAs(single);
+        assertThat(result.get(1).getValue().getTbMsg().toStringUtf8()).isEqualTo("b");
+        assertThat(result.get(2).getValue().getTbMsg().toStringUtf8()).isEqualTo("c");
+        assertThat(result.get(2).getValue().getTenantIdMSB()).isEqualTo(1);
+        assertThat(result.get(2).getValue().getTenantIdLSB()).isEqualTo(2);
+        assertThat(result.get(2).getValue().getTbMsgBatchCount()).isZero();
+        assertThat(result.get(1).getKey()).isEqualTo(new UUID(3, 4));
+        assertThat(result.get(2).getKey()).isEqualTo(new UUID(5, 6));
+        assertThat(DefaultTbRuleEngineConsumerService.unpackBatches(List.of(single, batch)).get(2).getKey()).isEqualTo(result.get(2).getKey());
+    }
+
+    @Test
+    public void givenNoBatchRecords_whenUnpack_thenSameList() {
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = pack();
+        assertThat(DefaultTbRuleEngineConsumerService.unpackBatches(msgs)).isSameAs(msgs);
+    }
+
+    private static List<TbProtoQueueMsg<ToRuleEngineMsg>> pack() {
+        return Collections.singletonList(new TbProtoQueueMsg<>(UUID.randomUUID(), ToRuleEngineMsg.getDefaultInstance()));
+    }
+
+}
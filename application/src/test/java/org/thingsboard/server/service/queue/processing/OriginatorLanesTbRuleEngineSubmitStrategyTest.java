@@ -0,0 +1,247 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OriginatorLanesTbRuleEngineSubmitStrategyTest {
+
+    private static final String QUEUE_NAME = "Main";
+
+    private DeviceId deviceA;
+    private DeviceId deviceB;
+
+    @Before
+    public void setUp() {
+        deviceA = new DeviceId(UUID.randomUUID());
+        deviceB = new DeviceId(UUID.randomUUID());
+    }
+
+    @Test
+    public void testSubmitsOneMessagePerOriginatorAtATime() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pack = newPack(deviceA, deviceA, deviceA);
+        OriginatorLanesTbRuleEngineSubmitStrategy strategy = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submitted = new CopyOnWriteArrayList<>();
+        Map<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> submittedMsgs = new ConcurrentHashMap<>();
+
+        strategy.init(pack);
+        strategy.submitAttempt((id, msg) -> {
+            submitted.add(id);
+            submittedMsgs.put(id, msg);
+        });
+        assertThat(submitted).hasSize(1);
+
+        strategy.onSuccess(submitted.get(0));
+        assertThat(submitted).hasSize(2);
+        strategy.onSuccess(submitted.get(1));
+        strategy.onSuccess(submitted.get(2));
+
+        assertThat(submitted).hasSize(3);
+        assertThat(submitted.stream().map(submittedMsgs::get)).containsExactlyElementsOf(pack);
+        assertThat(lanes.size()).isZero();
+    }
+
+    @Test
+    public void testProcessesLanesConcurrently() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1024);
+        while (lanes.getLane(deviceA.getId().getMostSignificantBits(), deviceA.getId().getLeastSignificantBits())
+                == lanes.getLane(deviceB.getId().getMostSignificantBits(), deviceB.getId().getLeastSignificantBits())) {
+            deviceB = new DeviceId(UUID.randomUUID());
+        }
+        OriginatorLanesTbRuleEngineSubmitStrategy strategy = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submitted = new CopyOnWriteArrayList<>();
+
+        strategy.init(newPack(deviceA, deviceA, deviceB, deviceB));
+        strategy.submitAttempt((id, msg) -> submitted.add(id));
+
+        assertThat(submitted).hasSize(2);
+    }
+
+    @Test
+    public void testKeepsOriginatorOrderAcrossPacks() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy first = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        OriginatorLanesTbRuleEngineSubmitStrategy second = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submittedByFirst = new CopyOnWriteArrayList<>();
+        List<UUID> submittedBySecond = new CopyOnWriteArrayList<>();
+
+        first.init(newPack(deviceA, deviceA));
+        first.submitAttempt((id, msg) -> submittedByFirst.add(id));
+        second.init(newPack(deviceA));
+        second.submitAttempt((id, msg) -> submittedBySecond.add(id));
+        assertThat(submittedByFirst).hasSize(1);
+        assertThat(submittedBySecond).isEmpty();
+
+        first.onSuccess(submittedByFirst.get(0));
+        assertThat(submittedByFirst).hasSize(2);
+        assertThat(submittedBySecond).isEmpty();
+
+        first.onSuccess(submittedByFirst.get(1));
+        assertThat(submittedBySecond).hasSize(1);
+    }
+
+    @Test
+    public void testFailureReleasesLaneWhenFailuresAreNotRetried() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy first = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, false);
+        OriginatorLanesTbRuleEngineSubmitStrategy second = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, false);
+        List<UUID> submittedByFirst = new CopyOnWriteArrayList<>();
+        List<UUID> submittedBySecond = new CopyOnWriteArrayList<>();
+
+        first.init(newPack(deviceA, deviceA));
+        first.submitAttempt((id, msg) -> submittedByFirst.add(id));
+        second.init(newPack(deviceA));
+        second.submitAttempt((id, msg) -> submittedBySecond.add(id));
+
+        assertThat(first.onFailure(submittedByFirst.get(0))).isEmpty();
+        assertThat(submittedByFirst).hasSize(2);
+        assertThat(submittedBySecond).isEmpty();
+
+        assertThat(first.onFailure(submittedByFirst.get(1))).isEmpty();
+        assertThat(submittedBySecond).hasSize(1);
+        assertThat(lanes.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testHoldsFailedOriginatorUntilRetry() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy first = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        OriginatorLanesTbRuleEngineSubmitStrategy second = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submittedByFirst = new CopyOnWriteArrayList<>();
+        List<UUID> submittedBySecond = new CopyOnWriteArrayList<>();
+
+        first.init(newPack(deviceA, deviceA));
+        ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pendingMap = first.getPendingMap();
+        first.submitAttempt((id, msg) -> submittedByFirst.add(id));
+        second.init(newPack(deviceA));
+        second.submitAttempt((id, msg) -> submittedBySecond.add(id));
+        UUID failed = submittedByFirst.get(0);
+        UUID following = pendingMap.keySet().stream().filter(id -> !id.equals(failed)).findFirst().orElseThrow();
+
+        assertThat(first.onFailure(failed)).containsExactly(following);
+        assertThat(submittedByFirst).containsExactly(failed);
+        assertThat(submittedBySecond).isEmpty();
+
+        first.update(pendingMap);
+        submittedByFirst.clear();
+        first.submitAttempt((id, msg) -> submittedByFirst.add(id));
+        assertThat(submittedByFirst).containsExactly(failed);
+        assertThat(submittedBySecond).isEmpty();
+
+        first.onSuccess(failed);
+        assertThat(submittedByFirst).containsExactly(failed, following);
+        assertThat(submittedBySecond).isEmpty();
+
+        first.onSuccess(following);
+        assertThat(submittedBySecond).hasSize(1);
+    }
+
+    @Test
+    public void testFailedOriginatorDoesNotHoldOtherOriginatorsOfLane() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy first = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        OriginatorLanesTbRuleEngineSubmitStrategy second = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submittedByFirst = new CopyOnWriteArrayList<>();
+        List<UUID> submittedBySecond = new CopyOnWriteArrayList<>();
+
+        first.init(newPack(deviceA, deviceB));
+        first.submitAttempt((id, msg) -> submittedByFirst.add(id));
+        second.init(newPack(deviceA, deviceB));
+        second.submitAttempt((id, msg) -> submittedBySecond.add(id));
+
+        assertThat(first.onFailure(submittedByFirst.get(0))).isEmpty();
+        assertThat(submittedByFirst).hasSize(2);
+
+        first.onSuccess(submittedByFirst.get(1));
+        assertThat(submittedBySecond).hasSize(1);
+        second.onSuccess(submittedBySecond.get(0));
+        assertThat(submittedBySecond).hasSize(1);
+        assertThat(lanes.size()).isEqualTo(1);
+
+        first.stop();
+        assertThat(submittedBySecond).hasSize(2);
+    }
+
+    @Test
+    public void testStopReleasesLanesOfPack() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy first = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        OriginatorLanesTbRuleEngineSubmitStrategy second = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submittedBySecond = new CopyOnWriteArrayList<>();
+
+        first.init(newPack(deviceA, deviceA));
+        first.submitAttempt((id, msg) -> {});
+        second.init(newPack(deviceA));
+        second.submitAttempt((id, msg) -> submittedBySecond.add(id));
+        assertThat(submittedBySecond).isEmpty();
+
+        first.stop();
+
+        assertThat(submittedBySecond).hasSize(1);
+        assertThat(lanes.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testResubmitsOnlyReprocessedMessages() {
+        TbRuleEngineOriginatorLanes lanes = new TbRuleEngineOriginatorLanes(1);
+        OriginatorLanesTbRuleEngineSubmitStrategy strategy = new OriginatorLanesTbRuleEngineSubmitStrategy(QUEUE_NAME, lanes, true);
+        List<UUID> submitted = new ArrayList<>();
+
+        strategy.init(newPack(deviceA, deviceA));
+        ConcurrentMap<UUID, TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pendingMap = strategy.getPendingMap();
+        strategy.submitAttempt((id, msg) -> submitted.add(id));
+        UUID timedOut = submitted.get(0);
+        pendingMap.keySet().retainAll(List.of(timedOut));
+
+        strategy.update(pendingMap);
+        submitted.clear();
+        strategy.submitAttempt((id, msg) -> submitted.add(id));
+
+        assertThat(submitted).containsExactly(timedOut);
+        assertThat(lanes.size()).isEqualTo(1);
+    }
+
+    private List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> newPack(DeviceId... originators) {
+        List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pack = new ArrayList<>();
+        Arrays.stream(originators).forEach(originator -> {
+            TbMsg tbMsg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", originator, TbMsgMetaData.EMPTY, "{}");
+            TransportProtos.ToRuleEngineMsg msg = TransportProtos.ToRuleEngineMsg.newBuilder()
+                    .setTbMsg(TbMsg.toByteString(tbMsg))
+                    .build();
+            pack.add(new TbProtoQueueMsg<>(UUID.randomUUID(), msg));
+        });
+        return pack;
+    }
+
+}
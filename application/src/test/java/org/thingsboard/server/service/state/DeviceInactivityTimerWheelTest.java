@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceInactivityTimerWheelTest {
+
+    @Test
+    public void givenChecks_whenAdvance_thenOnlyDueChecksExpire() {
+        DeviceInactivityTimerWheel wheel = new DeviceInactivityTimerWheel(1000, 8);
+        wheel.advance(10_000, (msb, lsb, ts) -> {});
+        wheel.schedule(1, 1, 10_500);
+        wheel.schedule(2, 2, 12_000);
+        wheel.schedule(3, 3, 10_000 + 8 * 1000 + 500);
+        wheel.schedule(4, 4, 5_000);
+
+        assertThat(advance(wheel, 10_600)).containsExactlyInAnyOrder(1L, 4L);
+        assertThat(advance(wheel, 11_999)).isEmpty();
+        assertThat(advance(wheel, 12_000)).containsExactly(2L);
+        assertThat(advance(wheel, 18_000)).isEmpty();
+        assertThat(advance(wheel, 18_500)).containsExactly(3L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void givenLongPause_whenAdvance_thenAllDueChecksExpire() {
+        DeviceInactivityTimerWheel wheel = new DeviceInactivityTimerWheel(1000, 4);
+        wheel.advance(0, (msb, lsb, ts) -> {});
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, i, i * 1000L);
+        }
+
+        assertThat(advance(wheel, 100_000)).hasSize(20);
+    }
+
+    private static List<Long> advance(DeviceInactivityTimerWheel wheel, long ts) {
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(ts, (msb, lsb, checkTs) -> expired.add(msb));
+        return expired;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeviceStateStoreTest {
+
+    @Test
+    public void givenRandomOperations_whenCompareWithHashMap_thenSameContent() {
+        DeviceStateStore store = new DeviceStateStore(4);
+        Map<DeviceId, DeviceStateData> expected = new HashMap<>();
+        List<DeviceId> deviceIds = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            deviceIds.add(new DeviceId(UUID.randomUUID()));
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            DeviceId deviceId = deviceIds.get(random.nextInt(deviceIds.size()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    DeviceStateData state = state(deviceId);
+                    assertThat(store.putIfAbsent(deviceId, state)).isSameAs(expected.putIfAbsent(deviceId, state));
+                    break;
+                case 1:
+                    assertThat(store.remove(deviceId)).isSameAs(expected.remove(deviceId));
+                    break;
+                default:
+                    assertThat(store.get(deviceId)).isSameAs(expected.get(deviceId));
+            }
+        }
+        assertThat(store.size()).isEqualTo(expected.size());
+        for (DeviceId deviceId : deviceIds) {
+            assertThat(store.get(deviceId)).isSameAs(expected.get(deviceId));
+        }
+    }
+
+    @Test
+    public void givenScheduledCheck_whenScheduleLaterOrTakeOutdated_thenIgnored() {
+        DeviceStateStore store = new DeviceStateStore();
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        DeviceStateData state = state(deviceId);
+        store.put(deviceId, state);
+        long msb = deviceId.getId().getMostSignificantBits();
+        long lsb = deviceId.getId().getLeastSignificantBits();
+
+        assertThat(store.scheduleCheck(msb, lsb, 2000)).isTrue();
+        assertThat(store.scheduleCheck(msb, lsb, 3000)).isFalse();
+        assertThat(store.scheduleCheck(msb, lsb, 1000)).isTrue();
+
+        assertThat(store.takeCheck(msb, lsb, 2000)).isNull();
+        assertThat(store.takeCheck(msb, lsb, 1000)).isSameAs(state);
+        assertThat(store.takeCheck(msb, lsb, 1000)).isNull();
+        assertThat(store.scheduleCheck(msb, lsb, 3000)).isTrue();
+    }
+
+    private static DeviceStateData state(DeviceId deviceId) {
+        return DeviceStateData.builder().deviceId(deviceId).state(DeviceState.builder().build()).build();
+    }
+
+}
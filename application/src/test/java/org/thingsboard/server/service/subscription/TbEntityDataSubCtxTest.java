@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.query.DeviceTypeFilter;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityDataSortOrder;
+import org.thingsboard.server.common.data.query.EntityFilter;
+import org.thingsboard.server.common.data.query.EntityKey;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.KeyFilter;
+import org.thingsboard.server.common.data.query.RelationsQueryFilter;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbEntityDataSubCtxTest {
+
+    private static final EntityKey NAME = new EntityKey(EntityKeyType.ENTITY_FIELD, "name");
+    private static final EntityKey TEMPERATURE = new EntityKey(EntityKeyType.TIME_SERIES, "temperature");
+
+    @Test
+    public void givenEntityFieldsQuery_thenRefreshDependsOnEntitiesOnly() {
+        TbEntityDataSubCtx ctx = createCtx(query(null, NAME, Collections.singletonList(TEMPERATURE), keyFilter(NAME)));
+        assertThat(ctx.isEntityFieldsQuery()).isTrue();
+    }
+
+    @Test
+    public void givenTelemetryKeyFilter_thenRefreshDependsOnTelemetry() {
+        TbEntityDataSubCtx ctx = createCtx(query(null, NAME, Collections.emptyList(), keyFilter(TEMPERATURE)));
+        assertThat(ctx.isEntityFieldsQuery()).isFalse();
+    }
+
+    @Test
+    public void givenTelemetrySortOrder_thenRefreshDependsOnTelemetry() {
+        TbEntityDataSubCtx ctx = createCtx(query(null, TEMPERATURE, Collections.singletonList(TEMPERATURE), keyFilter(NAME)));
+        assertThat(ctx.isEntityFieldsQuery()).isFalse();
+    }
+
+    @Test
+    public void givenTextSearch_thenRefreshDependsOnLatestValues() {
+        assertThat(createCtx(query("thermo", NAME, Collections.singletonList(TEMPERATURE), keyFilter(NAME))).isEntityFieldsQuery()).isFalse();
+        assertThat(createCtx(query("thermo", NAME, Collections.emptyList(), keyFilter(NAME))).isEntityFieldsQuery()).isTrue();
+    }
+
+    @Test
+    public void givenDeviceTypeFilter_thenRefreshDependsOnDevicesOnly() {
+        TbEntityDataSubCtx ctx = createCtx(query(null, NAME, Collections.emptyList(), keyFilter(NAME)));
+        assertThat(ctx.getEntityTypes()).containsExactly(EntityType.DEVICE);
+    }
+
+    @Test
+    public void givenRelationsQueryFilter_thenRefreshDependsOnAllEntityTypes() {
+        TbEntityDataSubCtx ctx = createCtx(query(new RelationsQueryFilter(), null, NAME, Collections.emptyList(), keyFilter(NAME)));
+        assertThat(ctx.getEntityTypes()).isNull();
+    }
+
+    private static TbEntityDataSubCtx createCtx(EntityDataQuery query) {
+        TbEntityDataSubCtx ctx = new TbEntityDataSubCtx("service", null, null, null, null,
+                new SubscriptionServiceStatistics(), null, 1, 100);
+        ctx.setQuery(query);
+        return ctx;
+    }
+
+    private static EntityDataQuery query(String textSearch, EntityKey sortKey, List<EntityKey> latestValues, KeyFilter keyFilter) {
+        return query(new DeviceTypeFilter("default", null), textSearch, sortKey, latestValues, keyFilter);
+    }
+
+    private static EntityDataQuery query(EntityFilter entityFilter, String textSearch, EntityKey sortKey, List<EntityKey> latestValues, KeyFilter keyFilter) {
+        EntityDataPageLink pageLink = new EntityDataPageLink(10, 0, textSearch, new EntityDataSortOrder(sortKey), true);
+        return new EntityDataQuery(entityFilter, pageLink,
+                Collections.singletonList(NAME), latestValues, Collections.singletonList(keyFilter));
+    }
+
+    private static KeyFilter keyFilter(EntityKey key) {
+        KeyFilter filter = new KeyFilter();
+        filter.setKey(key);
+        return filter;
+    }
+
+}
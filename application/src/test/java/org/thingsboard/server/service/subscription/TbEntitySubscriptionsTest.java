@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbEntitySubscriptionsTest {
+
+    private static final TenantId TENANT_ID = TenantId.fromUUID(UUID.randomUUID());
+    private static final DeviceId DEVICE_ID = new DeviceId(UUID.randomUUID());
+
+    private final TbEntitySubscriptions subscriptions = new TbEntitySubscriptions();
+
+    @Test
+    public void givenKeySubscriptions_whenFindByKey_thenOnlyMatchingReturned() {
+        TbSubscription temperature = tsSub(1, false, "temperature");
+        TbSubscription humidity = tsSub(2, false, "humidity");
+        TbSubscription both = tsSub(3, false, "temperature", "humidity");
+        assertThat(subscriptions.add(temperature)).isTrue();
+        assertThat(subscriptions.add(humidity)).isTrue();
+        assertThat(subscriptions.add(both)).isTrue();
+
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("temperature")))
+                .containsExactlyInAnyOrder(temperature, both);
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Arrays.asList("temperature", "humidity")))
+                .containsExactlyInAnyOrder(temperature, humidity, both);
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("pressure"))).isEmpty();
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.ATTRIBUTES, Collections.singletonList("temperature"))).isEmpty();
+    }
+
+    @Test
+    public void givenAllKeysSubscription_whenFindByAnyKey_thenReturned() {
+        TbSubscription allKeys = tsSub(1, true);
+        TbSubscription temperature = tsSub(2, false, "temperature");
+        subscriptions.add(allKeys);
+        subscriptions.add(temperature);
+
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("pressure")))
+                .containsExactly(allKeys);
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("temperature")))
+                .containsExactlyInAnyOrder(allKeys, temperature);
+    }
+
+    @Test
+    public void givenSubscriptionsOfDifferentTypes_whenFind_thenIndexedByType() {
+        TbSubscription ts = tsSub(1, false, "temperature");
+        TbSubscription attr = attrSub(2, "temperature");
+        TbSubscription alarms = TbAlarmsSubscription.builder()
+                .serviceId("service").sessionId("session").subscriptionId(3).tenantId(TENANT_ID).entityId(DEVICE_ID).build();
+        subscriptions.add(ts);
+        subscriptions.add(attr);
+        subscriptions.add(alarms);
+
+        assertThat(subscriptions.size()).isEqualTo(3);
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("temperature"))).containsExactly(ts);
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.ATTRIBUTES, Collections.singletonList("temperature"))).containsExactly(attr);
+        assertThat(subscriptions.getAlarmSubscriptions()).containsExactly(alarms);
+    }
+
+    @Test
+    public void givenSubscription_whenRemoved_thenDroppedFromIndex() {
+        TbSubscription temperature = tsSub(1, false, "temperature");
+        TbSubscription allKeys = attrSub(2);
+        subscriptions.add(temperature);
+        subscriptions.add(allKeys);
+
+        assertThat(subscriptions.add(temperature)).isFalse();
+        assertThat(subscriptions.remove(temperature)).isTrue();
+        assertThat(subscriptions.remove(temperature)).isFalse();
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Collections.singletonList("temperature"))).isEmpty();
+        assertThat(subscriptions.isEmpty()).isFalse();
+
+        assertThat(subscriptions.remove(allKeys)).isTrue();
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.ATTRIBUTES, Collections.singletonList("temperature"))).isEmpty();
+        assertThat(subscriptions.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenKeyStatesUpdated_whenRemoved_thenIndexedKeysRemoved() {
+        TbTimeseriesSubscription temperature = tsSub(1, false, "temperature");
+        subscriptions.add(temperature);
+        temperature.getKeyStates().put("humidity", 0L);
+
+        assertThat(subscriptions.remove(temperature)).isTrue();
+        assertThat(subscriptions.getSubscriptions(TbSubscriptionType.TIMESERIES, Arrays.asList("temperature", "humidity"))).isEmpty();
+    }
+
+    private static TbTimeseriesSubscription tsSub(int subscriptionId, boolean allKeys, String... keys) {
+        return TbTimeseriesSubscription.builder()
+                .serviceId("service").sessionId("session").subscriptionId(subscriptionId)
+                .tenantId(TENANT_ID).entityId(DEVICE_ID)
+                .allKeys(allKeys).keyStates(keyStates(keys))
+                .build();
+    }
+
+    private static TbAttributeSubscription attrSub(int subscriptionId, String... keys) {
+        return TbAttributeSubscription.builder()
+                .serviceId("service").sessionId("session").subscriptionId(subscriptionId)
+                .tenantId(TENANT_ID).entityId(DEVICE_ID)
+                .allKeys(keys.length == 0).keyStates(keyStates(keys))
+                .scope(TbAttributeSubscriptionScope.ANY_SCOPE)
+                .build();
+    }
+
+    private static Map<String, Long> keyStates(String... keys) {
+        Map<String, Long> keyStates = new HashMap<>();
+        for (String key : keys) {
+            keyStates.put(key, 0L);
+        }
+        return keyStates;
+    }
+
+}
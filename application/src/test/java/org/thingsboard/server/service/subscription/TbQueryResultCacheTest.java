@@ -0,0 +1,214 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.DeviceTypeFilter;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.dao.entity.EntityService;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbQueryResultCacheTest {
+
+    private static final TenantId TENANT_ID = TenantId.fromUUID(UUID.randomUUID());
+    private static final CustomerId CUSTOMER_ID = new CustomerId(UUID.randomUUID());
+    private static final DeviceId DEVICE_ID = new DeviceId(UUID.randomUUID());
+
+    private final EntityService entityService = mock(EntityService.class);
+    private final TimeseriesService tsService = mock(TimeseriesService.class);
+    private final SubscriptionServiceStatistics stats = new SubscriptionServiceStatistics();
+    private ExecutorService executor;
+    private TbQueryResultCache cache;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        cache = new TbQueryResultCache(entityService, tsService, stats, true, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1), 100);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenIdenticalQueries_whenFind_thenDbQueriedOnceAndCopiesReturned() {
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenReturn(pageData());
+
+        PageData<EntityData> first = cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query());
+        first.getData().get(0).getLatest().get(EntityKeyType.ENTITY_FIELD).put("name", new TsValue(2, "changed"));
+        PageData<EntityData> second = cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query());
+
+        verify(entityService, times(1)).findEntityDataByQuery(any(), any(), any());
+        assertThat(second.getData().get(0).getLatest().get(EntityKeyType.ENTITY_FIELD).get("name").getValue()).isEqualTo("device");
+        assertThat(stats.getQueryCacheHitCnt().get()).isEqualTo(1);
+        assertThat(stats.getQueryCacheMissCnt().get()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenDifferentCustomers_whenFind_thenResultsNotShared() {
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenReturn(pageData());
+
+        cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query());
+        cache.findEntityDataByQuery(TENANT_ID, new CustomerId(UUID.randomUUID()), query());
+
+        verify(entityService, times(2)).findEntityDataByQuery(any(), any(), any());
+    }
+
+    @Test
+    public void givenQueryInFlight_whenFind_thenWaitsForSharedResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return pageData();
+        });
+
+        Future<PageData<EntityData>> first = executor.submit(() -> cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query()));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        ExecutorService secondExecutor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PageData<EntityData>> second = secondExecutor.submit(() -> cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query()));
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS).getData()).hasSize(1);
+            assertThat(second.get(5, TimeUnit.SECONDS).getData()).hasSize(1);
+        } finally {
+            secondExecutor.shutdownNow();
+        }
+        verify(entityService, times(1)).findEntityDataByQuery(any(), any(), any());
+    }
+
+    @Test
+    public void givenFailedQuery_whenFindAgain_thenQueriedAgain() {
+        when(entityService.countEntitiesByQuery(any(), any(), any()))
+                .thenThrow(new IllegalStateException("DB is down"))
+                .thenReturn(5L);
+
+        assertThatThrownBy(() -> cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query())).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query())).isEqualTo(5L);
+    }
+
+    @Test
+    public void givenFailedQueryWithError_whenFindAgain_thenQueriedAgain() {
+        when(entityService.countEntitiesByQuery(any(), any(), any()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(5L);
+
+        assertThatThrownBy(() -> cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query())).isInstanceOf(StackOverflowError.class);
+        assertThat(cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query())).isEqualTo(5L);
+    }
+
+    @Test
+    public void givenStuckQuery_whenLoadTimeoutElapsed_thenQueriedDirectly() throws Exception {
+        cache = new TbQueryResultCache(entityService, tsService, stats, true, TimeUnit.MINUTES.toMillis(1), 100, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(entityService.countEntitiesByQuery(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return 1L;
+                })
+                .thenReturn(5L);
+
+        try {
+            executor.submit(() -> cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query()));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(cache.countEntitiesByQuery(TENANT_ID, CUSTOMER_ID, query())).isEqualTo(5L);
+        } finally {
+            release.countDown();
+        }
+        verify(entityService, times(2)).countEntitiesByQuery(any(), any(), any());
+    }
+
+    @Test
+    public void givenIdenticalTsQueries_whenFind_thenResultsMatchCallerQueryIds() throws Exception {
+        SettableFuture<List<ReadTsKvQueryResult>> dbResult = SettableFuture.create();
+        when(tsService.findAllByQueries(eq(TENANT_ID), eq(DEVICE_ID), anyList())).thenReturn(dbResult);
+
+        List<ReadTsKvQuery> firstQueries = Collections.singletonList(new BaseReadTsKvQuery("temperature", 0, 1000, 1000, 100, Aggregation.NONE));
+        List<ReadTsKvQuery> secondQueries = Collections.singletonList(new BaseReadTsKvQuery("temperature", 0, 1000, 1000, 100, Aggregation.NONE));
+        ListenableFuture<List<ReadTsKvQueryResult>> first = cache.findAllByQueries(TENANT_ID, DEVICE_ID, firstQueries);
+        ListenableFuture<List<ReadTsKvQueryResult>> second = cache.findAllByQueries(TENANT_ID, DEVICE_ID, secondQueries);
+        dbResult.set(Collections.singletonList(new ReadTsKvQueryResult(firstQueries.get(0).getId(), Collections.emptyList(), 0)));
+
+        verify(tsService, times(1)).findAllByQueries(eq(TENANT_ID), eq(DEVICE_ID), anyList());
+        assertThat(first.get().get(0).getQueryId()).isEqualTo(firstQueries.get(0).getId());
+        assertThat(second.get().get(0).getQueryId()).isEqualTo(secondQueries.get(0).getId());
+    }
+
+    @Test
+    public void givenCacheDisabled_whenFind_thenAlwaysQueried() {
+        cache = new TbQueryResultCache(entityService, tsService, stats, false, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(1), 100);
+        when(entityService.findEntityDataByQuery(any(), any(), any())).thenReturn(pageData());
+
+        cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query());
+        cache.findEntityDataByQuery(TENANT_ID, CUSTOMER_ID, query());
+
+        verify(entityService, times(2)).findEntityDataByQuery(any(), any(), any());
+    }
+
+    private static EntityDataQuery query() {
+        return new EntityDataQuery(new DeviceTypeFilter("default", null), new EntityDataPageLink(10, 0, null, null),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static PageData<EntityData> pageData() {
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.ENTITY_FIELD, new HashMap<>(Collections.singletonMap("name", new TsValue(1, "device"))));
+        EntityData entityData = new EntityData(DEVICE_ID, latest, new HashMap<>());
+        return new PageData<>(Collections.singletonList(entityData), 1, 1, false);
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.Test;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.gen.ws.WsProtos;
+import org.thingsboard.server.service.telemetry.cmd.v2.AlarmDataUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityCountUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TelemetryWebSocketProtoEncoderTest {
+
+    @Test
+    public void testEncodeTelemetryUpdate() throws InvalidProtocolBufferException {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(7, Arrays.asList(
+                new BasicTsKvEntry(1L, new StringDataEntry("temperature", "20")),
+                new BasicTsKvEntry(2L, new StringDataEntry("temperature", "21"))));
+
+        WsProtos.WsUpdatesMsg msg = WsProtos.WsUpdatesMsg.parseFrom(TelemetryWebSocketProtoEncoder.encode(update));
+
+        assertThat(msg.getUpdatesCount()).isEqualTo(1);
+        WsProtos.TelemetrySubscriptionUpdateProto proto = msg.getUpdates(0).getTelemetryUpdate();
+        assertThat(proto.getSubscriptionId()).isEqualTo(7);
+        assertThat(proto.getData(0).getKey()).isEqualTo("temperature");
+        assertThat(proto.getData(0).getValuesList()).extracting(WsProtos.TsValueProto::getTs).containsExactly(1L, 2L);
+        assertThat(proto.getData(0).getValues(1).getValue()).isEqualTo("21");
+    }
+
+    @Test
+    public void testEncodeErrorUpdate() throws InvalidProtocolBufferException {
+        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(7, SubscriptionErrorCode.UNAUTHORIZED, "Forbidden");
+
+        WsProtos.TelemetrySubscriptionUpdateProto proto = WsProtos.WsUpdatesMsg.parseFrom(TelemetryWebSocketProtoEncoder.encode(update))
+                .getUpdates(0).getTelemetryUpdate();
+
+        assertThat(proto.getErrorCode()).isEqualTo(SubscriptionErrorCode.UNAUTHORIZED.getCode());
+        assertThat(proto.getErrorMsg()).isEqualTo("Forbidden");
+        assertThat(proto.getDataCount()).isZero();
+    }
+
+    @Test
+    public void testEncodeEntityDataPage() throws InvalidProtocolBufferException {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        Map<EntityKeyType, Map<String, TsValue>> latest = Collections.singletonMap(EntityKeyType.TIME_SERIES,
+                Collections.singletonMap("temperature", new TsValue(5L, "20", 3L)));
+        Map<String, TsValue[]> timeseries = Collections.singletonMap("humidity", new TsValue[]{new TsValue(1L, "60"), new TsValue(2L, "61")});
+        EntityData entityData = new EntityData(deviceId, latest, timeseries);
+        EntityDataUpdate update = new EntityDataUpdate(3, new PageData<>(Collections.singletonList(entityData), 1, 1, false), null, 10);
+
+        WsProtos.EntityDataUpdateProto proto = WsProtos.WsUpdatesMsg.parseFrom(TelemetryWebSocketProtoEncoder.encode(update))
+                .getUpdates(0).getEntityDataUpdate();
+
+        assertThat(proto.getCmdId()).isEqualTo(3);
+        assertThat(proto.getAllowedEntities()).isEqualTo(10);
+        assertThat(proto.getHasUpdate()).isFalse();
+        assertThat(proto.getData().getTotalElements()).isEqualTo(1);
+        WsProtos.EntityDataProto entity = proto.getData().getData(0);
+        assertThat(new UUID(entity.getEntityIdMSB(), entity.getEntityIdLSB())).isEqualTo(deviceId.getId());
+        assertThat(entity.getEntityType()).isEqualTo("DEVICE");
+        WsProtos.LatestValuesProto latestProto = entity.getLatest(0);
+        assertThat(latestProto.getKeyType()).isEqualTo("TIME_SERIES");
+        assertThat(latestProto.getValues(0).getKey()).isEqualTo("temperature");
+        assertThat(latestProto.getValues(0).getValue().getCount()).isEqualTo(3L);
+        assertThat(entity.getTimeseries(0).getValuesCount()).isEqualTo(2);
+        assertThat(entity.getTimeseries(0).getValues(0).hasCount()).isFalse();
+    }
+
+    @Test
+    public void testEncodeSeveralUpdatesInOneFrame() throws InvalidProtocolBufferException {
+        AlarmDataUpdate alarmUpdate = new AlarmDataUpdate(5, null, Collections.emptyList(), 1, 2);
+
+        WsProtos.WsUpdatesMsg msg = WsProtos.WsUpdatesMsg.parseFrom(TelemetryWebSocketProtoEncoder.encode(
+                Arrays.asList(new EntityCountUpdate(4, 12), alarmUpdate)));
+
+        assertThat(msg.getUpdatesCount()).isEqualTo(2);
+        assertThat(msg.getUpdates(0).getEntityCountUpdate().getCount()).isEqualTo(12);
+        WsProtos.JsonUpdateProto jsonUpdate = msg.getUpdates(1).getJsonUpdate();
+        assertThat(jsonUpdate.getCmdId()).isEqualTo(5);
+        assertThat(jsonUpdate.getCmdUpdateType()).isEqualTo("ALARM_DATA");
+        assertThat(JacksonUtil.fromBytes(jsonUpdate.getJson().toByteArray()).get("totalEntities").asLong()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.service.telemetry.cmd.v2.AlarmDataUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityCountUpdate;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityDataUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.thingsboard.server.service.telemetry.TelemetryWebSocketUpdateQueue.AddResult.CONFLATED;
+import static org.thingsboard.server.service.telemetry.TelemetryWebSocketUpdateQueue.AddResult.DROPPED;
+import static org.thingsboard.server.service.telemetry.TelemetryWebSocketUpdateQueue.AddResult.QUEUED;
+
+public class TelemetryWebSocketUpdateQueueTest {
+
+    private final DeviceId deviceA = new DeviceId(UUID.randomUUID());
+    private final DeviceId deviceB = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testConflatesTelemetryUpdatesOfSameSubscription() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(100, 10);
+
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 1L, 20L))).isEqualTo(QUEUED);
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 2L, 21L))).isEqualTo(CONFLATED);
+        assertThat(queue.add(telemetryUpdate(1, "humidity", 2L, 60L))).isEqualTo(CONFLATED);
+        assertThat(queue.add(telemetryUpdate(2, "temperature", 2L, 30L))).isEqualTo(QUEUED);
+
+        assertThat(queue.add(telemetryUpdate(1, "humidity", 1L, 59L))).isEqualTo(CONFLATED);
+
+        List<Object> updates = queue.drain();
+        assertThat(updates).hasSize(2);
+        TelemetrySubscriptionUpdate merged = (TelemetrySubscriptionUpdate) updates.get(0);
+        assertThat(merged.getData().get("temperature")).hasSize(1);
+        assertThat(merged.getData().get("humidity")).hasSize(1);
+        assertThat(merged.getLatestValues()).containsEntry("temperature", 2L).containsEntry("humidity", 2L);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    public void testKeepsTelemetryHistoryOfTimeWindowSubscription() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(100, 2);
+        queue.setKeepHistory(1, true);
+
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 1L, 20L))).isEqualTo(QUEUED);
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 2L, 21L))).isEqualTo(CONFLATED);
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 3L, 22L))).isEqualTo(QUEUED);
+
+        List<Object> updates = queue.drain();
+        assertThat(updates).hasSize(2);
+        assertThat(((TelemetrySubscriptionUpdate) updates.get(0)).getData().get("temperature")).hasSize(2);
+        assertThat(((TelemetrySubscriptionUpdate) updates.get(1)).getLatestValues()).containsEntry("temperature", 3L);
+    }
+
+    @Test
+    public void testKeepsLatestEntityDataValuePerKey() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(100, 10);
+
+        queue.add(entityDataUpdate(1, entityData(deviceA, "temperature", 1L, "20")));
+        queue.add(entityDataUpdate(1, entityData(deviceB, "temperature", 1L, "30")));
+        assertThat(queue.add(entityDataUpdate(1, entityData(deviceA, "temperature", 2L, "21")))).isEqualTo(CONFLATED);
+        queue.add(entityDataUpdate(1, entityData(deviceA, "humidity", 2L, "60")));
+
+        List<Object> updates = queue.drain();
+        assertThat(updates).hasSize(1);
+        List<EntityData> entities = ((EntityDataUpdate) updates.get(0)).getUpdate();
+        assertThat(entities).hasSize(2);
+        Map<String, TsValue> deviceALatest = entities.get(0).getLatest().get(EntityKeyType.TIME_SERIES);
+        assertThat(entities.get(0).getEntityId()).isEqualTo(deviceA);
+        assertThat(deviceALatest.get("temperature").getValue()).isEqualTo("21");
+        assertThat(deviceALatest.get("humidity").getValue()).isEqualTo("60");
+    }
+
+    @Test
+    public void testFullPageAndCountReplacePendingUpdate() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(100, 10);
+        EntityDataUpdate page = new EntityDataUpdate(1, new PageData<>(Collections.emptyList(), 0, 0, false), null, 0);
+
+        queue.add(entityDataUpdate(1, entityData(deviceA, "temperature", 1L, "20")));
+        assertThat(queue.add(page)).isEqualTo(CONFLATED);
+        queue.add(new EntityCountUpdate(2, 5));
+        assertThat(queue.add(new EntityCountUpdate(2, 6))).isEqualTo(CONFLATED);
+
+        List<Object> updates = queue.drain();
+        assertThat(updates).hasSize(2);
+        assertThat(updates.get(0)).isSameAs(page);
+        assertThat(((EntityCountUpdate) updates.get(1)).getCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void testDoesNotConflateAcrossNonConflatableUpdates() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(100, 10);
+
+        queue.add(telemetryUpdate(1, "temperature", 1L, 20L));
+        assertThat(queue.add(new TelemetrySubscriptionUpdate(1, SubscriptionErrorCode.INTERNAL_ERROR))).isEqualTo(QUEUED);
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 2L, 21L))).isEqualTo(QUEUED);
+        queue.add(new AlarmDataUpdate(3, null, Collections.emptyList(), 0, 0));
+        assertThat(queue.add(new AlarmDataUpdate(3, null, Collections.emptyList(), 0, 0))).isEqualTo(QUEUED);
+
+        assertThat(queue.drain()).hasSize(5);
+    }
+
+    @Test
+    public void testDropsUpdatesWhenFullExceptErrors() {
+        TelemetryWebSocketUpdateQueue queue = new TelemetryWebSocketUpdateQueue(2, 10);
+
+        queue.add(telemetryUpdate(1, "temperature", 1L, 20L));
+        queue.add(telemetryUpdate(2, "temperature", 1L, 20L));
+        assertThat(queue.add(telemetryUpdate(3, "temperature", 1L, 20L))).isEqualTo(DROPPED);
+        assertThat(queue.add(telemetryUpdate(1, "temperature", 2L, 21L))).isEqualTo(CONFLATED);
+        assertThat(queue.add(new TelemetrySubscriptionUpdate(3, SubscriptionErrorCode.INTERNAL_ERROR))).isEqualTo(QUEUED);
+
+        assertThat(queue.drain()).hasSize(3);
+    }
+
+    private TelemetrySubscriptionUpdate telemetryUpdate(int subscriptionId, String key, long ts, long value) {
+        return new TelemetrySubscriptionUpdate(subscriptionId, Collections.singletonList(new BasicTsKvEntry(ts, new LongDataEntry(key, value))));
+    }
+
+    private EntityDataUpdate entityDataUpdate(int cmdId, EntityData entityData) {
+        return new EntityDataUpdate(cmdId, null, Collections.singletonList(entityData), 0);
+    }
+
+    private EntityData entityData(DeviceId deviceId, String key, long ts, String value) {
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, Collections.singletonMap(key, new TsValue(ts, value)));
+        return new EntityData(deviceId, latest, null);
+    }
+
+}
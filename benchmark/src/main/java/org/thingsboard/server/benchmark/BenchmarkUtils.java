@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.session.SessionMsgType;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    public static TbMsg newTelemetryMsg(EntityId originator, int metaDataEntries, int telemetryKeys) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Device " + originator.getId());
+        metaData.putValue("deviceType", "default");
+        for (int i = 0; metaData.getData().size() < metaDataEntries; i++) {
+            metaData.putValue("key" + i, "value" + i);
+        }
+        StringBuilder data = new StringBuilder("{");
+        for (int i = 0; i < telemetryKeys; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append("\"temperature").append(i).append("\":").append(20.0 + i * 0.1);
+        }
+        data.append('}');
+        return TbMsg.newMsg(SessionMsgType.POST_TELEMETRY_REQUEST.name(), originator, metaData, data.toString());
+    }
+
+    /**
+     * Builds a pack of rule engine queue messages spread evenly across the given number of tenants and devices,
+     * similar to what {@code DefaultTbRuleEngineConsumerService} receives from a single poll.
+     */
+    public static List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> newRuleEnginePack(int packSize, int tenants, int devices) {
+        List<TenantId> tenantIds = new ArrayList<>(tenants);
+        for (int i = 0; i < tenants; i++) {
+            tenantIds.add(TenantId.fromUUID(UUID.randomUUID()));
+        }
+        List<DeviceId> deviceIds = new ArrayList<>(devices);
+        for (int i = 0; i < devices; i++) {
+            deviceIds.add(new DeviceId(UUID.randomUUID()));
+        }
+        List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pack = new ArrayList<>(packSize);
+        for (int i = 0; i < packSize; i++) {
+            DeviceId deviceId = deviceIds.get(i % devices);
+            TenantId tenantId = tenantIds.get(i % tenants);
+            TransportProtos.ToRuleEngineMsg msg = TransportProtos.ToRuleEngineMsg.newBuilder()
+                    .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                    .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                    .setTbMsg(TbMsg.toByteString(newTelemetryMsg(deviceId, 4, 4)))
+                    .build();
+            pack.add(new TbProtoQueueMsg<>(UUID.randomUUID(), msg));
+        }
+        return pack;
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.actors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.actors.AbstractTbActor;
+import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.TbActor;
+import org.thingsboard.server.actors.TbActorCreator;
+import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.actors.TbActorSystem;
+import org.thingsboard.server.actors.TbActorSystemSettings;
+import org.thingsboard.server.actors.TbStringActorId;
+import org.thingsboard.server.actors.service.DispatcherExecutorType;
+import org.thingsboard.server.common.msg.MsgType;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dispatcher executors for a mix of blocking and non-blocking messages, similar to rule chains
+ * where some rule nodes wait for DAO futures inside {@code process}. VIRTUAL requires Java 21+ at runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbActorDispatcherBenchmark {
+
+    private static final String DISPATCHER = "benchmark-dispatcher";
+    private static final int MSGS_PER_INVOCATION = 200;
+
+    @Param({"WORK_STEALING", "VIRTUAL"})
+    private DispatcherExecutorType executorType;
+
+    @Param({"0", "10", "50"})
+    private int blockingMsgsPercent;
+
+    @Param({"1"})
+    private int blockingTimeMs;
+
+    @Param({"100"})
+    private int actorCount;
+
+    @Param({"4"})
+    private int dispatcherPoolSize;
+
+    private TbActorSystem system;
+    private List<TbActorRef> actors;
+    private BlockingMsg[] msgs;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        system = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 0));
+        ExecutorService executor;
+        if (executorType == DispatcherExecutorType.VIRTUAL) {
+            executor = ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(DISPATCHER)
+                    .orElseThrow(() -> new IllegalStateException("Virtual threads require Java 21+"));
+        } else {
+            executor = ThingsBoardExecutors.newWorkStealingPool(dispatcherPoolSize, DISPATCHER);
+        }
+        system.createDispatcher(DISPATCHER, executor);
+        actors = new ArrayList<>(actorCount);
+        for (int i = 0; i < actorCount; i++) {
+            actors.add(system.createRootActor(DISPATCHER, new BlockingActorCreator(new TbStringActorId("benchmark-actor-" + i))));
+        }
+        msgs = new BlockingMsg[MSGS_PER_INVOCATION];
+        int blockingEvery = blockingMsgsPercent > 0 ? 100 / blockingMsgsPercent : 0;
+        for (int i = 0; i < MSGS_PER_INVOCATION; i++) {
+            msgs[i] = new BlockingMsg(blockingEvery > 0 && i % blockingEvery == 0 ? blockingTimeMs : 0);
+        }
+        CountDownLatch latch = new CountDownLatch(actorCount);
+        actors.forEach(actor -> actor.tell(new BlockingMsg(0).withLatch(latch)));
+        latch.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MSGS_PER_INVOCATION)
+    public void tellAndProcess() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(MSGS_PER_INVOCATION);
+        for (int i = 0; i < MSGS_PER_INVOCATION; i++) {
+            actors.get(i % actorCount).tell(msgs[i].withLatch(latch));
+        }
+        latch.await();
+    }
+
+    private static class BlockingMsg implements TbActorMsg {
+
+        private final long blockingTimeMs;
+        private final CountDownLatch latch;
+
+        private BlockingMsg(long blockingTimeMs) {
+            this(blockingTimeMs, null);
+        }
+
+        private BlockingMsg(long blockingTimeMs, CountDownLatch latch) {
+            this.blockingTimeMs = blockingTimeMs;
+            this.latch = latch;
+        }
+
+        private BlockingMsg withLatch(CountDownLatch latch) {
+            return new BlockingMsg(blockingTimeMs, latch);
+        }
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
+        }
+    }
+
+    private static class BlockingActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            BlockingMsg blockingMsg = (BlockingMsg) msg;
+            if (blockingMsg.blockingTimeMs > 0) {
+                try {
+                    Thread.sleep(blockingMsg.blockingTimeMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            blockingMsg.latch.countDown();
+            return true;
+        }
+    }
+
+    private static class BlockingActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+
+        private BlockingActorCreator(TbActorId actorId) {
+            this.actorId = actorId;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new BlockingActor();
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.actors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.actors.AbstractTbActor;
+import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.TbActor;
+import org.thingsboard.server.actors.TbActorCreator;
+import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.actors.TbActorMailboxOverflowPolicy;
+import org.thingsboard.server.actors.TbActorMailboxSettings;
+import org.thingsboard.server.actors.TbActorMailboxType;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.actors.TbActorSystem;
+import org.thingsboard.server.actors.TbActorSystemSettings;
+import org.thingsboard.server.actors.TbStringActorId;
+import org.thingsboard.server.common.msg.MsgType;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end mailbox throughput: several producer threads enqueue messages into a set of actors
+ * hosted by a single dispatcher and wait until all of them are processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbActorMailboxBenchmark {
+
+    private static final String DISPATCHER = "benchmark-dispatcher";
+    private static final int MSGS_PER_INVOCATION = 1000;
+
+    @Param({"1", "100", "10000"})
+    private int actorCount;
+
+    @Param({"5", "50"})
+    private int actorThroughput;
+
+    @Param({"4"})
+    private int dispatcherPoolSize;
+
+    @Param({"DEFAULT", "BATCHED"})
+    private TbActorMailboxType mailboxType;
+
+    private TbActorSystem system;
+    private List<TbActorRef> actors;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, 1, 0);
+        settings.setMailboxSettings(DISPATCHER, new TbActorMailboxSettings(mailboxType, 100000, TbActorMailboxOverflowPolicy.REJECT, 1000, 1));
+        system = new DefaultTbActorSystem(settings);
+        system.createDispatcher(DISPATCHER, ThingsBoardExecutors.newWorkStealingPool(dispatcherPoolSize, DISPATCHER));
+        actors = new ArrayList<>(actorCount);
+        for (int i = 0; i < actorCount; i++) {
+            actors.add(system.createRootActor(DISPATCHER, new LatchActorCreator(new TbStringActorId("benchmark-actor-" + i))));
+        }
+        // Warm up actor initialization so that the measurement does not include init of the mailboxes.
+        CountDownLatch latch = new CountDownLatch(actorCount);
+        actors.forEach(actor -> actor.tell(new LatchMsg(latch)));
+        latch.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        private int nextActorIdx;
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(MSGS_PER_INVOCATION)
+    public void tellAndProcess(ProducerState producer) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(MSGS_PER_INVOCATION);
+        LatchMsg msg = new LatchMsg(latch);
+        for (int i = 0; i < MSGS_PER_INVOCATION; i++) {
+            nextActor(producer).tell(msg);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(MSGS_PER_INVOCATION)
+    public void tellMixedPriorityAndProcess(ProducerState producer) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(MSGS_PER_INVOCATION);
+        LatchMsg msg = new LatchMsg(latch);
+        for (int i = 0; i < MSGS_PER_INVOCATION; i++) {
+            if (i % 10 == 0) {
+                nextActor(producer).tellWithHighPriority(msg);
+            } else {
+                nextActor(producer).tell(msg);
+            }
+        }
+        latch.await();
+    }
+
+    private TbActorRef nextActor(ProducerState producer) {
+        int idx = producer.nextActorIdx;
+        producer.nextActorIdx = idx + 1 < actorCount ? idx + 1 : 0;
+        return actors.get(idx);
+    }
+
+    private static class LatchMsg implements TbActorMsg {
+
+        private final CountDownLatch latch;
+
+        private LatchMsg(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
+        }
+    }
+
+    private static class LatchActor extends AbstractTbActor {
+
+        @Override
+        public boolean process(TbActorMsg msg) {
+            ((LatchMsg) msg).latch.countDown();
+            return true;
+        }
+    }
+
+    private static class LatchActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+
+        private LatchActorCreator(TbActorId actorId) {
+            this.actorId = actorId;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new LatchActor();
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.dao;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.server.common.stats.DefaultMessagesStats;
+import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBatchWriterType;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlQueue;
+import org.thingsboard.server.dao.sql.TbSqlRingBufferQueue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares SQL batch writers under concurrent producers. The database is emulated by a save function that
+ * parks for a fixed time per batch plus a fixed time per entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class TbSqlBatchWriterBenchmark {
+
+    private static final int ENTITIES_PER_INVOCATION = 1000;
+
+    @Param({"BLOCKING_QUEUE", "RING_BUFFER"})
+    private TbSqlBatchWriterType writerType;
+
+    @Param({"1000", "10000"})
+    private int batchSize;
+
+    @Param({"100"})
+    private long maxDelay;
+
+    @Param({"1000"})
+    private long batchSaveTimeMicros;
+
+    @Param({"1"})
+    private long entitySaveTimeMicros;
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlQueue<Long> queue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Benchmark")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(TimeUnit.HOURS.toMillis(1))
+                .statsNamePrefix("benchmark")
+                .batchSortEnabled(true)
+                .writerType(writerType)
+                .build();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MessagesStats stats = new DefaultMessagesStats(
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("total"), "total"),
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("successful"), "successful"),
+                new StatsCounter(new AtomicInteger(), meterRegistry.counter("failed"), "failed"));
+        if (writerType == TbSqlBatchWriterType.RING_BUFFER) {
+            queue = new TbSqlRingBufferQueue<>(params, stats, meterRegistry.summary("batchSize"), meterRegistry.timer("batchSaveTime"));
+        } else {
+            queue = new TbSqlBlockingQueue<>(params, stats);
+        }
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+        queue.init(logExecutor, this::save, Comparator.naturalOrder(), 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queue.destroy();
+        logExecutor.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES_PER_INVOCATION)
+    public void addAndSave() throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>(ENTITIES_PER_INVOCATION);
+        long base = System.nanoTime();
+        for (int i = 0; i < ENTITIES_PER_INVOCATION; i++) {
+            futures.add(queue.add(base + i));
+        }
+        Futures.allAsList(futures).get();
+    }
+
+    private void save(List<Long> entities) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(batchSaveTimeMicros + entitySaveTimeMicros * entities.size()));
+    }
+
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.dao;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.sql.SqlLatestCopyInsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.sql.SqlLatestInsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.sql.SqlCopyInsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.sql.SqlInsertTsRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JDBC batch INSERT ... ON CONFLICT and the binary COPY time series insert repositories.
+ * Requires a running PostgreSQL instance, e.g.:
+ * <pre>
+ * docker run -d -p 5432:5432 -e POSTGRES_DB=comm360 -e POSTGRES_PASSWORD=postgres postgres:12
+ * </pre>
+ * The benchmark creates plain (not partitioned) ts_kv and ts_kv_latest tables if they don't exist,
+ * so it must not be pointed to a production database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TsInsertRepositoryBenchmark {
+
+    private static final String CREATE_TS_KV = "CREATE TABLE IF NOT EXISTS ts_kv (entity_id uuid NOT NULL, key int NOT NULL, " +
+            "ts bigint NOT NULL, bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json, " +
+            "CONSTRAINT ts_kv_pkey PRIMARY KEY (entity_id, key, ts))";
+    private static final String CREATE_TS_KV_LATEST = "CREATE TABLE IF NOT EXISTS ts_kv_latest (entity_id uuid NOT NULL, key int NOT NULL, " +
+            "ts bigint NOT NULL, bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json, " +
+            "CONSTRAINT ts_kv_latest_pkey PRIMARY KEY (entity_id, key))";
+
+    @Param({"insert", "copy"})
+    private String insertMethod;
+
+    @Param({"1000", "10000"})
+    private int batchSize;
+
+    @Param({"1000"})
+    private int entities;
+
+    @Param({"5"})
+    private int keysPerEntity;
+
+    @Param({"jdbc:postgresql://localhost:5432/comm360"})
+    private String jdbcUrl;
+
+    @Param({"postgres"})
+    private String username;
+
+    @Param({"postgres"})
+    private String password;
+
+    private AnnotationConfigApplicationContext context;
+    private InsertTsRepository<TsKvEntity> tsRepository;
+    private InsertLatestTsRepository latestRepository;
+    private List<UUID> entityIds;
+    private long ts;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "database.ts.type", "sql",
+                "database.ts_latest.type", "sql",
+                "sql.ts_insert_method", insertMethod,
+                "benchmark.jdbc.url", jdbcUrl,
+                "benchmark.jdbc.username", username,
+                "benchmark.jdbc.password", password)));
+        context.register(BenchmarkConfiguration.class, SqlInsertTsRepository.class, SqlCopyInsertTsRepository.class,
+                SqlLatestInsertTsRepository.class, SqlLatestCopyInsertTsRepository.class);
+        context.refresh();
+        tsRepository = context.getBean(InsertTsRepository.class);
+        latestRepository = context.getBean(InsertLatestTsRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute(CREATE_TS_KV);
+        jdbcTemplate.execute(CREATE_TS_KV_LATEST);
+        entityIds = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            entityIds.add(UUID.randomUUID());
+        }
+        ts = System.currentTimeMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        for (UUID entityId : entityIds) {
+            jdbcTemplate.update("DELETE FROM ts_kv WHERE entity_id = ?", entityId);
+            jdbcTemplate.update("DELETE FROM ts_kv_latest WHERE entity_id = ?", entityId);
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public void saveTs() {
+        List<TsKvEntity> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(fill(new TsKvEntity(), i));
+        }
+        ts++;
+        tsRepository.saveOrUpdate(batch);
+    }
+
+    @Benchmark
+    public void saveLatest() {
+        List<TsKvLatestEntity> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(fill(new TsKvLatestEntity(), i));
+        }
+        ts++;
+        latestRepository.saveOrUpdate(batch);
+    }
+
+    private <T extends AbstractTsKvEntity> T fill(T entity, int i) {
+        entity.setEntityId(entityIds.get(i % entities));
+        entity.setKey(i / entities % keysPerEntity);
+        entity.setTs(ts * 1000 + i / (entities * keysPerEntity));
+        if (i % 2 == 0) {
+            entity.setDoubleValue(i * 0.1);
+        } else {
+            entity.setLongValue((long) i);
+        }
+        return entity;
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    public static class BenchmarkConfiguration {
+
+        @Bean
+        public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource(Environment environment) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(environment.getRequiredProperty("benchmark.jdbc.url"));
+            dataSource.setUsername(environment.getRequiredProperty("benchmark.jdbc.username"));
+            dataSource.setPassword(environment.getRequiredProperty("benchmark.jdbc.password"));
+            return dataSource;
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+            return new TransactionTemplate(transactionManager);
+        }
+
+    }
+
+}
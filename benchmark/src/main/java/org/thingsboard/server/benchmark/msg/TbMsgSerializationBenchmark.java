@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.msg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.server.benchmark.BenchmarkUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TbMsgSerializationBenchmark {
+
+    private static final String QUEUE_NAME = "Main";
+
+    @Param({"4", "32"})
+    private int metaDataEntries;
+
+    @Param({"1", "100"})
+    private int telemetryKeys;
+
+    private TbMsg msg;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        msg = BenchmarkUtils.newTelemetryMsg(new DeviceId(UUID.randomUUID()), metaDataEntries, telemetryKeys);
+        bytes = TbMsg.toByteArray(msg);
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return TbMsg.toByteArray(msg);
+    }
+
+    @Benchmark
+    public TbMsg fromBytes() {
+        return TbMsg.fromBytes(QUEUE_NAME, bytes, TbMsgCallback.EMPTY);
+    }
+
+    @Benchmark
+    public TbMsg fromBytesDecoded() {
+        TbMsg result = TbMsg.fromBytes(QUEUE_NAME, bytes, TbMsgCallback.EMPTY);
+        result.getMetaData();
+        result.getData();
+        return result;
+    }
+
+    /**
+     * A message consumed from the queue and pushed to another queue without touching its metadata and data.
+     */
+    @Benchmark
+    public byte[] passThrough() {
+        return TbMsg.toByteArray(TbMsg.fromBytes(QUEUE_NAME, bytes, TbMsgCallback.EMPTY));
+    }
+
+    @Benchmark
+    public TbMsg roundTrip() {
+        return TbMsg.fromBytes(QUEUE_NAME, TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.queue.util.DataDecodingEncodingService;
+import org.thingsboard.server.queue.util.ProtoWithFSTService;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class DataDecodingEncodingBenchmark {
+
+    @Param({"COMPONENT_LIFECYCLE_MSG", "DEVICE"})
+    private String payload;
+
+    private final DataDecodingEncodingService encodingService = new ProtoWithFSTService();
+
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        switch (payload) {
+            case "COMPONENT_LIFECYCLE_MSG":
+                value = new ComponentLifecycleMsg(tenantId, deviceId, ComponentLifecycleEvent.UPDATED);
+                break;
+            case "DEVICE":
+                Device device = new Device(deviceId);
+                device.setTenantId(tenantId);
+                device.setName("Benchmark Device");
+                device.setType("default");
+                device.setLabel("Benchmark Label");
+                device.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+                device.setCreatedTime(System.currentTimeMillis());
+                value = device;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported payload: " + payload);
+        }
+        bytes = encodingService.encode(value);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encodingService.encode(value);
+    }
+
+    @Benchmark
+    public Optional<Object> decode() {
+        return encodingService.decode(bytes);
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.benchmark.BenchmarkUtils;
+import org.thingsboard.server.common.data.queue.SubmitStrategy;
+import org.thingsboard.server.common.data.queue.SubmitStrategyType;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategy;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategyFactory;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to push a whole pack through a submit strategy. The rule engine is emulated by
+ * a fixed pool that acknowledges each submitted message, the way rule node callbacks complete
+ * {@code TbMsgPackProcessingContext} in {@code DefaultTbRuleEngineConsumerService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbRuleEngineSubmitStrategyBenchmark {
+
+    private static final String QUEUE_NAME = "Main";
+
+    @Param({"BURST", "BATCH", "SEQUENTIAL_BY_ORIGINATOR", "SEQUENTIAL_BY_TENANT", "SEQUENTIAL", "ORIGINATOR_LANES"})
+    private String strategy;
+
+    @Param({"100", "1000"})
+    private int packSize;
+
+    @Param({"10", "1000"})
+    private int devices;
+
+    @Param({"4"})
+    private int ruleEngineThreads;
+
+    private final TbRuleEngineSubmitStrategyFactory factory = new TbRuleEngineSubmitStrategyFactory();
+    private SubmitStrategy submitStrategy;
+    private List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> pack;
+    private ExecutorService ruleEngineExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        submitStrategy = new SubmitStrategy();
+        submitStrategy.setType(SubmitStrategyType.valueOf(strategy));
+        submitStrategy.setBatchSize(100);
+        pack = BenchmarkUtils.newRuleEnginePack(packSize, 10, devices);
+        ruleEngineExecutor = Executors.newFixedThreadPool(ruleEngineThreads, ThingsBoardThreadFactory.forName("benchmark-rule-engine"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ruleEngineExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void submitPack() throws InterruptedException {
+        TbRuleEngineSubmitStrategy submitStrategy = factory.newInstance(QUEUE_NAME, this.submitStrategy);
+        submitStrategy.init(pack);
+        CountDownLatch processed = new CountDownLatch(packSize);
+        submitStrategy.submitAttempt((id, msg) -> ruleEngineExecutor.execute(() -> {
+            submitStrategy.onSuccess(id);
+            processed.countDown();
+        }));
+        if (!processed.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Pack was not processed in time by " + strategy + " strategy");
+        }
+        submitStrategy.stop();
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.subscription;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.service.subscription.TbEntitySubscriptions;
+import org.thingsboard.server.service.subscription.TbSubscription;
+import org.thingsboard.server.service.subscription.TbSubscriptionType;
+import org.thingsboard.server.service.subscription.TbTimeseriesSubscription;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fan-out of a single time series update for an entity with many subscriptions, each one
+ * watching its own key. The scan resolves the matching subscriptions the way the subscription manager
+ * did before the key index was introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TbEntitySubscriptionsBenchmark {
+
+    @Param({"100", "1000"})
+    private int subscriptions;
+
+    @Param({"0", "10"})
+    private int allKeysSubscriptions;
+
+    private final Set<TbSubscription> flat = ConcurrentHashMap.newKeySet();
+    private final TbEntitySubscriptions index = new TbEntitySubscriptions();
+    private List<String> updateKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        int total = subscriptions + allKeysSubscriptions;
+        for (int i = 0; i < total; i++) {
+            boolean allKeys = i >= subscriptions;
+            Map<String, Long> keyStates = new HashMap<>();
+            if (!allKeys) {
+                keyStates.put("key" + i, 0L);
+            }
+            TbSubscription sub = TbTimeseriesSubscription.builder()
+                    .serviceId("service").sessionId("session").subscriptionId(i)
+                    .tenantId(tenantId).entityId(deviceId)
+                    .allKeys(allKeys).keyStates(keyStates)
+                    .build();
+            flat.add(sub);
+            index.add(sub);
+        }
+        updateKeys = Collections.singletonList("key" + (subscriptions / 2));
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) {
+        for (TbSubscription sub : flat) {
+            if (TbSubscriptionType.TIMESERIES.equals(sub.getType())) {
+                TbTimeseriesSubscription tsSub = (TbTimeseriesSubscription) sub;
+                for (String key : updateKeys) {
+                    if (tsSub.isAllKeys() || tsSub.getKeyStates().containsKey(key)) {
+                        bh.consume(tsSub);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void index(Blackhole bh) {
+        for (TbSubscription sub : index.getSubscriptions(TbSubscriptionType.TIMESERIES, updateKeys)) {
+            bh.consume(sub);
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.transport;
+
+import com.google.gson.JsonParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.transport.mqtt.util.ByteBufUtf8Reader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares converting an MQTT telemetry payload to {@link PostTelemetryMsg} through a Gson tree
+ * with the streaming conversion reading directly from the {@link ByteBuf}.
+ * Run with "-prof gc" to compare the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class JsonTelemetryParsingBenchmark {
+
+    @Param({"TREE", "STREAMING"})
+    private String parser;
+
+    @Param({"FLAT", "NESTED", "TS_ARRAY"})
+    private String format;
+
+    @Param({"20"})
+    private int keys;
+
+    private ByteBuf payload;
+
+    @Setup
+    public void setup() {
+        StringBuilder json = new StringBuilder();
+        switch (format) {
+            case "FLAT":
+                appendValues(json, 0);
+                break;
+            case "NESTED":
+                json.append("{\"location\":{\"lat\":50.4501,\"lng\":30.5234,\"history\":[1,2,3]},\"values\":");
+                appendValues(json, 0);
+                json.append('}');
+                break;
+            case "TS_ARRAY":
+                long ts = System.currentTimeMillis();
+                json.append('[');
+                for (int i = 0; i < 10; i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    json.append("{\"ts\":").append(ts + i).append(",\"values\":");
+                    appendValues(json, i);
+                    json.append('}');
+                }
+                json.append(']');
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        payload = Unpooled.wrappedBuffer(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void appendValues(StringBuilder json, int seed) {
+        json.append('{');
+        for (int k = 0; k < keys; k++) {
+            if (k > 0) {
+                json.append(',');
+            }
+            json.append("\"key").append(k).append("\":");
+            switch (k % 4) {
+                case 0:
+                    json.append(seed + k * 1.5);
+                    break;
+                case 1:
+                    json.append(seed + k);
+                    break;
+                case 2:
+                    json.append(k % 8 == 2);
+                    break;
+                default:
+                    json.append("\"value").append(seed).append('"');
+            }
+        }
+        json.append('}');
+    }
+
+    @Benchmark
+    public PostTelemetryMsg convert() {
+        if ("STREAMING".equals(parser)) {
+            return JsonConverter.convertToTelemetryProto(new ByteBufUtf8Reader(payload));
+        } else {
+            return JsonConverter.convertToTelemetryProto(new JsonParser().parse(payload.toString(StandardCharsets.UTF_8)));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.benchmark.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.service.telemetry.TelemetryWebSocketProtoEncoder;
+import org.thingsboard.server.service.telemetry.TelemetryWebSocketProtocol;
+import org.thingsboard.server.service.telemetry.cmd.v2.EntityDataUpdate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serialization cost of an entity data subscription page with the JSON and the protobuf websocket
+ * protocols. The size of the frame sent for each protocol is reported as the {@code frameBytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TelemetryWebSocketProtocolBenchmark {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Param({"JSON", "PROTOBUF"})
+    private String protocol;
+
+    @Param({"10", "500"})
+    private int entities;
+
+    @Param({"5"})
+    private int keys;
+
+    private TelemetryWebSocketProtocol wsProtocol;
+    private EntityDataUpdate update;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        wsProtocol = TelemetryWebSocketProtocol.valueOf(protocol);
+        long ts = System.currentTimeMillis();
+        List<EntityData> data = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++) {
+            Map<String, TsValue> values = new HashMap<>();
+            for (int k = 0; k < keys; k++) {
+                values.put("key" + k, new TsValue(ts - k, Double.toString(ThreadLocalRandom.current().nextDouble(100))));
+            }
+            values.put("name", new TsValue(0, "Device " + i));
+            Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+            latest.put(EntityKeyType.TIME_SERIES, values);
+            data.add(new EntityData(new DeviceId(UUID.randomUUID()), latest, new HashMap<>()));
+        }
+        update = new EntityDataUpdate(1, new PageData<>(data, 1, entities, false), null, entities);
+    }
+
+    @Benchmark
+    public byte[] encode(FrameSize frameSize) throws JsonProcessingException {
+        byte[] frame;
+        if (wsProtocol == TelemetryWebSocketProtocol.PROTOBUF) {
+            frame = TelemetryWebSocketProtoEncoder.encode(update);
+        } else {
+            frame = jsonMapper.writeValueAsString(update).getBytes(StandardCharsets.UTF_8);
+        }
+        frameSize.frameBytes = frame.length;
+        return frame;
+    }
+
+    /**
+     * Holds the size of the last encoded frame, which is the same for all the invocations of the benchmark.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FrameSize {
+        public long frameBytes;
+    }
+
+}
@@ -19,8 +19,11 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -30,6 +33,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
@@ -43,6 +47,8 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final ConcurrentMap<TbActorId, TbActorMailbox> actors = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, ReentrantLock> actorCreationLocks = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, Set<TbActorId>> parentChildMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TbActorMailboxStats> mailboxStats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TenantId, AtomicInteger> overloadedMailboxesPerTenant = new ConcurrentHashMap<>();
 
     @Getter
     private final TbActorSystemSettings settings;
@@ -56,7 +62,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
 
     @Override
     public void createDispatcher(String dispatcherId, ExecutorService executor) {
-        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor));
+        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor, settings.getMailboxSettings(dispatcherId)));
         if (current != null) {
             throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
         }
@@ -113,7 +119,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
                             throw new TbActorNotRegisteredException(parent, "Parent Actor with id [" + parent + "] is not registered!");
                         }
                     }
-                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher);
+                    TbActorMailbox mailbox = newMailbox(actorId, parentRef, actor, dispatcher);
                     actors.put(actorId, mailbox);
                     mailbox.initActor();
                     actorMailbox = mailbox;
@@ -131,6 +137,59 @@ public class DefaultTbActorSystem implements TbActorSystem {
         return actorMailbox;
     }
 
+    private TbActorMailbox newMailbox(TbActorId actorId, TbActorRef parentRef, TbActor actor, Dispatcher dispatcher) {
+        TbActorMailboxSettings mailboxSettings = dispatcher.getMailboxSettings();
+        TbActorMailboxOverflowPolicy overflowPolicy = mailboxSettings.getOverflowPolicy();
+        // Backpressure mailboxes never reject messages, the capacity is only used to detect the overload.
+        int queueCapacity = overflowPolicy == TbActorMailboxOverflowPolicy.BACKPRESSURE ? 0 : mailboxSettings.getCapacity();
+        TbActorThroughputController throughputController;
+        if (mailboxSettings.getType() == TbActorMailboxType.BATCHED) {
+            throughputController = new TbActorThroughputController(settings.getActorThroughput(),
+                    mailboxSettings.getMaxThroughput(), mailboxSettings.getTargetProcessingTimeMs());
+        } else {
+            throughputController = TbActorThroughputController.fixed(settings.getActorThroughput());
+        }
+        TbActorMsgQueue msgQueue;
+        if (mailboxSettings.getType() == TbActorMailboxType.BATCHED) {
+            msgQueue = new MpscArrayTbActorMsgQueue(queueCapacity);
+        } else {
+            msgQueue = new LinkedTbActorMsgQueue(queueCapacity);
+        }
+        TbActorMailboxStats stats = mailboxStats.computeIfAbsent(actor.getClass().getSimpleName(), TbActorMailboxStats::new);
+        TenantId tenantId = resolveTenantId(actorId, parentRef);
+        AtomicInteger tenantOverloadedMailboxes = tenantId != null ? overloadedMailboxesPerTenant.computeIfAbsent(tenantId, id -> new AtomicInteger()) : null;
+        return new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher, msgQueue, throughputController, stats,
+                tenantId, tenantOverloadedMailboxes);
+    }
+
+    private static TenantId resolveTenantId(TbActorId actorId, TbActorRef parentRef) {
+        if (actorId instanceof TbEntityActorId && actorId.getEntityType() == EntityType.TENANT) {
+            return TenantId.fromUUID(((TbEntityActorId) actorId).getEntityId().getId());
+        }
+        return parentRef instanceof TbActorMailbox ? ((TbActorMailbox) parentRef).getTenantId() : null;
+    }
+
+    @Override
+    public Collection<TbActorMailboxStats> getMailboxStats() {
+        return mailboxStats.values();
+    }
+
+    @Override
+    public boolean isBackpressureActive() {
+        for (TbActorMailboxStats stats : mailboxStats.values()) {
+            if (stats.hasOverloadedMailboxes()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isBackpressureActive(TenantId tenantId) {
+        AtomicInteger overloadedMailboxes = overloadedMailboxesPerTenant.get(tenantId);
+        return overloadedMailboxes != null && overloadedMailboxes.get() > 0;
+    }
+
     @Override
     public void tellWithHighPriority(TbActorId target, TbActorMsg actorMsg) {
         tell(target, actorMsg, true);
@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class LinkedTbActorMsgQueue implements TbActorEvictingMsgQueue {
+
+    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger normalPriorityMsgsCount = new AtomicInteger();
+    private final int capacity;
+
+    LinkedTbActorMsgQueue() {
+        this(0);
+    }
+
+    LinkedTbActorMsgQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean add(TbActorMsg msg, boolean highPriority) {
+        if (highPriority) {
+            highPriorityMsgs.add(msg);
+        } else {
+            if (normalPriorityMsgsCount.incrementAndGet() > capacity && capacity > 0) {
+                normalPriorityMsgsCount.decrementAndGet();
+                return false;
+            }
+            normalPriorityMsgs.add(msg);
+        }
+        return true;
+    }
+
+    @Override
+    public TbActorMsg poll() {
+        TbActorMsg msg = highPriorityMsgs.poll();
+        if (msg == null) {
+            msg = pollNormalPriority();
+        }
+        return msg;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return highPriorityMsgs.isEmpty() && normalPriorityMsgs.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, normalPriorityMsgsCount.get());
+    }
+
+    @Override
+    public TbActorMsg evictOldest() {
+        return pollNormalPriority();
+    }
+
+    @Override
+    public void drain(Consumer<TbActorMsg> consumer) {
+        TbActorMsg msg;
+        while ((msg = poll()) != null) {
+            consumer.accept(msg);
+        }
+    }
+
+    private TbActorMsg pollNormalPriority() {
+        TbActorMsg msg = normalPriorityMsgs.poll();
+        if (msg != null) {
+            normalPriorityMsgsCount.decrementAndGet();
+        }
+        return msg;
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscChunkedArrayQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.function.Consumer;
+
+/**
+ * Array based queue that does not allocate a node per message. Chunks are allocated on demand,
+ * so idle actors do not reserve the whole capacity. High priority messages (lifecycle events, etc.) are rare
+ * and must never be rejected, so their queue is unbounded.
+ */
+class MpscArrayTbActorMsgQueue implements TbActorMsgQueue {
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final MessagePassingQueue<TbActorMsg> highPriorityMsgs = new MpscUnboundedArrayQueue<>(CHUNK_SIZE);
+    private final MessagePassingQueue<TbActorMsg> normalPriorityMsgs;
+
+    MpscArrayTbActorMsgQueue(int capacity) {
+        if (capacity > 0) {
+            int maxCapacity = Math.max(4, capacity);
+            this.normalPriorityMsgs = new MpscChunkedArrayQueue<>(Math.max(2, Math.min(CHUNK_SIZE, maxCapacity / 2)), maxCapacity);
+        } else {
+            this.normalPriorityMsgs = new MpscUnboundedArrayQueue<>(CHUNK_SIZE);
+        }
+    }
+
+    @Override
+    public boolean add(TbActorMsg msg, boolean highPriority) {
+        if (highPriority) {
+            return highPriorityMsgs.offer(msg);
+        } else {
+            return normalPriorityMsgs.offer(msg);
+        }
+    }
+
+    @Override
+    public TbActorMsg poll() {
+        TbActorMsg msg = highPriorityMsgs.poll();
+        if (msg == null) {
+            msg = normalPriorityMsgs.poll();
+        }
+        return msg;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return highPriorityMsgs.isEmpty() && normalPriorityMsgs.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return normalPriorityMsgs.size();
+    }
+
+    @Override
+    public void drain(Consumer<TbActorMsg> consumer) {
+        highPriorityMsgs.drain(consumer::accept);
+        normalPriorityMsgs.drain(consumer::accept);
+    }
+
+}
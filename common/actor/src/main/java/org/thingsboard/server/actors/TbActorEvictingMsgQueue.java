@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+/**
+ * Queue that lets producers evict messages, required by {@link TbActorMailboxOverflowPolicy#DROP_OLDEST}.
+ */
+interface TbActorEvictingMsgQueue extends TbActorMsgQueue {
+
+    /**
+     * Removes the oldest normal priority message. May be called concurrently with {@link #poll()}.
+     *
+     * @return evicted message or null if there are no normal priority messages.
+     */
+    TbActorMsg evictOldest();
+
+}
@@ -18,14 +18,15 @@ package org.thingsboard.server.actors;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -47,11 +48,20 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final TbActorMsgQueue msgQueue;
+    private final TbActorThroughputController throughputController;
+    private final TbActorMailboxStats stats;
+    /**
+     * Tenant of the actor or one of its ancestors, null for the actors outside of the tenant actors hierarchy.
+     */
+    private final TenantId tenantId;
+    private final AtomicInteger tenantOverloadedMailboxes;
+    private final Runnable processMailboxTask = this::processMailbox;
+    private final Runnable tryProcessQueueTask = () -> tryProcessQueue(false);
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
     private volatile TbActorStopReason stopReason;
 
     public void initActor() {
@@ -90,12 +100,13 @@ public final class TbActorMailbox implements TbActorCtx {
 
     private void enqueue(TbActorMsg msg, boolean highPriority) {
         if (!destroyInProgress.get()) {
-            if (highPriority) {
-                highPriorityMsgs.add(msg);
-            } else {
-                normalPriorityMsgs.add(msg);
+            if (offer(msg, highPriority)) {
+                tryProcessQueue(true);
+                if (destroyInProgress.get()) {
+                    // the actor was destroyed while the message was added
+                    drainOnDestroy();
+                }
             }
-            tryProcessQueue(true);
         } else {
             if (highPriority && msg.getMsgType().equals(MsgType.RULE_NODE_UPDATED_MSG)) {
                 synchronized (this) {
@@ -113,11 +124,46 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    private boolean offer(TbActorMsg msg, boolean highPriority) {
+        TbActorMailboxSettings mailboxSettings = dispatcher.getMailboxSettings();
+        while (!msgQueue.add(msg, highPriority)) {
+            if (mailboxSettings.getOverflowPolicy() == TbActorMailboxOverflowPolicy.DROP_OLDEST) {
+                // BATCHED mailboxes do not support DROP_OLDEST, see TbActorMailboxSettings
+                TbActorMsg evicted = ((TbActorEvictingMsgQueue) msgQueue).evictOldest();
+                if (evicted != null) {
+                    stats.onMsgEvicted();
+                    log.debug("[{}] Mailbox is full, oldest message evicted: {}", selfId, evicted.getMsgType());
+                    evicted.onTbActorStopped(TbActorStopReason.MAILBOX_OVERFLOW);
+                }
+            } else {
+                stats.onMsgDropped();
+                log.debug("[{}] Mailbox is full, message rejected: {}", selfId, msg.getMsgType());
+                msg.onTbActorStopped(TbActorStopReason.MAILBOX_OVERFLOW);
+                return false;
+            }
+        }
+        int depth = msgQueue.size();
+        stats.onMsgAdded(depth);
+        if (mailboxSettings.getOverflowPolicy() == TbActorMailboxOverflowPolicy.BACKPRESSURE && mailboxSettings.isBounded()
+                && depth >= mailboxSettings.getCapacity() && overloaded.compareAndSet(false, true)) {
+            onOverloaded();
+            log.debug("[{}] Mailbox is overloaded, depth: {}", selfId, depth);
+        }
+        return true;
+    }
+
+    private void tryRecoverFromOverload() {
+        if (overloaded.get() && msgQueue.size() <= dispatcher.getMailboxSettings().getCapacity() / 2 && overloaded.compareAndSet(true, false)) {
+            onRecovered();
+            log.debug("[{}] Mailbox recovered from overload", selfId);
+        }
+    }
+
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
-            if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
+            if (newMsg || !msgQueue.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    dispatcher.getExecutor().execute(processMailboxTask);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -131,12 +177,14 @@ public final class TbActorMailbox implements TbActorCtx {
 
     private void processMailbox() {
         boolean noMoreElements = false;
-        for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
-            }
+        boolean adaptive = throughputController.isAdaptive();
+        long startTs = adaptive ? System.nanoTime() : 0L;
+        int throughput = throughputController.getThroughput();
+        int processed = 0;
+        while (processed < throughput && !destroyInProgress.get()) {
+            TbActorMsg msg = msgQueue.poll();
             if (msg != null) {
+                processed++;
                 try {
                     log.debug("[{}] Going to process message: {}", selfId, msg);
                     actor.process(msg);
@@ -155,11 +203,19 @@ public final class TbActorMailbox implements TbActorCtx {
                 break;
             }
         }
-        if (noMoreElements) {
+        stats.onMsgsProcessed(processed);
+        tryRecoverFromOverload();
+        if (adaptive) {
+            throughputController.onProcessed(processed, System.nanoTime() - startTs);
+        }
+        if (destroyInProgress.get()) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            drainOnDestroy();
+        } else if (noMoreElements) {
+            busy.set(FREE);
+            dispatcher.getExecutor().execute(tryProcessQueueTask);
         } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+            dispatcher.getExecutor().execute(processMailboxTask);
         }
     }
 
@@ -217,14 +273,50 @@ public final class TbActorMailbox implements TbActorCtx {
             try {
                 ready.set(NOT_READY);
                 actor.destroy();
-                highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
+            drainOnDestroy();
         });
     }
 
+    /**
+     * Fails the pending messages of the destroyed actor. The queue may have a single consumer only,
+     * so the messages are drained by the thread that holds the busy flag. If the mailbox is being processed,
+     * the processing thread drains the queue once it releases the flag.
+     */
+    private void drainOnDestroy() {
+        while (destroyInProgress.get() && !msgQueue.isEmpty() && busy.compareAndSet(FREE, BUSY)) {
+            try {
+                msgQueue.drain(msg -> {
+                    stats.onMsgsDiscarded(1);
+                    msg.onTbActorStopped(stopReason);
+                });
+            } catch (Throwable t) {
+                log.warn("[{}] Failed to drain mailbox: {}", selfId, t);
+            } finally {
+                busy.set(FREE);
+            }
+        }
+        if (destroyInProgress.get() && overloaded.compareAndSet(true, false)) {
+            onRecovered();
+        }
+    }
+
+    private void onOverloaded() {
+        stats.onMailboxOverloaded();
+        if (tenantOverloadedMailboxes != null) {
+            tenantOverloadedMailboxes.incrementAndGet();
+        }
+    }
+
+    private void onRecovered() {
+        stats.onMailboxRecovered();
+        if (tenantOverloadedMailboxes != null) {
+            tenantOverloadedMailboxes.decrementAndGet();
+        }
+    }
+
     @Override
     public TbActorId getActorId() {
         return selfId;
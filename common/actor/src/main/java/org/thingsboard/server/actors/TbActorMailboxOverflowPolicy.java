@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+/**
+ * Defines what happens with a normal priority message when the mailbox already holds {@link TbActorMailboxSettings#getCapacity()} messages.
+ * High priority messages are never rejected.
+ */
+public enum TbActorMailboxOverflowPolicy {
+
+    /**
+     * The new message is rejected and notified via {@link org.thingsboard.server.common.msg.TbActorMsg#onTbActorStopped}.
+     */
+    REJECT,
+    /**
+     * The oldest pending message is evicted and notified via {@link org.thingsboard.server.common.msg.TbActorMsg#onTbActorStopped}.
+     * Not supported by {@link TbActorMailboxType#BATCHED} mailboxes.
+     */
+    DROP_OLDEST,
+    /**
+     * The new message is accepted, but the mailbox is marked as overloaded until its depth drops to half of the capacity.
+     * Consumers are expected to check {@link TbActorSystem#isBackpressureActive(org.thingsboard.server.common.data.id.TenantId)}
+     * for the tenants of the messages they hold and pause meanwhile.
+     */
+    BACKPRESSURE
+
+}
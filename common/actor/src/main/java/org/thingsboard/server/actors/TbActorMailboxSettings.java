@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Data;
+
+@Data
+public class TbActorMailboxSettings {
+
+    /**
+     * Capacity of {@link TbActorMailboxType#BATCHED} mailboxes if no capacity is configured.
+     */
+    public static final int DEFAULT_BATCHED_CAPACITY = 100000;
+
+    public static final TbActorMailboxSettings DEFAULT = new TbActorMailboxSettings(TbActorMailboxType.DEFAULT, 0, TbActorMailboxOverflowPolicy.REJECT, 0, 0);
+
+    private final TbActorMailboxType type;
+    /**
+     * Max number of normal priority messages in the mailbox. Zero or negative value means unbounded {@link TbActorMailboxType#DEFAULT} mailbox
+     * or {@link #DEFAULT_BATCHED_CAPACITY} for {@link TbActorMailboxType#BATCHED} mailbox.
+     */
+    private final int capacity;
+    private final TbActorMailboxOverflowPolicy overflowPolicy;
+    /**
+     * Upper bound of messages processed per dispatcher run. The lower bound is {@link TbActorSystemSettings#getActorThroughput()}.
+     * Used by {@link TbActorMailboxType#BATCHED} mailboxes only.
+     */
+    private final int maxThroughput;
+    /**
+     * Desired duration of a single dispatcher run, used to adapt the throughput. Used by {@link TbActorMailboxType#BATCHED} mailboxes only.
+     */
+    private final long targetProcessingTimeMs;
+
+    public TbActorMailboxSettings(TbActorMailboxType type, int capacity, TbActorMailboxOverflowPolicy overflowPolicy, int maxThroughput, long targetProcessingTimeMs) {
+        if (type == TbActorMailboxType.BATCHED && overflowPolicy == TbActorMailboxOverflowPolicy.DROP_OLDEST) {
+            // MPSC queues of BATCHED mailboxes may be polled by the mailbox processing thread only, so producers can't evict messages
+            throw new IllegalArgumentException("Mailbox overflow policy DROP_OLDEST is not supported by BATCHED mailboxes, use REJECT or BACKPRESSURE");
+        }
+        this.type = type;
+        this.capacity = type == TbActorMailboxType.BATCHED && capacity <= 0 ? DEFAULT_BATCHED_CAPACITY : capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.maxThroughput = maxThroughput;
+        this.targetProcessingTimeMs = targetProcessingTimeMs;
+    }
+
+    public boolean isBounded() {
+        return capacity > 0;
+    }
+
+}
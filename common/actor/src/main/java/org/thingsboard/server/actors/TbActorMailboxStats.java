@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mailbox counters aggregated for all actors of the same type.
+ */
+@Getter
+public class TbActorMailboxStats {
+
+    private final String actorType;
+    private final LongAdder pendingMsgs = new LongAdder();
+    private final LongAdder processedMsgs = new LongAdder();
+    private final LongAdder droppedMsgs = new LongAdder();
+    /**
+     * Max depth of a single mailbox of this actor type observed since the start.
+     */
+    private final LongAccumulator maxMailboxDepth = new LongAccumulator(Math::max, 0);
+    /**
+     * Number of mailboxes that exceeded the capacity with {@link TbActorMailboxOverflowPolicy#BACKPRESSURE} policy and did not recover yet.
+     */
+    private final LongAdder overloadedMailboxes = new LongAdder();
+
+    public TbActorMailboxStats(String actorType) {
+        this.actorType = actorType;
+    }
+
+    void onMsgAdded(int mailboxDepth) {
+        pendingMsgs.increment();
+        maxMailboxDepth.accumulate(mailboxDepth);
+    }
+
+    void onMsgsProcessed(int count) {
+        pendingMsgs.add(-count);
+        processedMsgs.add(count);
+    }
+
+    void onMsgDropped() {
+        droppedMsgs.increment();
+    }
+
+    void onMsgEvicted() {
+        pendingMsgs.decrement();
+        droppedMsgs.increment();
+    }
+
+    void onMsgsDiscarded(int count) {
+        pendingMsgs.add(-count);
+    }
+
+    void onMailboxOverloaded() {
+        overloadedMailboxes.increment();
+    }
+
+    void onMailboxRecovered() {
+        overloadedMailboxes.decrement();
+    }
+
+    public boolean hasOverloadedMailboxes() {
+        return overloadedMailboxes.sum() > 0;
+    }
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+public enum TbActorMailboxType {
+
+    /**
+     * Linked queues, fixed number of messages processed per dispatcher run.
+     */
+    DEFAULT,
+    /**
+     * Bounded MPSC array queues, number of messages processed per dispatcher run adapts to the observed processing time.
+     */
+    BATCHED
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.function.Consumer;
+
+interface TbActorMsgQueue {
+
+    /**
+     * @return false if the message was not accepted because the queue is full.
+     */
+    boolean add(TbActorMsg msg, boolean highPriority);
+
+    /**
+     * @return next high priority message if any, otherwise next normal priority message or null if the queue is empty.
+     */
+    TbActorMsg poll();
+
+    boolean isEmpty();
+
+    /**
+     * @return number of normal priority messages in the queue.
+     */
+    int size();
+
+    /**
+     * Polls all the messages. Must be called by the consumer, like {@link #poll()}.
+     */
+    void drain(Consumer<TbActorMsg> consumer);
+
+}
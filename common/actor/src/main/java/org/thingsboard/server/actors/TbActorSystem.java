@@ -15,8 +15,10 @@
  */
 package org.thingsboard.server.actors;
 
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -51,4 +53,17 @@ public interface TbActorSystem {
     void broadcastToChildren(TbActorId parent, Predicate<TbActorId> childFilter, TbActorMsg msg);
 
     List<TbActorId> filterChildren(TbActorId parent, Predicate<TbActorId> childFilter);
+
+    Collection<TbActorMailboxStats> getMailboxStats();
+
+    /**
+     * @return true if at least one mailbox with {@link TbActorMailboxOverflowPolicy#BACKPRESSURE} policy exceeded its capacity.
+     */
+    boolean isBackpressureActive();
+
+    /**
+     * @return true if at least one mailbox with {@link TbActorMailboxOverflowPolicy#BACKPRESSURE} policy of the tenant's actors
+     * (the tenant actor and its descendants) exceeded its capacity.
+     */
+    boolean isBackpressureActive(TenantId tenantId);
 }
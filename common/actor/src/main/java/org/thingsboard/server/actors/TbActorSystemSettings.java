@@ -17,11 +17,23 @@ package org.thingsboard.server.actors;
 
 import lombok.Data;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Data
 public class TbActorSystemSettings {
 
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final Map<String, TbActorMailboxSettings> dispatcherMailboxSettings = new ConcurrentHashMap<>();
+
+    public TbActorMailboxSettings getMailboxSettings(String dispatcherId) {
+        return dispatcherMailboxSettings.getOrDefault(dispatcherId, TbActorMailboxSettings.DEFAULT);
+    }
+
+    public void setMailboxSettings(String dispatcherId, TbActorMailboxSettings mailboxSettings) {
+        dispatcherMailboxSettings.put(dispatcherId, mailboxSettings);
+    }
 
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses how many messages a mailbox processes per dispatcher run. Doubles the batch while the run
+ * is much faster than the target processing time and halves it once the target is exceeded.
+ * Not thread safe: accessed only by the thread that currently processes the mailbox.
+ */
+final class TbActorThroughputController {
+
+    private final int minThroughput;
+    private final int maxThroughput;
+    private final long targetProcessingTimeNanos;
+    private int throughput;
+
+    TbActorThroughputController(int minThroughput, int maxThroughput, long targetProcessingTimeMs) {
+        this.minThroughput = Math.max(1, minThroughput);
+        this.maxThroughput = Math.max(this.minThroughput, maxThroughput);
+        this.targetProcessingTimeNanos = TimeUnit.MILLISECONDS.toNanos(targetProcessingTimeMs);
+        this.throughput = this.minThroughput;
+    }
+
+    static TbActorThroughputController fixed(int throughput) {
+        return new TbActorThroughputController(throughput, throughput, 0);
+    }
+
+    boolean isAdaptive() {
+        return maxThroughput > minThroughput && targetProcessingTimeNanos > 0;
+    }
+
+    int getThroughput() {
+        return throughput;
+    }
+
+    void onProcessed(int processed, long processingTimeNanos) {
+        if (processingTimeNanos > targetProcessingTimeNanos) {
+            throughput = Math.max(minThroughput, throughput / 2);
+        } else if (processed >= throughput && processingTimeNanos < targetProcessingTimeNanos / 2) {
+            throughput = Math.min(maxThroughput, throughput * 2);
+        }
+    }
+
+}
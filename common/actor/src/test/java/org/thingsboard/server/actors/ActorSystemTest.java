@@ -16,6 +16,7 @@
 package org.thingsboard.server.actors;
 
 import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -25,6 +26,9 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +38,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -45,6 +50,7 @@ public class ActorSystemTest {
     private static final int _100K = 100 * 1024;
     public static final int TIMEOUT_AWAIT_MAX_SEC = 100;
 
+    private volatile TbActorSystemSettings settings;
     private volatile TbActorSystem actorSystem;
     private volatile ExecutorService submitPool;
     private ExecutorService executor;
@@ -54,7 +60,7 @@ public class ActorSystemTest {
     public void initActorSystem() {
         int cores = Runtime.getRuntime().availableProcessors();
         parallelism = Math.max(2, cores / 2);
-        TbActorSystemSettings settings = new TbActorSystemSettings(5, parallelism, 42);
+        settings = new TbActorSystemSettings(5, parallelism, 42);
         actorSystem = new DefaultTbActorSystem(settings);
         submitPool = Executors.newFixedThreadPool(parallelism, ThingsBoardThreadFactory.forName(getClass().getSimpleName() + "-submit-test-scope")); //order guaranteed
     }
@@ -110,6 +116,110 @@ public class ActorSystemTest {
         testActorsAndMessages(1000, 1000, 10);
     }
 
+    @Test
+    public void test10actorsAnd100KMessagesBatchedMailbox() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 2 * _100K, TbActorMailboxOverflowPolicy.REJECT, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(10, _100K, 1);
+    }
+
+    @Test
+    public void test100KActorsAnd10MessagesBatchedMailbox() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 1024, TbActorMailboxOverflowPolicy.REJECT, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(_100K, 10, 1);
+    }
+
+    @Test
+    public void testBatchedMailboxRejectsMessagesWhenFull() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 4, TbActorMailboxOverflowPolicy.REJECT, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(4);
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            actorRef.tell(new IntTbActorMsg(i) {
+                @Override
+                public void onTbActorStopped(TbActorStopReason reason) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(6, rejected.get());
+        Assert.assertEquals(0 + 1 + 2 + 3, testCtx.getActual().get());
+        TbActorMailboxStats stats = actorSystem.getMailboxStats().iterator().next();
+        Assert.assertEquals(SlowInitActor.class.getSimpleName(), stats.getActorType());
+        Assert.assertEquals(6, stats.getDroppedMsgs().sum());
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> stats.getProcessedMsgs().sum() == 4);
+        Assert.assertEquals(0, stats.getPendingMsgs().sum());
+    }
+
+    @Test
+    public void testMailboxDropsOldestMessagesWhenFull() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.DEFAULT, 4, TbActorMailboxOverflowPolicy.DROP_OLDEST, 0, 0));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(4);
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        AtomicLong evicted = new AtomicLong();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            actorRef.tell(new IntTbActorMsg(i) {
+                @Override
+                public void onTbActorStopped(TbActorStopReason reason) {
+                    Assert.assertEquals(TbActorStopReason.MAILBOX_OVERFLOW, reason);
+                    evicted.addAndGet(value);
+                }
+            });
+        }
+
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(0 + 1 + 2 + 3 + 4 + 5, evicted.get());
+        Assert.assertEquals(6 + 7 + 8 + 9, testCtx.getActual().get());
+        TbActorMailboxStats stats = actorSystem.getMailboxStats().iterator().next();
+        Assert.assertEquals(6, stats.getDroppedMsgs().sum());
+        Assert.assertEquals(4, stats.getMaxMailboxDepth().get());
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> stats.getProcessedMsgs().sum() == 4);
+        Assert.assertEquals(0, stats.getPendingMsgs().sum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedMailboxDoesNotSupportDropOldest() {
+        new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 4, TbActorMailboxOverflowPolicy.DROP_OLDEST, 1024, 1);
+    }
+
+    @Test
+    public void testBackpressureMailboxAcceptsMessagesWhenFull() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 4, TbActorMailboxOverflowPolicy.BACKPRESSURE, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(10);
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        Assert.assertFalse(actorSystem.isBackpressureActive());
+        for (int i = 0; i < 10; i++) {
+            actorRef.tell(new IntTbActorMsg(i));
+        }
+        Assert.assertTrue(actorSystem.isBackpressureActive());
+
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(45, testCtx.getActual().get());
+        TbActorMailboxStats stats = actorSystem.getMailboxStats().iterator().next();
+        Assert.assertEquals(0, stats.getDroppedMsgs().sum());
+        Assert.assertEquals(10, stats.getMaxMailboxDepth().get());
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> !actorSystem.isBackpressureActive());
+    }
+
     @Test
     public void testNoMessagesAfterDestroy() throws InterruptedException {
         executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
@@ -130,6 +240,79 @@ public class ActorSystemTest {
         Assert.assertFalse(testCtx1.getLatch().await(1, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testBackpressureIsScopedToTenant() throws InterruptedException {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 4, TbActorMailboxOverflowPolicy.BACKPRESSURE, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        TenantId otherTenantId = TenantId.fromUUID(UUID.randomUUID());
+        TbActorId tenantActorId = new TbEntityActorId(tenantId);
+        actorSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(tenantActorId, getActorTestCtx(1)));
+        actorSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(new TbEntityActorId(otherTenantId), getActorTestCtx(1)));
+        ActorTestCtx testCtx = getActorTestCtx(10);
+        TbActorRef deviceActorRef = actorSystem.createChildActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx), tenantActorId);
+
+        for (int i = 0; i < 10; i++) {
+            deviceActorRef.tell(new IntTbActorMsg(i));
+        }
+        Assert.assertTrue(actorSystem.isBackpressureActive(tenantId));
+        Assert.assertFalse(actorSystem.isBackpressureActive(otherTenantId));
+
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> !actorSystem.isBackpressureActive(tenantId));
+    }
+
+    @Test
+    public void testPendingMessagesAreStoppedOnceOnBatchedMailboxDestroy() {
+        settings.setMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(TbActorMailboxType.BATCHED, 2 * _100K, TbActorMailboxOverflowPolicy.REJECT, 1024, 1));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        TbActorId actorId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+        AtomicInteger processed = new AtomicInteger();
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new TbActorCreator() {
+            @Override
+            public TbActorId createActorId() {
+                return actorId;
+            }
+
+            @Override
+            public TbActor createActor() {
+                return new AbstractTbActor() {
+                    @Override
+                    public boolean process(TbActorMsg msg) {
+                        processed.incrementAndGet();
+                        return true;
+                    }
+                };
+            }
+        });
+
+        int msgCount = _100K;
+        AtomicInteger stopped = new AtomicInteger();
+        AtomicInteger stoppedTwice = new AtomicInteger();
+        for (int i = 0; i < msgCount; i++) {
+            AtomicBoolean stopNotified = new AtomicBoolean();
+            actorRef.tell(new IntTbActorMsg(i) {
+                @Override
+                public void onTbActorStopped(TbActorStopReason reason) {
+                    if (stopNotified.compareAndSet(false, true)) {
+                        stopped.incrementAndGet();
+                    } else {
+                        stoppedTwice.incrementAndGet();
+                    }
+                }
+            });
+            if (i == msgCount / 2) {
+                actorSystem.stop(actorId);
+            }
+        }
+
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> processed.get() + stopped.get() == msgCount);
+        Assert.assertEquals(0, stoppedTwice.get());
+    }
+
     @Test
     public void testOneActorCreated() throws InterruptedException {
         executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
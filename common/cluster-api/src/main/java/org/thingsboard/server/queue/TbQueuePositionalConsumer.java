@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue;
+
+/**
+ * Consumer able to commit the messages up to the position of a poll, so the messages of the later polls may be processed
+ * before the messages of the earlier ones are committed.
+ */
+public interface TbQueuePositionalConsumer<T extends TbQueueMsg> extends TbQueueConsumer<T> {
+
+    /**
+     * @return the position after the messages returned by the last poll or null if only all the polled messages can be committed at once.
+     */
+    TbQueueCommitPosition getCommitPosition();
+
+    /**
+     * Commits the messages up to the position returned by {@link #getCommitPosition()}.
+     * Positions must be committed in the order of the polls.
+     */
+    void commit(TbQueueCommitPosition position);
+
+}
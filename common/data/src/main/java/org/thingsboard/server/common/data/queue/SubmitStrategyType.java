@@ -16,5 +16,5 @@
 package org.thingsboard.server.common.data.queue;
 
 public enum SubmitStrategyType {
-    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL
+    BURST, BATCH, SEQUENTIAL_BY_ORIGINATOR, SEQUENTIAL_BY_TENANT, SEQUENTIAL, ORIGINATOR_LANES
 }
\ No newline at end of file
@@ -17,10 +17,18 @@ package org.thingsboard.server.common.msg;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.EntityType;
@@ -33,6 +41,7 @@ import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.msg.gen.MsgProtos;
 import org.thingsboard.server.common.msg.queue.TbMsgCallback;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -43,15 +52,35 @@ import java.util.UUID;
 @Slf4j
 public final class TbMsg implements Serializable {
 
+    private static final int ID_TAG = (MsgProtos.TbMsgProto.ID_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int TYPE_TAG = (MsgProtos.TbMsgProto.TYPE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int ENTITY_TYPE_TAG = (MsgProtos.TbMsgProto.ENTITYTYPE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int ENTITY_ID_MSB_TAG = (MsgProtos.TbMsgProto.ENTITYIDMSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int ENTITY_ID_LSB_TAG = (MsgProtos.TbMsgProto.ENTITYIDLSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int RULE_CHAIN_ID_MSB_TAG = (MsgProtos.TbMsgProto.RULECHAINIDMSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int RULE_CHAIN_ID_LSB_TAG = (MsgProtos.TbMsgProto.RULECHAINIDLSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int RULE_NODE_ID_MSB_TAG = (MsgProtos.TbMsgProto.RULENODEIDMSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int RULE_NODE_ID_LSB_TAG = (MsgProtos.TbMsgProto.RULENODEIDLSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int METADATA_TAG = (MsgProtos.TbMsgProto.METADATA_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DATA_TYPE_TAG = (MsgProtos.TbMsgProto.DATATYPE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int DATA_TAG = (MsgProtos.TbMsgProto.DATA_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int TS_TAG = (MsgProtos.TbMsgProto.TS_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int RULE_NODE_EXEC_COUNTER_TAG = (MsgProtos.TbMsgProto.RULENODEEXECCOUNTER_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int CUSTOMER_ID_MSB_TAG = (MsgProtos.TbMsgProto.CUSTOMERIDMSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int CUSTOMER_ID_LSB_TAG = (MsgProtos.TbMsgProto.CUSTOMERIDLSB_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_VARINT;
+    private static final int CTX_TAG = (MsgProtos.TbMsgProto.CTX_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
     private final String queueName;
     private final UUID id;
     private final long ts;
     private final String type;
     private final EntityId originator;
     private final CustomerId customerId;
-    private final TbMsgMetaData metaData;
+    @Setter(AccessLevel.NONE)
+    private volatile TbMsgMetaData metaData;
     private final TbMsgDataType dataType;
-    private final String data;
+    @Setter(AccessLevel.NONE)
+    private volatile String data;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
     @Getter(value = AccessLevel.NONE)
@@ -63,6 +92,19 @@ public final class TbMsg implements Serializable {
     @JsonIgnore
     transient private final TbMsgCallback callback;
 
+    // Encoded metadata and data of the message consumed from the queue. Decoded on first access and written
+    // back as is when the message is pushed to the queue again, unless the metadata was decoded and may be changed.
+    @Getter(value = AccessLevel.NONE)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final ByteString metaDataBytes;
+    @Getter(value = AccessLevel.NONE)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final ByteString dataBytes;
+
     public int getAndIncrementRuleNodeCounter() {
         return ctx.getAndIncrementRuleNodeCounter();
     }
@@ -73,7 +115,7 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg newMsg(String queueName, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, String data, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
         return new TbMsg(queueName, UUID.randomUUID(), System.currentTimeMillis(), type, originator, customerId,
-                metaData.copy(), TbMsgDataType.JSON, data, ruleChainId, ruleNodeId, null, TbMsgCallback.EMPTY);
+                metaData.copy(), null, TbMsgDataType.JSON, data, null, ruleChainId, ruleNodeId, null, TbMsgCallback.EMPTY);
     }
 
     public static TbMsg newMsg(String type, EntityId originator, TbMsgMetaData metaData, String data) {
@@ -82,7 +124,7 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg newMsg(String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, String data) {
         return new TbMsg(null, UUID.randomUUID(), System.currentTimeMillis(), type, originator, customerId,
-                metaData.copy(), TbMsgDataType.JSON, data, null, null, null, TbMsgCallback.EMPTY);
+                metaData.copy(), null, TbMsgDataType.JSON, data, null, null, null, null, TbMsgCallback.EMPTY);
     }
 
     // REALLY NEW MSG
@@ -93,12 +135,12 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg newMsg(String queueName, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, String data) {
         return new TbMsg(queueName, UUID.randomUUID(), System.currentTimeMillis(), type, originator, customerId,
-                metaData.copy(), TbMsgDataType.JSON, data, null, null, null, TbMsgCallback.EMPTY);
+                metaData.copy(), null, TbMsgDataType.JSON, data, null, null, null, null, TbMsgCallback.EMPTY);
     }
 
     public static TbMsg newMsg(String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data) {
         return new TbMsg(null, UUID.randomUUID(), System.currentTimeMillis(), type, originator, customerId,
-                metaData.copy(), dataType, data, null, null, null, TbMsgCallback.EMPTY);
+                metaData.copy(), null, dataType, data, null, null, null, null, TbMsgCallback.EMPTY);
     }
 
     public static TbMsg newMsg(String type, EntityId originator, TbMsgMetaData metaData, TbMsgDataType dataType, String data) {
@@ -109,56 +151,59 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg newMsg(String type, EntityId originator, TbMsgMetaData metaData, TbMsgDataType dataType, String data, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
         return new TbMsg(null, UUID.randomUUID(), System.currentTimeMillis(), type, originator, null,
-                metaData.copy(), dataType, data, ruleChainId, ruleNodeId, null, TbMsgCallback.EMPTY);
+                metaData.copy(), null, dataType, data, null, ruleChainId, ruleNodeId, null, TbMsgCallback.EMPTY);
     }
 
     public static TbMsg newMsg(String type, EntityId originator, TbMsgMetaData metaData, String data, TbMsgCallback callback) {
         return new TbMsg(null, UUID.randomUUID(), System.currentTimeMillis(), type, originator, null,
-                metaData.copy(), TbMsgDataType.JSON, data, null, null, null, callback);
+                metaData.copy(), null, TbMsgDataType.JSON, data, null, null, null, null, callback);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, String type, EntityId originator, TbMsgMetaData metaData, String data) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, type, originator, tbMsg.customerId, metaData.copy(), tbMsg.dataType,
-                data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, type, originator, tbMsg.customerId, metaData.copy(), null, tbMsg.dataType,
+                data, null, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.callback);
     }
 
     public static TbMsg transformMsgData(TbMsg tbMsg, String data) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.metaDataBytes, tbMsg.dataType,
+                data, null, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, TbMsgMetaData metadata) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata.copy(), tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, metadata.copy(), null, tbMsg.dataType,
+                tbMsg.data, tbMsg.dataBytes, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, CustomerId customerId) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.metaDataBytes, tbMsg.dataType,
+                tbMsg.data, tbMsg.dataBytes, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId) {
-        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.metaDataBytes, tbMsg.dataType,
+                tbMsg.data, tbMsg.dataBytes, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, String queueName) {
-        return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.metaDataBytes, tbMsg.dataType,
+                tbMsg.data, tbMsg.dataBytes, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId, String queueName) {
-        return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+        return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.metaDataBytes, tbMsg.dataType,
+                tbMsg.data, tbMsg.dataBytes, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
     }
 
     //used for enqueueForTellNext
     public static TbMsg newMsg(TbMsg tbMsg, String queueName, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
-        return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, tbMsg.getMetaData().copy(),
-                tbMsg.getDataType(), tbMsg.getData(), ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
+        TbMsgMetaData metaData = tbMsg.metaData;
+        return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId,
+                metaData != null ? metaData.copy() : null, tbMsg.metaDataBytes,
+                tbMsg.getDataType(), tbMsg.data, tbMsg.dataBytes, ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
     }
 
-    private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
+    private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId,
+                  TbMsgMetaData metaData, ByteString metaDataBytes, TbMsgDataType dataType, String data, ByteString dataBytes,
                   RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback) {
         this.id = id;
         this.queueName = queueName;
@@ -179,8 +224,10 @@ public final class TbMsg implements Serializable {
             this.customerId = customerId;
         }
         this.metaData = metaData;
+        this.metaDataBytes = metaData == null ? metaDataBytes : null;
         this.dataType = dataType;
         this.data = data;
+        this.dataBytes = data == null ? dataBytes : null;
         this.ruleChainId = ruleChainId;
         this.ruleNodeId = ruleNodeId;
         this.ctx = ctx != null ? ctx : new TbMsgProcessingCtx();
@@ -192,7 +239,7 @@ public final class TbMsg implements Serializable {
     }
 
     public static ByteString toByteString(TbMsg msg) {
-        return ByteString.copyFrom(toByteArray(msg));
+        return UnsafeByteOperations.unsafeWrap(toByteArray(msg));
     }
 
     public static byte[] toByteArray(TbMsg msg) {
@@ -219,63 +266,219 @@ public final class TbMsg implements Serializable {
             builder.setRuleNodeIdLSB(msg.getRuleNodeId().getId().getLeastSignificantBits());
         }
 
-        if (msg.getMetaData() != null) {
-            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(msg.getMetaData().getData()).build());
+        TbMsgMetaData metaData = msg.metaData;
+        ByteString metaDataBytes = metaData == null ? msg.metaDataBytes : null;
+        if (metaData != null) {
+            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(metaData.getData()).build());
         }
 
         builder.setDataType(msg.getDataType().ordinal());
-        builder.setData(msg.getData());
+        String data = msg.data;
+        ByteString dataBytes = data == null ? msg.dataBytes : null;
+        if (dataBytes == null) {
+            builder.setData(data);
+        }
 
         builder.setCtx(msg.ctx.toProto());
-        return builder.build().toByteArray();
+        if (metaDataBytes == null && dataBytes == null) {
+            return builder.build().toByteArray();
+        }
+        return toByteArray(builder.build(), metaDataBytes, dataBytes);
+    }
+
+    // Fields may be written in any order, so the encoded metadata and data are appended as is
+    private static byte[] toByteArray(MsgProtos.TbMsgProto proto, ByteString metaDataBytes, ByteString dataBytes) {
+        int size = proto.getSerializedSize();
+        if (metaDataBytes != null) {
+            size += CodedOutputStream.computeBytesSize(MsgProtos.TbMsgProto.METADATA_FIELD_NUMBER, metaDataBytes);
+        }
+        if (dataBytes != null) {
+            size += CodedOutputStream.computeBytesSize(MsgProtos.TbMsgProto.DATA_FIELD_NUMBER, dataBytes);
+        }
+        byte[] result = new byte[size];
+        CodedOutputStream output = CodedOutputStream.newInstance(result);
+        try {
+            proto.writeTo(output);
+            if (metaDataBytes != null) {
+                output.writeBytes(MsgProtos.TbMsgProto.METADATA_FIELD_NUMBER, metaDataBytes);
+            }
+            if (dataBytes != null) {
+                output.writeBytes(MsgProtos.TbMsgProto.DATA_FIELD_NUMBER, dataBytes);
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize TbMsg", e);
+        }
+        return result;
     }
 
     public static TbMsg fromBytes(String queueName, byte[] data, TbMsgCallback callback) {
+        return fromBytes(queueName, UnsafeByteOperations.unsafeWrap(data), callback);
+    }
+
+    /**
+     * Decodes the message fields used for routing. The metadata and data are kept encoded, without copying,
+     * until first accessed. The byte string must not be modified while the message is in use.
+     */
+    public static TbMsg fromBytes(String queueName, ByteString data, TbMsgCallback callback) {
         try {
-            MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(data);
-            TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
-            EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+            CodedInputStream input = data.newCodedInput();
+            input.enableAliasing(true);
+            String id = "";
+            String type = "";
+            String entityType = "";
+            long entityIdMSB = 0L;
+            long entityIdLSB = 0L;
+            long customerIdMSB = 0L;
+            long customerIdLSB = 0L;
+            long ruleChainIdMSB = 0L;
+            long ruleChainIdLSB = 0L;
+            long ruleNodeIdMSB = 0L;
+            long ruleNodeIdLSB = 0L;
+            long ts = 0L;
+            int ruleNodeExecCounter = 0;
+            int dataTypeOrdinal = 0;
+            ByteString metaDataBytes = ByteString.EMPTY;
+            ByteString dataBytes = ByteString.EMPTY;
+            MsgProtos.TbMsgProcessingCtxProto ctxProto = null;
+            boolean done = false;
+            while (!done) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        done = true;
+                        break;
+                    case ID_TAG:
+                        id = input.readStringRequireUtf8();
+                        break;
+                    case TYPE_TAG:
+                        type = input.readStringRequireUtf8();
+                        break;
+                    case ENTITY_TYPE_TAG:
+                        entityType = input.readStringRequireUtf8();
+                        break;
+                    case ENTITY_ID_MSB_TAG:
+                        entityIdMSB = input.readInt64();
+                        break;
+                    case ENTITY_ID_LSB_TAG:
+                        entityIdLSB = input.readInt64();
+                        break;
+                    case RULE_CHAIN_ID_MSB_TAG:
+                        ruleChainIdMSB = input.readInt64();
+                        break;
+                    case RULE_CHAIN_ID_LSB_TAG:
+                        ruleChainIdLSB = input.readInt64();
+                        break;
+                    case RULE_NODE_ID_MSB_TAG:
+                        ruleNodeIdMSB = input.readInt64();
+                        break;
+                    case RULE_NODE_ID_LSB_TAG:
+                        ruleNodeIdLSB = input.readInt64();
+                        break;
+                    case METADATA_TAG:
+                        // Repeated occurrences of a message field are merged, same as the concatenation of their bytes
+                        metaDataBytes = metaDataBytes.concat(input.readBytes());
+                        break;
+                    case DATA_TYPE_TAG:
+                        dataTypeOrdinal = input.readInt32();
+                        break;
+                    case DATA_TAG:
+                        dataBytes = input.readBytes();
+                        break;
+                    case TS_TAG:
+                        ts = input.readInt64();
+                        break;
+                    case RULE_NODE_EXEC_COUNTER_TAG:
+                        ruleNodeExecCounter = input.readInt32();
+                        break;
+                    case CUSTOMER_ID_MSB_TAG:
+                        customerIdMSB = input.readInt64();
+                        break;
+                    case CUSTOMER_ID_LSB_TAG:
+                        customerIdLSB = input.readInt64();
+                        break;
+                    case CTX_TAG:
+                        MsgProtos.TbMsgProcessingCtxProto.Builder ctxBuilder = ctxProto != null ?
+                                ctxProto.toBuilder() : MsgProtos.TbMsgProcessingCtxProto.newBuilder();
+                        input.readMessage(ctxBuilder, ExtensionRegistryLite.getEmptyRegistry());
+                        ctxProto = ctxBuilder.build();
+                        break;
+                    default:
+                        if (!input.skipField(tag)) {
+                            done = true;
+                        }
+                        break;
+                }
+            }
+            EntityId entityId = EntityIdFactory.getByTypeAndUuid(entityType, new UUID(entityIdMSB, entityIdLSB));
             CustomerId customerId = null;
             RuleChainId ruleChainId = null;
             RuleNodeId ruleNodeId = null;
-            if (proto.getCustomerIdMSB() != 0L && proto.getCustomerIdLSB() != 0L) {
-                customerId = new CustomerId(new UUID(proto.getCustomerIdMSB(), proto.getCustomerIdLSB()));
+            if (customerIdMSB != 0L && customerIdLSB != 0L) {
+                customerId = new CustomerId(new UUID(customerIdMSB, customerIdLSB));
             }
-            if (proto.getRuleChainIdMSB() != 0L && proto.getRuleChainIdLSB() != 0L) {
-                ruleChainId = new RuleChainId(new UUID(proto.getRuleChainIdMSB(), proto.getRuleChainIdLSB()));
+            if (ruleChainIdMSB != 0L && ruleChainIdLSB != 0L) {
+                ruleChainId = new RuleChainId(new UUID(ruleChainIdMSB, ruleChainIdLSB));
             }
-            if (proto.getRuleNodeIdMSB() != 0L && proto.getRuleNodeIdLSB() != 0L) {
-                ruleNodeId = new RuleNodeId(new UUID(proto.getRuleNodeIdMSB(), proto.getRuleNodeIdLSB()));
+            if (ruleNodeIdMSB != 0L && ruleNodeIdLSB != 0L) {
+                ruleNodeId = new RuleNodeId(new UUID(ruleNodeIdMSB, ruleNodeIdLSB));
             }
 
             TbMsgProcessingCtx ctx;
-            if (proto.hasCtx()) {
-                ctx = TbMsgProcessingCtx.fromProto(proto.getCtx());
+            if (ctxProto != null) {
+                ctx = TbMsgProcessingCtx.fromProto(ctxProto);
             } else {
                 // Backward compatibility with unprocessed messages fetched from queue after update.
-                ctx = new TbMsgProcessingCtx(proto.getRuleNodeExecCounter());
+                ctx = new TbMsgProcessingCtx(ruleNodeExecCounter);
             }
 
-            TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
-            return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), proto.getType(), entityId, customerId,
-                    metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, ctx, callback);
-        } catch (InvalidProtocolBufferException e) {
+            TbMsgDataType dataType = TbMsgDataType.values()[dataTypeOrdinal];
+            return new TbMsg(queueName, UUID.fromString(id), ts, type, entityId, customerId,
+                    null, metaDataBytes, dataType, null, dataBytes, ruleChainId, ruleNodeId, ctx, callback);
+        } catch (IOException e) {
             throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
         }
     }
 
+    public TbMsgMetaData getMetaData() {
+        TbMsgMetaData result = metaData;
+        if (result == null) {
+            synchronized (this) {
+                result = metaData;
+                if (result == null) {
+                    try {
+                        result = new TbMsgMetaData(MsgProtos.TbMsgMetaDataProto.parseFrom(metaDataBytes).getDataMap());
+                    } catch (InvalidProtocolBufferException e) {
+                        throw new IllegalStateException("Could not parse protobuf for TbMsg metadata", e);
+                    }
+                    metaData = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public String getData() {
+        String result = data;
+        if (result == null && dataBytes != null) {
+            result = dataBytes.toStringUtf8();
+            data = result;
+        }
+        return result;
+    }
+
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId) {
         return copyWithRuleChainId(ruleChainId, this.id);
     }
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback);
+                this.metaData, this.metaDataBytes, this.dataType, this.data, this.dataBytes, ruleChainId, null, this.ctx, callback);
     }
 
     public TbMsg copyWithRuleNodeId(RuleChainId ruleChainId, RuleNodeId ruleNodeId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback);
+                this.metaData, this.metaDataBytes, this.dataType, this.data, this.dataBytes, ruleChainId, ruleNodeId, this.ctx, callback);
     }
 
     public TbMsgCallback getCallback() {
@@ -304,7 +507,7 @@ public final class TbMsg implements Serializable {
     }
 
     public long getMetaDataTs() {
-        String tsStr = metaData.getValue("ts");
+        String tsStr = getMetaData().getValue("ts");
         if (!StringUtils.isEmpty(tsStr)) {
             try {
                 return Long.parseLong(tsStr);
@@ -313,4 +516,5 @@ public final class TbMsg implements Serializable {
         }
         return ts;
     }
+
 }
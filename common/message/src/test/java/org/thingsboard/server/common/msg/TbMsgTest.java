@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TbMsgTest {
+
+    private static final String DATA = "{\"temperature\":42,\"humidity\":\"high\"}";
+
+    @Test
+    public void testFromBytesDecodesAllFields() throws Exception {
+        TbMsg msg = newMsg();
+
+        TbMsg result = TbMsg.fromBytes("Main", TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+
+        assertThat(result.getQueueName()).isEqualTo("Main");
+        assertThat(result.getId()).isEqualTo(msg.getId());
+        assertThat(result.getTs()).isEqualTo(msg.getTs());
+        assertThat(result.getType()).isEqualTo(msg.getType());
+        assertThat(result.getOriginator()).isEqualTo(msg.getOriginator());
+        assertThat(result.getCustomerId()).isEqualTo(msg.getCustomerId());
+        assertThat(result.getRuleChainId()).isEqualTo(msg.getRuleChainId());
+        assertThat(result.getRuleNodeId()).isEqualTo(msg.getRuleNodeId());
+        assertThat(result.getDataType()).isEqualTo(msg.getDataType());
+        assertThat(result.getMetaData()).isEqualTo(msg.getMetaData());
+        assertThat(result.getData()).isEqualTo(DATA);
+        assertThat(result.getMetaDataTs()).isEqualTo(1645112691407L);
+    }
+
+    @Test
+    public void testUntouchedMessageIsWrittenBackUnchanged() throws Exception {
+        byte[] bytes = TbMsg.toByteArray(newMsg());
+
+        TbMsg result = TbMsg.fromBytes("Main", bytes, TbMsgCallback.EMPTY);
+
+        assertThat(MsgProtos.TbMsgProto.parseFrom(TbMsg.toByteArray(result))).isEqualTo(MsgProtos.TbMsgProto.parseFrom(bytes));
+    }
+
+    @Test
+    public void testChangedMetaDataIsSerialized() {
+        TbMsg result = TbMsg.fromBytes("Main", TbMsg.toByteArray(newMsg()), TbMsgCallback.EMPTY);
+        result.getMetaData().putValue("deviceName", "Changed Device");
+
+        TbMsg copy = TbMsg.fromBytes("Main", TbMsg.toByteArray(result), TbMsgCallback.EMPTY);
+
+        assertThat(copy.getMetaData().getValue("deviceName")).isEqualTo("Changed Device");
+        assertThat(copy.getMetaData().getValue("deviceType")).isEqualTo("default");
+    }
+
+    @Test
+    public void testTransformedMessageKeepsEncodedPayload() {
+        TbMsg result = TbMsg.fromBytes("Main", TbMsg.toByteArray(newMsg()), TbMsgCallback.EMPTY);
+        RuleChainId ruleChainId = new RuleChainId(UUID.randomUUID());
+
+        TbMsg next = TbMsg.newMsg(result, "HighPriority", ruleChainId, null);
+        TbMsg transformed = TbMsg.transformMsgData(result, "{}");
+        TbMsg copy = TbMsg.fromBytes("HighPriority", TbMsg.toByteArray(next), TbMsgCallback.EMPTY);
+
+        assertThat(copy.getRuleChainId()).isEqualTo(ruleChainId);
+        assertThat(copy.getMetaData()).isEqualTo(result.getMetaData());
+        assertThat(copy.getData()).isEqualTo(DATA);
+        assertThat(transformed.getMetaData()).isEqualTo(result.getMetaData());
+        assertThat(transformed.getData()).isEqualTo("{}");
+    }
+
+    @Test
+    public void testFromBytesWithEmptyMetaDataAndData() {
+        TbMsg msg = TbMsg.newMsg("Main", "POST_ATTRIBUTES_REQUEST", new DeviceId(UUID.randomUUID()), null,
+                new TbMsgMetaData(), "", null, null);
+
+        TbMsg result = TbMsg.fromBytes("Main", TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+
+        assertThat(result.getCustomerId()).isNull();
+        assertThat(result.getRuleChainId()).isNull();
+        assertThat(result.getMetaData().getData()).isEmpty();
+        assertThat(result.getData()).isEmpty();
+    }
+
+    private static TbMsg newMsg() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Test Device");
+        metaData.putValue("deviceType", "default");
+        metaData.putValue("ts", "1645112691407");
+        return TbMsg.newMsg("Main", "POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), new CustomerId(UUID.randomUUID()),
+                metaData, DATA, new RuleChainId(UUID.randomUUID()), new RuleNodeId(UUID.randomUUID()));
+    }
+}
@@ -17,46 +17,68 @@ package org.thingsboard.server.queue.kafka;
 
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueCommitPosition;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueuePositionalConsumer;
 import org.thingsboard.server.queue.common.AbstractTbQueueConsumerTemplate;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
  * Created by ashvayka on 24.09.18.
  */
 @Slf4j
-public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<String, byte[]>, T> {
+public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQueueConsumerTemplate<ConsumerRecord<String, byte[]>, T>
+        implements TbQueuePositionalConsumer<T> {
 
     private final TbQueueAdmin admin;
-    private final KafkaConsumer<String, byte[]> consumer;
+    private final Consumer<String, byte[]> consumer;
     private final TbKafkaDecoder<T> decoder;
 
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
 
+    private final TbKafkaConsumerTuner tuner;
+    // Fetched records that are not returned yet and the offsets of the returned ones, used if the poll size is tuned
+    private final Deque<ConsumerRecord<String, byte[]>> pendingRecords = new ArrayDeque<>();
+    private final Map<TopicPartition, OffsetAndMetadata> polledOffsets = new HashMap<>();
+    private boolean lastFetchFull;
+    private int lastPollSize;
+    private long lastPollTs;
+
+    private volatile TbKafkaCommitPosition lastPollPosition;
+
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
                                     String clientId, String groupId, String topic,
                                     TbQueueAdmin admin, TbKafkaConsumerStatsService statsService) {
-        super(topic);
-        Properties props = settings.toConsumerProps(topic);
-        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
-        if (groupId != null) {
-            props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-        }
+        this(topic, new KafkaConsumer<>(toConsumerProps(settings, clientId, groupId, topic)), decoder, groupId,
+                admin, statsService, settings.createConsumerTuner(topic));
+    }
 
+    TbKafkaConsumerTemplate(String topic, Consumer<String, byte[]> consumer, TbKafkaDecoder<T> decoder, String groupId,
+                            TbQueueAdmin admin, TbKafkaConsumerStatsService statsService, TbKafkaConsumerTuner tuner) {
+        super(topic);
         this.statsService = statsService;
         this.groupId = groupId;
 
@@ -65,8 +87,18 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         }
 
         this.admin = admin;
-        this.consumer = new KafkaConsumer<>(props);
+        this.consumer = consumer;
         this.decoder = decoder;
+        this.tuner = tuner;
+    }
+
+    private static Properties toConsumerProps(TbKafkaSettings settings, String clientId, String groupId, String topic) {
+        Properties props = settings.toConsumerProps(topic);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        if (groupId != null) {
+            props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        }
+        return props;
     }
 
     @Override
@@ -74,9 +106,25 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         if (!topicNames.isEmpty()) {
             topicNames.forEach(admin::createTopicIfNotExists);
             log.info("subscribe topics {}", topicNames);
-            consumer.subscribe(topicNames);
+            if (tuner != null) {
+                clearPendingRecords();
+                consumer.subscribe(topicNames, new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        pendingRecords.removeIf(record -> partitions.contains(new TopicPartition(record.topic(), record.partition())));
+                        partitions.forEach(polledOffsets::remove);
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    }
+                });
+            } else {
+                consumer.subscribe(topicNames);
+            }
         } else {
             log.info("unsubscribe due to empty topic list");
+            clearPendingRecords();
             consumer.unsubscribe();
         }
     }
@@ -88,20 +136,62 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
         log.trace("poll topic {} maxDuration {}", getTopic(), durationInMillis);
 
-        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
+        List<ConsumerRecord<String, byte[]>> recordList;
+        if (tuner != null) {
+            recordList = pollTuned(durationInMillis);
+        } else {
+            ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
+            recordList = records.isEmpty() ? Collections.emptyList() : new ArrayList<>(256);
+            records.forEach(recordList::add);
+        }
 
         stopWatch.stop();
         log.trace("poll topic {} took {}ms", getTopic(), stopWatch.getTotalTimeMillis());
 
-        if (records.isEmpty()) {
+        if (recordList.isEmpty()) {
+            lastPollPosition = null;
             return Collections.emptyList();
         } else {
-            List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
-            records.forEach(recordList::add);
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            recordList.forEach(record -> offsets.merge(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1),
+                    (a, b) -> a.offset() >= b.offset() ? a : b));
+            if (tuner != null) {
+                polledOffsets.putAll(offsets);
+            }
+            lastPollPosition = new TbKafkaCommitPosition(offsets);
             return recordList;
         }
     }
 
+    /**
+     * Returns up to the tuned number of records. The rest of the fetched records is returned by the next polls
+     * before fetching the new ones, so the processing time of the previous poll is known when the size is chosen.
+     */
+    private List<ConsumerRecord<String, byte[]>> pollTuned(long durationInMillis) {
+        if (lastPollSize > 0) {
+            tuner.onProcessed(lastPollSize, lastFetchFull || !pendingRecords.isEmpty(), System.currentTimeMillis() - lastPollTs);
+        }
+        if (pendingRecords.isEmpty()) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
+            records.forEach(pendingRecords::add);
+            lastFetchFull = records.count() >= tuner.getMaxPollRecords();
+        }
+        int size = Math.min(tuner.getPollRecords(), pendingRecords.size());
+        List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recordList.add(pendingRecords.poll());
+        }
+        lastPollSize = size;
+        lastPollTs = System.currentTimeMillis();
+        return recordList;
+    }
+
+    private void clearPendingRecords() {
+        pendingRecords.clear();
+        polledOffsets.clear();
+        lastPollSize = 0;
+    }
+
     @Override
     public T decode(ConsumerRecord<String, byte[]> record) throws IOException {
         return decoder.decode(new KafkaTbQueueMsg(record));
@@ -109,13 +199,37 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
     @Override
     protected void doCommit() {
-        consumer.commitSync();
+        if (tuner != null) {
+            // the consumer position includes the pending records, so only the returned ones are committed
+            if (!polledOffsets.isEmpty()) {
+                consumer.commitSync(new HashMap<>(polledOffsets));
+                polledOffsets.clear();
+            }
+        } else {
+            consumer.commitSync();
+        }
+    }
+
+    @Override
+    public TbQueueCommitPosition getCommitPosition() {
+        return lastPollPosition;
+    }
+
+    @Override
+    public void commit(TbQueueCommitPosition position) {
+        consumerLock.lock();
+        try {
+            consumer.commitSync(((TbKafkaCommitPosition) position).getOffsets());
+        } finally {
+            consumerLock.unlock();
+        }
     }
 
     @Override
     protected void doUnsubscribe() {
         log.info("unsubscribe topic and close consumer for topic {}", getTopic());
         if (consumer != null) {
+            clearPendingRecords();
             consumer.unsubscribe();
             consumer.close();
         }
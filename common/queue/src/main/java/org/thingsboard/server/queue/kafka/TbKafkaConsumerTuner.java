@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the number of records returned by a poll of the consumer, between the min and the configured max.poll.records.
+ * The number is halved if the processing of the polled records took longer than the target time
+ * and increased by the min number while there are more records to process and the processing is fast.
+ */
+@Slf4j
+public class TbKafkaConsumerTuner {
+
+    static final String POLL_RECORDS_KEY = "kafka.adaptive.pollRecords";
+
+    private final String topic;
+    @Getter
+    private final int minPollRecords;
+    @Getter
+    private final int maxPollRecords;
+    private final long targetProcessingTimeMs;
+    private final AtomicInteger pollRecords;
+
+    public TbKafkaConsumerTuner(String topic, int minPollRecords, int maxPollRecords, long targetProcessingTimeMs, StatsFactory statsFactory) {
+        this.topic = topic;
+        this.minPollRecords = Math.max(1, Math.min(minPollRecords, maxPollRecords));
+        this.maxPollRecords = maxPollRecords;
+        this.targetProcessingTimeMs = targetProcessingTimeMs;
+        AtomicInteger pollRecords = new AtomicInteger(maxPollRecords);
+        if (statsFactory != null) {
+            pollRecords = statsFactory.createGauge(POLL_RECORDS_KEY, pollRecords, "topic", topic);
+        }
+        this.pollRecords = pollRecords;
+    }
+
+    public int getPollRecords() {
+        return pollRecords.get();
+    }
+
+    /**
+     * @param backlog true if there were more records available than returned by the poll
+     */
+    public void onProcessed(int records, boolean backlog, long processingTimeMs) {
+        int current = pollRecords.get();
+        int next = current;
+        if (processingTimeMs > targetProcessingTimeMs) {
+            next = Math.max(minPollRecords, current / 2);
+        } else if (backlog && records >= current && processingTimeMs < targetProcessingTimeMs / 2) {
+            next = Math.min(maxPollRecords, current + minPollRecords);
+        }
+        if (next != current) {
+            log.trace("[{}] Poll records changed from {} to {}, processing of {} records took {}ms", topic, current, next, records, processingTimeMs);
+            pollRecords.set(next);
+        }
+    }
+
+}
@@ -19,10 +19,14 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueAdmin;
@@ -30,9 +34,13 @@ import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -41,7 +49,10 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueueProducer<T> {
 
-    private final KafkaProducer<String, byte[]> producer;
+    private static final String PRODUCER_METRICS_GROUP = "producer-metrics";
+    private static final String REQUEST_LATENCY_AVG_METRIC = "request-latency-avg";
+
+    private final Producer<String, byte[]> producer;
 
     @Getter
     private final String defaultTopic;
@@ -53,19 +64,43 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
 
     private final Set<TopicPartitionInfo> topics;
 
+    private final TbKafkaProducerTuner tuner;
+    // Sends the records before the configured linger expires if the tuned linger is lower
+    private final ExecutorService flushExecutor;
+    private final AtomicInteger unflushedRecords = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private volatile boolean stopped;
+
     @Builder
     private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin) {
-        Properties props = settings.toProducerProps();
+        this(new KafkaProducer<>(toProducerProps(settings, clientId)), settings, defaultTopic, clientId, admin, settings.createProducerTuner(clientId));
+    }
 
-        if (!StringUtils.isEmpty(clientId)) {
-            props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
-        }
+    TbKafkaProducerTemplate(Producer<String, byte[]> producer, TbKafkaSettings settings, String defaultTopic, String clientId,
+                            TbQueueAdmin admin, TbKafkaProducerTuner tuner) {
         this.settings = settings;
 
-        this.producer = new KafkaProducer<>(props);
+        this.producer = producer;
         this.defaultTopic = defaultTopic;
         this.admin = admin;
         topics = ConcurrentHashMap.newKeySet();
+
+        this.tuner = tuner;
+        if (tuner != null) {
+            flushExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("kafka-producer-tuner-" + clientId));
+            flushExecutor.execute(this::flushLoop);
+        } else {
+            flushExecutor = null;
+        }
+    }
+
+    private static Properties toProducerProps(TbKafkaSettings settings, String clientId) {
+        Properties props = settings.toProducerProps();
+
+        if (!StringUtils.isEmpty(clientId)) {
+            props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        }
+        return props;
     }
 
     @Override
@@ -94,6 +129,12 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
                     }
                 }
             });
+            // Counted after the record is appended so that a concurrent flush never skips it
+            if (tuner != null && unflushedRecords.getAndIncrement() == 0) {
+                synchronized (flushLock) {
+                    flushLock.notify();
+                }
+            }
         } catch (Exception e) {
             if (callback != null) {
                 callback.onFailure(e);
@@ -112,8 +153,52 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         topics.add(tpi);
     }
 
+    private void flushLoop() {
+        long lastAdjustTs = System.currentTimeMillis();
+        while (!stopped) {
+            try {
+                synchronized (flushLock) {
+                    if (unflushedRecords.get() == 0) {
+                        flushLock.wait(tuner.getAdjustIntervalMs());
+                    }
+                }
+                long lingerMs = tuner.getLingerMs();
+                if (lingerMs > 0) {
+                    Thread.sleep(lingerMs);
+                }
+                if (unflushedRecords.getAndSet(0) > 0 && lingerMs < tuner.getMaxLingerMs()) {
+                    producer.flush();
+                }
+                long ts = System.currentTimeMillis();
+                if (ts - lastAdjustTs >= tuner.getAdjustIntervalMs()) {
+                    tuner.onRequestLatency(getRequestLatencyAvg());
+                    lastAdjustTs = ts;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                log.warn("[{}] Failed to flush producer", defaultTopic, e);
+            }
+        }
+    }
+
+    private double getRequestLatencyAvg() {
+        for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+            MetricName name = entry.getKey();
+            if (REQUEST_LATENCY_AVG_METRIC.equals(name.name()) && PRODUCER_METRICS_GROUP.equals(name.group())) {
+                Object value = entry.getValue().metricValue();
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
     @Override
     public void stop() {
+        stopped = true;
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
         if (producer != null) {
             producer.close();
         }
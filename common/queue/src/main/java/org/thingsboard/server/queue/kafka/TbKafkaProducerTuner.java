@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the linger of the producer, between the min and the configured linger.ms.
+ * The linger is doubled while the produce request latency is above the target, so more records are sent in a request,
+ * and halved while it is below the half of the target, so the records are not delayed when the broker is not loaded.
+ */
+@Slf4j
+public class TbKafkaProducerTuner {
+
+    static final String LINGER_MS_KEY = "kafka.adaptive.lingerMs";
+
+    private final String clientId;
+    @Getter
+    private final long minLingerMs;
+    @Getter
+    private final long maxLingerMs;
+    private final long targetRequestLatencyMs;
+    @Getter
+    private final long adjustIntervalMs;
+    private final AtomicLong lingerMs;
+
+    public TbKafkaProducerTuner(String clientId, long minLingerMs, long maxLingerMs, long targetRequestLatencyMs,
+                                long adjustIntervalMs, StatsFactory statsFactory) {
+        this.clientId = clientId;
+        this.minLingerMs = Math.min(minLingerMs, maxLingerMs);
+        this.maxLingerMs = maxLingerMs;
+        this.targetRequestLatencyMs = targetRequestLatencyMs;
+        this.adjustIntervalMs = adjustIntervalMs;
+        AtomicLong lingerMs = new AtomicLong(maxLingerMs);
+        if (statsFactory != null) {
+            lingerMs = statsFactory.createGauge(LINGER_MS_KEY, lingerMs, "clientId", String.valueOf(clientId));
+        }
+        this.lingerMs = lingerMs;
+    }
+
+    public long getLingerMs() {
+        return lingerMs.get();
+    }
+
+    public void onRequestLatency(double requestLatencyMs) {
+        if (Double.isNaN(requestLatencyMs)) {
+            return;
+        }
+        long current = lingerMs.get();
+        long next = current;
+        if (requestLatencyMs > targetRequestLatencyMs) {
+            next = Math.min(maxLingerMs, Math.max(1, current * 2));
+        } else if (requestLatencyMs < targetRequestLatencyMs / 2.0) {
+            next = Math.max(minLingerMs, current / 2);
+        }
+        if (next != current) {
+            log.trace("[{}] Linger changed from {}ms to {}ms, request latency {}ms", clientId, current, next, requestLatencyMs);
+            lingerMs.set(next);
+        }
+    }
+
+}
@@ -26,11 +26,13 @@ import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.TbProperty;
+import org.thingsboard.server.common.stats.StatsFactory;
 
 import java.util.Collections;
 import java.util.List;
@@ -104,6 +106,27 @@ public class TbKafkaSettings {
     @Value("${queue.kafka.confluent.security.protocol}")
     private String securityProtocol;
 
+    @Value("${queue.kafka.adaptive.enabled:false}")
+    private boolean adaptiveEnabled;
+
+    @Value("${queue.kafka.adaptive.min_poll_records:100}")
+    private int adaptiveMinPollRecords;
+
+    @Value("${queue.kafka.adaptive.target_processing_time_ms:1000}")
+    private long adaptiveTargetProcessingTimeMs;
+
+    @Value("${queue.kafka.adaptive.min_linger_ms:0}")
+    private long adaptiveMinLingerMs;
+
+    @Value("${queue.kafka.adaptive.target_request_latency_ms:50}")
+    private long adaptiveTargetRequestLatencyMs;
+
+    @Value("${queue.kafka.adaptive.adjust_interval_ms:1000}")
+    private long adaptiveAdjustIntervalMs;
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
     @Setter
     private List<TbProperty> other;
 
@@ -151,6 +174,27 @@ public class TbKafkaSettings {
         return props;
     }
 
+    /**
+     * @return the tuner of the consumer poll size or null if the adaptive tuning is disabled
+     */
+    public TbKafkaConsumerTuner createConsumerTuner(String topic) {
+        if (!adaptiveEnabled) {
+            return null;
+        }
+        int maxPollRecords = Integer.parseInt(toConsumerProps(topic).get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG).toString());
+        return new TbKafkaConsumerTuner(topic, adaptiveMinPollRecords, maxPollRecords, adaptiveTargetProcessingTimeMs, statsFactory);
+    }
+
+    /**
+     * @return the tuner of the producer linger or null if the adaptive tuning is disabled or there is nothing to tune
+     */
+    public TbKafkaProducerTuner createProducerTuner(String clientId) {
+        if (!adaptiveEnabled || adaptiveMinLingerMs >= lingerMs) {
+            return null;
+        }
+        return new TbKafkaProducerTuner(clientId, adaptiveMinLingerMs, lingerMs, adaptiveTargetRequestLatencyMs, adaptiveAdjustIntervalMs, statsFactory);
+    }
+
     private Properties toProps() {
         Properties props = new Properties();
 
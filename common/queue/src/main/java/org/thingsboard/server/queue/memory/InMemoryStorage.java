@@ -29,4 +29,22 @@ public interface InMemoryStorage {
 
     <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException;
 
+    /**
+     * @return true if the messages are stored serialized, so the messages returned by {@link #get(String)} have to be decoded
+     * and the consumed messages have to be committed.
+     */
+    default boolean isPersistent() {
+        return false;
+    }
+
+    /**
+     * @return the offset right after the messages returned by the last {@link #get(String)} of the topic.
+     */
+    default long getReadOffset(String topic) {
+        return 0L;
+    }
+
+    default void commit(String topic, long offset) {
+    }
+
 }
@@ -15,29 +15,57 @@
  */
 package org.thingsboard.server.queue.memory;
 
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Parser;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
-import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueCommitPosition;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.TbQueuePositionalConsumer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
-public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueConsumer<T> {
+public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueuePositionalConsumer<T> {
+    // messages are removed from the not persistent storage on poll, so there is nothing to commit
+    private static final TbQueueCommitPosition NO_POSITION = new TbQueueCommitPosition() {};
+
     private final InMemoryStorage storage;
+    private final TbQueueMsgDecoder<T> decoder;
     private volatile Set<TopicPartitionInfo> partitions;
     private volatile boolean stopped;
     private volatile boolean subscribed;
 
     public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic) {
+        this(storage, topic, null);
+    }
+
+    /**
+     * @param decoder decodes the messages of the persistent storage, the messages of the not persistent storage are returned as is.
+     */
+    public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic, TbQueueMsgDecoder<T> decoder) {
         this.storage = storage;
         this.topic = topic;
+        this.decoder = decoder;
         stopped = false;
     }
 
+    /**
+     * Decoder that parses the message read from the segmented log directly from the memory-mapped segment.
+     */
+    public static <M extends GeneratedMessageV3> TbQueueMsgDecoder<TbProtoQueueMsg<M>> protoDecoder(Parser<M> parser) {
+        return msg -> new TbProtoQueueMsg<>(msg.getKey(), msg instanceof SegmentedLogQueueMsg ?
+                parser.parseFrom(((SegmentedLogQueueMsg) msg).getDataBuffer()) : parser.parseFrom(msg.getData()), msg.getHeaders());
+    }
+
     private final String topic;
 
     @Override
@@ -79,7 +107,7 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
                         }
                     })
                     .flatMap(List::stream)
-                    .map(msg -> (T) msg).collect(Collectors.toList());
+                    .map(msg -> decode((TbQueueMsg) msg)).collect(Collectors.toList());
             if (messages.size() > 0) {
                 return messages;
             }
@@ -94,8 +122,41 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
         return Collections.emptyList();
     }
 
+    @SuppressWarnings("unchecked")
+    private T decode(TbQueueMsg msg) {
+        if (decoder == null || !storage.isPersistent()) {
+            return (T) msg;
+        }
+        try {
+            return decoder.decode(msg);
+        } catch (InvalidProtocolBufferException e) {
+            log.error("Failed decode record: [{}]", msg);
+            throw new RuntimeException("Failed to decode record: ", e);
+        }
+    }
+
     @Override
     public void commit() {
+        if (subscribed && storage.isPersistent()) {
+            partitions.forEach(tpi -> storage.commit(tpi.getFullTopicName(), storage.getReadOffset(tpi.getFullTopicName())));
+        }
+    }
+
+    @Override
+    public TbQueueCommitPosition getCommitPosition() {
+        if (!subscribed || !storage.isPersistent()) {
+            return NO_POSITION;
+        }
+        Map<String, Long> offsets = new HashMap<>();
+        partitions.forEach(tpi -> offsets.put(tpi.getFullTopicName(), storage.getReadOffset(tpi.getFullTopicName())));
+        return new InMemoryTbQueueCommitPosition(offsets);
+    }
+
+    @Override
+    public void commit(TbQueueCommitPosition position) {
+        if (position instanceof InMemoryTbQueueCommitPosition) {
+            ((InMemoryTbQueueCommitPosition) position).getOffsets().forEach(storage::commit);
+        }
     }
 
     @Override
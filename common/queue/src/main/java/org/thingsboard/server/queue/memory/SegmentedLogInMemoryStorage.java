@@ -0,0 +1,158 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Persistent storage for the single node deployments. Each topic is a segmented log in the memory-mapped files,
+ * so the messages survive restarts and are kept off heap. The messages that are not committed by the consumer
+ * are delivered again after restart.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${queue.in_memory.storage.type:memory}'=='segmented-log'")
+public final class SegmentedLogInMemoryStorage implements InMemoryStorage {
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int maxPollRecords;
+    private final long flushIntervalMs;
+    // topic logs by the directory name
+    private final ConcurrentMap<String, SegmentedLogTopic> topics = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flushExecutor;
+
+    public SegmentedLogInMemoryStorage(@Value("${queue.in_memory.storage.segmented_log.dir:${java.io.tmpdir}/tb-queue}") String dir,
+                                       @Value("${queue.in_memory.storage.segmented_log.segment_size:16777216}") int segmentSize,
+                                       @Value("${queue.in_memory.storage.segmented_log.max_segments:16}") int maxSegments,
+                                       @Value("${queue.in_memory.storage.segmented_log.max_poll_records:1000}") int maxPollRecords,
+                                       @Value("${queue.in_memory.storage.segmented_log.flush_interval_ms:1000}") long flushIntervalMs) {
+        this.dir = Paths.get(dir);
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.maxPollRecords = maxPollRecords;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> dirs = Files.list(dir)) {
+            dirs.filter(Files::isDirectory).forEach(topicDir -> getTopicByDirName(topicDir.getFileName().toString()));
+        }
+        if (flushIntervalMs > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("in-memory-queue-flush"));
+            flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Using segmented log storage in [{}]", dir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+        flush();
+    }
+
+    @Override
+    public void printStats() {
+        if (log.isDebugEnabled()) {
+            topics.forEach((topic, topicLog) -> {
+                if (topicLog.getLag() > 0) {
+                    log.debug("[{}] Queue Size [{}], Segments [{}]", topic, topicLog.getLag(), topicLog.getSegmentsCount());
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getLagTotal() {
+        return topics.values().stream().mapToInt(SegmentedLogTopic::getLag).sum();
+    }
+
+    @Override
+    public boolean put(String topic, TbQueueMsg msg) {
+        return getTopic(topic).append(msg);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic) {
+        return (List<T>) getTopic(topic).read(maxPollRecords);
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public long getReadOffset(String topic) {
+        return getTopic(topic).getReadOffset();
+    }
+
+    @Override
+    public void commit(String topic, long offset) {
+        getTopic(topic).commit(offset);
+    }
+
+    private SegmentedLogTopic getTopic(String topic) {
+        return getTopicByDirName(topic.replaceAll("[^a-zA-Z0-9._-]", "_"));
+    }
+
+    private SegmentedLogTopic getTopicByDirName(String dirName) {
+        return topics.computeIfAbsent(dirName, name -> {
+            try {
+                return new SegmentedLogTopic(name, dir.resolve(name), segmentSize, maxSegments);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open topic " + name, e);
+            }
+        });
+    }
+
+    private void flush() {
+        topics.forEach((topic, topicLog) -> {
+            try {
+                topicLog.flush();
+            } catch (Exception e) {
+                log.warn("[{}] Failed to flush topic", topic, e);
+            }
+        });
+    }
+
+}
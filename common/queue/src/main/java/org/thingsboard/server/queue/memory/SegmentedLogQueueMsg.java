@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Message read from the segmented log. The data is a read-only view of the memory-mapped segment,
+ * so it is copied only if requested as a byte array.
+ */
+class SegmentedLogQueueMsg implements TbQueueMsg {
+
+    private final UUID key;
+    private final DefaultTbQueueMsgHeaders headers;
+    private final ByteBuffer data;
+
+    SegmentedLogQueueMsg(UUID key, DefaultTbQueueMsgHeaders headers, ByteBuffer data) {
+        this.key = key;
+        this.headers = headers;
+        this.data = data;
+    }
+
+    @Override
+    public UUID getKey() {
+        return key;
+    }
+
+    @Override
+    public DefaultTbQueueMsgHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public byte[] getData() {
+        byte[] result = new byte[data.remaining()];
+        data.duplicate().get(result);
+        return result;
+    }
+
+    ByteBuffer getDataBuffer() {
+        return data.duplicate();
+    }
+
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.GeneratedMessageV3;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of a single topic, stored in memory-mapped segment files of a fixed size.
+ * <p>
+ * Offsets are the byte positions of the records in the log: the base offset of the segment, that is also the segment
+ * file name, plus the position of the record in the segment. Each record is prefixed with the length and the checksum
+ * of its body, so the log is scanned on startup and truncated at the first incomplete or corrupted record.
+ * Segments are deleted once all their records are committed. The topic rejects new messages
+ * if the max number of segments is reached and the oldest segment is not consumed yet.
+ */
+@Slf4j
+class SegmentedLogTopic {
+
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "offset";
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+
+    private final String topic;
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Set<Segment> unflushedSegments = new LinkedHashSet<>();
+    private final MappedByteBuffer offsetBuffer;
+    private final CRC32C checksum = new CRC32C();
+
+    private Segment readSegment;
+    private int readPosition;
+    private long committedOffset;
+    private boolean offsetUnflushed;
+    private boolean full;
+    private volatile int lag;
+
+    SegmentedLogTopic(String topic, Path dir, int segmentSize, int maxSegments) throws IOException {
+        this.topic = topic;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(dir);
+        this.offsetBuffer = map(dir.resolve(OFFSET_FILE), Long.BYTES);
+        this.committedOffset = offsetBuffer.getLong(0);
+        recover();
+    }
+
+    synchronized boolean append(TbQueueMsg msg) {
+        GeneratedMessageV3 value = msg instanceof TbProtoQueueMsg ? ((TbProtoQueueMsg<?>) msg).getValue() : null;
+        byte[] data = value == null ? msg.getData() : null;
+        int dataSize = value != null ? value.getSerializedSize() : data.length;
+        List<byte[]> headers = new ArrayList<>();
+        int bodySize = Long.BYTES * 2 + Integer.BYTES + dataSize;
+        for (Map.Entry<String, byte[]> header : msg.getHeaders().getData().entrySet()) {
+            byte[] headerKey = header.getKey().getBytes(StandardCharsets.UTF_8);
+            headers.add(headerKey);
+            headers.add(header.getValue());
+            bodySize += Integer.BYTES * 2 + headerKey.length + header.getValue().length;
+        }
+        int recordSize = RECORD_HEADER_SIZE + bodySize;
+        if (recordSize > segmentSize) {
+            log.warn("[{}] Message of {} bytes exceeds the segment size {}", topic, recordSize, segmentSize);
+            return false;
+        }
+        Segment segment = segments.get(segments.size() - 1);
+        if (segment.writePosition + recordSize > segment.capacity()) {
+            segment = roll();
+            if (segment == null) {
+                return false;
+            }
+        }
+        int position = segment.writePosition;
+        ByteBuffer body = segment.buffer.duplicate();
+        body.position(position + RECORD_HEADER_SIZE);
+        body.limit(position + recordSize);
+        body.putLong(msg.getKey().getMostSignificantBits());
+        body.putLong(msg.getKey().getLeastSignificantBits());
+        body.putInt(headers.size() / 2);
+        for (byte[] bytes : headers) {
+            body.putInt(bytes.length);
+            body.put(bytes);
+        }
+        if (value != null) {
+            try {
+                CodedOutputStream output = CodedOutputStream.newInstance(body);
+                value.writeTo(output);
+                output.flush();
+            } catch (IOException e) {
+                log.warn("[{}] Failed to write message", topic, e);
+                return false;
+            }
+        } else {
+            body.put(data);
+        }
+        body.position(position + RECORD_HEADER_SIZE);
+        checksum.reset();
+        checksum.update(body);
+        // The length is written last, so an incomplete record is never visible
+        segment.buffer.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        segment.buffer.putInt(position, bodySize);
+        segment.writePosition += recordSize;
+        unflushedSegments.add(segment);
+        lag++;
+        return true;
+    }
+
+    synchronized List<TbQueueMsg> read(int maxRecords) {
+        if (lag == 0) {
+            return Collections.emptyList();
+        }
+        List<TbQueueMsg> result = new ArrayList<>(Math.min(lag, maxRecords));
+        Segment segment = null;
+        ByteBuffer buffer = null;
+        while (result.size() < maxRecords && nextReadSegment()) {
+            if (segment != readSegment) {
+                segment = readSegment;
+                buffer = segment.buffer.asReadOnlyBuffer();
+            }
+            buffer.limit(readSegment.capacity());
+            buffer.position(readPosition);
+            int end = readPosition + RECORD_HEADER_SIZE + buffer.getInt();
+            buffer.position(readPosition + RECORD_HEADER_SIZE);
+            UUID key = new UUID(buffer.getLong(), buffer.getLong());
+            int headersCount = buffer.getInt();
+            DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+            for (int i = 0; i < headersCount; i++) {
+                byte[] headerKey = new byte[buffer.getInt()];
+                buffer.get(headerKey);
+                byte[] headerValue = new byte[buffer.getInt()];
+                buffer.get(headerValue);
+                headers.put(new String(headerKey, StandardCharsets.UTF_8), headerValue);
+            }
+            buffer.limit(end);
+            result.add(new SegmentedLogQueueMsg(key, headers, buffer.slice()));
+            readPosition = end;
+            lag--;
+        }
+        nextReadSegment();
+        return result;
+    }
+
+    synchronized long getReadOffset() {
+        return readSegment.baseOffset + readPosition;
+    }
+
+    synchronized void commit(long offset) {
+        if (offset > committedOffset) {
+            committedOffset = offset;
+            offsetBuffer.putLong(0, offset);
+            offsetUnflushed = true;
+            deleteConsumedSegments();
+        }
+    }
+
+    int getLag() {
+        return lag;
+    }
+
+    synchronized int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * Deletes the consumed segments and writes the changes to the disk.
+     */
+    void flush() {
+        List<MappedByteBuffer> buffers;
+        boolean flushOffset;
+        synchronized (this) {
+            deleteConsumedSegments();
+            buffers = unflushedSegments.stream().map(segment -> segment.buffer).collect(Collectors.toList());
+            unflushedSegments.clear();
+            flushOffset = offsetUnflushed;
+            offsetUnflushed = false;
+        }
+        buffers.forEach(MappedByteBuffer::force);
+        if (flushOffset) {
+            offsetBuffer.force();
+        }
+    }
+
+    private boolean nextReadSegment() {
+        while (readPosition >= readSegment.writePosition) {
+            int index = segments.indexOf(readSegment);
+            if (index == segments.size() - 1) {
+                return false;
+            }
+            readSegment = segments.get(index + 1);
+            readPosition = 0;
+        }
+        return true;
+    }
+
+    private Segment roll() {
+        if (segments.size() >= maxSegments) {
+            deleteConsumedSegments();
+        }
+        if (segments.size() >= maxSegments) {
+            if (!full) {
+                log.warn("[{}] Topic is full, {} segments are not consumed yet", topic, segments.size());
+                full = true;
+            }
+            return null;
+        }
+        full = false;
+        Segment last = segments.get(segments.size() - 1);
+        try {
+            Segment segment = openSegment(last.baseOffset + last.capacity(), segmentSize);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            log.warn("[{}] Failed to create segment", topic, e);
+            return null;
+        }
+    }
+
+    private void deleteConsumedSegments() {
+        while (segments.size() > 1) {
+            Segment segment = segments.get(0);
+            if (segment == readSegment || segment.baseOffset + segment.capacity() > committedOffset) {
+                break;
+            }
+            segments.remove(0);
+            unflushedSegments.remove(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("[{}] Failed to delete segment {}", topic, segment.path, e);
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(dir)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(SEGMENT_FILE_SUFFIX)).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+            long size = Files.size(file);
+            Segment segment = openSegment(baseOffset, size > RECORD_HEADER_SIZE && size <= Integer.MAX_VALUE ? (int) size : segmentSize);
+            segment.writePosition = scan(segment);
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(openSegment(committedOffset, segmentSize));
+        }
+        readSegment = segments.get(0);
+        readPosition = 0;
+        for (Segment segment : segments) {
+            if (committedOffset >= segment.baseOffset) {
+                readSegment = segment;
+                readPosition = (int) Math.min(committedOffset - segment.baseOffset, segment.writePosition);
+            }
+        }
+        int count = 0;
+        int position = readPosition;
+        for (int i = segments.indexOf(readSegment); i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            while (position < segment.writePosition) {
+                position += RECORD_HEADER_SIZE + segment.buffer.getInt(position);
+                count++;
+            }
+            position = 0;
+        }
+        lag = count;
+        deleteConsumedSegments();
+        if (count > 0) {
+            log.info("[{}] Recovered {} segments with {} not committed messages", topic, segments.size(), count);
+        }
+    }
+
+    private int scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int bodySize = buffer.getInt(position);
+            if (bodySize <= 0 || bodySize > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE);
+            body.limit(position + RECORD_HEADER_SIZE + bodySize);
+            checksum.reset();
+            checksum.update(body);
+            if ((int) checksum.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + bodySize;
+        }
+        if (position + RECORD_HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) != 0) {
+            log.warn("[{}] Segment {} is truncated at position {} due to incomplete or corrupted record", topic, segment.path, position);
+            // Zeroing the tail prevents the old records from being read again after the truncated part is overwritten
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            unflushedSegments.add(segment);
+        }
+        return position;
+    }
+
+    private Segment openSegment(long baseOffset, int size) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", baseOffset, SEGMENT_FILE_SUFFIX));
+        return new Segment(baseOffset, path, map(path, size));
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static class Segment {
+
+        private final long baseOffset;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        Segment(long baseOffset, Path path, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+    }
+
+}
@@ -97,32 +97,32 @@ public class InMemoryMonolithQueueFactory implements TbCoreQueueFactory, TbRuleE
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToVersionControlServiceMsg>> createToVersionControlMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, vcSettings.getTopic());
+        return new InMemoryTbQueueConsumer<>(storage, vcSettings.getTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToVersionControlServiceMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> createToRuleEngineMsgConsumer(Queue configuration) {
-        return new InMemoryTbQueueConsumer<>(storage, configuration.getTopic());
+        return new InMemoryTbQueueConsumer<>(storage, configuration.getTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToRuleEngineMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToRuleEngineNotificationMsg>> createToRuleEngineNotificationsMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, notificationsTopicService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceInfoProvider.getServiceId()).getFullTopicName());
+        return new InMemoryTbQueueConsumer<>(storage, notificationsTopicService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceInfoProvider.getServiceId()).getFullTopicName(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToRuleEngineNotificationMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToCoreMsg>> createToCoreMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getTopic());
+        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToCoreMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToCoreNotificationMsg>> createToCoreNotificationsMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, notificationsTopicService.getNotificationsTopic(ServiceType.TB_CORE, serviceInfoProvider.getServiceId()).getFullTopicName());
+        return new InMemoryTbQueueConsumer<>(storage, notificationsTopicService.getNotificationsTopic(ServiceType.TB_CORE, serviceInfoProvider.getServiceId()).getFullTopicName(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToCoreNotificationMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.TransportApiRequestMsg>> createTransportApiRequestConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, transportApiSettings.getRequestsTopic());
+        return new InMemoryTbQueueConsumer<>(storage, transportApiSettings.getRequestsTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.TransportApiRequestMsg.parser()));
     }
 
     @Override
@@ -137,12 +137,12 @@ public class InMemoryMonolithQueueFactory implements TbCoreQueueFactory, TbRuleE
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToUsageStatsServiceMsg>> createToUsageStatsServiceMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getUsageStatsTopic());
+        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getUsageStatsTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToUsageStatsServiceMsg.parser()));
     }
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<TransportProtos.ToOtaPackageStateServiceMsg>> createToOtaPackageStateServiceMsgConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getOtaPackageTopic());
+        return new InMemoryTbQueueConsumer<>(storage, coreSettings.getOtaPackageTopic(), InMemoryTbQueueConsumer.protoDecoder(TransportProtos.ToOtaPackageStateServiceMsg.parser()));
     }
 
     @Override
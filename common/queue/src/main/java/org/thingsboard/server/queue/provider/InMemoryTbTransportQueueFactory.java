@@ -66,7 +66,7 @@ public class InMemoryTbTransportQueueFactory implements TbTransportQueueFactory
                 new InMemoryTbQueueProducer<>(storage, transportApiSettings.getRequestsTopic());
 
         InMemoryTbQueueConsumer<TbProtoQueueMsg<TransportApiResponseMsg>> consumerTemplate =
-                new InMemoryTbQueueConsumer<>(storage, transportApiSettings.getResponsesTopic() + "." + serviceInfoProvider.getServiceId());
+                new InMemoryTbQueueConsumer<>(storage, transportApiSettings.getResponsesTopic() + "." + serviceInfoProvider.getServiceId(), InMemoryTbQueueConsumer.protoDecoder(TransportApiResponseMsg.parser()));
 
         DefaultTbQueueRequestTemplate.DefaultTbQueueRequestTemplateBuilder
                 <TbProtoQueueMsg<TransportApiRequestMsg>, TbProtoQueueMsg<TransportApiResponseMsg>> templateBuilder = DefaultTbQueueRequestTemplate.builder();
@@ -102,7 +102,7 @@ public class InMemoryTbTransportQueueFactory implements TbTransportQueueFactory
 
     @Override
     public TbQueueConsumer<TbProtoQueueMsg<ToTransportMsg>> createTransportNotificationsConsumer() {
-        return new InMemoryTbQueueConsumer<>(storage, transportNotificationSettings.getNotificationsTopic() + "." + serviceInfoProvider.getServiceId());
+        return new InMemoryTbQueueConsumer<>(storage, transportNotificationSettings.getNotificationsTopic() + "." + serviceInfoProvider.getServiceId(), InMemoryTbQueueConsumer.protoDecoder(ToTransportMsg.parser()));
     }
 
     @Override
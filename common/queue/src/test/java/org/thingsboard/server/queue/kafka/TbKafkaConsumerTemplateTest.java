@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TbKafkaConsumerTemplateTest {
+
+    private static final String TOPIC = "tb_core.0";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    private static final int MIN_POLL_RECORDS = 2;
+    private static final int MAX_POLL_RECORDS = 10;
+    private static final long TARGET_PROCESSING_TIME_MS = 1000;
+
+    private MockConsumer<String, byte[]> consumer;
+    private TbKafkaConsumerTuner tuner;
+    private TbKafkaConsumerTemplate<TbQueueMsg> template;
+
+    @Before
+    public void before() {
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        tuner = new TbKafkaConsumerTuner(TOPIC, MIN_POLL_RECORDS, MAX_POLL_RECORDS, TARGET_PROCESSING_TIME_MS, null);
+        template = new TbKafkaConsumerTemplate<>(TOPIC, consumer, msg -> msg, null, mock(TbQueueAdmin.class), null, tuner);
+        template.subscribe();
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(Collections.singletonList(PARTITION));
+            consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+            for (int i = 0; i < MAX_POLL_RECORDS; i++) {
+                consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, i, UUID.randomUUID().toString(), new byte[]{(byte) i}));
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        template.unsubscribe();
+    }
+
+    @Test
+    public void givenTunedPollSize_whenPoll_thenReturnFetchedRecordsInParts() {
+        tuner.onProcessed(MAX_POLL_RECORDS, true, TARGET_PROCESSING_TIME_MS + 1);
+        assertThat(tuner.getPollRecords()).isEqualTo(MAX_POLL_RECORDS / 2);
+
+        assertThat(values(template.poll(1))).containsExactly(0, 1, 2, 3, 4);
+        template.commit();
+        assertThat(consumer.committed(Collections.singleton(PARTITION)).get(PARTITION).offset()).isEqualTo(5);
+
+        assertThat(values(template.poll(1))).containsExactly(5, 6, 7, 8, 9);
+        assertThat(tuner.getPollRecords()).as("increased due to fast processing of the backlog").isEqualTo(MAX_POLL_RECORDS / 2 + MIN_POLL_RECORDS);
+        template.commit();
+        assertThat(consumer.committed(Collections.singleton(PARTITION)).get(PARTITION).offset()).isEqualTo(10);
+    }
+
+    @Test
+    public void givenCommitPosition_whenCommit_thenCommitOnlyReturnedRecords() {
+        tuner.onProcessed(MAX_POLL_RECORDS, true, TARGET_PROCESSING_TIME_MS + 1);
+
+        template.poll(1);
+        TbKafkaCommitPosition position = (TbKafkaCommitPosition) template.getCommitPosition();
+        template.poll(1);
+        template.commit(position);
+
+        assertThat(consumer.committed(Collections.singleton(PARTITION)).get(PARTITION).offset()).isEqualTo(5);
+    }
+
+    @Test
+    public void givenSlowProcessing_whenProcessed_thenHalvePollSizeDownToMin() {
+        for (int i = 0; i < 10; i++) {
+            tuner.onProcessed(tuner.getPollRecords(), true, TARGET_PROCESSING_TIME_MS + 1);
+        }
+        assertThat(tuner.getPollRecords()).isEqualTo(MIN_POLL_RECORDS);
+    }
+
+    @Test
+    public void givenFastProcessing_whenProcessed_thenIncreasePollSizeOnlyWithBacklog() {
+        tuner.onProcessed(MAX_POLL_RECORDS, true, TARGET_PROCESSING_TIME_MS + 1);
+
+        tuner.onProcessed(tuner.getPollRecords(), false, 1);
+        assertThat(tuner.getPollRecords()).isEqualTo(MAX_POLL_RECORDS / 2);
+
+        for (int i = 0; i < 10; i++) {
+            tuner.onProcessed(tuner.getPollRecords(), true, 1);
+        }
+        assertThat(tuner.getPollRecords()).isEqualTo(MAX_POLL_RECORDS);
+    }
+
+    private static List<Integer> values(List<TbQueueMsg> msgs) {
+        return msgs.stream().map(msg -> (int) msg.getData()[0]).collect(Collectors.toList());
+    }
+
+}
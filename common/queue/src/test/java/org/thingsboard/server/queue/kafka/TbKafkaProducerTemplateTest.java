@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgMetadata;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+public class TbKafkaProducerTemplateTest {
+
+    private static final String TOPIC = "tb_core";
+    private static final long MAX_LINGER_MS = 60000;
+    private static final long TARGET_REQUEST_LATENCY_MS = 50;
+
+    private MockProducer<String, byte[]> producer;
+    private TbKafkaProducerTuner tuner;
+    private TbKafkaProducerTemplate<TbQueueMsg> template;
+
+    @Before
+    public void before() {
+        producer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        tuner = new TbKafkaProducerTuner("producer", 0, MAX_LINGER_MS, TARGET_REQUEST_LATENCY_MS, 100, null);
+        template = new TbKafkaProducerTemplate<>(producer, null, TOPIC, "producer", mock(TbQueueAdmin.class), tuner);
+    }
+
+    @After
+    public void after() {
+        template.stop();
+    }
+
+    @Test
+    public void givenLowRequestLatency_whenSend_thenFlushBeforeConfiguredLinger() {
+        while (tuner.getLingerMs() > 0) {
+            tuner.onRequestLatency(1);
+        }
+        AtomicBoolean sent = new AtomicBoolean();
+
+        template.send(new TopicPartitionInfo(TOPIC, null, null, false), newMsg(), new TbQueueCallback() {
+            @Override
+            public void onSuccess(TbQueueMsgMetadata metadata) {
+                sent.set(true);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        });
+
+        await().atMost(5, TimeUnit.SECONDS).untilTrue(sent);
+    }
+
+    @Test
+    public void givenMaxLinger_whenSend_thenDoNotFlush() throws InterruptedException {
+        template.send(new TopicPartitionInfo(TOPIC, null, null, false), newMsg(), null);
+
+        Thread.sleep(300);
+
+        assertThat(producer.history()).hasSize(1);
+        assertThat(producer.flushed()).isFalse();
+    }
+
+    @Test
+    public void givenRequestLatency_whenAdjust_thenChangeLingerWithinBounds() {
+        tuner.onRequestLatency(TARGET_REQUEST_LATENCY_MS + 1);
+        assertThat(tuner.getLingerMs()).isEqualTo(MAX_LINGER_MS);
+
+        tuner.onRequestLatency(TARGET_REQUEST_LATENCY_MS / 2 - 1);
+        assertThat(tuner.getLingerMs()).isEqualTo(MAX_LINGER_MS / 2);
+
+        tuner.onRequestLatency(TARGET_REQUEST_LATENCY_MS * 3 / 4);
+        assertThat(tuner.getLingerMs()).as("unchanged within the target").isEqualTo(MAX_LINGER_MS / 2);
+
+        tuner.onRequestLatency(Double.NaN);
+        assertThat(tuner.getLingerMs()).as("unchanged without requests").isEqualTo(MAX_LINGER_MS / 2);
+
+        while (tuner.getLingerMs() > 0) {
+            tuner.onRequestLatency(0);
+        }
+        tuner.onRequestLatency(TARGET_REQUEST_LATENCY_MS + 1);
+        assertThat(tuner.getLingerMs()).isEqualTo(1);
+    }
+
+    private static TbQueueMsg newMsg() {
+        UUID key = UUID.randomUUID();
+        return new TbQueueMsg() {
+            @Override
+            public UUID getKey() {
+                return key;
+            }
+
+            @Override
+            public DefaultTbQueueMsgHeaders getHeaders() {
+                return new DefaultTbQueueMsgHeaders();
+            }
+
+            @Override
+            public byte[] getData() {
+                return new byte[]{1};
+            }
+        };
+    }
+
+}
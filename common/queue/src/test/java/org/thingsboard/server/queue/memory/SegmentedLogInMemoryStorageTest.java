@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+import org.thingsboard.server.queue.TbQueueCommitPosition;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SegmentedLogInMemoryStorageTest {
+
+    private static final String TOPIC = "tb_rule_engine.main.0";
+    private static final int SEGMENT_SIZE = 256;
+    private static final int MAX_SEGMENTS = 3;
+    private static final int MAX_POLL_RECORDS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SegmentedLogInMemoryStorage storage;
+
+    @Before
+    public void before() throws IOException {
+        storage = newStorage();
+    }
+
+    @After
+    public void after() {
+        storage.destroy();
+    }
+
+    @Test
+    public void givenMessages_whenPoll_thenReturnDecodedMessagesInOrder() {
+        InMemoryTbQueueConsumer<TbProtoQueueMsg<ValidateDeviceTokenRequestMsg>> consumer =
+                new InMemoryTbQueueConsumer<>(storage, TOPIC, InMemoryTbQueueConsumer.protoDecoder(ValidateDeviceTokenRequestMsg.parser()));
+        consumer.subscribe();
+        TbProtoQueueMsg<ValidateDeviceTokenRequestMsg> msg = newMsg("token0");
+        msg.getHeaders().put("header", new byte[]{1, 2});
+        storage.put(TOPIC, msg);
+        storage.put(TOPIC, newMsg("token1"));
+
+        List<TbProtoQueueMsg<ValidateDeviceTokenRequestMsg>> result = consumer.poll(1);
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getKey()).isEqualTo(msg.getKey());
+        assertThat(result.get(0).getValue().getToken()).isEqualTo("token0");
+        assertThat(result.get(0).getHeaders().get("header")).containsExactly(1, 2);
+        assertThat(result.get(1).getValue().getToken()).isEqualTo("token1");
+        assertThat(storage.getLagTotal()).isZero();
+    }
+
+    @Test
+    public void givenCommitPosition_whenRestart_thenDeliverMessagesAfterPosition() throws Exception {
+        InMemoryTbQueueConsumer<TbProtoQueueMsg<ValidateDeviceTokenRequestMsg>> consumer =
+                new InMemoryTbQueueConsumer<>(storage, TOPIC, InMemoryTbQueueConsumer.protoDecoder(ValidateDeviceTokenRequestMsg.parser()));
+        consumer.subscribe();
+        storage.put(TOPIC, newMsg("token0"));
+        assertThat(consumer.poll(1)).hasSize(1);
+        TbQueueCommitPosition position = consumer.getCommitPosition();
+        storage.put(TOPIC, newMsg("token1"));
+        assertThat(consumer.poll(1)).hasSize(1);
+        consumer.commit(position);
+        storage.destroy();
+
+        storage = newStorage();
+
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token1");
+    }
+
+    @Test
+    public void givenMoreMessagesThanMaxPollRecords_whenGet_thenReturnInBatches() throws Exception {
+        for (int i = 0; i < MAX_POLL_RECORDS + 1; i++) {
+            storage.put(TOPIC, newMsg("token" + i));
+        }
+        assertThat(storage.getLagTotal()).isEqualTo(MAX_POLL_RECORDS + 1);
+
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token0", "token1", "token2");
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token3");
+        assertThat(storage.get(TOPIC)).isEmpty();
+        assertThat(storage.getLagTotal()).isZero();
+    }
+
+    @Test
+    public void givenNotCommittedMessages_whenRestart_thenDeliverAgain() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            storage.put(TOPIC, newMsg("token" + i));
+        }
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token0", "token1", "token2");
+        storage.commit(TOPIC, storage.getReadOffset(TOPIC));
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token3", "token4");
+        storage.destroy();
+
+        storage = newStorage();
+
+        assertThat(storage.getLagTotal()).isEqualTo(2);
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token3", "token4");
+    }
+
+    @Test
+    public void givenFullTopic_whenCommit_thenDeleteConsumedSegmentsAndAcceptMessages() throws Exception {
+        int count = 0;
+        while (storage.put(TOPIC, newMsg("token" + count))) {
+            count++;
+        }
+        assertThat(count).isGreaterThan(MAX_SEGMENTS);
+        assertThat(segmentFiles()).hasSize(MAX_SEGMENTS);
+
+        int read = 0;
+        while (read < count) {
+            read += storage.get(TOPIC).size();
+        }
+        storage.commit(TOPIC, storage.getReadOffset(TOPIC));
+
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(storage.put(TOPIC, newMsg("next"))).isTrue();
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("next");
+    }
+
+    @Test
+    public void givenCorruptedRecord_whenRestart_thenTruncateLog() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            storage.put(TOPIC, newMsg("token" + i));
+        }
+        storage.destroy();
+        Path segment = segmentFiles().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long lastRecordEnd = 3L * recordSize();
+            file.seek(lastRecordEnd - 1);
+            file.write('x');
+        }
+
+        storage = newStorage();
+        storage.put(TOPIC, newMsg("token3"));
+
+        assertThat(tokens(storage.get(TOPIC))).containsExactly("token0", "token1", "token3");
+    }
+
+    @Test
+    public void givenMessageLargerThanSegment_whenPut_thenReject() {
+        assertThat(storage.put(TOPIC, newMsg(new String(new char[SEGMENT_SIZE])))).isFalse();
+        assertThat(storage.getLagTotal()).isZero();
+    }
+
+    private SegmentedLogInMemoryStorage newStorage() throws IOException {
+        SegmentedLogInMemoryStorage storage = new SegmentedLogInMemoryStorage(folder.getRoot().getAbsolutePath(),
+                SEGMENT_SIZE, MAX_SEGMENTS, MAX_POLL_RECORDS, 0);
+        storage.init();
+        return storage;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath().resolve(TOPIC))) {
+            return files.filter(file -> file.toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int recordSize() {
+        // length, checksum, key, headers count and the token message with the same length
+        return 4 + 4 + 16 + 4 + newMsg("token0").getValue().getSerializedSize();
+    }
+
+    private static TbProtoQueueMsg<ValidateDeviceTokenRequestMsg> newMsg(String token) {
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), ValidateDeviceTokenRequestMsg.newBuilder().setToken(token).build());
+    }
+
+    private static List<String> tokens(List<TbQueueMsg> msgs) throws Exception {
+        List<String> tokens = new ArrayList<>();
+        for (TbQueueMsg msg : msgs) {
+            tokens.add(ValidateDeviceTokenRequestMsg.parseFrom(msg.getData()).getToken());
+        }
+        return tokens;
+    }
+
+}
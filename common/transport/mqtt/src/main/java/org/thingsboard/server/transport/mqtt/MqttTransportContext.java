@@ -23,9 +23,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.common.transport.TransportContext;
 import org.thingsboard.server.transport.mqtt.adaptors.JsonMqttAdaptor;
 import org.thingsboard.server.transport.mqtt.adaptors.ProtoMqttAdaptor;
+import org.thingsboard.server.transport.mqtt.limits.MqttConnectAdmissionController;
 
 import javax.annotation.PostConstruct;
 import java.net.InetSocketAddress;
@@ -75,12 +77,39 @@ public class MqttTransportContext extends TransportContext {
     @Value("${transport.mqtt.proxy_enabled:false}")
     private boolean proxyEnabled;
 
+    @Getter
+    @Value("${transport.mqtt.gateway.telemetry_batch_enabled:false}")
+    private boolean gatewayTelemetryBatchEnabled;
+
+    @Value("${transport.mqtt.connect_admission.enabled:false}")
+    private boolean connectAdmissionEnabled;
+
+    @Value("${transport.mqtt.connect_admission.max_concurrent:1000}")
+    private int connectAdmissionMaxConcurrent;
+
+    @Value("${transport.mqtt.connect_admission.max_queue_size:100000}")
+    private int connectAdmissionMaxQueueSize;
+
+    @Value("${transport.mqtt.connect_admission.authenticated_clients_cache_size:500000}")
+    private int connectAdmissionAuthenticatedClientsCacheSize;
+
+    @Getter
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Getter
+    private MqttConnectAdmissionController connectAdmissionController;
+
     private final AtomicInteger connectionsCounter = new AtomicInteger();
 
     @PostConstruct
     public void init() {
         super.init();
         transportService.createGaugeStats("openConnections", connectionsCounter);
+        if (connectAdmissionEnabled) {
+            connectAdmissionController = new MqttConnectAdmissionController(connectAdmissionMaxConcurrent, connectAdmissionMaxQueueSize,
+                    connectAdmissionAuthenticatedClientsCacheSize, statsFactory);
+        }
     }
 
     public void channelRegistered() {
@@ -69,6 +69,7 @@ import org.thingsboard.server.gen.transport.TransportProtos.ProvisionDeviceRespo
 import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceX509CertRequestMsg;
 import org.thingsboard.server.queue.scheduler.SchedulerComponent;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
+import org.thingsboard.server.transport.mqtt.limits.MqttConnectAdmissionController;
 import org.thingsboard.server.transport.mqtt.session.DeviceSessionCtx;
 import org.thingsboard.server.transport.mqtt.session.GatewaySessionHandler;
 import org.thingsboard.server.transport.mqtt.session.MqttTopicMatcher;
@@ -128,6 +129,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     final DeviceSessionCtx deviceSessionCtx;
     volatile InetSocketAddress address;
     volatile GatewaySessionHandler gatewaySessionHandler;
+    private volatile MqttConnectAdmissionController.Permit connectPermit;
 
     private final ConcurrentHashMap<String, String> otaPackSessions;
     private final ConcurrentHashMap<String, Integer> chunkSizes;
@@ -788,12 +790,63 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             deviceSessionCtx.setProvisionOnly(true);
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED, msg));
         } else {
-            X509Certificate cert;
-            if (sslHandler != null && (cert = getX509Certificate()) != null) {
-                processX509CertConnect(ctx, cert, msg);
+            MqttConnectAdmissionController admissionController = context.getConnectAdmissionController();
+            if (admissionController != null) {
+                admissionController.submit(getConnectClientKey(msg), new MqttConnectAdmissionController.ConnectTask() {
+                    @Override
+                    public void admit(MqttConnectAdmissionController.Permit permit) {
+                        ctx.executor().execute(() -> {
+                            if (ctx.channel().isActive()) {
+                                connectPermit = permit;
+                                processAuthConnect(ctx, msg);
+                            } else {
+                                permit.release();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void reject() {
+                        ctx.executor().execute(() -> {
+                            log.debug("[{}][{}] Connect queue is full, rejecting client: {}", address, sessionId, msg.payload().clientIdentifier());
+                            ctx.writeAndFlush(createMqttConnAckMsg(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE, msg));
+                            ctx.close();
+                        });
+                    }
+                });
             } else {
-                processAuthTokenConnect(ctx, msg);
+                processAuthConnect(ctx, msg);
+            }
+        }
+    }
+
+    private void processAuthConnect(ChannelHandlerContext ctx, MqttConnectMessage msg) {
+        X509Certificate cert;
+        if (sslHandler != null && (cert = getX509Certificate()) != null) {
+            processX509CertConnect(ctx, cert, msg);
+        } else {
+            processAuthTokenConnect(ctx, msg);
+        }
+    }
+
+    private static String getConnectClientKey(MqttConnectMessage msg) {
+        String clientId = msg.payload().clientIdentifier();
+        String userName = msg.payload().userName();
+        if (StringUtils.isEmpty(clientId) && StringUtils.isEmpty(userName)) {
+            return null;
+        }
+        clientId = clientId != null ? clientId : "";
+        return clientId.length() + ":" + clientId + (userName != null ? userName : "");
+    }
+
+    private void releaseConnectPermit(boolean authenticated) {
+        MqttConnectAdmissionController.Permit permit = connectPermit;
+        if (permit != null) {
+            connectPermit = null;
+            if (authenticated) {
+                permit.authenticated();
             }
+            permit.release();
         }
     }
 
@@ -820,6 +873,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
                     @Override
                     public void onError(Throwable e) {
                         log.trace("[{}] Failed to process credentials: {}", address, userName, e);
+                        releaseConnectPermit(false);
                         ctx.writeAndFlush(createMqttConnAckMsg(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE, connectMessage));
                         ctx.close();
                     }
@@ -843,12 +897,14 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
                         @Override
                         public void onError(Throwable e) {
                             log.trace("[{}] Failed to process credentials: {}", address, sha3Hash, e);
+                            releaseConnectPermit(false);
                             ctx.writeAndFlush(createMqttConnAckMsg(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE, connectMessage));
                             ctx.close();
                         }
                     });
         } catch (Exception e) {
             context.onAuthFailure(address);
+            releaseConnectPermit(false);
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED, connectMessage));
             log.trace("[{}] X509 auth failure: {}", sessionId, address, e);
             ctx.close();
@@ -969,6 +1025,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             }
             deviceSessionCtx.setDisconnected();
         }
+        releaseConnectPermit(false);
         deviceSessionCtx.release();
     }
 
@@ -976,6 +1033,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     private void onValidateDeviceResponse(ValidateDeviceCredentialsResponse msg, ChannelHandlerContext ctx, MqttConnectMessage connectMessage) {
         if (!msg.hasDeviceInfo()) {
             context.onAuthFailure(address);
+            releaseConnectPermit(false);
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_REFUSED_NOT_AUTHORIZED, connectMessage));
             ctx.close();
         } else {
@@ -990,12 +1048,14 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
                     checkGatewaySession(sessionMetaData);
                     ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED, connectMessage));
                     deviceSessionCtx.setConnected(true);
+                    releaseConnectPermit(true);
                     log.debug("[{}] Client connected!", sessionId);
                     transportService.getCallbackExecutor().execute(() -> processMsgQueue(ctx)); //this callback will execute in Producer worker thread and hard or blocking work have to be submitted to the separate thread.
                 }
 
                 @Override
                 public void onError(Throwable e) {
+                    releaseConnectPermit(false);
                     if (e instanceof TbRateLimitsException) {
                         log.trace("[{}] Failed to submit session event: {}", sessionId, e.getMessage());
                     } else {
@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.limits;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of MQTT CONNECTs that are validated and opened at the same time.
+ * A CONNECT that does not get a permit waits in a bounded queue. The clients that were authenticated by this node before
+ * wait in a separate queue, which is served first, so after a reconnect storm the known devices are back online
+ * before the unknown ones. When the queue is full the CONNECT is rejected, a prioritized one displaces the latest regular one.
+ */
+@Slf4j
+public class MqttConnectAdmissionController {
+
+    private final int maxConcurrent;
+    private final int maxQueueSize;
+    private final Cache<String, Boolean> authenticatedClients;
+
+    private final Deque<PendingConnect> priorityQueue = new ArrayDeque<>();
+    private final Deque<PendingConnect> regularQueue = new ArrayDeque<>();
+    private int activeCount;
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger activeConnects = new AtomicInteger();
+    private final Timer priorityAdmissionLatency;
+    private final Timer regularAdmissionLatency;
+    private final DefaultCounter rejectedCounter;
+
+    public MqttConnectAdmissionController(int maxConcurrent, int maxQueueSize, int authenticatedClientsCacheSize, StatsFactory statsFactory) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.authenticatedClients = Caffeine.newBuilder().maximumSize(authenticatedClientsCacheSize).build();
+        String prefix = StatsType.TRANSPORT.getName() + ".mqtt.connect";
+        statsFactory.createGauge(prefix + ".queueSize", queueSize);
+        statsFactory.createGauge(prefix + ".active", activeConnects);
+        this.priorityAdmissionLatency = statsFactory.createTimer(prefix + ".admissionLatency", "priority", "true");
+        this.regularAdmissionLatency = statsFactory.createTimer(prefix + ".admissionLatency", "priority", "false");
+        this.rejectedCounter = statsFactory.createDefaultCounter(prefix + ".rejected");
+    }
+
+    /**
+     * Admits the CONNECT immediately, queues it or rejects it. The task is called on the thread that submits it
+     * or on the thread that releases a permit, so it should only hand the work over to the channel's event loop.
+     *
+     * @param clientKey the key the client is recognized by on reconnect, or null if it has none.
+     */
+    public void submit(String clientKey, ConnectTask task) {
+        boolean priority = clientKey != null && authenticatedClients.getIfPresent(clientKey) != null;
+        PendingConnect connect = new PendingConnect(clientKey, task, priority, System.nanoTime());
+        PendingConnect rejected = null;
+        boolean admitted = false;
+        synchronized (this) {
+            if (activeCount < maxConcurrent) {
+                activeCount++;
+                admitted = true;
+            } else if (priorityQueue.size() + regularQueue.size() < maxQueueSize) {
+                (priority ? priorityQueue : regularQueue).addLast(connect);
+            } else if (priority && !regularQueue.isEmpty()) {
+                rejected = regularQueue.pollLast();
+                priorityQueue.addLast(connect);
+            } else {
+                rejected = connect;
+            }
+            activeConnects.set(activeCount);
+            queueSize.set(priorityQueue.size() + regularQueue.size());
+        }
+        if (admitted) {
+            admit(connect);
+        }
+        if (rejected != null) {
+            rejectedCounter.increment();
+            log.trace("[{}] Rejecting connect, the connect queue is full", rejected.clientKey);
+            rejected.task.reject();
+        }
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public int getActiveCount() {
+        return activeConnects.get();
+    }
+
+    private void admit(PendingConnect connect) {
+        (connect.priority ? priorityAdmissionLatency : regularAdmissionLatency).record(System.nanoTime() - connect.submitTime, TimeUnit.NANOSECONDS);
+        Permit permit = new Permit(connect.clientKey);
+        try {
+            connect.task.admit(permit);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to process admitted connect", connect.clientKey, e);
+            permit.release();
+        }
+    }
+
+    private void onRelease() {
+        PendingConnect next;
+        synchronized (this) {
+            next = priorityQueue.pollFirst();
+            if (next == null) {
+                next = regularQueue.pollFirst();
+            }
+            if (next == null) {
+                activeCount--;
+            }
+            activeConnects.set(activeCount);
+            queueSize.set(priorityQueue.size() + regularQueue.size());
+        }
+        if (next != null) {
+            admit(next);
+        }
+    }
+
+    public interface ConnectTask {
+
+        void admit(Permit permit);
+
+        void reject();
+
+    }
+
+    /**
+     * Held by an admitted CONNECT until the session is open or the connect fails.
+     */
+    public class Permit {
+
+        private final String clientKey;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String clientKey) {
+            this.clientKey = clientKey;
+        }
+
+        /**
+         * Marks the client as authenticated, so its next CONNECT is prioritized.
+         */
+        public void authenticated() {
+            if (clientKey != null) {
+                authenticatedClients.put(clientKey, Boolean.TRUE);
+            }
+        }
+
+        /**
+         * Passes the permit to the next queued CONNECT. Only the first call has effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                onRelease();
+            }
+        }
+
+    }
+
+    private static class PendingConnect {
+
+        private final String clientKey;
+        private final ConnectTask task;
+        private final boolean priority;
+        private final long submitTime;
+
+        private PendingConnect(String clientKey, ConnectTask task, boolean priority, long submitTime) {
+            this.clientKey = clientKey;
+            this.task = task;
+            this.priority = priority;
+            this.submitTime = submitTime;
+        }
+
+    }
+
+}
@@ -32,11 +32,16 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.micrometer.core.instrument.DistributionSummary;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ConcurrentReferenceHashMap;
 import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+import org.thingsboard.server.common.transport.SessionPostTelemetryMsg;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
 import org.thingsboard.server.common.transport.adaptor.AdaptorException;
@@ -55,6 +60,8 @@ import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.adaptors.ProtoMqttAdaptor;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -65,6 +72,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import static org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
 import static org.thingsboard.server.common.transport.service.DefaultTransportService.SESSION_EVENT_MSG_CLOSED;
@@ -92,6 +100,9 @@ public class GatewaySessionHandler {
     private final ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap;
     private final ChannelHandlerContext channel;
     private final DeviceSessionCtx deviceSessionCtx;
+    private final boolean telemetryBatchEnabled;
+    private final DistributionSummary telemetryBatchSize;
+    private final DefaultCounter telemetryBatchMsgs;
 
     public GatewaySessionHandler(DeviceSessionCtx deviceSessionCtx, UUID sessionId) {
         this.context = deviceSessionCtx.getContext();
@@ -104,6 +115,16 @@ public class GatewaySessionHandler {
         this.deviceCreationLockMap = createWeakMap();
         this.mqttQoSMap = deviceSessionCtx.getMqttQoSMap();
         this.channel = deviceSessionCtx.getChannel();
+        this.telemetryBatchEnabled = context.isGatewayTelemetryBatchEnabled();
+        if (telemetryBatchEnabled) {
+            StatsFactory statsFactory = context.getStatsFactory();
+            String gatewayId = gateway.getDeviceId().toString();
+            this.telemetryBatchSize = statsFactory.createDistributionSummary(StatsType.TRANSPORT.getName() + ".gateway.telemetry.batchSize", "gatewayId", gatewayId);
+            this.telemetryBatchMsgs = statsFactory.createDefaultCounter(StatsType.TRANSPORT.getName() + ".gateway.telemetry.msgs", "gatewayId", gatewayId);
+        } else {
+            this.telemetryBatchSize = null;
+            this.telemetryBatchMsgs = null;
+        }
     }
 
     ConcurrentReferenceHashMap<String, Lock> createWeakMap() {
@@ -343,6 +364,15 @@ public class GatewaySessionHandler {
         JsonElement json = JsonMqttAdaptor.validateJsonPayload(sessionId, payload);
         if (json.isJsonObject()) {
             JsonObject jsonObj = json.getAsJsonObject();
+            if (telemetryBatchEnabled) {
+                processPostTelemetryBatch(msgId, jsonObj.entrySet(), Map.Entry::getKey, deviceEntry -> {
+                    if (!deviceEntry.getValue().isJsonArray()) {
+                        throw new JsonSyntaxException(CAN_T_PARSE_VALUE + json);
+                    }
+                    return JsonConverter.convertToTelemetryProto(deviceEntry.getValue().getAsJsonArray());
+                });
+                return;
+            }
             for (Map.Entry<String, JsonElement> deviceEntry : jsonObj.entrySet()) {
                 String deviceName = deviceEntry.getKey();
                 Futures.addCallback(checkDeviceConnected(deviceName),
@@ -376,7 +406,11 @@ public class GatewaySessionHandler {
         try {
             TransportApiProtos.GatewayTelemetryMsg telemetryMsgProto = TransportApiProtos.GatewayTelemetryMsg.parseFrom(getBytes(payload));
             List<TransportApiProtos.TelemetryMsg> deviceMsgList = telemetryMsgProto.getMsgList();
-            if (!CollectionUtils.isEmpty(deviceMsgList)) {
+            if (!CollectionUtils.isEmpty(deviceMsgList) && telemetryBatchEnabled) {
+                deviceMsgList.forEach(telemetryMsg -> checkDeviceName(telemetryMsg.getDeviceName()));
+                processPostTelemetryBatch(msgId, deviceMsgList, TransportApiProtos.TelemetryMsg::getDeviceName,
+                        telemetryMsg -> ProtoConverter.validatePostTelemetryMsg(telemetryMsg.getMsg().toByteArray()));
+            } else if (!CollectionUtils.isEmpty(deviceMsgList)) {
                 deviceMsgList.forEach(telemetryMsg -> {
                     String deviceName = checkDeviceName(telemetryMsg.getDeviceName());
                     Futures.addCallback(checkDeviceConnected(deviceName),
@@ -412,6 +446,70 @@ public class GatewaySessionHandler {
         transportService.process(deviceCtx.getSessionInfo(), postTelemetryMsg, getPubAckCallback(channel, deviceName, msgId, postTelemetryMsg));
     }
 
+    /**
+     * Converts the telemetry of all the devices of one gateway publish and sends it with a single {@link TransportService} call,
+     * which groups the devices into one queue record per rule engine partition. The publish is acknowledged once.
+     * Like in the per-device mode, the devices that failed to connect are skipped.
+     */
+    private <T> void processPostTelemetryBatch(int msgId, Collection<T> deviceMsgs, Function<T, String> deviceNameFunction,
+                                               TelemetryConverter<T> converter) {
+        List<String> deviceNames = new ArrayList<>(deviceMsgs.size());
+        List<ListenableFuture<GatewayDeviceSessionCtx>> deviceCtxFutures = new ArrayList<>(deviceMsgs.size());
+        for (T deviceMsg : deviceMsgs) {
+            String deviceName = deviceNameFunction.apply(deviceMsg);
+            deviceNames.add(deviceName);
+            deviceCtxFutures.add(checkDeviceConnected(deviceName));
+        }
+        Futures.addCallback(Futures.successfulAsList(deviceCtxFutures),
+                new FutureCallback<List<GatewayDeviceSessionCtx>>() {
+                    @Override
+                    public void onSuccess(List<GatewayDeviceSessionCtx> deviceCtxList) {
+                        List<SessionPostTelemetryMsg> msgs = new ArrayList<>(deviceCtxList.size());
+                        int i = 0;
+                        for (T deviceMsg : deviceMsgs) {
+                            String deviceName = deviceNames.get(i);
+                            GatewayDeviceSessionCtx deviceCtx = deviceCtxList.get(i++);
+                            if (deviceCtx == null) {
+                                log.debug("[{}] Failed to process device telemetry command: {}", sessionId, deviceName);
+                                continue;
+                            }
+                            try {
+                                msgs.add(new SessionPostTelemetryMsg(deviceCtx.getSessionInfo(), converter.convert(deviceMsg)));
+                            } catch (Throwable e) {
+                                log.warn("[{}][{}] Failed to convert telemetry: {}", gateway.getDeviceId(), deviceName, deviceMsg, e);
+                                channel.close();
+                                return;
+                            }
+                        }
+                        if (msgs.isEmpty()) {
+                            return;
+                        }
+                        telemetryBatchSize.record(msgs.size());
+                        transportService.process(msgs, new TransportServiceCallback<>() {
+                            @Override
+                            public void onSuccess(Void dummy) {
+                                log.trace("[{}] Published telemetry of {} devices", sessionId, msgs.size());
+                                telemetryBatchMsgs.add(msgs.size());
+                                if (msgId > 0) {
+                                    channel.writeAndFlush(MqttTransportHandler.createMqttPubAckMsg(msgId));
+                                }
+                            }
+
+                            @Override
+                            public void onError(Throwable e) {
+                                log.trace("[{}] Failed to publish telemetry of {} devices", sessionId, msgs.size(), e);
+                                channel.close();
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        log.debug("[{}] Failed to process devices telemetry command", sessionId, t);
+                    }
+                }, context.getExecutor());
+    }
+
     private void onDeviceClaimJson(int msgId, ByteBuf payload) throws AdaptorException {
         JsonElement json = JsonMqttAdaptor.validateJsonPayload(sessionId, payload);
         if (json.isJsonObject()) {
@@ -746,4 +844,9 @@ public class GatewaySessionHandler {
             }
         };
     }
+
+    @FunctionalInterface
+    private interface TelemetryConverter<T> {
+        TransportProtos.PostTelemetryMsg convert(T deviceMsg) throws Exception;
+    }
 }
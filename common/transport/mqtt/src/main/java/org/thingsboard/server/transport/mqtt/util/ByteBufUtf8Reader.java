@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.Reader;
+
+/**
+ * Decodes the readable bytes of a {@link ByteBuf} as UTF-8 straight into the caller's buffer,
+ * without copying the payload to a String or an intermediate byte array.
+ * The reader and writer indexes of the buffer are not modified.
+ * Malformed sequences are replaced with U+FFFD.
+ */
+public class ByteBufUtf8Reader extends Reader {
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ByteBuf buf;
+    private final int end;
+    private int index;
+    private char pendingLowSurrogate;
+
+    public ByteBufUtf8Reader(ByteBuf buf) {
+        this.buf = buf;
+        this.index = buf.readerIndex();
+        this.end = buf.writerIndex();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (index >= end && pendingLowSurrogate == 0) {
+            return -1;
+        }
+        int n = 0;
+        if (pendingLowSurrogate != 0) {
+            cbuf[off + n++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+        while (n < len && index < end) {
+            int b = buf.getByte(index);
+            if (b >= 0) {
+                cbuf[off + n++] = (char) b;
+                index++;
+                continue;
+            }
+            int size;
+            int cp;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                size = 2;
+                cp = b & 0x1F;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                size = 3;
+                cp = b & 0x0F;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                size = 4;
+                cp = b & 0x07;
+                min = 0x10000;
+            } else {
+                cbuf[off + n++] = REPLACEMENT;
+                index++;
+                continue;
+            }
+            int i = 1;
+            while (i < size && index + i < end) {
+                int c = buf.getByte(index + i);
+                if ((c & 0xC0) != 0x80) {
+                    break;
+                }
+                cp = (cp << 6) | (c & 0x3F);
+                i++;
+            }
+            index += i;
+            if (i < size || cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                cbuf[off + n++] = REPLACEMENT;
+            } else if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                cbuf[off + n++] = (char) cp;
+            } else {
+                cbuf[off + n++] = Character.highSurrogate(cp);
+                if (n < len) {
+                    cbuf[off + n++] = Character.lowSurrogate(cp);
+                } else {
+                    pendingLowSurrogate = Character.lowSurrogate(cp);
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.limits;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MqttConnectAdmissionControllerTest {
+
+    private DefaultCounter rejectedCounter;
+    private MqttConnectAdmissionController controller;
+
+    private final List<String> admitted = new ArrayList<>();
+    private final List<String> rejected = new ArrayList<>();
+    private final List<MqttConnectAdmissionController.Permit> permits = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        rejectedCounter = mock(DefaultCounter.class);
+        when(statsFactory.createTimer(anyString(), anyString(), anyString())).thenReturn(mock(Timer.class));
+        when(statsFactory.createDefaultCounter(anyString())).thenReturn(rejectedCounter);
+        controller = new MqttConnectAdmissionController(2, 3, 100, statsFactory);
+    }
+
+    @Test
+    public void testConcurrencyIsBoundedAndQueueIsServedInOrder() {
+        submit("a");
+        submit("b");
+        submit("c");
+        submit("d");
+
+        assertEquals(List.of("a", "b"), admitted);
+        assertEquals(2, controller.getActiveCount());
+        assertEquals(2, controller.getQueueSize());
+
+        permits.get(0).release();
+        permits.get(0).release();
+        assertEquals(List.of("a", "b", "c"), admitted);
+        assertEquals(1, controller.getQueueSize());
+
+        permits.get(1).release();
+        permits.get(2).release();
+        permits.get(3).release();
+        assertEquals(List.of("a", "b", "c", "d"), admitted);
+        assertEquals(0, controller.getActiveCount());
+        assertEquals(0, controller.getQueueSize());
+    }
+
+    @Test
+    public void testAuthenticatedClientsArePrioritized() {
+        submit("known");
+        permits.get(0).authenticated();
+        permits.get(0).release();
+        admitted.clear();
+        permits.clear();
+
+        submit("a");
+        submit("b");
+        submit("c");
+        submit("known");
+        permits.get(0).release();
+
+        assertEquals(List.of("a", "b", "known"), admitted);
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() {
+        submit("known");
+        permits.get(0).authenticated();
+        permits.get(0).release();
+        admitted.clear();
+        permits.clear();
+
+        for (int i = 0; i < 6; i++) {
+            submit("c" + i);
+        }
+        assertEquals(List.of("c5"), rejected);
+
+        submit("known");
+        assertEquals(List.of("c5", "c4"), rejected);
+        verify(rejectedCounter, times(2)).increment();
+        assertEquals(3, controller.getQueueSize());
+
+        permits.get(0).release();
+        assertTrue(admitted.contains("known"));
+    }
+
+    private void submit(String clientKey) {
+        controller.submit(clientKey, new MqttConnectAdmissionController.ConnectTask() {
+            @Override
+            public void admit(MqttConnectAdmissionController.Permit permit) {
+                admitted.add(clientKey);
+                permits.add(permit);
+            }
+
+            @Override
+            public void reject() {
+                rejected.add(clientKey);
+            }
+        });
+    }
+
+}
@@ -15,21 +15,97 @@
  */
 package org.thingsboard.server.transport.mqtt.session;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.transport.SessionPostTelemetryMsg;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.GetOrCreateDeviceFromGatewayResponse;
+import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.GetOrCreateDeviceFromGatewayRequestMsg;
+import org.thingsboard.server.transport.mqtt.MqttTransportContext;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.willCallRealMethod;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class GatewaySessionHandlerTest {
 
+    private static final TenantId TENANT_ID = TenantId.fromUUID(UUID.randomUUID());
+
+    private final TransportService transportService = mock(TransportService.class);
+    private final ChannelHandlerContext channel = mock(ChannelHandlerContext.class);
+    private GatewaySessionHandler handler;
+
+    @Before
+    public void setUp() {
+        MqttTransportContext context = mock(MqttTransportContext.class);
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createDistributionSummary(anyString(), anyString(), anyString())).thenReturn(mock(DistributionSummary.class));
+        when(statsFactory.createDefaultCounter(anyString(), anyString(), anyString())).thenReturn(mock(DefaultCounter.class));
+        when(context.getTransportService()).thenReturn(transportService);
+        when(context.isGatewayTelemetryBatchEnabled()).thenReturn(true);
+        when(context.getStatsFactory()).thenReturn(statsFactory);
+        when(context.getExecutor()).thenReturn(MoreExecutors.newDirectExecutorService());
+        when(context.getNodeId()).thenReturn("node");
+
+        DeviceSessionCtx deviceSessionCtx = mock(DeviceSessionCtx.class);
+        when(deviceSessionCtx.getContext()).thenReturn(context);
+        when(deviceSessionCtx.getDeviceInfo()).thenReturn(deviceInfo("gateway"));
+        when(deviceSessionCtx.getMqttQoSMap()).thenReturn(new ConcurrentHashMap<>());
+        when(deviceSessionCtx.getChannel()).thenReturn(channel);
+        when(deviceSessionCtx.isJsonPayloadType()).thenReturn(true);
+
+        doAnswer(invocation -> {
+            GetOrCreateDeviceFromGatewayRequestMsg request = invocation.getArgument(0);
+            TransportServiceCallback<GetOrCreateDeviceFromGatewayResponse> callback = invocation.getArgument(1);
+            if (request.getDeviceName().startsWith("failed")) {
+                callback.onError(new RuntimeException("Failed to create device"));
+            } else {
+                callback.onSuccess(GetOrCreateDeviceFromGatewayResponse.builder().deviceInfo(deviceInfo(request.getDeviceName())).build());
+            }
+            return null;
+        }).when(transportService).process(any(GetOrCreateDeviceFromGatewayRequestMsg.class), any());
+
+        handler = new GatewaySessionHandler(deviceSessionCtx, UUID.randomUUID());
+    }
+
     @Test
     public void givenWeakHashMap_WhenGC_thenMapIsEmpty() {
         WeakHashMap<String, Lock> map = new WeakHashMap<>();
@@ -58,4 +134,68 @@ public class GatewaySessionHandlerTest {
         await().atMost(10, TimeUnit.SECONDS).until(() -> !map.containsKey("device"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenTelemetryOfSeveralDevices_whenBatchPublished_thenSentOnceAndAcknowledgedOnce() throws Exception {
+        handler.onDeviceTelemetry(publish("{\"device1\": [{\"temperature\": 42}], \"device2\": [{\"temperature\": 43}]}"));
+
+        TransportServiceCallback<Void> callback = verifyTelemetryBatch(2);
+        verify(channel, never()).writeAndFlush(any());
+        callback.onSuccess(null);
+
+        ArgumentCaptor<MqttMessage> ack = ArgumentCaptor.forClass(MqttMessage.class);
+        verify(channel).writeAndFlush(ack.capture());
+        assertEquals(MqttMessageType.PUBACK, ack.getValue().fixedHeader().messageType());
+    }
+
+    @Test
+    public void givenDeviceFailedToConnect_whenBatchPublished_thenDeviceSkipped() throws Exception {
+        handler.onDeviceTelemetry(publish("{\"device1\": [{\"temperature\": 42}], \"failedDevice\": [{\"temperature\": 43}]}"));
+
+        verifyTelemetryBatch(1);
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void givenInvalidTelemetryOfDevice_whenBatchPublished_thenChannelClosed() throws Exception {
+        handler.onDeviceTelemetry(publish("{\"device1\": [{\"temperature\": 42}], \"device2\": {\"temperature\": 43}}"));
+
+        verify(channel).close();
+        verify(transportService, never()).process(anyList(), any());
+    }
+
+    @Test
+    public void givenBatchRejected_whenBatchPublished_thenChannelClosed() throws Exception {
+        handler.onDeviceTelemetry(publish("{\"device1\": [{\"temperature\": 42}]}"));
+
+        verifyTelemetryBatch(1).onError(new RuntimeException("Rejected"));
+
+        verify(channel).close();
+        verify(channel, never()).writeAndFlush(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private TransportServiceCallback<Void> verifyTelemetryBatch(int expectedDevices) {
+        ArgumentCaptor<List<SessionPostTelemetryMsg>> msgs = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<TransportServiceCallback<Void>> callback = ArgumentCaptor.forClass(TransportServiceCallback.class);
+        verify(transportService).process(msgs.capture(), callback.capture());
+        assertEquals(expectedDevices, msgs.getValue().size());
+        return callback.getValue();
+    }
+
+    private static MqttPublishMessage publish(String payload) {
+        return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("v1/gateway/telemetry", 1), Unpooled.wrappedBuffer(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static TransportDeviceInfo deviceInfo(String deviceName) {
+        TransportDeviceInfo deviceInfo = new TransportDeviceInfo();
+        deviceInfo.setTenantId(TENANT_ID);
+        deviceInfo.setCustomerId(new CustomerId(UUID.randomUUID()));
+        deviceInfo.setDeviceId(new DeviceId(UUID.randomUUID()));
+        deviceInfo.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        deviceInfo.setDeviceName(deviceName);
+        deviceInfo.setDeviceType("default");
+        return deviceInfo;
+    }
+
+}
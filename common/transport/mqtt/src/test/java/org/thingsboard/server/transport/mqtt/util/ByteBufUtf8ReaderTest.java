@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteBufUtf8ReaderTest {
+
+    @Test
+    public void decodesMultiByteCharactersAcrossReads() throws IOException {
+        String text = "{\"temp\": \"23 °C\", \"city\": \"Київ\", \"emoji\": \"😀\"}";
+        ByteBuf buf = Unpooled.wrappedBuffer(text.getBytes(StandardCharsets.UTF_8));
+        for (int chunk = 1; chunk <= 4; chunk++) {
+            assertEquals(text, readAll(new ByteBufUtf8Reader(buf), chunk));
+        }
+        assertEquals(0, buf.readerIndex());
+    }
+
+    @Test
+    public void replacesMalformedSequences() throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[]{'a', (byte) 0xC3, 'b', (byte) 0xFF, (byte) 0xE2, (byte) 0x82});
+        assertEquals("a�b��", readAll(new ByteBufUtf8Reader(buf), 16));
+    }
+
+    @Test
+    public void readsOnlyReadableBytes() throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer("skip{}".getBytes(StandardCharsets.UTF_8));
+        buf.readerIndex(4);
+        assertEquals("{}", readAll(new ByteBufUtf8Reader(buf), 16));
+    }
+
+    private static String readAll(Reader reader, int chunk) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[chunk];
+        int n;
+        while ((n = reader.read(buffer, 0, chunk)) != -1) {
+            result.append(buffer, 0, n);
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceCredentialsResponseMsg;
+
+/**
+ * Responses of the core to the device credentials validation, cached by the transport to skip the transport API
+ * round trip on reconnects. Responses without the device info, meaning invalid credentials, are cached as well.
+ */
+public interface TransportCredentialsCache {
+
+    boolean isEnabled();
+
+    /**
+     * @return the cached response or null if the credentials are not cached.
+     */
+    ValidateDeviceCredentialsResponseMsg get(String credentialsKey);
+
+    /**
+     * @return the version to pass to {@link #put} with the response, taken before the validation request is sent.
+     */
+    long getVersion();
+
+    /**
+     * Caches the response, unless the device, or the invalid credentials for a response without the device info,
+     * were evicted after the request of the given version was sent.
+     */
+    void put(String credentialsKey, ValidateDeviceCredentialsResponseMsg response, long requestVersion);
+
+    void evict(DeviceId deviceId);
+
+    /**
+     * Evicts the cached responses without the device info, e.g. when a device with new credentials is created.
+     */
+    void evictInvalid();
+
+}
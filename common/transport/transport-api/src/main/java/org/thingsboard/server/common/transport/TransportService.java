@@ -105,6 +105,13 @@ public interface TransportService {
 
     void process(SessionInfoProto sessionInfo, PostTelemetryMsg msg, TransportServiceCallback<Void> callback);
 
+    /**
+     * Sends the telemetry of several devices of the same tenant, grouping the messages into one queue record per rule engine partition.
+     * The callback is notified once, after all the records are sent or on the first failure.
+     * The devices that exceed the rate limits are not sent, and the callback gets the rate limits error after the others are sent.
+     */
+    void process(List<SessionPostTelemetryMsg> msgs, TransportServiceCallback<Void> callback);
+
     void process(SessionInfoProto sessionInfo, PostAttributeMsg msg, TransportServiceCallback<Void> callback);
 
     void process(SessionInfoProto sessionInfo, GetAttributeRequestMsg msg, TransportServiceCallback<Void> callback);
@@ -0,0 +1,275 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueProto;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueType;
+import org.thingsboard.server.gen.transport.TransportProtos.PostAttributeMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.thingsboard.server.common.transport.adaptor.JsonConverter.CAN_T_PARSE_VALUE;
+
+/**
+ * Builds telemetry and attribute protos straight from the JSON token stream, without
+ * materializing the payload as a {@link JsonElement} tree. Only nested objects and arrays,
+ * which are stored as JSON values anyway, and the "ts" field are read as elements.
+ * The result is the same as the one of the {@link JsonElement} based methods of {@link JsonConverter}.
+ */
+final class JsonTelemetryReader {
+
+    private static final String TS = "ts";
+    private static final String VALUES = "values";
+
+    private JsonTelemetryReader() {
+    }
+
+    static PostTelemetryMsg readTelemetry(Reader json, long systemTs) throws JsonSyntaxException {
+        JsonReader reader = newReader(json);
+        try {
+            PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+            JsonToken token = peekDocument(reader);
+            if (token == JsonToken.BEGIN_OBJECT) {
+                readTelemetryObject(builder, systemTs, reader);
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        readTelemetryObject(builder, systemTs, reader);
+                    } else {
+                        throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(reader));
+                    }
+                }
+                reader.endArray();
+            } else {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(reader));
+            }
+            checkEndOfDocument(reader);
+            return builder.build();
+        } catch (MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    static PostAttributeMsg readAttributes(Reader json) throws JsonSyntaxException {
+        JsonReader reader = newReader(json);
+        try {
+            if (peekDocument(reader) != JsonToken.BEGIN_OBJECT) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(reader));
+            }
+            List<KeyValueProto> kvList = readValues(reader).build();
+            checkEndOfDocument(reader);
+            return PostAttributeMsg.newBuilder().addAllKv(kvList).build();
+        } catch (MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    private static JsonReader newReader(Reader json) {
+        JsonReader reader = new JsonReader(json);
+        // JsonParser, used by the transports before, is lenient as well
+        reader.setLenient(true);
+        return reader;
+    }
+
+    private static JsonToken peekDocument(JsonReader reader) throws IOException {
+        try {
+            return reader.peek();
+        } catch (EOFException e) {
+            // an empty document is parsed as JsonNull
+            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonNull.INSTANCE);
+        }
+    }
+
+    private static void checkEndOfDocument(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("Did not consume the entire document.");
+        }
+    }
+
+    /**
+     * Reads an object either in the {"ts": ..., "values": {...}} or in the plain key-value format.
+     * The format is known only after the last field, so until then the fields are read as values
+     * and their conversion errors are deferred. Once "ts" is followed by a "values" object,
+     * the object may only be in the {ts, values} format and the remaining fields are skipped.
+     */
+    private static void readTelemetryObject(PostTelemetryMsg.Builder request, long systemTs, JsonReader reader) throws IOException {
+        ProtoValues kvList = new ProtoValues();
+        JsonElement ts = null;
+        JsonElement valuesElement = null;
+        ProtoValues values = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (TS.equals(key)) {
+                ts = JsonParser.parseReader(reader);
+                kvList.put(key, ts);
+            } else if (VALUES.equals(key)) {
+                if (ts != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    values = readValues(reader);
+                    valuesElement = null;
+                } else {
+                    valuesElement = JsonParser.parseReader(reader);
+                    values = null;
+                    kvList.put(key, valuesElement);
+                }
+            } else if (values != null) {
+                reader.skipValue();
+            } else {
+                readValue(reader, key, kvList);
+            }
+        }
+        reader.endObject();
+
+        TsKvListProto.Builder builder = TsKvListProto.newBuilder();
+        if (ts != null && (values != null || valuesElement != null)) {
+            builder.setTs(ts.getAsLong());
+            builder.addAllKv(values != null ? values.build() : JsonConverter.parseProtoValues(valuesElement.getAsJsonObject()));
+        } else {
+            builder.setTs(systemTs);
+            builder.addAllKv(kvList.build());
+        }
+        request.addTsKvList(builder.build());
+    }
+
+    private static ProtoValues readValues(JsonReader reader) throws IOException {
+        ProtoValues result = new ProtoValues();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            readValue(reader, reader.nextName(), result);
+        }
+        reader.endObject();
+        return result;
+    }
+
+    private static void readValue(JsonReader reader, String key, ProtoValues result) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case NULL:
+                reader.nextNull();
+                result.add(key, null);
+                break;
+            case BOOLEAN:
+                result.add(key, KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V)
+                        .setBoolV(reader.nextBoolean()).build());
+                break;
+            case STRING:
+            case NUMBER:
+                String value = reader.nextString();
+                try {
+                    result.add(key, token == JsonToken.STRING ?
+                            JsonConverter.toStringKeyValueProto(key, value) :
+                            JsonConverter.buildNumericKeyValueProto(value, key));
+                } catch (RuntimeException e) {
+                    result.fail(e);
+                }
+                break;
+            default:
+                result.put(key, JsonParser.parseReader(reader));
+        }
+    }
+
+    /**
+     * Key-value protos of a single JSON object. Like {@link com.google.gson.JsonObject}, keeps
+     * the last value of a duplicated key.
+     */
+    private static final class ProtoValues {
+
+        private static final int MAX_SCANNED_KEYS = 16;
+
+        private final List<KeyValueProto> kvList = new ArrayList<>();
+        private Map<String, Integer> index;
+        private RuntimeException error;
+
+        void put(String key, JsonElement element) {
+            try {
+                add(key, JsonConverter.toKeyValueProto(key, element));
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        void add(String key, KeyValueProto kv) {
+            int idx = indexOf(key);
+            if (idx < 0) {
+                if (kv != null) {
+                    if (index != null) {
+                        index.put(key, kvList.size());
+                    }
+                    kvList.add(kv);
+                }
+            } else if (kv != null) {
+                kvList.set(idx, kv);
+            } else {
+                kvList.remove(idx);
+                index = null;
+            }
+        }
+
+        void fail(RuntimeException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+
+        List<KeyValueProto> build() {
+            if (error != null) {
+                throw error;
+            }
+            return kvList;
+        }
+
+        private int indexOf(String key) {
+            if (index == null && kvList.size() > MAX_SCANNED_KEYS) {
+                index = new HashMap<>();
+                for (int i = 0; i < kvList.size(); i++) {
+                    index.put(kvList.get(i).getKey(), i);
+                }
+            }
+            if (index != null) {
+                Integer idx = index.get(key);
+                return idx != null ? idx : -1;
+            }
+            for (int i = 0; i < kvList.size(); i++) {
+                if (kvList.get(i).getKey().equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+import org.thingsboard.server.common.transport.TransportCredentialsCache;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceCredentialsResponseMsg;
+import org.thingsboard.server.queue.util.TbTransportComponent;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@TbTransportComponent
+@Slf4j
+public class DefaultTransportCredentialsCache implements TransportCredentialsCache {
+
+    private static final String STATS_KEY = StatsType.TRANSPORT.getName() + ".credentialsCache";
+
+    @Value("${transport.credentials_cache.enabled:false}")
+    private boolean enabled;
+    @Value("${transport.credentials_cache.max_size:100000}")
+    private long maxSize;
+    @Value("${transport.credentials_cache.ttl:60000}")
+    private long ttl;
+    @Value("${transport.credentials_cache.negative_ttl:5000}")
+    private long negativeTtl;
+
+    private final StatsFactory statsFactory;
+    private final ConcurrentMap<DeviceId, Set<String>> deviceCredentialsKeys = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // the version of the last eviction of the invalid credentials responses
+    private volatile long invalidEvictionVersion;
+    // the highest version of the eviction tombstones that were evicted from the tombstones cache because of its size
+    private final AtomicLong evictedTombstonesVersion = new AtomicLong();
+
+    private Cache<String, ValidateDeviceCredentialsResponseMsg> cache;
+    private Cache<DeviceId, Long> evictedDevices;
+    private DefaultCounter hits;
+    private DefaultCounter negativeHits;
+    private DefaultCounter misses;
+
+    public DefaultTransportCredentialsCache(StatsFactory statsFactory) {
+        this.statsFactory = statsFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, ValidateDeviceCredentialsResponseMsg>() {
+                    @Override
+                    public long expireAfterCreate(String key, ValidateDeviceCredentialsResponseMsg value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(value.hasDeviceInfo() ? ttl : negativeTtl);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ValidateDeviceCredentialsResponseMsg value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ValidateDeviceCredentialsResponseMsg value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .executor(Runnable::run)
+                .removalListener(this::onRemoval)
+                .build();
+        // requests that take longer than the ttl are not guarded, the transport API times them out much earlier
+        evictedDevices = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .executor(Runnable::run)
+                .writer(new CacheWriter<DeviceId, Long>() {
+                    @Override
+                    public void write(DeviceId deviceId, Long evictionVersion) {
+                    }
+
+                    @Override
+                    public void delete(DeviceId deviceId, Long evictionVersion, RemovalCause cause) {
+                        // called before the tombstone is removed, so a late put of the device is dropped either way
+                        if (evictionVersion != null && cause == RemovalCause.SIZE) {
+                            evictedTombstonesVersion.accumulateAndGet(evictionVersion, Math::max);
+                        }
+                    }
+                })
+                .build();
+        hits = statsFactory.createDefaultCounter(STATS_KEY, "result", "hit");
+        negativeHits = statsFactory.createDefaultCounter(STATS_KEY, "result", "negativeHit");
+        misses = statsFactory.createDefaultCounter(STATS_KEY, "result", "miss");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public ValidateDeviceCredentialsResponseMsg get(String credentialsKey) {
+        ValidateDeviceCredentialsResponseMsg response = cache.getIfPresent(credentialsKey);
+        if (response == null) {
+            misses.increment();
+        } else if (response.hasDeviceInfo()) {
+            hits.increment();
+        } else {
+            negativeHits.increment();
+        }
+        return response;
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void put(String credentialsKey, ValidateDeviceCredentialsResponseMsg response, long requestVersion) {
+        if (isEvictedAfter(response, requestVersion)) {
+            log.trace("[{}] Skipping credentials response requested before the eviction", credentialsKey);
+            return;
+        }
+        if (response.hasDeviceInfo()) {
+            // indexed before the put, so a concurrent eviction of the device can't miss the entry
+            deviceCredentialsKeys.computeIfAbsent(getDeviceId(response.getDeviceInfo()), id -> ConcurrentHashMap.newKeySet()).add(credentialsKey);
+        }
+        cache.put(credentialsKey, response);
+        // the eviction records its version before it invalidates the entries, so either it removes this entry or it is seen here
+        if (isEvictedAfter(response, requestVersion)) {
+            cache.asMap().remove(credentialsKey, response);
+        }
+    }
+
+    @Override
+    public void evict(DeviceId deviceId) {
+        if (!enabled) {
+            return;
+        }
+        evictedDevices.put(deviceId, version.incrementAndGet());
+        Set<String> credentialsKeys = deviceCredentialsKeys.remove(deviceId);
+        if (credentialsKeys != null) {
+            log.trace("[{}] Evicting cached credentials", deviceId);
+            cache.invalidateAll(credentialsKeys);
+        }
+    }
+
+    @Override
+    public void evictInvalid() {
+        if (!enabled) {
+            return;
+        }
+        invalidEvictionVersion = version.incrementAndGet();
+        log.trace("Evicting cached invalid credentials");
+        cache.asMap().values().removeIf(response -> !response.hasDeviceInfo());
+    }
+
+    private boolean isEvictedAfter(ValidateDeviceCredentialsResponseMsg response, long requestVersion) {
+        if (!response.hasDeviceInfo()) {
+            return requestVersion < invalidEvictionVersion;
+        }
+        if (requestVersion < evictedTombstonesVersion.get()) {
+            return true;
+        }
+        Long evictionVersion = evictedDevices.getIfPresent(getDeviceId(response.getDeviceInfo()));
+        return evictionVersion != null && requestVersion < evictionVersion;
+    }
+
+    private void onRemoval(String credentialsKey, ValidateDeviceCredentialsResponseMsg response, RemovalCause cause) {
+        // the replacing response is already indexed by put
+        if (cause == RemovalCause.REPLACED || response == null || !response.hasDeviceInfo()) {
+            return;
+        }
+        deviceCredentialsKeys.computeIfPresent(getDeviceId(response.getDeviceInfo()), (id, keys) -> {
+            keys.remove(credentialsKey);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static DeviceId getDeviceId(DeviceInfoProto deviceInfo) {
+        return new DeviceId(new UUID(deviceInfo.getDeviceIdMSB(), deviceInfo.getDeviceIdLSB()));
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.common.transport.service;
 
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -63,8 +64,10 @@ import org.thingsboard.server.common.transport.DeviceDeletedEvent;
 import org.thingsboard.server.common.transport.DeviceProfileUpdatedEvent;
 import org.thingsboard.server.common.transport.DeviceUpdatedEvent;
 import org.thingsboard.server.common.transport.SessionMsgListener;
+import org.thingsboard.server.common.transport.TransportCredentialsCache;
 import org.thingsboard.server.common.transport.TransportDeviceProfileCache;
 import org.thingsboard.server.common.transport.TransportResourceCache;
+import org.thingsboard.server.common.transport.SessionPostTelemetryMsg;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
 import org.thingsboard.server.common.transport.TransportTenantProfileCache;
@@ -101,14 +104,14 @@ import org.thingsboard.server.queue.util.TbTransportComponent;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -149,6 +152,10 @@ public class DefaultTransportService implements TransportService {
     private long sessionInactivityTimeout;
     @Value("${transport.sessions.report_timeout}")
     private long sessionReportTimeout;
+    @Value("${transport.sessions.report_batch_size:0}")
+    private int sessionReportBatchSize;
+    @Value("${transport.telemetry_batch.max_msgs_per_record:100}")
+    private int telemetryBatchMaxMsgsPerRecord;
     @Value("${transport.client_side_rpc.timeout:60000}")
     private long clientSideRpcTimeout;
     @Value("${queue.transport.poll_interval}")
@@ -177,6 +184,7 @@ public class DefaultTransportService implements TransportService {
     private final SchedulerComponent scheduler;
     private final ApplicationEventPublisher eventPublisher;
     private final TransportResourceCache transportResourceCache;
+    private final TransportCredentialsCache credentialsCache;
 
     protected TbQueueRequestTemplate<TbProtoQueueMsg<TransportApiRequestMsg>, TbProtoQueueMsg<TransportApiResponseMsg>> transportApiRequestTemplate;
     protected TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> ruleEngineMsgProducer;
@@ -191,7 +199,7 @@ public class DefaultTransportService implements TransportService {
     private ExecutorService mainConsumerExecutor;
 
     public final ConcurrentMap<UUID, SessionMetaData> sessions = new ConcurrentHashMap<>();
-    private final ConcurrentMap<UUID, SessionActivityData> sessionsActivity = new ConcurrentHashMap<>();
+    private final SessionActivityTable sessionsActivity = new SessionActivityTable(Runtime.getRuntime().availableProcessors() * 4);
     private final Map<String, RpcRequestMetadata> toServerRpcPendingMap = new ConcurrentHashMap<>();
 
     private volatile boolean stopped = false;
@@ -206,7 +214,7 @@ public class DefaultTransportService implements TransportService {
                                    TransportTenantProfileCache tenantProfileCache,
                                    TransportRateLimitService rateLimitService,
                                    DataDecodingEncodingService dataDecodingEncodingService, SchedulerComponent scheduler, TransportResourceCache transportResourceCache,
-                                   ApplicationEventPublisher eventPublisher) {
+                                   TransportCredentialsCache credentialsCache, ApplicationEventPublisher eventPublisher) {
         this.partitionService = partitionService;
         this.serviceInfoProvider = serviceInfoProvider;
         this.queueProvider = queueProvider;
@@ -219,6 +227,7 @@ public class DefaultTransportService implements TransportService {
         this.dataDecodingEncodingService = dataDecodingEncodingService;
         this.scheduler = scheduler;
         this.transportResourceCache = transportResourceCache;
+        this.credentialsCache = credentialsCache;
         this.eventPublisher = eventPublisher;
     }
 
@@ -393,7 +402,7 @@ public class DefaultTransportService implements TransportService {
         log.trace("Processing msg: {}", msg);
         TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(),
                 TransportApiRequestMsg.newBuilder().setValidateTokenRequestMsg(msg).build());
-        doProcess(transportType, protoMsg, callback);
+        doProcess(transportType, toCredentialsKey("TOKEN", msg.getToken()), protoMsg, callback);
     }
 
     @Override
@@ -402,7 +411,7 @@ public class DefaultTransportService implements TransportService {
         log.trace("Processing msg: {}", msg);
         TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(),
                 TransportApiRequestMsg.newBuilder().setValidateBasicMqttCredRequestMsg(msg).build());
-        doProcess(transportType, protoMsg, callback);
+        doProcess(transportType, toCredentialsKey("MQTT_BASIC", msg.getClientId(), msg.getUserName(), msg.getPassword()), protoMsg, callback);
     }
 
     @Override
@@ -431,13 +440,27 @@ public class DefaultTransportService implements TransportService {
     public void process(DeviceTransportType transportType, TransportProtos.ValidateDeviceX509CertRequestMsg msg, TransportServiceCallback<ValidateDeviceCredentialsResponse> callback) {
         log.trace("Processing msg: {}", msg);
         TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), TransportApiRequestMsg.newBuilder().setValidateX509CertRequestMsg(msg).build());
-        doProcess(transportType, protoMsg, callback);
+        doProcess(transportType, toCredentialsKey("X509", msg.getHash()), protoMsg, callback);
     }
 
-    private void doProcess(DeviceTransportType transportType, TbProtoQueueMsg<TransportApiRequestMsg> protoMsg,
+    private void doProcess(DeviceTransportType transportType, String credentialsKey, TbProtoQueueMsg<TransportApiRequestMsg> protoMsg,
                            TransportServiceCallback<ValidateDeviceCredentialsResponse> callback) {
-        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(transportApiRequestTemplate.send(protoMsg), tmp -> {
-            TransportProtos.ValidateDeviceCredentialsResponseMsg msg = tmp.getValue().getValidateCredResponseMsg();
+        TransportProtos.ValidateDeviceCredentialsResponseMsg cachedMsg = credentialsCache.isEnabled() ? credentialsCache.get(credentialsKey) : null;
+        ListenableFuture<TransportProtos.ValidateDeviceCredentialsResponseMsg> responseMsg;
+        if (cachedMsg != null) {
+            log.trace("Using cached response to the credentials validation: {}", cachedMsg);
+            responseMsg = Futures.immediateFuture(cachedMsg);
+        } else {
+            long cacheVersion = credentialsCache.isEnabled() ? credentialsCache.getVersion() : 0;
+            responseMsg = Futures.transform(transportApiRequestTemplate.send(protoMsg), tmp -> {
+                TransportProtos.ValidateDeviceCredentialsResponseMsg msg = tmp.getValue().getValidateCredResponseMsg();
+                if (credentialsCache.isEnabled()) {
+                    credentialsCache.put(credentialsKey, msg, cacheVersion);
+                }
+                return msg;
+            }, MoreExecutors.directExecutor());
+        }
+        ListenableFuture<ValidateDeviceCredentialsResponse> response = Futures.transform(responseMsg, msg -> {
             ValidateDeviceCredentialsResponse.ValidateDeviceCredentialsResponseBuilder result = ValidateDeviceCredentialsResponse.builder();
             if (msg.hasDeviceInfo()) {
                 result.credentials(msg.getCredentialsBody());
@@ -459,6 +482,17 @@ public class DefaultTransportService implements TransportService {
         AsyncCallbackTemplate.withCallback(response, callback::onSuccess, callback::onError, transportCallbackExecutor);
     }
 
+    /**
+     * Length-prefixes the parts, so different credentials can't produce the same key.
+     */
+    private static String toCredentialsKey(String type, String... parts) {
+        StringBuilder key = new StringBuilder(type);
+        for (String part : parts) {
+            key.append(':').append(part.length()).append(':').append(part);
+        }
+        return key.toString();
+    }
+
     @Override
     public void process(TransportProtos.GetOrCreateDeviceFromGatewayRequestMsg requestMsg, TransportServiceCallback<GetOrCreateDeviceFromGatewayResponse> callback) {
         TbProtoQueueMsg<TransportApiRequestMsg> protoMsg = new TbProtoQueueMsg<>(UUID.randomUUID(), TransportApiRequestMsg.newBuilder().setGetOrCreateDeviceRequestMsg(requestMsg).build());
@@ -566,16 +600,100 @@ public class DefaultTransportService implements TransportService {
             CustomerId customerId = getCustomerId(sessionInfo);
             MsgPackCallback packCallback = new MsgPackCallback(msg.getTsKvListCount(), new ApiStatsProxyCallback<>(tenantId, customerId, dataPoints, callback));
             for (TransportProtos.TsKvListProto tsKv : msg.getTsKvListList()) {
-                TbMsgMetaData metaData = new TbMsgMetaData();
-                metaData.putValue("deviceName", sessionInfo.getDeviceName());
-                metaData.putValue("deviceType", sessionInfo.getDeviceType());
-                metaData.putValue("ts", tsKv.getTs() + "");
-                JsonObject json = JsonUtils.getJsonObject(tsKv.getKvList());
-                sendToRuleEngine(tenantId, deviceId, customerId, sessionInfo, json, metaData, SessionMsgType.POST_TELEMETRY_REQUEST, packCallback);
+                sendToRuleEngine(tenantId, toPostTelemetryTbMsg(deviceId, customerId, sessionInfo, tsKv), packCallback);
             }
         }
     }
 
+    @Override
+    public void process(List<SessionPostTelemetryMsg> msgs, TransportServiceCallback<Void> callback) {
+        if (msgs.isEmpty()) {
+            callback.onSuccess(null);
+            return;
+        }
+        TenantId tenantId = getTenantId(msgs.get(0).getSessionInfo());
+        for (SessionPostTelemetryMsg msg : msgs) {
+            if (!tenantId.equals(getTenantId(msg.getSessionInfo()))) {
+                callback.onError(new IllegalArgumentException("Telemetry of different tenants can't be sent in one batch!"));
+                return;
+            }
+        }
+        // like in the per-device mode, the devices that pass the rate limits are forwarded and the rejected ones are reported
+        List<SessionPostTelemetryMsg> accepted = new ArrayList<>(msgs.size());
+        List<Integer> acceptedDataPoints = new ArrayList<>(msgs.size());
+        TbRateLimitsException rejection = null;
+        for (SessionPostTelemetryMsg msg : msgs) {
+            int dataPoints = 0;
+            for (TransportProtos.TsKvListProto tsKv : msg.getMsg().getTsKvListList()) {
+                dataPoints += tsKv.getKvCount();
+            }
+            EntityType rateLimitedEntityType = checkRateLimits(msg.getSessionInfo(), msg.getMsg(), dataPoints);
+            if (rateLimitedEntityType == null) {
+                accepted.add(msg);
+                acceptedDataPoints.add(dataPoints);
+            } else if (rejection == null) {
+                rejection = new TbRateLimitsException(rateLimitedEntityType);
+            }
+        }
+        if (accepted.isEmpty()) {
+            callback.onError(rejection);
+            return;
+        }
+        Map<TopicPartitionInfo, List<TbMsg>> partitions = new LinkedHashMap<>();
+        for (SessionPostTelemetryMsg msg : accepted) {
+            TransportProtos.SessionInfoProto sessionInfo = msg.getSessionInfo();
+            reportActivityInternal(sessionInfo);
+            DeviceId deviceId = getDeviceId(sessionInfo);
+            CustomerId customerId = getCustomerId(sessionInfo);
+            for (TransportProtos.TsKvListProto tsKv : msg.getMsg().getTsKvListList()) {
+                TbMsg tbMsg = toPostTelemetryTbMsg(deviceId, customerId, sessionInfo, tsKv);
+                TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_RULE_ENGINE, tbMsg.getQueueName(), tenantId, tbMsg.getOriginator());
+                partitions.computeIfAbsent(tpi, key -> new ArrayList<>()).add(tbMsg);
+            }
+        }
+        TbRateLimitsException rateLimitsException = rejection;
+        if (partitions.isEmpty()) {
+            if (rateLimitsException != null) {
+                callback.onError(rateLimitsException);
+            } else {
+                callback.onSuccess(null);
+            }
+            return;
+        }
+        // each record becomes that many messages of the consumer pack, beyond max_poll_records and within the same pack processing timeout
+        Map<TopicPartitionInfo, List<List<TbMsg>>> records = new LinkedHashMap<>();
+        int recordsCount = 0;
+        for (Map.Entry<TopicPartitionInfo, List<TbMsg>> partition : partitions.entrySet()) {
+            List<List<TbMsg>> partitionRecords = Lists.partition(partition.getValue(), Math.max(1, telemetryBatchMaxMsgsPerRecord));
+            records.put(partition.getKey(), partitionRecords);
+            recordsCount += partitionRecords.size();
+        }
+        MsgPackCallback packCallback = new MsgPackCallback(recordsCount, new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(Void msg) {
+                try {
+                    for (int i = 0; i < accepted.size(); i++) {
+                        CustomerId customerId = getCustomerId(accepted.get(i).getSessionInfo());
+                        apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.TRANSPORT_MSG_COUNT, 1);
+                        apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.TRANSPORT_DP_COUNT, acceptedDataPoints.get(i));
+                    }
+                } finally {
+                    if (rateLimitsException != null) {
+                        callback.onError(rateLimitsException);
+                    } else {
+                        callback.onSuccess(null);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                callback.onError(e);
+            }
+        });
+        records.forEach((tpi, partitionRecords) -> partitionRecords.forEach(tbMsgs -> sendToRuleEngine(tenantId, tpi, tbMsgs, packCallback)));
+    }
+
     @Override
     public void process(TransportProtos.SessionInfoProto sessionInfo, TransportProtos.PostAttributeMsg msg, TransportServiceCallback<Void> callback) {
         if (checkLimits(sessionInfo, msg, callback, msg.getKvCount())) {
@@ -735,30 +853,32 @@ public class DefaultTransportService implements TransportService {
     }
 
     private void reportActivityInternal(TransportProtos.SessionInfoProto sessionInfo) {
-        UUID sessionId = toSessionId(sessionInfo);
-        SessionActivityData sessionMetaData = sessionsActivity.computeIfAbsent(sessionId, id -> new SessionActivityData(sessionInfo));
-        sessionMetaData.updateLastActivityTime();
+        sessionsActivity.reportActivity(sessionInfo, System.currentTimeMillis());
     }
 
     private void checkInactivityAndReportActivity() {
         long expTime = System.currentTimeMillis() - sessionInactivityTimeout;
-        Set<UUID> sessionsToRemove = new HashSet<>();
-        sessionsActivity.forEach((uuid, sessionAD) -> {
-            long lastActivityTime = sessionAD.getLastActivityTime();
+        List<TransportProtos.SessionInfoProto> sessionsToRemove = new ArrayList<>();
+        Map<TopicPartitionInfo, List<TransportProtos.SessionSubscriptionInfoProto>> activityBatches = sessionReportBatchSize > 0 ? new HashMap<>() : null;
+        sessionsActivity.forEach((activitySessionInfo, activityTime, lastReportedActivityTime) -> {
+            long lastActivityTime = activityTime;
+            UUID uuid = toSessionId(activitySessionInfo);
             SessionMetaData sessionMD = sessions.get(uuid);
+            TransportProtos.SessionInfoProto sessionInfo = activitySessionInfo;
             if (sessionMD != null) {
-                sessionAD.setSessionInfo(sessionMD.getSessionInfo());
+                if (sessionMD.getSessionInfo() != activitySessionInfo) {
+                    sessionInfo = sessionMD.getSessionInfo();
+                    sessionsActivity.updateSessionInfo(sessionInfo);
+                }
             } else {
-                sessionsToRemove.add(uuid);
+                sessionsToRemove.add(sessionInfo);
             }
-            TransportProtos.SessionInfoProto sessionInfo = sessionAD.getSessionInfo();
 
             if (sessionInfo.getGwSessionIdMSB() != 0 && sessionInfo.getGwSessionIdLSB() != 0) {
                 var gwSessionId = new UUID(sessionInfo.getGwSessionIdMSB(), sessionInfo.getGwSessionIdLSB());
                 SessionMetaData gwMetaData = sessions.get(gwSessionId);
-                SessionActivityData gwActivityData = sessionsActivity.get(gwSessionId);
                 if (gwMetaData != null && gwMetaData.isOverwriteActivityTime()) {
-                    lastActivityTime = Math.max(gwActivityData.getLastActivityTime(), lastActivityTime);
+                    lastActivityTime = Math.max(sessionsActivity.getLastActivityTime(sessionInfo.getGwSessionIdMSB(), sessionInfo.getGwSessionIdLSB()), lastActivityTime);
                 }
             }
             if (lastActivityTime < expTime) {
@@ -767,20 +887,25 @@ public class DefaultTransportService implements TransportService {
                         log.debug("[{}] Session has expired due to last activity time: {}", toSessionId(sessionInfo), lastActivityTime);
                     }
                     sessions.remove(uuid);
-                    sessionsToRemove.add(uuid);
+                    sessionsToRemove.add(sessionInfo);
                     process(sessionInfo, SESSION_EVENT_MSG_CLOSED, null);
                     sessionMD.getListener().onRemoteSessionCloseCommand(uuid, SESSION_CLOSE_NOTIFICATION_PROTO);
                 }
             } else {
-                if (lastActivityTime > sessionAD.getLastReportedActivityTime()) {
+                if (lastActivityTime > lastReportedActivityTime) {
                     final long lastActivityTimeFinal = lastActivityTime;
-                    process(sessionInfo, TransportProtos.SubscriptionInfoProto.newBuilder()
+                    TransportProtos.SubscriptionInfoProto subscriptionInfo = TransportProtos.SubscriptionInfoProto.newBuilder()
                             .setAttributeSubscription(sessionMD != null && sessionMD.isSubscribedToAttributes())
                             .setRpcSubscription(sessionMD != null && sessionMD.isSubscribedToRPC())
-                            .setLastActivityTime(lastActivityTime).build(), new TransportServiceCallback<Void>() {
+                            .setLastActivityTime(lastActivityTime).build();
+                    if (activityBatches != null) {
+                        addToActivityBatch(activityBatches, sessionInfo, subscriptionInfo);
+                        return;
+                    }
+                    process(sessionInfo, subscriptionInfo, new TransportServiceCallback<Void>() {
                         @Override
                         public void onSuccess(Void msg) {
-                            sessionAD.setLastReportedActivityTime(lastActivityTimeFinal);
+                            sessionsActivity.setLastReportedActivityTime(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), lastActivityTimeFinal);
                         }
 
                         @Override
@@ -791,8 +916,56 @@ public class DefaultTransportService implements TransportService {
                 }
             }
         });
+        if (activityBatches != null) {
+            activityBatches.forEach(this::sendActivityBatch);
+        }
         // Removes all closed or short-lived sessions.
-        sessionsToRemove.forEach(sessionsActivity::remove);
+        sessionsToRemove.forEach(sessionInfo -> sessionsActivity.remove(sessionInfo.getSessionIdMSB(), sessionInfo.getSessionIdLSB()));
+    }
+
+    private void addToActivityBatch(Map<TopicPartitionInfo, List<TransportProtos.SessionSubscriptionInfoProto>> activityBatches,
+                                    TransportProtos.SessionInfoProto sessionInfo, TransportProtos.SubscriptionInfoProto subscriptionInfo) {
+        TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, getTenantId(sessionInfo), getDeviceId(sessionInfo));
+        List<TransportProtos.SessionSubscriptionInfoProto> batch = activityBatches.computeIfAbsent(tpi, key -> new ArrayList<>());
+        batch.add(TransportProtos.SessionSubscriptionInfoProto.newBuilder()
+                .setSessionInfo(sessionInfo)
+                .setSubscriptionInfo(subscriptionInfo).build());
+        if (batch.size() >= sessionReportBatchSize) {
+            activityBatches.remove(tpi);
+            sendActivityBatch(tpi, batch);
+        }
+    }
+
+    /**
+     * Reports the activity of many sessions, whose devices belong to the same core partition, with one queue message.
+     * Like the per-session report, the activity is not checked against the tenant and device rate limits: it is sent by the
+     * transport on a timer rather than by the device, so it must not take the tokens of the device messages, and a dropped
+     * report would make the device look inactive although it sends data.
+     */
+    private void sendActivityBatch(TopicPartitionInfo tpi, List<TransportProtos.SessionSubscriptionInfoProto> batch) {
+        if (log.isTraceEnabled()) {
+            log.trace("Pushing to topic {} activity of {} sessions", tpi.getFullTopicName(), batch.size());
+        }
+        TransportTbQueueCallback callback = new TransportTbQueueCallback(new TransportServiceCallback<>() {
+            @Override
+            public void onSuccess(Void msg) {
+                for (TransportProtos.SessionSubscriptionInfoProto sessionActivity : batch) {
+                    TransportProtos.SessionInfoProto sessionInfo = sessionActivity.getSessionInfo();
+                    sessionsActivity.setLastReportedActivityTime(sessionInfo.getSessionIdMSB(), sessionInfo.getSessionIdLSB(),
+                            sessionActivity.getSubscriptionInfo().getLastActivityTime());
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                log.warn("Failed to report last activity time of {} sessions", batch.size(), e);
+            }
+        });
+        tbCoreProducerStats.incrementTotal();
+        StatsCallback wrappedCallback = new StatsCallback(callback, tbCoreProducerStats);
+        tbCoreMsgProducer.send(tpi,
+                new TbProtoQueueMsg<>(UUID.randomUUID(), ToCoreMsg.newBuilder().addAllSessionActivityBatch(batch).build()),
+                wrappedCallback);
     }
 
     @Override
@@ -847,13 +1020,7 @@ public class DefaultTransportService implements TransportService {
     }
 
     private boolean checkLimits(TransportProtos.SessionInfoProto sessionInfo, Object msg, TransportServiceCallback<?> callback, int dataPoints) {
-        if (log.isTraceEnabled()) {
-            log.trace("[{}] Processing msg: {}", toSessionId(sessionInfo), msg);
-        }
-        TenantId tenantId = TenantId.fromUUID(new UUID(sessionInfo.getTenantIdMSB(), sessionInfo.getTenantIdLSB()));
-        DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
-
-        EntityType rateLimitedEntityType = rateLimitService.checkLimits(tenantId, deviceId, dataPoints);
+        EntityType rateLimitedEntityType = checkRateLimits(sessionInfo, msg, dataPoints);
         if (rateLimitedEntityType == null) {
             return true;
         } else {
@@ -864,6 +1031,15 @@ public class DefaultTransportService implements TransportService {
         }
     }
 
+    private EntityType checkRateLimits(TransportProtos.SessionInfoProto sessionInfo, Object msg, int dataPoints) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Processing msg: {}", toSessionId(sessionInfo), msg);
+        }
+        TenantId tenantId = TenantId.fromUUID(new UUID(sessionInfo.getTenantIdMSB(), sessionInfo.getTenantIdLSB()));
+        DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
+        return rateLimitService.checkLimits(tenantId, deviceId, dataPoints);
+    }
+
     protected void processToTransportMsg(TransportProtos.ToTransportMsg toSessionMsg) {
         UUID sessionId = new UUID(toSessionMsg.getSessionIdMSB(), toSessionMsg.getSessionIdLSB());
         SessionMetaData md = sessions.get(sessionId);
@@ -878,9 +1054,12 @@ public class DefaultTransportService implements TransportService {
                     listener.onAttributeUpdate(sessionId, toSessionMsg.getAttributeUpdateNotification());
                 }
                 if (toSessionMsg.hasSessionCloseNotification()) {
+                    // sent by the device actor on credentials update as well
+                    credentialsCache.evict(getDeviceId(md.getSessionInfo()));
                     listener.onRemoteSessionCloseCommand(sessionId, toSessionMsg.getSessionCloseNotification());
                 }
                 if (toSessionMsg.hasToTransportUpdateCredentialsNotification()) {
+                    credentialsCache.evict(getDeviceId(md.getSessionInfo()));
                     listener.onToTransportUpdateCredentials(toSessionMsg.getToTransportUpdateCredentialsNotification());
                 }
                 if (toSessionMsg.hasToDeviceRequest()) {
@@ -998,6 +1177,9 @@ public class DefaultTransportService implements TransportService {
     }
 
     private void onDeviceUpdate(Device device) {
+        // broadcast when the device is created and when its credentials are updated as well
+        credentialsCache.evict(device.getId());
+        credentialsCache.evictInvalid();
         long deviceIdMSB = device.getId().getId().getMostSignificantBits();
         long deviceIdLSB = device.getId().getId().getLeastSignificantBits();
         long deviceProfileIdMSB = device.getDeviceProfileId().getId().getMostSignificantBits();
@@ -1033,6 +1215,7 @@ public class DefaultTransportService implements TransportService {
     }
 
     private void onDeviceDeleted(DeviceId deviceId) {
+        credentialsCache.evict(deviceId);
         sessions.forEach((id, md) -> {
             DeviceId sessionDeviceId = new DeviceId(new UUID(md.getSessionInfo().getDeviceIdMSB(), md.getSessionInfo().getDeviceIdLSB()));
             if (sessionDeviceId.equals(deviceId)) {
@@ -1105,8 +1288,43 @@ public class DefaultTransportService implements TransportService {
         ruleEngineMsgProducer.send(tpi, new TbProtoQueueMsg<>(tbMsg.getId(), msg), wrappedCallback);
     }
 
+    private void sendToRuleEngine(TenantId tenantId, TopicPartitionInfo tpi, List<TbMsg> tbMsgs, TbQueueCallback callback) {
+        if (tbMsgs.size() == 1) {
+            sendToRuleEngine(tenantId, tbMsgs.get(0), callback);
+            return;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Pushing to topic {} batch of {} messages", tenantId, tpi.getFullTopicName(), tbMsgs.size());
+        }
+        ToRuleEngineMsg.Builder msg = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+        for (TbMsg tbMsg : tbMsgs) {
+            msg.addTbMsgBatch(TbMsg.toByteString(tbMsg));
+            msg.addTbMsgBatchIdMSB(tbMsg.getId().getMostSignificantBits());
+            msg.addTbMsgBatchIdLSB(tbMsg.getId().getLeastSignificantBits());
+        }
+        ruleEngineProducerStats.incrementTotal();
+        StatsCallback wrappedCallback = new StatsCallback(callback, ruleEngineProducerStats);
+        ruleEngineMsgProducer.send(tpi, new TbProtoQueueMsg<>(tbMsgs.get(0).getId(), msg.build()), wrappedCallback);
+    }
+
+    private TbMsg toPostTelemetryTbMsg(DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, TransportProtos.TsKvListProto tsKv) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", sessionInfo.getDeviceName());
+        metaData.putValue("deviceType", sessionInfo.getDeviceType());
+        metaData.putValue("ts", tsKv.getTs() + "");
+        JsonObject json = JsonUtils.getJsonObject(tsKv.getKvList());
+        return toTbMsg(deviceId, customerId, sessionInfo, json, metaData, SessionMsgType.POST_TELEMETRY_REQUEST);
+    }
+
     private void sendToRuleEngine(TenantId tenantId, DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, JsonObject json,
                                   TbMsgMetaData metaData, SessionMsgType sessionMsgType, TbQueueCallback callback) {
+        sendToRuleEngine(tenantId, toTbMsg(deviceId, customerId, sessionInfo, json, metaData, sessionMsgType), callback);
+    }
+
+    private TbMsg toTbMsg(DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, JsonObject json,
+                          TbMsgMetaData metaData, SessionMsgType sessionMsgType) {
         DeviceProfileId deviceProfileId = new DeviceProfileId(new UUID(sessionInfo.getDeviceProfileIdMSB(), sessionInfo.getDeviceProfileIdLSB()));
         DeviceProfile deviceProfile = deviceProfileCache.get(deviceProfileId);
         RuleChainId ruleChainId;
@@ -1121,8 +1339,7 @@ public class DefaultTransportService implements TransportService {
             queueName = deviceProfile.getDefaultQueueName();
         }
 
-        TbMsg tbMsg = TbMsg.newMsg(queueName, sessionMsgType.name(), deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
-        sendToRuleEngine(tenantId, tbMsg, callback);
+        return TbMsg.newMsg(queueName, sessionMsgType.name(), deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
     }
 
     private class TransportTbQueueCallback implements TbQueueCallback {
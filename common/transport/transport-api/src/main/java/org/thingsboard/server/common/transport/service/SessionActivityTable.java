@@ -0,0 +1,265 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+
+/**
+ * Last activity times of the transport sessions.
+ * Unlike a map of per session objects, keeps the session ids and timestamps in primitive arrays, so a session costs
+ * four longs and a reference to its {@link SessionInfoProto}, which is shared with the session metadata.
+ * The table is split into stripes by the session id hash. Each stripe is an open addressing hash table with linear probing,
+ * guarded by its own lock.
+ */
+class SessionActivityTable {
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    SessionActivityTable(int concurrencyLevel) {
+        int stripesCount = 1;
+        int stripeBits = 0;
+        while (stripesCount < concurrencyLevel) {
+            stripesCount <<= 1;
+            stripeBits++;
+        }
+        this.stripes = new Stripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeShift = 32 - stripeBits;
+    }
+
+    void reportActivity(SessionInfoProto sessionInfo, long ts) {
+        long msb = sessionInfo.getSessionIdMSB();
+        long lsb = sessionInfo.getSessionIdLSB();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            // the slot is resolved first, put may replace the arrays
+            int idx = stripe.put(hash, msb, lsb, sessionInfo);
+            stripe.lastActivityTimes[idx] = ts;
+        }
+    }
+
+    /**
+     * Replaces the session info of the session, if it is in the table.
+     */
+    void updateSessionInfo(SessionInfoProto sessionInfo) {
+        long msb = sessionInfo.getSessionIdMSB();
+        long lsb = sessionInfo.getSessionIdLSB();
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int idx = stripe.indexOf(hash, msb, lsb);
+            if (idx >= 0) {
+                stripe.sessionInfos[idx] = sessionInfo;
+            }
+        }
+    }
+
+    /**
+     * @return the last activity time of the session or 0 if the session is not in the table.
+     */
+    long getLastActivityTime(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int idx = stripe.indexOf(hash, msb, lsb);
+            return idx >= 0 ? stripe.lastActivityTimes[idx] : 0L;
+        }
+    }
+
+    void setLastReportedActivityTime(long msb, long lsb, long ts) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int idx = stripe.indexOf(hash, msb, lsb);
+            if (idx >= 0 && stripe.lastReportedActivityTimes[idx] < ts) {
+                stripe.lastReportedActivityTimes[idx] = ts;
+            }
+        }
+    }
+
+    void remove(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            stripe.remove(hash, msb, lsb);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visits all the sessions of the table. Each stripe is copied under its lock and visited after the lock is released,
+     * so the visitor may modify the table and the activity reported meanwhile is seen by the next scan.
+     */
+    void forEach(SessionActivityVisitor visitor) {
+        SessionInfoProto[] sessionInfos = new SessionInfoProto[0];
+        long[] lastActivityTimes = new long[0];
+        long[] lastReportedActivityTimes = new long[0];
+        for (Stripe stripe : stripes) {
+            int count = 0;
+            synchronized (stripe) {
+                if (sessionInfos.length < stripe.size) {
+                    sessionInfos = new SessionInfoProto[stripe.sessionInfos.length];
+                    lastActivityTimes = new long[stripe.sessionInfos.length];
+                    lastReportedActivityTimes = new long[stripe.sessionInfos.length];
+                }
+                for (int i = 0; i < stripe.sessionInfos.length; i++) {
+                    if (stripe.sessionInfos[i] != null) {
+                        sessionInfos[count] = stripe.sessionInfos[i];
+                        lastActivityTimes[count] = stripe.lastActivityTimes[i];
+                        lastReportedActivityTimes[count] = stripe.lastReportedActivityTimes[i];
+                        count++;
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                visitor.visit(sessionInfos[i], lastActivityTimes[i], lastReportedActivityTimes[i]);
+                sessionInfos[i] = null;
+            }
+        }
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripeShift == 32 ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    interface SessionActivityVisitor {
+        void visit(SessionInfoProto sessionInfo, long lastActivityTime, long lastReportedActivityTime);
+    }
+
+    private static final class Stripe {
+
+        // a slot is free when its session info is null
+        private long[] msbs = new long[MIN_STRIPE_CAPACITY];
+        private long[] lsbs = new long[MIN_STRIPE_CAPACITY];
+        private long[] lastActivityTimes = new long[MIN_STRIPE_CAPACITY];
+        private long[] lastReportedActivityTimes = new long[MIN_STRIPE_CAPACITY];
+        private SessionInfoProto[] sessionInfos = new SessionInfoProto[MIN_STRIPE_CAPACITY];
+        private int size;
+
+        int indexOf(int hash, long msb, long lsb) {
+            int mask = sessionInfos.length - 1;
+            for (int i = hash & mask; sessionInfos[i] != null; i = (i + 1) & mask) {
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the slot of the session, which is added if missing.
+         */
+        int put(int hash, long msb, long lsb, SessionInfoProto sessionInfo) {
+            int mask = sessionInfos.length - 1;
+            int i = hash & mask;
+            for (; sessionInfos[i] != null; i = (i + 1) & mask) {
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    return i;
+                }
+            }
+            if ((size + 1) * 2 > sessionInfos.length) {
+                resize(sessionInfos.length * 2);
+                return put(hash, msb, lsb, sessionInfo);
+            }
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            lastActivityTimes[i] = 0L;
+            lastReportedActivityTimes[i] = 0L;
+            sessionInfos[i] = sessionInfo;
+            size++;
+            return i;
+        }
+
+        void remove(int hash, long msb, long lsb) {
+            int i = indexOf(hash, msb, lsb);
+            if (i < 0) {
+                return;
+            }
+            int mask = sessionInfos.length - 1;
+            // shifts back the following entries of the probe sequence, so no tombstones are needed
+            for (int j = (i + 1) & mask; sessionInfos[j] != null; j = (j + 1) & mask) {
+                int home = hash(msbs[j], lsbs[j]) & mask;
+                boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!reachable) {
+                    move(j, i);
+                    i = j;
+                }
+            }
+            sessionInfos[i] = null;
+            size--;
+            if (sessionInfos.length > MIN_STRIPE_CAPACITY && size * 8 < sessionInfos.length) {
+                resize(sessionInfos.length / 2);
+            }
+        }
+
+        private void move(int from, int to) {
+            msbs[to] = msbs[from];
+            lsbs[to] = lsbs[from];
+            lastActivityTimes[to] = lastActivityTimes[from];
+            lastReportedActivityTimes[to] = lastReportedActivityTimes[from];
+            sessionInfos[to] = sessionInfos[from];
+        }
+
+        private void resize(int capacity) {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldLastActivityTimes = lastActivityTimes;
+            long[] oldLastReportedActivityTimes = lastReportedActivityTimes;
+            SessionInfoProto[] oldSessionInfos = sessionInfos;
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            lastActivityTimes = new long[capacity];
+            lastReportedActivityTimes = new long[capacity];
+            sessionInfos = new SessionInfoProto[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldSessionInfos.length; j++) {
+                if (oldSessionInfos[j] != null) {
+                    int i = hash(oldMsbs[j], oldLsbs[j]) & mask;
+                    while (sessionInfos[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    msbs[i] = oldMsbs[j];
+                    lsbs[i] = oldLsbs[j];
+                    lastActivityTimes[i] = oldLastActivityTimes[j];
+                    lastReportedActivityTimes[i] = oldLastReportedActivityTimes[j];
+                    sessionInfos[i] = oldSessionInfos[j];
+                }
+            }
+        }
+    }
+
+}
@@ -21,7 +21,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -32,6 +34,7 @@ public class JsonConverterTest {
     @Before
     public void before() {
         JsonConverter.setTypeCastEnabled(true);
+        JsonConverter.setMaxStringValueLength(0);
     }
 
     @Test
@@ -99,4 +102,66 @@ public class JsonConverterTest {
         JsonConverter.setTypeCastEnabled(false);
         JsonConverter.convertToTelemetry(JSON_PARSER.parse("{\"meterReadingDelta\": 9.9701010061400066E19}"), 0L);
     }
+
+    @Test
+    public void testStreamingTelemetryMatchesTree() {
+        String[] payloads = {
+                "{\"temperature\": 42.5, \"humidity\": 73, \"active\": true, \"name\": \"dev\", \"count\": \"12\", \"skip\": null}",
+                "{\"nested\": {\"a\": [1, 2, {\"b\": null}]}, \"array\": [\"x\", 1.5], \"big\": 1E19, \"exp\": 101E-1}",
+                "{\"ts\": 1451649600512, \"values\": {\"key1\": \"value1\", \"key2\": 1.0}}",
+                "{\"values\": {\"key1\": 1}, \"ts\": \"1451649600512\", \"other\": {\"x\": 1}}",
+                "{\"ts\": 1451649600512, \"other\": 1, \"values\": {\"key1\": 1}, \"after\": [1]}",
+                "{\"ts\": 1451649600512, \"key1\": 1}",
+                "{\"values\": {\"key1\": 1}, \"key2\": 2}",
+                "{\"key\": 1, \"key\": \"2\", \"gone\": 3, \"gone\": null}",
+                "[{\"ts\": 1451649600512, \"values\": {\"key1\": 1}}, {\"ts\": 1451649600513, \"values\": {\"key1\": 2}}, {\"key2\": false}]"
+        };
+        for (String payload : payloads) {
+            Assert.assertEquals(payload, JsonConverter.convertToTelemetryProto(JSON_PARSER.parse(payload), 0L),
+                    JsonConverter.convertToTelemetryProto(new StringReader(payload), 0L));
+        }
+    }
+
+    @Test
+    public void testStreamingAttributesMatchesTree() {
+        String payload = "{\"firmware\": \"1.0.2\", \"serial\": 12345, \"config\": {\"a\": true}, \"ratio\": 0.5}";
+        Assert.assertEquals(JsonConverter.convertToAttributesProto(JSON_PARSER.parse(payload)),
+                JsonConverter.convertToAttributesProto(new StringReader(payload)));
+    }
+
+    @Test
+    public void testStreamingTelemetryIgnoresInvalidValuesOutsideOfTsFormat() {
+        JsonConverter.setTypeCastEnabled(false);
+        String payload = "{\"big\": 89701010051400054084, \"ts\": 1451649600512, \"values\": {\"key1\": 1}}";
+        TransportProtos.PostTelemetryMsg msg = JsonConverter.convertToTelemetryProto(new StringReader(payload), 0L);
+        Assert.assertEquals(1451649600512L, msg.getTsKvList(0).getTs());
+        Assert.assertEquals(1, msg.getTsKvList(0).getKvCount());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testStreamingTelemetryBigIntegerWithoutParsing() {
+        JsonConverter.setTypeCastEnabled(false);
+        JsonConverter.convertToTelemetryProto(new StringReader("{\"meterReadingDelta\": 89701010051400054084}"), 0L);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testStreamingTelemetryMaxStringValueLength() {
+        JsonConverter.setMaxStringValueLength(3);
+        JsonConverter.convertToTelemetryProto(new StringReader("{\"key\": \"value\"}"), 0L);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testStreamingTelemetryRejectsPrimitiveArrayItem() {
+        JsonConverter.convertToTelemetryProto(new StringReader("[{\"key\": 1}, 2]"), 0L);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testStreamingTelemetryRejectsEmptyPayload() {
+        JsonConverter.convertToTelemetryProto(new StringReader(""), 0L);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void testStreamingTelemetryRejectsMalformedPayload() {
+        JsonConverter.convertToTelemetryProto(new StringReader("{\"key\": 1"), 0L);
+    }
 }
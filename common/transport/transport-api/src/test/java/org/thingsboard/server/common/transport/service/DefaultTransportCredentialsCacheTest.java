@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceCredentialsResponseMsg;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultTransportCredentialsCacheTest {
+
+    private DefaultTransportCredentialsCache cache;
+
+    @Before
+    public void before() {
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createDefaultCounter(anyString(), anyString(), anyString())).thenAnswer(inv -> mock(DefaultCounter.class));
+        cache = new DefaultTransportCredentialsCache(statsFactory);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", 60000L);
+        ReflectionTestUtils.setField(cache, "negativeTtl", 60000L);
+        cache.init();
+    }
+
+    @Test
+    public void testGetCachedValidAndInvalidCredentials() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        ValidateDeviceCredentialsResponseMsg valid = response(deviceId);
+        ValidateDeviceCredentialsResponseMsg invalid = ValidateDeviceCredentialsResponseMsg.getDefaultInstance();
+        cache.put("TOKEN:5:valid", valid, cache.getVersion());
+        cache.put("TOKEN:7:invalid", invalid, cache.getVersion());
+
+        Assert.assertEquals(valid, cache.get("TOKEN:5:valid"));
+        Assert.assertEquals(invalid, cache.get("TOKEN:7:invalid"));
+        Assert.assertNull(cache.get("TOKEN:7:missing"));
+    }
+
+    @Test
+    public void testEvictAllCredentialsOfDevice() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        DeviceId otherDeviceId = new DeviceId(UUID.randomUUID());
+        cache.put("TOKEN:1:a", response(deviceId), cache.getVersion());
+        cache.put("X509:1:b", response(deviceId), cache.getVersion());
+        cache.put("TOKEN:1:c", response(otherDeviceId), cache.getVersion());
+
+        cache.evict(deviceId);
+
+        Assert.assertNull(cache.get("TOKEN:1:a"));
+        Assert.assertNull(cache.get("X509:1:b"));
+        Assert.assertNotNull(cache.get("TOKEN:1:c"));
+    }
+
+    @Test
+    public void testEvictDeviceAfterCredentialsReplaced() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        cache.put("TOKEN:1:a", ValidateDeviceCredentialsResponseMsg.getDefaultInstance(), cache.getVersion());
+        cache.put("TOKEN:1:a", response(deviceId), cache.getVersion());
+        cache.put("TOKEN:1:a", response(deviceId), cache.getVersion());
+
+        cache.evict(deviceId);
+
+        Assert.assertNull(cache.get("TOKEN:1:a"));
+    }
+
+    @Test
+    public void testSkipResponseRequestedBeforeEviction() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        long requestVersion = cache.getVersion();
+
+        cache.evict(deviceId);
+        cache.put("TOKEN:1:a", response(deviceId), requestVersion);
+        Assert.assertNull(cache.get("TOKEN:1:a"));
+
+        cache.put("TOKEN:1:a", response(deviceId), cache.getVersion());
+        Assert.assertNotNull(cache.get("TOKEN:1:a"));
+    }
+
+    @Test
+    public void testEvictInvalidCredentials() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        ValidateDeviceCredentialsResponseMsg invalid = ValidateDeviceCredentialsResponseMsg.getDefaultInstance();
+        long requestVersion = cache.getVersion();
+        cache.put("TOKEN:1:a", invalid, requestVersion);
+        cache.put("TOKEN:1:b", response(deviceId), requestVersion);
+
+        cache.evictInvalid();
+        cache.put("TOKEN:1:c", invalid, requestVersion);
+
+        Assert.assertNull(cache.get("TOKEN:1:a"));
+        Assert.assertNull(cache.get("TOKEN:1:c"));
+        Assert.assertNotNull(cache.get("TOKEN:1:b"));
+    }
+
+    private static ValidateDeviceCredentialsResponseMsg response(DeviceId deviceId) {
+        return ValidateDeviceCredentialsResponseMsg.newBuilder()
+                .setDeviceInfo(DeviceInfoProto.newBuilder()
+                        .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                        .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                        .build())
+                .setCredentialsBody("body")
+                .build();
+    }
+
+}
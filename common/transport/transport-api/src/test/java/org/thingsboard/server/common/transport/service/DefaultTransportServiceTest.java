@@ -0,0 +1,230 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageRecordKey;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.msg.tools.TbRateLimitsException;
+import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.TbApiUsageReportClient;
+import org.thingsboard.server.common.transport.SessionPostTelemetryMsg;
+import org.thingsboard.server.common.transport.TransportDeviceProfileCache;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.limits.TransportRateLimitService;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class DefaultTransportServiceTest {
+
+    private static final TenantId TENANT_ID = TenantId.fromUUID(UUID.randomUUID());
+    private static final TopicPartitionInfo TPI_1 = new TopicPartitionInfo("tb_rule_engine.main", TENANT_ID, 1, true);
+    private static final TopicPartitionInfo TPI_2 = new TopicPartitionInfo("tb_rule_engine.main", TENANT_ID, 2, true);
+
+    private final PartitionService partitionService = mock(PartitionService.class);
+    private final TransportRateLimitService rateLimitService = mock(TransportRateLimitService.class);
+    private final TbApiUsageReportClient apiUsageClient = mock(TbApiUsageReportClient.class);
+    @SuppressWarnings("unchecked")
+    private final TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> ruleEngineMsgProducer = mock(TbQueueProducer.class);
+    @SuppressWarnings("unchecked")
+    private final TransportServiceCallback<Void> callback = mock(TransportServiceCallback.class);
+
+    private DefaultTransportService transportService;
+
+    @Before
+    public void before() {
+        transportService = new DefaultTransportService(partitionService, null, null, null, null, null,
+                mock(TransportDeviceProfileCache.class), null, rateLimitService,
+                null, null, null, null, null);
+        ReflectionTestUtils.setField(transportService, "apiUsageClient", apiUsageClient);
+        ReflectionTestUtils.setField(transportService, "telemetryBatchMaxMsgsPerRecord", 2);
+        transportService.ruleEngineMsgProducer = ruleEngineMsgProducer;
+        transportService.ruleEngineProducerStats = mock(MessagesStats.class);
+        transportService.transportCallbackExecutor = MoreExecutors.newDirectExecutorService();
+    }
+
+    @Test
+    public void testBatchGroupedByRuleEnginePartition() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        DeviceId device3 = new DeviceId(UUID.randomUUID());
+        resolve(device1, TPI_1);
+        resolve(device2, TPI_1);
+        resolve(device3, TPI_2);
+
+        transportService.process(Arrays.asList(telemetry(TENANT_ID, device1), telemetry(TENANT_ID, device2), telemetry(TENANT_ID, device3)), callback);
+
+        ToRuleEngineMsg batch = sent(TPI_1).get(0);
+        Assert.assertEquals(2, batch.getTbMsgBatchCount());
+        Assert.assertEquals(2, batch.getTbMsgBatchIdMSBCount());
+        Assert.assertTrue(batch.getTbMsg().isEmpty());
+        verify(callback, never()).onSuccess(any());
+
+        completeAll();
+        verify(callback).onSuccess(null);
+        verify(apiUsageClient, times(3)).report(eq(TENANT_ID), any(), eq(ApiUsageRecordKey.TRANSPORT_MSG_COUNT), eq(1L));
+    }
+
+    @Test
+    public void testBatchSplitIntoRecordsOfMaxSize() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        DeviceId device3 = new DeviceId(UUID.randomUUID());
+        resolve(device1, TPI_1);
+        resolve(device2, TPI_1);
+        resolve(device3, TPI_1);
+
+        transportService.process(Arrays.asList(telemetry(TENANT_ID, device1), telemetry(TENANT_ID, device2), telemetry(TENANT_ID, device3)), callback);
+
+        List<ToRuleEngineMsg> sent = sent(TPI_1);
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(2, sent.get(0).getTbMsgBatchCount());
+        Assert.assertEquals(0, sent.get(1).getTbMsgBatchCount());
+        completeAll();
+        verify(callback).onSuccess(null);
+    }
+
+    @Test
+    public void testSingleMessageOfPartitionSentWithoutBatch() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        resolve(device1, TPI_1);
+        resolve(device2, TPI_2);
+
+        transportService.process(Arrays.asList(telemetry(TENANT_ID, device1), telemetry(TENANT_ID, device2)), callback);
+
+        for (TopicPartitionInfo tpi : Arrays.asList(TPI_1, TPI_2)) {
+            ToRuleEngineMsg msg = sent(tpi).get(0);
+            Assert.assertEquals(0, msg.getTbMsgBatchCount());
+            Assert.assertFalse(msg.getTbMsg().isEmpty());
+        }
+        completeAll();
+        verify(callback).onSuccess(null);
+    }
+
+    @Test
+    public void testBatchOfDifferentTenantsRejected() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+
+        transportService.process(Arrays.asList(telemetry(TENANT_ID, device1), telemetry(TenantId.fromUUID(UUID.randomUUID()), device2)), callback);
+
+        verify(callback).onError(any(IllegalArgumentException.class));
+        verifyNoInteractions(rateLimitService, ruleEngineMsgProducer);
+    }
+
+    @Test
+    public void testRateLimitedDevicesSkippedAndReportedAfterForwarding() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        resolve(device1, TPI_1);
+        resolve(device2, TPI_1);
+        when(rateLimitService.checkLimits(eq(TENANT_ID), eq(device2), anyInt())).thenReturn(EntityType.DEVICE);
+
+        transportService.process(Arrays.asList(telemetry(TENANT_ID, device1), telemetry(TENANT_ID, device2)), callback);
+
+        List<ToRuleEngineMsg> sent = sent(TPI_1);
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(0, sent.get(0).getTbMsgBatchCount());
+        verify(callback, never()).onError(any());
+
+        completeAll();
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(callback).onError(error.capture());
+        Assert.assertTrue(error.getValue() instanceof TbRateLimitsException);
+        verify(callback, never()).onSuccess(any());
+        verify(apiUsageClient, times(1)).report(eq(TENANT_ID), any(), eq(ApiUsageRecordKey.TRANSPORT_MSG_COUNT), eq(1L));
+    }
+
+    @Test
+    public void testAllDevicesRateLimited() {
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        when(rateLimitService.checkLimits(eq(TENANT_ID), eq(device1), anyInt())).thenReturn(EntityType.TENANT);
+
+        transportService.process(Collections.singletonList(telemetry(TENANT_ID, device1)), callback);
+
+        verify(callback).onError(any(TbRateLimitsException.class));
+        verifyNoInteractions(ruleEngineMsgProducer);
+    }
+
+    private void resolve(DeviceId deviceId, TopicPartitionInfo tpi) {
+        when(partitionService.resolve(eq(ServiceType.TB_RULE_ENGINE), any(), eq(TENANT_ID), eq(deviceId))).thenReturn(tpi);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ToRuleEngineMsg> sent(TopicPartitionInfo tpi) {
+        ArgumentCaptor<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = ArgumentCaptor.forClass(TbProtoQueueMsg.class);
+        verify(ruleEngineMsgProducer, atLeastOnce()).send(eq(tpi), msgs.capture(), any());
+        return msgs.getAllValues().stream().map(TbProtoQueueMsg::getValue).collect(Collectors.toList());
+    }
+
+    private void completeAll() {
+        ArgumentCaptor<TbQueueCallback> callbacks = ArgumentCaptor.forClass(TbQueueCallback.class);
+        verify(ruleEngineMsgProducer, atLeastOnce()).send(any(), any(), callbacks.capture());
+        callbacks.getAllValues().forEach(queueCallback -> queueCallback.onSuccess(null));
+    }
+
+    private static SessionPostTelemetryMsg telemetry(TenantId tenantId, DeviceId deviceId) {
+        TransportProtos.SessionInfoProto sessionInfo = TransportProtos.SessionInfoProto.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .setDeviceName(deviceId.toString())
+                .setDeviceType("default")
+                .build();
+        TransportProtos.PostTelemetryMsg msg = TransportProtos.PostTelemetryMsg.newBuilder()
+                .addTsKvList(TransportProtos.TsKvListProto.newBuilder()
+                        .setTs(System.currentTimeMillis())
+                        .addKv(TransportProtos.KeyValueProto.newBuilder()
+                                .setKey("temperature")
+                                .setType(TransportProtos.KeyValueType.LONG_V)
+                                .setLongV(42)))
+                .build();
+        return new SessionPostTelemetryMsg(sessionInfo, msg);
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+public class SessionActivityTableTest {
+
+    @Test
+    public void testReportActivityAndRemove() {
+        SessionActivityTable table = new SessionActivityTable(4);
+        Random random = new Random(42);
+        Map<UUID, Long> expected = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            long ts = random.nextInt(1000) + 1;
+            table.reportActivity(sessionInfo(id), ts);
+            expected.put(id, ts);
+        }
+        for (int i = 0; i < ids.size(); i += 3) {
+            UUID id = ids.get(i);
+            table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            expected.remove(id);
+        }
+        for (int i = 1; i < ids.size(); i += 3) {
+            UUID id = ids.get(i);
+            table.reportActivity(sessionInfo(id), 5000L);
+            expected.put(id, 5000L);
+        }
+
+        Assert.assertEquals(expected.size(), table.size());
+        for (UUID id : ids) {
+            Long ts = expected.get(id);
+            Assert.assertEquals(ts != null ? ts : 0L, table.getLastActivityTime(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+        Map<UUID, Long> visited = new HashMap<>();
+        table.forEach((sessionInfo, lastActivityTime, lastReportedActivityTime) ->
+                visited.put(new UUID(sessionInfo.getSessionIdMSB(), sessionInfo.getSessionIdLSB()), lastActivityTime));
+        Assert.assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testLastReportedActivityTimeIsNotMovedBack() {
+        SessionActivityTable table = new SessionActivityTable(1);
+        UUID id = UUID.randomUUID();
+        table.reportActivity(sessionInfo(id), 100L);
+        table.setLastReportedActivityTime(id.getMostSignificantBits(), id.getLeastSignificantBits(), 100L);
+        table.setLastReportedActivityTime(id.getMostSignificantBits(), id.getLeastSignificantBits(), 50L);
+
+        long[] reported = new long[1];
+        table.forEach((sessionInfo, lastActivityTime, lastReportedActivityTime) -> reported[0] = lastReportedActivityTime);
+        Assert.assertEquals(100L, reported[0]);
+    }
+
+    @Test
+    public void testRemoveWhileVisiting() {
+        SessionActivityTable table = new SessionActivityTable(2);
+        for (int i = 0; i < 1000; i++) {
+            table.reportActivity(sessionInfo(UUID.randomUUID()), i);
+        }
+        table.forEach((sessionInfo, lastActivityTime, lastReportedActivityTime) ->
+                table.remove(sessionInfo.getSessionIdMSB(), sessionInfo.getSessionIdLSB()));
+        Assert.assertEquals(0, table.size());
+    }
+
+    private static SessionInfoProto sessionInfo(UUID id) {
+        return SessionInfoProto.newBuilder()
+                .setSessionIdMSB(id.getMostSignificantBits())
+                .setSessionIdLSB(id.getLeastSignificantBits())
+                .build();
+    }
+
+}
@@ -19,8 +19,11 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
 public class ThingsBoardExecutors {
 
@@ -52,4 +55,37 @@ public class ThingsBoardExecutors {
         return newWorkStealingPool(parallelism, clazz.getSimpleName());
     }
 
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     * Virtual threads are available since Java 21 while the project targets Java 11,
+     * so the JDK API is resolved reflectively.
+     *
+     * @param namePrefix used to define thread name
+     * @return the newly created executor or empty if the current JVM does not support virtual threads
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-virtual-thread-", 1L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return Optional.of((ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Limits the number of platform threads that carry virtual threads. The scheduler is shared by the whole JVM,
+     * so the limit is applied only if it was not configured explicitly and before the first virtual thread is started.
+     *
+     * @param carrierPoolSize max number of carrier threads, ignored if not positive
+     */
+    public static void setVirtualThreadCarrierPoolSize(int carrierPoolSize) {
+        if (carrierPoolSize > 0 && System.getProperty("jdk.virtualThreadScheduler.parallelism") == null) {
+            System.setProperty("jdk.virtualThreadScheduler.parallelism", Integer.toString(carrierPoolSize));
+            System.setProperty("jdk.virtualThreadScheduler.maxPoolSize", Integer.toString(carrierPoolSize));
+        }
+    }
+
 }
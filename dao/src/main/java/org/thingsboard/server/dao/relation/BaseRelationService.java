@@ -155,6 +155,7 @@ public class BaseRelationService implements RelationService {
         validate(relation);
         var result = relationDao.saveRelation(tenantId, relation);
         publishEvictEvent(EntityRelationEvent.from(relation));
+        publishChangedEvent(tenantId, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
         return result;
     }
 
@@ -169,6 +170,7 @@ public class BaseRelationService implements RelationService {
         }
         for (EntityRelation relation : relations) {
             publishEvictEvent(EntityRelationEvent.from(relation));
+            publishChangedEvent(tenantId, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
         }
     }
 
@@ -177,7 +179,10 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing saveRelationAsync [{}]", relation);
         validate(relation);
         var future = relationDao.saveRelationAsync(tenantId, relation);
-        future.addListener(() -> handleEvictEvent(EntityRelationEvent.from(relation)), MoreExecutors.directExecutor());
+        future.addListener(() -> {
+            handleEvictEvent(EntityRelationEvent.from(relation));
+            publishChangedEvent(tenantId, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
+        }, MoreExecutors.directExecutor());
         return future;
     }
 
@@ -188,6 +193,7 @@ public class BaseRelationService implements RelationService {
         var result = relationDao.deleteRelation(tenantId, relation);
         //TODO: evict cache only if the relation was deleted. Note: relationDao.deleteRelation requires improvement.
         publishEvictEvent(EntityRelationEvent.from(relation));
+        publishChangedEvent(tenantId, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
         return result;
     }
 
@@ -196,7 +202,10 @@ public class BaseRelationService implements RelationService {
         log.trace("Executing deleteRelationAsync [{}]", relation);
         validate(relation);
         var future = relationDao.deleteRelationAsync(tenantId, relation);
-        future.addListener(() -> handleEvictEvent(EntityRelationEvent.from(relation)), MoreExecutors.directExecutor());
+        future.addListener(() -> {
+            handleEvictEvent(EntityRelationEvent.from(relation));
+            publishChangedEvent(tenantId, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
+        }, MoreExecutors.directExecutor());
         return future;
     }
 
@@ -207,6 +216,7 @@ public class BaseRelationService implements RelationService {
         var result = relationDao.deleteRelation(tenantId, from, to, relationType, typeGroup);
         //TODO: evict cache only if the relation was deleted. Note: relationDao.deleteRelation requires improvement.
         publishEvictEvent(new EntityRelationEvent(from, to, relationType, typeGroup));
+        publishChangedEvent(tenantId, from, to, typeGroup);
         return result;
     }
 
@@ -216,7 +226,10 @@ public class BaseRelationService implements RelationService {
         validate(from, to, relationType, typeGroup);
         var future = relationDao.deleteRelationAsync(tenantId, from, to, relationType, typeGroup);
         EntityRelationEvent event = new EntityRelationEvent(from, to, relationType, typeGroup);
-        future.addListener(() -> handleEvictEvent(event), MoreExecutors.directExecutor());
+        future.addListener(() -> {
+            handleEvictEvent(event);
+            publishChangedEvent(tenantId, from, to, typeGroup);
+        }, MoreExecutors.directExecutor());
         return future;
     }
 
@@ -637,4 +650,8 @@ public class BaseRelationService implements RelationService {
         }
     }
 
+    private void publishChangedEvent(TenantId tenantId, EntityId from, EntityId to, RelationTypeGroup typeGroup) {
+        eventPublisher.publishEvent(new EntityRelationChangedEvent(tenantId, from, to, typeGroup));
+    }
+
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+public enum TbSqlBatchWriterType {
+
+    /**
+     * {@link TbSqlBlockingQueue}: single thread per queue that polls a blocking queue and waits for the rest of the max delay between batches.
+     */
+    BLOCKING_QUEUE,
+    /**
+     * {@link TbSqlRingBufferQueue}: lock-free producers, batches are flushed on size or deadline and the next batch
+     * is collected while the previous one is being saved.
+     */
+    RING_BUFFER
+
+}
@@ -30,4 +30,6 @@ public class TbSqlBlockingQueueParams {
     private final long statsPrintIntervalMs;
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
+    @Builder.Default
+    private final TbSqlBatchWriterType writerType = TbSqlBatchWriterType.BLOCKING_QUEUE;
 }
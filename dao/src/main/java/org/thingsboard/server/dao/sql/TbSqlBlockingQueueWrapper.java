@@ -30,7 +30,9 @@ import java.util.function.Function;
 @Slf4j
 @Data
 public class TbSqlBlockingQueueWrapper<E> {
-    private final CopyOnWriteArrayList<TbSqlBlockingQueue<E>> queues = new CopyOnWriteArrayList<>();
+    private static final String QUEUE_INDEX_TAG = "queueIndex";
+
+    private final CopyOnWriteArrayList<TbSqlQueue<E>> queues = new CopyOnWriteArrayList<>();
     private final TbSqlBlockingQueueParams params;
     private ScheduledLogExecutorComponent logExecutor;
     private final Function<E, Integer> hashCodeFunction;
@@ -48,7 +50,15 @@ public class TbSqlBlockingQueueWrapper<E> {
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
         for (int i = 0; i < maxThreads; i++) {
             MessagesStats stats = statsFactory.createMessagesStats(params.getStatsNamePrefix() + ".queue." + i);
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats);
+            TbSqlQueue<E> queue;
+            if (params.getWriterType() == TbSqlBatchWriterType.RING_BUFFER) {
+                String queueIndex = Integer.toString(i);
+                queue = new TbSqlRingBufferQueue<>(params, stats,
+                        statsFactory.createDistributionSummary(params.getStatsNamePrefix() + ".queue.batchSize", QUEUE_INDEX_TAG, queueIndex),
+                        statsFactory.createTimer(params.getStatsNamePrefix() + ".queue.batchSaveTime", QUEUE_INDEX_TAG, queueIndex));
+            } else {
+                queue = new TbSqlBlockingQueue<>(params, stats);
+            }
             queues.add(queue);
             queue.init(logExecutor, saveFunction, batchUpdateComparator, i);
         }
@@ -60,6 +70,6 @@ public class TbSqlBlockingQueueWrapper<E> {
     }
 
     public void destroy() {
-        queues.forEach(TbSqlBlockingQueue::destroy);
+        queues.forEach(TbSqlQueue::destroy);
     }
 }
@@ -0,0 +1,242 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Batch writer with lock-free producers. The collector thread drains the ring buffer into a batch and hands the batch over
+ * to the writer thread as soon as it is full or max delay has passed since the previous batch, then starts collecting
+ * the next batch while the previous one is being saved. The collector parks only when there is nothing to flush
+ * and is woken up by producers once there are enough elements to fill the batch.
+ */
+@Slf4j
+public class TbSqlRingBufferQueue<E> implements TbSqlQueue<E> {
+
+    private static final int CHUNK_SIZE = 1024;
+    // One batch is being saved while the next one waits for the writer, so the order of batches is preserved.
+    private static final int MAX_PENDING_BATCHES = 1;
+    private static final long DESTROY_TIMEOUT_MS = 5000;
+
+    private final MessagePassingQueue<TbSqlQueueElement<E>> queue = new MpscUnboundedArrayQueue<>(CHUNK_SIZE);
+    private final BlockingQueue<List<TbSqlQueueElement<E>>> pendingBatches = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+    private final AtomicBoolean collectorWaiting = new AtomicBoolean();
+    private final TbSqlBlockingQueueParams params;
+    private final MessagesStats stats;
+    private final DistributionSummary batchSizeStats;
+    private final Timer batchSaveTimer;
+
+    private volatile int wakeUpThreshold = 1;
+    private volatile Thread collectorThread;
+    private volatile boolean stopped;
+    private volatile boolean collectorStopped;
+    private ExecutorService executor;
+
+    public TbSqlRingBufferQueue(TbSqlBlockingQueueParams params, MessagesStats stats, DistributionSummary batchSizeStats, Timer batchSaveTimer) {
+        this.params = params;
+        this.stats = stats;
+        this.batchSizeStats = batchSizeStats;
+        this.batchSaveTimer = batchSaveTimer;
+    }
+
+    @Override
+    public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
+        executor = Executors.newFixedThreadPool(2, ThingsBoardThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
+        executor.submit(this::collectBatches);
+        executor.submit(() -> saveBatches(saveFunction, batchUpdateComparator));
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}] avgBatchSize [{}] avgBatchSaveTime [{}ms]", index,
+                        params.getLogName(), queue.size(), stats.getTotal(), stats.getSuccessful(), stats.getFailed(),
+                        (long) batchSizeStats.mean(), (long) batchSaveTimer.mean(TimeUnit.MILLISECONDS));
+                stats.reset();
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                if (!executor.awaitTermination(DESTROY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    log.warn("[{}] Queue threads did not stop in {} ms", params.getLogName(), DESTROY_TIMEOUT_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        failPendingElements();
+    }
+
+    /**
+     * Fails the elements that were not saved, so the callers do not wait for them forever.
+     */
+    private void failPendingElements() {
+        int failed = 0;
+        List<TbSqlQueueElement<E>> batch;
+        while ((batch = pendingBatches.poll()) != null) {
+            for (TbSqlQueueElement<E> element : batch) {
+                element.getFuture().setException(newStoppedException());
+                failed++;
+            }
+        }
+        // the ring buffer has a single consumer, so it is drained only once the collector has stopped
+        if (executor == null || collectorStopped) {
+            TbSqlQueueElement<E> element;
+            while ((element = queue.poll()) != null) {
+                element.getFuture().setException(newStoppedException());
+                failed++;
+            }
+        } else {
+            log.warn("[{}] Queue collector did not stop, {} pending elements are not failed", params.getLogName(), queue.size());
+        }
+        if (failed > 0) {
+            stats.incrementFailed(failed);
+            log.info("[{}] Queue was stopped, {} pending elements failed", params.getLogName(), failed);
+        }
+    }
+
+    private static InterruptedException newStoppedException() {
+        return new InterruptedException("Queue was stopped");
+    }
+
+    @Override
+    public ListenableFuture<Void> add(E element) {
+        SettableFuture<Void> future = SettableFuture.create();
+        queue.offer(new TbSqlQueueElement<>(future, element));
+        stats.incrementTotal();
+        if (stopped) {
+            // the element may be added after the queue was drained on destroy
+            future.setException(newStoppedException());
+            return future;
+        }
+        if (collectorWaiting.get() && queue.size() >= wakeUpThreshold && collectorWaiting.compareAndSet(true, false)) {
+            LockSupport.unpark(collectorThread);
+        }
+        return future;
+    }
+
+    private void collectBatches() {
+        collectorThread = Thread.currentThread();
+        String logName = params.getLogName();
+        int batchSize = params.getBatchSize();
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(params.getMaxDelay());
+        List<TbSqlQueueElement<E>> batch = new ArrayList<>(batchSize);
+        long nextFlushTime = System.nanoTime();
+        while (!stopped) {
+            try {
+                int drained = queue.drain(batch::add, batchSize - batch.size());
+                long currentTime = System.nanoTime();
+                if (batch.size() >= batchSize || (!batch.isEmpty() && currentTime - nextFlushTime >= 0)) {
+                    pendingBatches.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                    nextFlushTime = currentTime + maxDelayNanos;
+                } else if (drained == 0) {
+                    if (batch.isEmpty()) {
+                        waitForElements(0, 1);
+                    } else {
+                        waitForElements(nextFlushTime - currentTime, batchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.info("[{}] Queue polling was interrupted", logName);
+                break;
+            }
+        }
+        batch.forEach(element -> element.getFuture().setException(newStoppedException()));
+        collectorStopped = true;
+    }
+
+    /**
+     * Parks the collector until producers add the given number of elements or the timeout (if positive) expires.
+     */
+    private void waitForElements(long timeoutNanos, int threshold) throws InterruptedException {
+        wakeUpThreshold = threshold;
+        collectorWaiting.set(true);
+        if (queue.size() < threshold) {
+            if (timeoutNanos > 0) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        collectorWaiting.set(false);
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void saveBatches(Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
+        String logName = params.getLogName();
+        while (!stopped) {
+            List<TbSqlQueueElement<E>> batch;
+            try {
+                batch = pendingBatches.take();
+            } catch (InterruptedException e) {
+                log.info("[{}] Batch saving was interrupted", logName);
+                break;
+            }
+            List<E> entities = new ArrayList<>(batch.size());
+            for (TbSqlQueueElement<E> element : batch) {
+                entities.add(element.getEntity());
+            }
+            if (params.isBatchSortEnabled()) {
+                entities.sort(batchUpdateComparator);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Going to save {} entities", logName, entities.size());
+                log.trace("[{}] Going to save entities: {}", logName, entities);
+            }
+            long startTs = System.nanoTime();
+            try {
+                saveFunction.accept(entities);
+                batch.forEach(element -> element.getFuture().set(null));
+                stats.incrementSuccessful(batch.size());
+            } catch (Exception e) {
+                stats.incrementFailed(batch.size());
+                batch.forEach(element -> element.getFuture().setException(e));
+                log.error("[{}] Failed to save {} entities", logName, batch.size(), e);
+            } finally {
+                batchSaveTimer.record(System.nanoTime() - startTs, TimeUnit.NANOSECONDS);
+                batchSizeStats.record(batch.size());
+            }
+        }
+    }
+
+}
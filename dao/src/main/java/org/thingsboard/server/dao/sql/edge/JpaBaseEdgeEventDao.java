@@ -36,6 +36,7 @@ import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.sql.EdgeEventEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractSearchTextDao;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBatchWriterType;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
@@ -86,6 +87,9 @@ public class JpaBaseEdgeEventDao extends JpaAbstractSearchTextDao<EdgeEventEntit
     @Value("${sql.ttl.edge_events.edge_events_ttl:2628000}")
     private long edge_events_ttl;
 
+    @Value("${sql.batch_writer_type:BLOCKING_QUEUE}")
+    private TbSqlBatchWriterType batchWriterType;
+
     private static final String TABLE_NAME = ModelConstants.EDGE_EVENT_COLUMN_FAMILY_NAME;
 
     private TbSqlBlockingQueueWrapper<EdgeEventEntity> queue;
@@ -109,6 +113,7 @@ public class JpaBaseEdgeEventDao extends JpaAbstractSearchTextDao<EdgeEventEntit
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("edge.events")
                 .batchSortEnabled(true)
+                .writerType(batchWriterType)
                 .build();
         Function<EdgeEventEntity, Integer> hashcodeFunction = entity -> {
             if (entity.getEntityId() != null) {
@@ -34,6 +34,8 @@ import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryRepository;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -86,6 +88,19 @@ public abstract class BaseAbstractSqlTimeseriesDao extends JpaAbstractDaoListeni
         return keyId;
     }
 
+    protected List<Optional<? extends AbstractTsKvEntity>> toAggregationResults(String key, List<? extends AbstractTsKvEntity> entities) {
+        if (entities.isEmpty()) {
+            // empty, but not null result, same as for the query with all intervals being empty
+            return Collections.singletonList(Optional.empty());
+        }
+        List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>(entities.size());
+        for (AbstractTsKvEntity entity : entities) {
+            entity.setStrKey(key);
+            result.add(Optional.of(entity));
+        }
+        return result;
+    }
+
     protected ListenableFuture<ReadTsKvQueryResult> getReadTsKvQueryResultFuture(ReadTsKvQuery query, ListenableFuture<List<Optional<? extends AbstractTsKvEntity>>> future) {
         return Futures.transform(future, new Function<>() {
             @Nullable
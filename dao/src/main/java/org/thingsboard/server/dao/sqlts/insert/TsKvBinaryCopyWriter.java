@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Writes time series rows in the PostgreSQL binary COPY format.
+ * Columns order matches {@link AbstractCopyInsertRepository#COLUMNS}.
+ */
+class TsKvBinaryCopyWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short COLUMNS_COUNT = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+
+    TsKvBinaryCopyWriter(OutputStream outputStream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        out.write(SIGNATURE);
+        out.writeInt(0); // flags
+        out.writeInt(0); // header extension length
+    }
+
+    void write(AbstractTsKvEntity entity, String strValue, String jsonValue) throws IOException {
+        out.writeShort(COLUMNS_COUNT);
+        writeUuid(entity.getEntityId());
+        out.writeInt(Integer.BYTES);
+        out.writeInt(entity.getKey());
+        out.writeInt(Long.BYTES);
+        out.writeLong(entity.getTs());
+        if (entity.getBooleanValue() != null) {
+            out.writeInt(1);
+            out.writeByte(entity.getBooleanValue() ? 1 : 0);
+        } else {
+            writeNull();
+        }
+        writeString(strValue);
+        if (entity.getLongValue() != null) {
+            out.writeInt(Long.BYTES);
+            out.writeLong(entity.getLongValue());
+        } else {
+            writeNull();
+        }
+        if (entity.getDoubleValue() != null) {
+            out.writeInt(Double.BYTES);
+            out.writeDouble(entity.getDoubleValue());
+        } else {
+            writeNull();
+        }
+        writeString(jsonValue);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeShort(-1);
+        out.close();
+    }
+
+    private void writeUuid(UUID uuid) throws IOException {
+        out.writeInt(2 * Long.BYTES);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            writeNull();
+        }
+    }
+
+    private void writeNull() throws IOException {
+        out.writeInt(-1);
+    }
+
+}
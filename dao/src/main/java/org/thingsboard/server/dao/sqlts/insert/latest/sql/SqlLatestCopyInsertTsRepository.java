@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.latest.sql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestCompositeKey;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractCopyInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
+import org.thingsboard.server.dao.util.SqlDao;
+import org.thingsboard.server.dao.util.SqlTsLatestAnyDao;
+
+import java.util.List;
+
+@SqlTsLatestAnyDao
+@ConditionalOnProperty(prefix = "sql", value = "ts_insert_method", havingValue = "copy")
+@Repository
+@Transactional
+@SqlDao
+public class SqlLatestCopyInsertTsRepository extends AbstractCopyInsertRepository<TsKvLatestEntity> implements InsertLatestTsRepository {
+
+    @Value("${sql.ts_latest.update_by_latest_ts:true}")
+    private Boolean updateByLatestTs;
+
+    private static final String STAGING_TABLE = "ts_kv_latest_copy";
+
+    private static final String INSERT_OR_UPDATE = "INSERT INTO ts_kv_latest (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + STAGING_TABLE +
+            " ON CONFLICT (entity_id, key) DO UPDATE SET ts = excluded.ts, " + UPDATE_VALUES;
+
+    private static final String INSERT_OR_UPDATE_BY_LATEST_TS = INSERT_OR_UPDATE + " WHERE ts_kv_latest.ts <= excluded.ts";
+
+    @Override
+    public void saveOrUpdate(List<TsKvLatestEntity> entities) {
+        transactionTemplate.executeWithoutResult(status -> copyAndMerge(STAGING_TABLE,
+                deduplicate(entities, e -> new TsKvLatestCompositeKey(e.getEntityId(), e.getKey()), this::merge),
+                updateByLatestTs ? INSERT_OR_UPDATE_BY_LATEST_TS : INSERT_OR_UPDATE));
+    }
+
+    private TsKvLatestEntity merge(TsKvLatestEntity prev, TsKvLatestEntity next) {
+        return updateByLatestTs && next.getTs() < prev.getTs() ? prev : next;
+    }
+
+}
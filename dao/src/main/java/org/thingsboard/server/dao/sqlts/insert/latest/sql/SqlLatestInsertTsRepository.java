@@ -16,6 +16,7 @@
 package org.thingsboard.server.dao.sqlts.insert.latest.sql;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.TransactionStatus;
@@ -35,6 +36,7 @@ import java.util.List;
 
 
 @SqlTsLatestAnyDao
+@ConditionalOnProperty(prefix = "sql", value = "ts_insert_method", havingValue = "insert", matchIfMissing = true)
 @Repository
 @Transactional
 @SqlDao
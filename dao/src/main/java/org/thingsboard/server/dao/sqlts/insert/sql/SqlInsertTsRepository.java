@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.sqlts.insert.sql;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +30,7 @@ import java.sql.Types;
 import java.util.List;
 
 @SqlTsDao
+@ConditionalOnProperty(prefix = "sql", value = "ts_insert_method", havingValue = "insert", matchIfMissing = true)
 @Repository
 @Transactional
 public class SqlInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TsKvEntity> {
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.timescale;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sqlts.timescale.ts.TimescaleTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvCompositeKey;
+import org.thingsboard.server.dao.sqlts.insert.AbstractCopyInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.util.TimescaleDBTsDao;
+
+import java.util.List;
+
+@TimescaleDBTsDao
+@ConditionalOnProperty(prefix = "sql", value = "ts_insert_method", havingValue = "copy")
+@Repository
+@Transactional
+public class TimescaleCopyInsertTsRepository extends AbstractCopyInsertRepository<TimescaleTsKvEntity> implements InsertTsRepository<TimescaleTsKvEntity> {
+
+    private static final String STAGING_TABLE = "ts_kv_copy";
+
+    private static final String INSERT_OR_UPDATE = "INSERT INTO ts_kv (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + STAGING_TABLE +
+            " ON CONFLICT (entity_id, key, ts) DO UPDATE SET " + UPDATE_VALUES + ";";
+
+    @Override
+    public void saveOrUpdate(List<TimescaleTsKvEntity> entities) {
+        copyAndMerge(STAGING_TABLE, deduplicate(entities, e -> new TsKvCompositeKey(e.getEntityId(), e.getKey(), e.getTs()), (prev, next) -> next),
+                INSERT_OR_UPDATE);
+    }
+
+}
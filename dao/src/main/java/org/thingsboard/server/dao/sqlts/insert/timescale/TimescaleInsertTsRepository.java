@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.sqlts.insert.timescale;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +30,7 @@ import java.sql.Types;
 import java.util.List;
 
 @TimescaleDBTsDao
+@ConditionalOnProperty(prefix = "sql", value = "ts_insert_method", havingValue = "insert", matchIfMissing = true)
 @Repository
 @Transactional
 public class TimescaleInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TimescaleTsKvEntity> {
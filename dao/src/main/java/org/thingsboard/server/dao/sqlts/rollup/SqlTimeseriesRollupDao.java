@@ -0,0 +1,231 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.BaseAbstractSqlTimeseriesDao;
+import org.thingsboard.server.dao.sqlts.TsKey;
+import org.thingsboard.server.dao.timeseries.TimeseriesRollupDao;
+import org.thingsboard.server.dao.timeseries.TsRollupPeriod;
+import org.thingsboard.server.dao.util.SqlTsRollupDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the ranges of hours touched by saved or removed data in memory and recomputes the closed hours
+ * (and the days they belong to) from the raw data on every maintenance run. The current hour is recomputed once it is closed.
+ * Every time the range of a key is extended it is also stored in ts_kv_rollup_dirty, and the stored range is cut
+ * in the same transaction that recomputes the rollups, so the ranges that were not recomputed are loaded again on startup.
+ * The ranges are stored by the maintenance thread, so the marks of the last moments before a crash may be lost:
+ * to cover the recent data, the hours after the last recomputed one are recomputed for every rolled up key on startup as well.
+ */
+@Component
+@Slf4j
+@SqlTsRollupDao
+public class SqlTimeseriesRollupDao extends BaseAbstractSqlTimeseriesDao implements TimeseriesRollupDao {
+
+    private static final long HOUR_MS = TsRollupPeriod.HOUR.getDurationMs();
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000;
+
+    @Autowired
+    private TsKvRollupRepository rollupRepository;
+
+    @Value("${sql.ts.rollup.maintenance_interval_ms:60000}")
+    private long maintenanceIntervalMs;
+
+    @Value("${sql.ts.rollup.max_lag_ms:300000}")
+    private long maxLagMs;
+
+    private final ConcurrentMap<RollupKey, DirtyRange> dirtyRanges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TsKey, Long> rollupStartTsCache = new ConcurrentHashMap<>();
+    private ScheduledExecutorService maintenanceExecutor;
+
+    @PostConstruct
+    public void init() {
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ts-rollup"));
+        loadDirtyRanges();
+        maintenanceExecutor.scheduleWithFixedDelay(this::maintain, maintenanceIntervalMs, maintenanceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (maintenanceExecutor != null) {
+            // stores the dirty ranges that are already queued
+            maintenanceExecutor.shutdown();
+            try {
+                if (!maintenanceExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    maintenanceExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                maintenanceExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void loadDirtyRanges() {
+        long ts = System.currentTimeMillis();
+        rollupRepository.findAllStates((entityId, key, lastTs) -> addDirtyRange(new RollupKey(entityId, key), toDirtyRange(lastTs, ts, ts)));
+        rollupRepository.findAllDirtyRanges((entityId, key, startTs, endTs, markedTs) ->
+                addDirtyRange(new RollupKey(entityId, key), new DirtyRange(startTs, endTs, markedTs)));
+        log.info("Loaded {} keys with rollups to recompute", dirtyRanges.size());
+    }
+
+    @Override
+    public void onSave(EntityId entityId, String key, long ts) {
+        markDirty(new RollupKey(entityId.getId(), key), ts, ts + 1);
+    }
+
+    @Override
+    public void onRemove(EntityId entityId, String key, long startTs, long endTs) {
+        markDirty(new RollupKey(entityId.getId(), key), startTs, Math.max(startTs + 1, endTs));
+    }
+
+    @Override
+    public ListenableFuture<Optional<Long>> findRollupStartTs(EntityId entityId, String key) {
+        return service.submit(() -> {
+            TsKey tsKey = new TsKey(entityId.getId(), getOrSaveKeyId(key));
+            Long rollupStartTs = rollupStartTsCache.get(tsKey);
+            if (rollupStartTs == null) {
+                Optional<Long> stored = rollupRepository.findRollupStartTs(tsKey.getEntityId(), tsKey.getKey());
+                stored.ifPresent(startTs -> rollupStartTsCache.put(tsKey, startTs));
+                return stored;
+            }
+            return Optional.of(rollupStartTs);
+        });
+    }
+
+    @Override
+    public long getRollupEndTs() {
+        return TsRollupPeriod.HOUR.truncate(System.currentTimeMillis() - maxLagMs);
+    }
+
+    @Override
+    public ListenableFuture<ReadTsKvQueryResult> findAllAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, TsRollupPeriod period) {
+        return getReadTsKvQueryResultFuture(query, service.submit(() -> {
+            List<TsKvEntity> entities = rollupRepository.findAllAndAggregate(entityId.getId(), getOrSaveKeyId(query.getKey()), period,
+                    query.getStartTs(), query.getEndTs(), query.getInterval(), query.getAggregation());
+            return toAggregationResults(query.getKey(), entities);
+        }));
+    }
+
+    void maintain() {
+        long closedTs = TsRollupPeriod.HOUR.truncate(System.currentTimeMillis());
+        int recomputed = 0;
+        for (RollupKey rollupKey : dirtyRanges.keySet()) {
+            DirtyRange range = takeClosedRange(rollupKey, closedTs);
+            if (range == null) {
+                continue;
+            }
+            try {
+                rollupRepository.recompute(rollupKey.getEntityId(), getOrSaveKeyId(rollupKey.getKey()), range.getStartTs(), range.getEndTs(),
+                        TsRollupPeriod.HOUR.truncate(range.getMarkedTs()));
+                recomputed++;
+            } catch (Exception e) {
+                log.warn("[{}][{}] Failed to recompute rollups for [{}-{}]", rollupKey.getEntityId(), rollupKey.getKey(), range.getStartTs(), range.getEndTs(), e);
+                dirtyRanges.merge(rollupKey, range, DirtyRange::merge);
+            }
+        }
+        if (recomputed > 0) {
+            log.debug("Recomputed rollups of {} keys", recomputed);
+        }
+    }
+
+    private void markDirty(RollupKey rollupKey, long startTs, long endTs) {
+        DirtyRange range = toDirtyRange(startTs, endTs, System.currentTimeMillis());
+        boolean[] extended = new boolean[1];
+        dirtyRanges.compute(rollupKey, (key, current) -> {
+            DirtyRange merged = current != null ? current.merge(range) : range;
+            extended[0] = current == null || merged.getStartTs() < current.getStartTs() || merged.getEndTs() > current.getEndTs();
+            return merged;
+        });
+        if (extended[0]) {
+            // stored by the maintenance thread, so the range is never stored after the recompute that already covered it was committed
+            try {
+                maintenanceExecutor.execute(() -> saveDirtyRange(rollupKey, range));
+            } catch (RejectedExecutionException e) {
+                log.debug("[{}][{}] Rollups range to recompute is not saved, the maintenance is stopped", rollupKey.getEntityId(), rollupKey.getKey());
+            }
+        }
+    }
+
+    private void saveDirtyRange(RollupKey rollupKey, DirtyRange range) {
+        try {
+            rollupRepository.saveDirtyRange(rollupKey.getEntityId(), getOrSaveKeyId(rollupKey.getKey()), range.getStartTs(), range.getEndTs(), range.getMarkedTs());
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to save rollups range to recompute [{}-{}]", rollupKey.getEntityId(), rollupKey.getKey(), range.getStartTs(), range.getEndTs(), e);
+        }
+    }
+
+    private void addDirtyRange(RollupKey rollupKey, DirtyRange range) {
+        dirtyRanges.merge(rollupKey, range, DirtyRange::merge);
+    }
+
+    private static DirtyRange toDirtyRange(long startTs, long endTs, long markedTs) {
+        return new DirtyRange(TsRollupPeriod.HOUR.truncate(startTs), TsRollupPeriod.HOUR.truncate(endTs - 1) + HOUR_MS, markedTs);
+    }
+
+    private DirtyRange takeClosedRange(RollupKey rollupKey, long closedTs) {
+        DirtyRange[] closed = new DirtyRange[1];
+        dirtyRanges.computeIfPresent(rollupKey, (key, range) -> {
+            if (range.getStartTs() >= closedTs) {
+                return range;
+            }
+            closed[0] = new DirtyRange(range.getStartTs(), Math.min(range.getEndTs(), closedTs), range.getMarkedTs());
+            return range.getEndTs() > closedTs ? new DirtyRange(closedTs, range.getEndTs(), range.getMarkedTs()) : null;
+        });
+        return closed[0];
+    }
+
+    @Data
+    private static class RollupKey {
+        private final UUID entityId;
+        private final String key;
+    }
+
+    @Data
+    private static class DirtyRange {
+        private final long startTs;
+        private final long endTs;
+        private final long markedTs;
+
+        DirtyRange merge(DirtyRange other) {
+            return new DirtyRange(Math.min(startTs, other.startTs), Math.max(endTs, other.endTs), Math.min(markedTs, other.markedTs));
+        }
+    }
+
+}
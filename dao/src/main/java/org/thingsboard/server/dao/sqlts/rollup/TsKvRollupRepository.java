@@ -0,0 +1,172 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.ts.AbstractTsKvAggregationRepository;
+import org.thingsboard.server.dao.timeseries.TsRollupPeriod;
+import org.thingsboard.server.dao.util.SqlTsRollupDao;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+@SqlTsRollupDao
+public class TsKvRollupRepository extends AbstractTsKvAggregationRepository {
+
+    private static final String ROLLUP_COLUMNS = "entity_id, key, period, ts, bool_count, str_count, json_count, " +
+            "long_count, long_sum, long_min, long_max, dbl_count, dbl_sum, dbl_min, dbl_max, str_min, str_max, str_max_ts, max_ts";
+
+    private static final String DELETE_ROLLUPS = "DELETE FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND period = ? AND ts >= ? AND ts < ?";
+
+    private static final String INSERT_HOUR_ROLLUPS = "INSERT INTO ts_kv_rollup (" + ROLLUP_COLUMNS + ") " +
+            "SELECT entity_id, key, ?, ts - ts % ? AS bucket, " +
+            "COUNT(bool_v), COUNT(str_v), COUNT(json_v), " +
+            "COUNT(long_v), COALESCE(SUM(long_v), 0), MIN(long_v), MAX(long_v), " +
+            "COUNT(dbl_v), COALESCE(SUM(dbl_v), 0.0), MIN(dbl_v), MAX(dbl_v), " +
+            "MIN(str_v), MAX(str_v), MAX(CASE WHEN str_v IS NULL THEN NULL ELSE ts END), MAX(ts) " +
+            "FROM ts_kv WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? GROUP BY entity_id, key, bucket";
+
+    private static final String INSERT_DAY_ROLLUPS = "INSERT INTO ts_kv_rollup (" + ROLLUP_COLUMNS + ") " +
+            "SELECT entity_id, key, ?, ts - ts % ? AS bucket, " +
+            "SUM(bool_count), SUM(str_count), SUM(json_count), " +
+            "SUM(long_count), SUM(long_sum), MIN(long_min), MAX(long_max), " +
+            "SUM(dbl_count), SUM(dbl_sum), MIN(dbl_min), MAX(dbl_max), " +
+            "MIN(str_min), MAX(str_max), MAX(str_max_ts), MAX(max_ts) " +
+            "FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND period = ? AND ts >= ? AND ts < ? GROUP BY entity_id, key, bucket";
+
+    private static final String UPDATE_STATE = "INSERT INTO ts_kv_rollup_state (entity_id, key, start_ts, last_ts) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (entity_id, key) DO UPDATE SET last_ts = GREATEST(ts_kv_rollup_state.last_ts, excluded.last_ts)";
+
+    private static final String FIND_START_TS = "SELECT start_ts FROM ts_kv_rollup_state WHERE entity_id = ? AND key = ?";
+
+    private static final String FIND_ALL_STATES = "SELECT s.entity_id, d.key, s.last_ts FROM ts_kv_rollup_state s " +
+            "JOIN ts_kv_dictionary d ON d.key_id = s.key";
+
+    private static final String SAVE_DIRTY_RANGE = "INSERT INTO ts_kv_rollup_dirty (entity_id, key, start_ts, end_ts, marked_ts) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (entity_id, key) DO UPDATE SET start_ts = LEAST(ts_kv_rollup_dirty.start_ts, excluded.start_ts), " +
+            "end_ts = GREATEST(ts_kv_rollup_dirty.end_ts, excluded.end_ts), marked_ts = LEAST(ts_kv_rollup_dirty.marked_ts, excluded.marked_ts)";
+
+    private static final String SHRINK_DIRTY_RANGE = "UPDATE ts_kv_rollup_dirty SET start_ts = GREATEST(start_ts, ?) WHERE entity_id = ? AND key = ?";
+
+    private static final String DELETE_EMPTY_DIRTY_RANGE = "DELETE FROM ts_kv_rollup_dirty WHERE entity_id = ? AND key = ? AND start_ts >= end_ts";
+
+    private static final String FIND_ALL_DIRTY_RANGES = "SELECT r.entity_id, d.key, r.start_ts, r.end_ts, r.marked_ts FROM ts_kv_rollup_dirty r " +
+            "JOIN ts_kv_dictionary d ON d.key_id = r.key";
+
+    private static final String SELECT_BUCKET = "SELECT (ts - ?) / ? AS bucket, ";
+
+    private static final String FROM_WHERE_CLAUSE = "FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND period = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String NUMERIC_COUNTS = "SUM(long_count) AS longCountValue, SUM(dbl_count) AS doubleCountValue, MAX(max_ts) AS maxAggTs ";
+
+    private static final String FIND_AVG_OR_SUM_QUERY = SELECT_BUCKET +
+            "SUM(long_sum) AS longValue, SUM(dbl_sum) AS doubleValue, " + NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_MAX_QUERY = SELECT_BUCKET +
+            "MAX(long_max) AS longValue, MAX(dbl_max) AS doubleValue, MAX(str_max) AS strValue, MAX(str_max_ts) AS strMaxAggTs, " +
+            NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_MIN_QUERY = SELECT_BUCKET +
+            "MIN(long_min) AS longValue, MIN(dbl_min) AS doubleValue, MIN(str_min) AS strValue, MAX(str_max_ts) AS strMaxAggTs, " +
+            NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_COUNT_QUERY = SELECT_BUCKET +
+            "SUM(bool_count) AS booleanValueCount, SUM(str_count) AS strValueCount, SUM(long_count) AS longValueCount, " +
+            "SUM(dbl_count) AS doubleValueCount, SUM(json_count) AS jsonValueCount, MAX(max_ts) AS maxAggTs " + FROM_WHERE_CLAUSE;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Recomputes the hour rollups of the [startTs, endTs) range from the raw data and the day rollups of the days that overlap the range.
+     * The range has to be aligned to hours. The stored dirty range of the key is cut to start at endTs.
+     */
+    public void recompute(UUID entityId, int key, long startTs, long endTs, long rollupStartTs) {
+        long hour = TsRollupPeriod.HOUR.getDurationMs();
+        long day = TsRollupPeriod.DAY.getDurationMs();
+        long dayStartTs = TsRollupPeriod.DAY.truncate(startTs);
+        long dayEndTs = TsRollupPeriod.DAY.truncate(endTs - 1) + day;
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_ROLLUPS, entityId, key, hour, startTs, endTs);
+            jdbcTemplate.update(INSERT_HOUR_ROLLUPS, hour, hour, entityId, key, startTs, endTs);
+            jdbcTemplate.update(DELETE_ROLLUPS, entityId, key, day, dayStartTs, dayEndTs);
+            jdbcTemplate.update(INSERT_DAY_ROLLUPS, day, day, entityId, key, hour, dayStartTs, dayEndTs);
+            jdbcTemplate.update(UPDATE_STATE, entityId, key, rollupStartTs, endTs);
+            jdbcTemplate.update(SHRINK_DIRTY_RANGE, endTs, entityId, key);
+            jdbcTemplate.update(DELETE_EMPTY_DIRTY_RANGE, entityId, key);
+        });
+    }
+
+    /**
+     * Extends the stored dirty range of the key, so that it is recomputed after a restart.
+     */
+    public void saveDirtyRange(UUID entityId, int key, long startTs, long endTs, long markedTs) {
+        jdbcTemplate.update(SAVE_DIRTY_RANGE, entityId, key, startTs, endTs, markedTs);
+    }
+
+    public void findAllDirtyRanges(DirtyRangeConsumer consumer) {
+        jdbcTemplate.query(FIND_ALL_DIRTY_RANGES, rs -> {
+            consumer.accept(rs.getObject(1, UUID.class), rs.getString(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+        });
+    }
+
+    public Optional<Long> findRollupStartTs(UUID entityId, int key) {
+        return jdbcTemplate.query(FIND_START_TS, rs -> rs.next() ? Optional.of(rs.getLong(1)) : Optional.empty(), entityId, key);
+    }
+
+    public void findAllStates(RollupStateConsumer consumer) {
+        jdbcTemplate.query(FIND_ALL_STATES, rs -> {
+            consumer.accept(rs.getObject(1, UUID.class), rs.getString(2), rs.getLong(3));
+        });
+    }
+
+    public List<TsKvEntity> findAllAndAggregate(UUID entityId, int entityKey, TsRollupPeriod period, long startTs, long endTs, long interval, Aggregation aggregation) {
+        return aggregate(getQuery(aggregation), entityId, startTs, endTs, interval, aggregation,
+                startTs, interval, entityId, entityKey, period.getDurationMs(), startTs, endTs);
+    }
+
+    private static String getQuery(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return FIND_AVG_OR_SUM_QUERY;
+            case MAX:
+                return FIND_MAX_QUERY;
+            case MIN:
+                return FIND_MIN_QUERY;
+            case COUNT:
+                return FIND_COUNT_QUERY;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    public interface RollupStateConsumer {
+        void accept(UUID entityId, String key, long lastTs);
+    }
+
+    public interface DirtyRangeConsumer {
+        void accept(UUID entityId, String key, long startTs, long endTs, long markedTs);
+    }
+
+}
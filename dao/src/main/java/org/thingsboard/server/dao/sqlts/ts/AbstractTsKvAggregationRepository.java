@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.ts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps the rows of the query that aggregates all intervals of the time series query at once.
+ * Intervals are numbered from the query start by the 'bucket' column, the last one may be shorter than the others.
+ * The timestamp of the aggregated value is the middle of the interval, same as for per-interval queries.
+ */
+public abstract class AbstractTsKvAggregationRepository {
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    protected List<TsKvEntity> aggregate(String query, UUID entityId, long startTs, long endTs, long interval, Aggregation aggregation, Object... args) {
+        List<TsKvEntity> result = new ArrayList<>();
+        jdbcTemplate.query(query, rs -> {
+            TsKvEntity entity = toEntity(rs, aggregation);
+            if (entity.isNotEmpty()) {
+                long bucketStartTs = startTs + rs.getLong("bucket") * interval;
+                long bucketEndTs = Math.min(bucketStartTs + interval, endTs);
+                entity.setEntityId(entityId);
+                entity.setTs(bucketStartTs + (bucketEndTs - bucketStartTs) / 2);
+                result.add(entity);
+            }
+        }, args);
+        return result;
+    }
+
+    private static TsKvEntity toEntity(ResultSet rs, Aggregation aggregation) throws SQLException {
+        if (aggregation == Aggregation.COUNT) {
+            return new TsKvEntity(rs.getLong("booleanValueCount"), rs.getLong("strValueCount"), rs.getLong("longValueCount"),
+                    rs.getLong("doubleValueCount"), rs.getLong("jsonValueCount"), getLong(rs, "maxAggTs"));
+        }
+        TsKvEntity numeric = new TsKvEntity(getLong(rs, "longValue"), getDouble(rs, "doubleValue"), rs.getLong("longCountValue"),
+                rs.getLong("doubleCountValue"), aggregation.name(), getLong(rs, "maxAggTs"));
+        if (numeric.isNotEmpty() || (aggregation != Aggregation.MAX && aggregation != Aggregation.MIN)) {
+            return numeric;
+        }
+        return new TsKvEntity(rs.getString("strValue"), getLong(rs, "strMaxAggTs"));
+    }
+
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.ts;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Aggregates all intervals of the time series query with a single grouped query over the raw ts_kv rows.
+ */
+@Repository
+@SqlTsDao
+public class TsKvAggregationRepository extends AbstractTsKvAggregationRepository {
+
+    private static final String SELECT_BUCKET = "SELECT (ts - ?) / ? AS bucket, ";
+
+    private static final String FROM_WHERE_CLAUSE = "FROM ts_kv WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String NUMERIC_COUNTS = "SUM(CASE WHEN long_v IS NULL THEN 0 ELSE 1 END) AS longCountValue, " +
+            "SUM(CASE WHEN dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleCountValue, MAX(ts) AS maxAggTs ";
+
+    private static final String FIND_AVG_OR_SUM_QUERY = SELECT_BUCKET +
+            "SUM(COALESCE(long_v, 0)) AS longValue, SUM(COALESCE(dbl_v, 0.0)) AS doubleValue, " +
+            NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_MAX_QUERY = SELECT_BUCKET +
+            "MAX(COALESCE(long_v, -9223372036854775807)) AS longValue, MAX(COALESCE(dbl_v, -1.79769E+308)) AS doubleValue, " +
+            "MAX(str_v) AS strValue, MAX(CASE WHEN str_v IS NULL THEN NULL ELSE ts END) AS strMaxAggTs, " +
+            NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_MIN_QUERY = SELECT_BUCKET +
+            "MIN(COALESCE(long_v, 9223372036854775807)) AS longValue, MIN(COALESCE(dbl_v, 1.79769E+308)) AS doubleValue, " +
+            "MIN(str_v) AS strValue, MAX(CASE WHEN str_v IS NULL THEN NULL ELSE ts END) AS strMaxAggTs, " +
+            NUMERIC_COUNTS + FROM_WHERE_CLAUSE;
+
+    private static final String FIND_COUNT_QUERY = SELECT_BUCKET +
+            "SUM(CASE WHEN bool_v IS NULL THEN 0 ELSE 1 END) AS booleanValueCount, " +
+            "SUM(CASE WHEN str_v IS NULL THEN 0 ELSE 1 END) AS strValueCount, " +
+            "SUM(CASE WHEN long_v IS NULL THEN 0 ELSE 1 END) AS longValueCount, " +
+            "SUM(CASE WHEN dbl_v IS NULL THEN 0 ELSE 1 END) AS doubleValueCount, " +
+            "SUM(CASE WHEN json_v IS NULL THEN 0 ELSE 1 END) AS jsonValueCount, " +
+            "MAX(ts) AS maxAggTs " + FROM_WHERE_CLAUSE;
+
+    public List<TsKvEntity> findAllAndAggregate(UUID entityId, int entityKey, long startTs, long endTs, long interval, Aggregation aggregation) {
+        return aggregate(getQuery(aggregation), entityId, startTs, endTs, interval, aggregation, startTs, interval, entityId, entityKey, startTs, endTs);
+    }
+
+    private static String getQuery(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return FIND_AVG_OR_SUM_QUERY;
+            case MAX:
+                return FIND_MAX_QUERY;
+            case MIN:
+                return FIND_MIN_QUERY;
+            case COUNT:
+                return FIND_COUNT_QUERY;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+}
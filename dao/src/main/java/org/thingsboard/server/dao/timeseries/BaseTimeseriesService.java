@@ -43,8 +43,10 @@ import org.thingsboard.server.dao.entityview.EntityViewService;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.service.Validator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -89,6 +91,12 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private EntityViewService entityViewService;
 
+    @Autowired(required = false)
+    private TimeseriesRollupDao rollupDao;
+
+    @Autowired(required = false)
+    private RecentTsKvCache recentTsCache;
+
     @Override
     public ListenableFuture<List<ReadTsKvQueryResult>> findAllByQueries(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
         validate(entityId);
@@ -101,9 +109,70 @@ public class BaseTimeseriesService implements TimeseriesService {
                     queries.stream()
                             .filter(query -> keys.isEmpty() || keys.contains(query.getKey()))
                             .collect(Collectors.toList());
-            return timeseriesDao.findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+            return findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+        }
+        return findAllAsync(tenantId, entityId, queries);
+    }
+
+    private ListenableFuture<List<ReadTsKvQueryResult>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        if (recentTsCache == null && rollupDao == null) {
+            return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        }
+        List<ListenableFuture<ReadTsKvQueryResult>> futures = new ArrayList<>(queries.size());
+        for (ReadTsKvQuery query : queries) {
+            futures.add(findAsync(tenantId, entityId, query));
+        }
+        return Futures.allAsList(futures);
+    }
+
+    private ListenableFuture<ReadTsKvQueryResult> findAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query) {
+        if (recentTsCache != null) {
+            Optional<ReadTsKvQueryResult> cached = recentTsCache.find(entityId, query);
+            if (cached.isPresent()) {
+                return Futures.immediateFuture(cached.get());
+            }
+        }
+        Optional<TsRollupPeriod> period = rollupDao != null ? TsRollupQueryPlanner.getPeriod(query) : Optional.empty();
+        if (period.isPresent()) {
+            return Futures.transformAsync(rollupDao.findRollupStartTs(entityId, query.getKey()),
+                    rollupStartTs -> findAllWithRollupsAsync(tenantId, entityId, query, period.get(), rollupStartTs),
+                    MoreExecutors.directExecutor());
+        }
+        return findAllRawAsync(tenantId, entityId, query);
+    }
+
+    private ListenableFuture<ReadTsKvQueryResult> findAllWithRollupsAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query,
+                                                                          TsRollupPeriod period, Optional<Long> rollupStartTs) {
+        Optional<TsRollupQueryPlanner.Plan> plan = rollupStartTs.flatMap(startTs -> TsRollupQueryPlanner.plan(query, period, startTs, rollupDao.getRollupEndTs()));
+        if (plan.isEmpty()) {
+            return findAllRawAsync(tenantId, entityId, query);
+        }
+        ListenableFuture<ReadTsKvQueryResult> rollupFuture = rollupDao.findAllAsync(tenantId, entityId, plan.get().getRollupQuery(), plan.get().getPeriod());
+        ListenableFuture<List<ReadTsKvQueryResult>> rawFuture = plan.get().getRawQueries().isEmpty() ?
+                Futures.immediateFuture(Collections.emptyList()) : timeseriesDao.findAllAsync(tenantId, entityId, plan.get().getRawQueries());
+        return Futures.whenAllSucceed(rollupFuture, rawFuture).call(() -> {
+            List<ReadTsKvQueryResult> results = new ArrayList<>(Futures.getDone(rawFuture));
+            results.add(Futures.getDone(rollupFuture));
+            return mergeResults(query, results);
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<ReadTsKvQueryResult> findAllRawAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query) {
+        return Futures.transform(timeseriesDao.findAllAsync(tenantId, entityId, Collections.singletonList(query)),
+                results -> results != null && !results.isEmpty() ? results.get(0) : null, MoreExecutors.directExecutor());
+    }
+
+    private static ReadTsKvQueryResult mergeResults(ReadTsKvQuery query, List<ReadTsKvQueryResult> results) {
+        List<TsKvEntry> data = new ArrayList<>();
+        long lastEntryTs = query.getStartTs();
+        for (ReadTsKvQueryResult result : results) {
+            if (result != null && result.getData() != null && !result.getData().isEmpty()) {
+                data.addAll(result.getData());
+                lastEntryTs = Math.max(lastEntryTs, result.getLastEntryTs());
+            }
         }
-        return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        data.sort(Comparator.comparingLong(TsKvEntry::getTs));
+        return new ReadTsKvQueryResult(query.getId(), data, lastEntryTs);
     }
 
     @Override
@@ -216,7 +285,19 @@ public class BaseTimeseriesService implements TimeseriesService {
             throw new IncorrectParameterException("Telemetry data can't be stored for entity view. Read only");
         }
         futures.add(timeseriesDao.savePartition(tenantId, entityId, tsKvEntry.getTs(), tsKvEntry.getKey()));
-        futures.add(timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl));
+        ListenableFuture<Integer> saveFuture = timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl);
+        if (rollupDao != null || recentTsCache != null) {
+            saveFuture = Futures.transform(saveFuture, dataPoints -> {
+                if (rollupDao != null) {
+                    rollupDao.onSave(entityId, tsKvEntry.getKey(), tsKvEntry.getTs());
+                }
+                if (recentTsCache != null) {
+                    recentTsCache.put(entityId, tsKvEntry);
+                }
+                return dataPoints;
+            }, MoreExecutors.directExecutor());
+        }
+        futures.add(saveFuture);
     }
 
     private List<ReadTsKvQuery> updateQueriesForEntityView(EntityView entityView, List<ReadTsKvQuery> queries) {
@@ -274,7 +355,18 @@ public class BaseTimeseriesService implements TimeseriesService {
     }
 
     private void deleteAndRegisterFutures(TenantId tenantId, List<ListenableFuture<TsKvLatestRemovingResult>> futures, EntityId entityId, DeleteTsKvQuery query) {
-        futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> null, MoreExecutors.directExecutor()));
+        if (recentTsCache != null) {
+            recentTsCache.invalidate(entityId, query.getKey());
+        }
+        futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> {
+            if (rollupDao != null) {
+                rollupDao.onRemove(entityId, query.getKey(), query.getStartTs(), query.getEndTs());
+            }
+            if (recentTsCache != null) {
+                recentTsCache.invalidate(entityId, query.getKey());
+            }
+            return null;
+        }, MoreExecutors.directExecutor()));
         futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
     }
 
@@ -0,0 +1,310 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable block of time series entries of a single key sorted by ts.
+ * Timestamps and values are encoded in two separate bit streams: timestamps as delta-of-delta,
+ * doubles as XOR with the previous double, longs as zig-zag delta with the previous long.
+ */
+final class CompressedTsKvChunk {
+
+    private static final DataType[] DATA_TYPES = DataType.values();
+
+    @Getter
+    private final int size;
+    @Getter
+    private final long firstTs;
+    @Getter
+    private final long lastTs;
+    private final byte[] timestamps;
+    private final byte[] values;
+
+    private CompressedTsKvChunk(int size, long firstTs, long lastTs, byte[] timestamps, byte[] values) {
+        this.size = size;
+        this.firstTs = firstTs;
+        this.lastTs = lastTs;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    int getSizeBytes() {
+        return timestamps.length + values.length + 48;
+    }
+
+    static CompressedTsKvChunk encode(List<? extends TsKvEntry> entries) {
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Chunk can't be empty");
+        }
+        BitWriter tsWriter = new BitWriter(entries.size() * 2);
+        BitWriter valueWriter = new BitWriter(entries.size() * 4);
+        long prevTs = 0;
+        long prevDelta = 0;
+        DataType prevType = null;
+        long prevDoubleBits = 0;
+        int prevLeading = -1;
+        int prevTrailing = 0;
+        long prevLong = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            TsKvEntry entry = entries.get(i);
+            long ts = entry.getTs();
+            if (i == 0) {
+                tsWriter.writeBits(ts, 64);
+            } else {
+                long delta = ts - prevTs;
+                writeVarBits(tsWriter, zigZag(delta - prevDelta), 7, 12, 32);
+                prevDelta = delta;
+            }
+            prevTs = ts;
+
+            DataType type = entry.getDataType();
+            if (type == prevType) {
+                valueWriter.writeBit(false);
+            } else {
+                valueWriter.writeBit(true);
+                valueWriter.writeBits(type.ordinal(), 3);
+                prevType = type;
+            }
+            switch (type) {
+                case BOOLEAN:
+                    valueWriter.writeBit(entry.getBooleanValue().orElse(false));
+                    break;
+                case LONG:
+                    long longValue = entry.getLongValue().orElse(0L);
+                    writeVarBits(valueWriter, zigZag(longValue - prevLong), 8, 16, 32);
+                    prevLong = longValue;
+                    break;
+                case DOUBLE:
+                    long bits = Double.doubleToRawLongBits(entry.getDoubleValue().orElse(0.0));
+                    long xor = bits ^ prevDoubleBits;
+                    prevDoubleBits = bits;
+                    if (xor == 0) {
+                        valueWriter.writeBit(false);
+                        break;
+                    }
+                    valueWriter.writeBit(true);
+                    int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                        valueWriter.writeBit(false);
+                        valueWriter.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int meaningful = 64 - leading - trailing;
+                        valueWriter.writeBit(true);
+                        valueWriter.writeBits(leading, 5);
+                        valueWriter.writeBits(meaningful - 1, 6);
+                        valueWriter.writeBits(xor >>> trailing, meaningful);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                    break;
+                case STRING:
+                case JSON:
+                    byte[] bytes = entry.getValueAsString().getBytes(StandardCharsets.UTF_8);
+                    writeVarBits(valueWriter, bytes.length, 8, 16, 32);
+                    for (byte b : bytes) {
+                        valueWriter.writeBits(b, 8);
+                    }
+                    break;
+            }
+        }
+        return new CompressedTsKvChunk(entries.size(), entries.get(0).getTs(), prevTs, tsWriter.toByteArray(), valueWriter.toByteArray());
+    }
+
+    List<TsKvEntry> decode(String key) {
+        List<TsKvEntry> entries = new ArrayList<>(size);
+        BitReader tsReader = new BitReader(timestamps);
+        BitReader valueReader = new BitReader(values);
+        long ts = 0;
+        long delta = 0;
+        DataType type = null;
+        long doubleBits = 0;
+        int leading = 0;
+        int trailing = 0;
+        long longValue = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                ts = tsReader.readBits(64);
+            } else {
+                delta += unZigZag(readVarBits(tsReader, 7, 12, 32));
+                ts += delta;
+            }
+            if (valueReader.readBit()) {
+                type = DATA_TYPES[(int) valueReader.readBits(3)];
+            }
+            KvEntry kv;
+            switch (type) {
+                case BOOLEAN:
+                    kv = new BooleanDataEntry(key, valueReader.readBit());
+                    break;
+                case LONG:
+                    longValue += unZigZag(readVarBits(valueReader, 8, 16, 32));
+                    kv = new LongDataEntry(key, longValue);
+                    break;
+                case DOUBLE:
+                    if (valueReader.readBit()) {
+                        if (valueReader.readBit()) {
+                            leading = (int) valueReader.readBits(5);
+                            int meaningful = (int) valueReader.readBits(6) + 1;
+                            trailing = 64 - leading - meaningful;
+                        }
+                        doubleBits ^= valueReader.readBits(64 - leading - trailing) << trailing;
+                    }
+                    kv = new DoubleDataEntry(key, Double.longBitsToDouble(doubleBits));
+                    break;
+                default:
+                    byte[] bytes = new byte[(int) readVarBits(valueReader, 8, 16, 32)];
+                    for (int j = 0; j < bytes.length; j++) {
+                        bytes[j] = (byte) valueReader.readBits(8);
+                    }
+                    String str = new String(bytes, StandardCharsets.UTF_8);
+                    kv = type == DataType.JSON ? new JsonDataEntry(key, str) : new StringDataEntry(key, str);
+            }
+            entries.add(new BasicTsKvEntry(ts, kv));
+        }
+        return entries;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes '0' for zero, otherwise a unary prefix selecting the smallest of the given widths (or 64 bits) followed by the value.
+     */
+    private static void writeVarBits(BitWriter writer, long value, int... widths) {
+        if (value == 0) {
+            writer.writeBit(false);
+            return;
+        }
+        writer.writeBit(true);
+        for (int width : widths) {
+            if (value >>> width == 0) {
+                writer.writeBit(false);
+                writer.writeBits(value, width);
+                return;
+            }
+            writer.writeBit(true);
+        }
+        writer.writeBits(value, 64);
+    }
+
+    private static long readVarBits(BitReader reader, int... widths) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        for (int width : widths) {
+            if (!reader.readBit()) {
+                return reader.readBits(width);
+            }
+        }
+        return reader.readBits(64);
+    }
+
+    private static final class BitWriter {
+
+        private long[] words;
+        private int position;
+
+        BitWriter(int initialWords) {
+            this.words = new long[Math.max(1, initialWords)];
+        }
+
+        void writeBit(boolean bit) {
+            writeBits(bit ? 1 : 0, 1);
+        }
+
+        void writeBits(long value, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int index = position >>> 6;
+            int offset = position & 63;
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2 + 1);
+            }
+            int free = 64 - offset;
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                words[index] |= value >>> (count - free);
+                words[index + 1] |= value << (64 - count + free);
+            }
+            position += count;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[(position + 7) >>> 3];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+            }
+            return bytes;
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] bytes;
+        private int position;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean readBit() {
+            return readBits(1) == 1;
+        }
+
+        long readBits(int count) {
+            long value = 0;
+            while (count > 0) {
+                int offset = position & 7;
+                int available = 8 - offset;
+                int take = Math.min(available, count);
+                int current = bytes[position >>> 3] & 0xFF;
+                int bits = (current >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | bits;
+                position += take;
+                count -= take;
+            }
+            return value;
+        }
+    }
+
+}
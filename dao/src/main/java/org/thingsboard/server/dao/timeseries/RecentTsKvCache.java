@@ -0,0 +1,183 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compressed cache of the most recent time series of each entity key, populated on save.
+ * Serves raw (not aggregated) queries that start within the cached part of the series.
+ * The cache is local to the node, so it must be enabled only when all the time series are saved through it.
+ * Nothing is loaded from the database, so a series covers only the entries saved since it was created: its coverage starts
+ * at its first entry, but never before the cache was started or before the newest entry of any evicted series,
+ * since older entries may already be stored. Entries saved before the start with the timestamps in the future are not covered.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "cache.ts_recent", value = "enabled", havingValue = "true")
+public class RecentTsKvCache {
+
+    private static final String STATS_KEY = "recentTsCache";
+
+    @Value("${cache.ts_recent.max_size_bytes:268435456}")
+    private long maxSizeBytes;
+
+    @Value("${cache.ts_recent.max_age_ms:3600000}")
+    private long maxAgeMs;
+
+    @Value("${cache.ts_recent.chunk_size:128}")
+    private int chunkSize;
+
+    @Value("${cache.ts_recent.stats_print_interval_ms:60000}")
+    private long statsPrintIntervalMs;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    private final AtomicLong evictedMaxTs = new AtomicLong(Long.MIN_VALUE);
+    private long startTs;
+    private Cache<SeriesKey, RecentTsKvSeries> cache;
+    private StatsCounter hits;
+    private StatsCounter misses;
+    private ScheduledExecutorService statsExecutor;
+
+    @PostConstruct
+    public void init() {
+        startTs = System.currentTimeMillis();
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((SeriesKey key, RecentTsKvSeries series) -> series.getSizeBytes())
+                .writer(new CacheWriter<SeriesKey, RecentTsKvSeries>() {
+                    @Override
+                    public void write(SeriesKey key, RecentTsKvSeries series) {
+                    }
+
+                    @Override
+                    public void delete(SeriesKey key, RecentTsKvSeries series, RemovalCause cause) {
+                        // called before the series is removed, so a new series of the key sees the updated value
+                        if (series != null && cause.wasEvicted()) {
+                            evictedMaxTs.accumulateAndGet(series.getMaxTs(), Math::max);
+                        }
+                    }
+                })
+                .build();
+        hits = statsFactory.createStatsCounter(STATS_KEY, "hits");
+        misses = statsFactory.createStatsCounter(STATS_KEY, "misses");
+        if (statsPrintIntervalMs > 0) {
+            statsExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("recent-ts-cache-stats"));
+            statsExecutor.scheduleWithFixedDelay(this::printStats, statsPrintIntervalMs, statsPrintIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (statsExecutor != null) {
+            statsExecutor.shutdownNow();
+        }
+    }
+
+    public void put(EntityId entityId, TsKvEntry entry) {
+        SeriesKey seriesKey = new SeriesKey(entityId.getId(), entry.getKey());
+        RecentTsKvSeries series = cache.get(seriesKey, key -> new RecentTsKvSeries(key.getKey(), getCoverageStartTs(entry.getTs()), chunkSize, maxAgeMs));
+        if (series.add(entry)) {
+            // re-weigh the series
+            cache.asMap().replace(seriesKey, series, series);
+        }
+    }
+
+    public void invalidate(EntityId entityId, String key) {
+        SeriesKey seriesKey = new SeriesKey(entityId.getId(), key);
+        RecentTsKvSeries series = cache.getIfPresent(seriesKey);
+        if (series != null) {
+            series.reset();
+            cache.asMap().replace(seriesKey, series, series);
+        }
+    }
+
+    public Optional<ReadTsKvQueryResult> find(EntityId entityId, ReadTsKvQuery query) {
+        if (query.getAggregation() != Aggregation.NONE) {
+            return Optional.empty();
+        }
+        RecentTsKvSeries series = cache.getIfPresent(new SeriesKey(entityId.getId(), query.getKey()));
+        Optional<List<TsKvEntry>> entries = series != null ? series.find(query.getStartTs(), query.getEndTs()) : Optional.empty();
+        if (entries.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        List<TsKvEntry> data = entries.get();
+        if ("DESC".equalsIgnoreCase(query.getOrder())) {
+            Collections.reverse(data);
+        }
+        if (query.getLimit() > 0 && data.size() > query.getLimit()) {
+            data = new ArrayList<>(data.subList(0, query.getLimit()));
+        }
+        long lastTs = data.stream().map(TsKvEntry::getTs).max(Long::compare).orElse(query.getStartTs());
+        return Optional.of(new ReadTsKvQueryResult(query.getId(), data, lastTs));
+    }
+
+    private long getCoverageStartTs(long firstTs) {
+        long evictedTs = evictedMaxTs.get();
+        return Math.max(Math.max(firstTs, startTs), evictedTs == Long.MIN_VALUE ? evictedTs : evictedTs + 1);
+    }
+
+    private void printStats() {
+        int hitCount = hits.get();
+        int missCount = misses.get();
+        if (hitCount + missCount > 0) {
+            log.info("Recent ts cache stats: hits [{}] misses [{}] hit rate [{}%] series [{}]",
+                    hitCount, missCount, hitCount * 100 / (hitCount + missCount), cache.estimatedSize());
+        }
+        hits.clear();
+        misses.clear();
+    }
+
+    @Data
+    private static class SeriesKey {
+        private final UUID entityId;
+        private final String key;
+    }
+
+}
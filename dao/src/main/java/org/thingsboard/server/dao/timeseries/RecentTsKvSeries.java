@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Recent entries of a single entity key. Entries are appended to a small uncompressed buffer that is sealed
+ * into a {@link CompressedTsKvChunk} once full. The series holds every stored entry with ts >= {@link #coverageStartTs},
+ * so it may answer only the queries that start at or after it.
+ */
+final class RecentTsKvSeries {
+
+    private static final int ENTRY_SIZE_BYTES = 64;
+
+    private final String key;
+    private final int chunkSize;
+    private final long maxAgeMs;
+    private final Deque<CompressedTsKvChunk> chunks = new ArrayDeque<>();
+    private final List<TsKvEntry> buffer;
+    private long coverageStartTs;
+    private long maxTs;
+    private int sizeBytes;
+
+    RecentTsKvSeries(String key, long coverageStartTs, int chunkSize, long maxAgeMs) {
+        this.key = key;
+        this.chunkSize = chunkSize;
+        this.maxAgeMs = maxAgeMs;
+        this.buffer = new ArrayList<>(chunkSize);
+        this.coverageStartTs = coverageStartTs;
+        this.maxTs = coverageStartTs - 1;
+    }
+
+    /**
+     * @return true if the size of the compressed part has changed
+     */
+    synchronized boolean add(TsKvEntry entry) {
+        long ts = entry.getTs();
+        if (ts < coverageStartTs) {
+            return false;
+        }
+        if (!chunks.isEmpty() && ts <= chunks.peekLast().getLastTs()) {
+            // late entry that belongs to the compressed part, start over after all the known entries
+            reset();
+            return true;
+        }
+        int idx = buffer.size();
+        while (idx > 0 && buffer.get(idx - 1).getTs() >= ts) {
+            idx--;
+        }
+        if (idx < buffer.size() && buffer.get(idx).getTs() == ts) {
+            buffer.set(idx, entry);
+        } else {
+            buffer.add(idx, entry);
+        }
+        maxTs = Math.max(maxTs, ts);
+        if (buffer.size() < chunkSize) {
+            return false;
+        }
+        CompressedTsKvChunk chunk = CompressedTsKvChunk.encode(buffer);
+        buffer.clear();
+        chunks.addLast(chunk);
+        sizeBytes += chunk.getSizeBytes();
+        while (chunks.size() > 1 && chunks.peekFirst().getLastTs() < maxTs - maxAgeMs) {
+            CompressedTsKvChunk expired = chunks.pollFirst();
+            sizeBytes -= expired.getSizeBytes();
+            coverageStartTs = expired.getLastTs() + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Drops all the entries. Only entries newer than any entry seen so far will be kept from now on.
+     */
+    synchronized void reset() {
+        chunks.clear();
+        buffer.clear();
+        sizeBytes = 0;
+        coverageStartTs = maxTs + 1;
+    }
+
+    synchronized Optional<List<TsKvEntry>> find(long startTs, long endTs) {
+        if (startTs < coverageStartTs) {
+            return Optional.empty();
+        }
+        List<TsKvEntry> result = new ArrayList<>();
+        for (CompressedTsKvChunk chunk : chunks) {
+            if (chunk.getLastTs() < startTs || chunk.getFirstTs() >= endTs) {
+                continue;
+            }
+            for (TsKvEntry entry : chunk.decode(key)) {
+                if (entry.getTs() >= startTs && entry.getTs() < endTs) {
+                    result.add(entry);
+                }
+            }
+        }
+        for (TsKvEntry entry : buffer) {
+            if (entry.getTs() >= startTs && entry.getTs() < endTs) {
+                result.add(entry);
+            }
+        }
+        return Optional.of(result);
+    }
+
+    synchronized long getMaxTs() {
+        return maxTs;
+    }
+
+    synchronized int getSizeBytes() {
+        return sizeBytes + chunkSize * ENTRY_SIZE_BYTES;
+    }
+
+}
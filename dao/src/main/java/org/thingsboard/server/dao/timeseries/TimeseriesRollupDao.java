@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
+
+import java.util.Optional;
+
+/**
+ * Hourly and daily aggregates of the time series that are maintained incrementally:
+ * each closed hour touched by saved or removed data is recomputed from the raw time series.
+ */
+public interface TimeseriesRollupDao {
+
+    void onSave(EntityId entityId, String key, long ts);
+
+    void onRemove(EntityId entityId, String key, long startTs, long endTs);
+
+    /**
+     * Returns the start of the first rollup bucket that is maintained for the entity key,
+     * the raw data saved before that time is not rolled up.
+     */
+    ListenableFuture<Optional<Long>> findRollupStartTs(EntityId entityId, String key);
+
+    /**
+     * Returns the time before which all rollup buckets are up to date.
+     */
+    long getRollupEndTs();
+
+    /**
+     * Aggregates the query intervals from the rollups. The query start and interval have to be aligned to the period.
+     */
+    ListenableFuture<ReadTsKvQueryResult> findAllAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, TsRollupPeriod period);
+
+}
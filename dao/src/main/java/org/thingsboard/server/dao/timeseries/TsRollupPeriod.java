@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+public enum TsRollupPeriod {
+
+    HOUR(TimeUnit.HOURS.toMillis(1)),
+    DAY(TimeUnit.DAYS.toMillis(1));
+
+    @Getter
+    private final long durationMs;
+
+    TsRollupPeriod(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public long truncate(long ts) {
+        return Math.floorDiv(ts, durationMs) * durationMs;
+    }
+
+    public boolean isAligned(long ts) {
+        return Math.floorMod(ts, durationMs) == 0;
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Splits the aggregation query into the part that is answered from rollups and the parts that are answered from raw data.
+ * All parts are split by the boundaries of the query intervals, so that no interval has to be merged from several parts:
+ * the intervals before the rollup start and after the rollup end (including the last partial interval) are aggregated from raw data.
+ */
+final class TsRollupQueryPlanner {
+
+    private TsRollupQueryPlanner() {
+    }
+
+    static Optional<TsRollupPeriod> getPeriod(ReadTsKvQuery query) {
+        if (query.getAggregation() == null || query.getAggregation() == Aggregation.NONE || query.getInterval() <= 0) {
+            return Optional.empty();
+        }
+        for (TsRollupPeriod period : new TsRollupPeriod[]{TsRollupPeriod.DAY, TsRollupPeriod.HOUR}) {
+            if (period.isAligned(query.getStartTs()) && query.getInterval() % period.getDurationMs() == 0) {
+                return Optional.of(period);
+            }
+        }
+        return Optional.empty();
+    }
+
+    static Optional<Plan> plan(ReadTsKvQuery query, TsRollupPeriod period, long rollupStartTs, long rollupEndTs) {
+        long startTs = query.getStartTs();
+        long endTs = Math.max(startTs + 1, query.getEndTs());
+        long interval = query.getInterval();
+        long rollupQueryStartTs = startTs;
+        if (rollupStartTs > startTs) {
+            rollupQueryStartTs = startTs + ((rollupStartTs - startTs + interval - 1) / interval) * interval;
+        }
+        long rollupQueryEndTs = startTs + Math.floorDiv(Math.min(endTs, rollupEndTs) - startTs, interval) * interval;
+        if (rollupQueryStartTs >= rollupQueryEndTs) {
+            return Optional.empty();
+        }
+        List<ReadTsKvQuery> rawQueries = new ArrayList<>(2);
+        if (rollupQueryStartTs > startTs) {
+            rawQueries.add(new BaseReadTsKvQuery(query, startTs, rollupQueryStartTs));
+        }
+        if (rollupQueryEndTs < endTs) {
+            rawQueries.add(new BaseReadTsKvQuery(query, rollupQueryEndTs, endTs));
+        }
+        return Optional.of(new Plan(period, new BaseReadTsKvQuery(query, rollupQueryStartTs, rollupQueryEndTs), rawQueries));
+    }
+
+    @Data
+    static class Plan {
+        private final TsRollupPeriod period;
+        private final ReadTsKvQuery rollupQuery;
+        private final List<ReadTsKvQuery> rawQueries;
+    }
+
+}
@@ -46,6 +46,46 @@ CREATE TABLE IF NOT EXISTS ts_kv_latest (
     CONSTRAINT ts_kv_latest_pkey PRIMARY KEY (entity_id, key)
 );
 
+CREATE TABLE IF NOT EXISTS ts_kv_rollup (
+    entity_id uuid NOT NULL,
+    key int NOT NULL,
+    period bigint NOT NULL,
+    ts bigint NOT NULL,
+    bool_count bigint NOT NULL,
+    str_count bigint NOT NULL,
+    json_count bigint NOT NULL,
+    long_count bigint NOT NULL,
+    long_sum numeric NOT NULL,
+    long_min bigint,
+    long_max bigint,
+    dbl_count bigint NOT NULL,
+    dbl_sum double precision NOT NULL,
+    dbl_min double precision,
+    dbl_max double precision,
+    str_min varchar(10000000),
+    str_max varchar(10000000),
+    str_max_ts bigint,
+    max_ts bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_pkey PRIMARY KEY (entity_id, key, period, ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup_state (
+    entity_id uuid NOT NULL,
+    key int NOT NULL,
+    start_ts bigint NOT NULL,
+    last_ts bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_state_pkey PRIMARY KEY (entity_id, key)
+);
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup_dirty (
+    entity_id uuid NOT NULL,
+    key int NOT NULL,
+    start_ts bigint NOT NULL,
+    end_ts bigint NOT NULL,
+    marked_ts bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_dirty_pkey PRIMARY KEY (entity_id, key)
+);
+
 CREATE OR REPLACE FUNCTION to_uuid(IN entity_id varchar, OUT uuid_id uuid) AS
 $$
 BEGIN
@@ -0,0 +1,175 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbSqlRingBufferQueueTest {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Mock
+    private ScheduledLogExecutorComponent logExecutor;
+    @Mock
+    private MessagesStats stats;
+    @Mock
+    private DistributionSummary batchSizeStats;
+    @Mock
+    private Timer batchSaveTimer;
+
+    private final List<List<Integer>> savedBatches = new CopyOnWriteArrayList<>();
+    private TbSqlRingBufferQueue<Integer> queue;
+
+    @Before
+    public void before() {
+        savedBatches.clear();
+    }
+
+    @After
+    public void after() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    public void testFullBatchIsSavedWithoutWaitingForMaxDelay() throws Exception {
+        queue = createQueue(TimeUnit.HOURS.toMillis(1), true);
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = BATCH_SIZE * 2 - 1; i >= 0; i--) {
+            futures.add(queue.add(i));
+        }
+        queue.init(logExecutor, savedBatches::add, Comparator.naturalOrder(), 0);
+        for (ListenableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        Assert.assertEquals(2, savedBatches.size());
+        for (List<Integer> batch : savedBatches) {
+            Assert.assertEquals(BATCH_SIZE, batch.size());
+            for (int i = 1; i < batch.size(); i++) {
+                Assert.assertTrue(batch.get(i - 1) < batch.get(i));
+            }
+        }
+        verify(stats, atLeastOnce()).incrementSuccessful(BATCH_SIZE);
+        verify(batchSizeStats, atLeastOnce()).record(anyDouble());
+    }
+
+    @Test
+    public void testPartialBatchesAreSavedOncePerMaxDelay() throws Exception {
+        queue = createQueue(200, false);
+        queue.init(logExecutor, savedBatches::add, Comparator.naturalOrder(), 0);
+
+        queue.add(1).get(10, TimeUnit.SECONDS);
+        long startTs = System.currentTimeMillis();
+        ListenableFuture<Void> second = queue.add(2);
+        ListenableFuture<Void> third = queue.add(3);
+        second.get(10, TimeUnit.SECONDS);
+        third.get(10, TimeUnit.SECONDS);
+
+        Assert.assertTrue(System.currentTimeMillis() - startTs >= 100);
+        Assert.assertEquals(2, savedBatches.size());
+        Assert.assertEquals(List.of(1), savedBatches.get(0));
+        Assert.assertEquals(List.of(2, 3), savedBatches.get(1));
+    }
+
+    @Test
+    public void testSaveFailureIsPropagatedToFutures() throws Exception {
+        queue = createQueue(10, false);
+        RuntimeException error = new RuntimeException("DB is down");
+        queue.init(logExecutor, entities -> {
+            throw error;
+        }, Comparator.naturalOrder(), 0);
+
+        ListenableFuture<Void> future = queue.add(1);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected save failure");
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+        verify(stats).incrementFailed(1);
+    }
+
+    @Test
+    public void testPendingFuturesAreFailedOnDestroy() throws Exception {
+        queue = createQueue(10, false);
+        CountDownLatch saveStarted = new CountDownLatch(1);
+        queue.init(logExecutor, entities -> {
+            saveStarted.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }, Comparator.naturalOrder(), 0);
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        futures.add(queue.add(0));
+        Assert.assertTrue(saveStarted.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < BATCH_SIZE * 3; i++) {
+            futures.add(queue.add(i));
+        }
+        queue.destroy();
+        futures.add(queue.add(-1));
+
+        for (ListenableFuture<Void> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected the queue to be stopped");
+            } catch (ExecutionException e) {
+                // expected
+            }
+        }
+    }
+
+    private TbSqlRingBufferQueue<Integer> createQueue(long maxDelay, boolean batchSortEnabled) {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(BATCH_SIZE)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(60000)
+                .statsNamePrefix("test")
+                .batchSortEnabled(batchSortEnabled)
+                .writerType(TbSqlBatchWriterType.RING_BUFFER)
+                .build();
+        return new TbSqlRingBufferQueue<>(params, stats, batchSizeStats, batchSaveTimer);
+    }
+
+}
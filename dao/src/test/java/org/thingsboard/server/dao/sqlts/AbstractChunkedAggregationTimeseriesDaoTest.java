@@ -25,16 +25,23 @@ import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.ts.TsKvAggregationRepository;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.willCallRealMethod;
 import static org.mockito.BDDMockito.willReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -149,6 +156,35 @@ public class AbstractChunkedAggregationTimeseriesDaoTest {
         }
     }
 
+    @Test
+    public void givenSingleQueryAggregation_whenAggregateCount_thenAllIntervalsAreAggregatedWithOneQuery() {
+        ReadTsKvQuery query = new BaseReadTsKvQuery(TEMP, 1, 3000, 3, LIMIT, COUNT, DESC);
+        TsKvAggregationRepository aggregationRepository = mock(TsKvAggregationRepository.class);
+        TsKvEntity entity = new TsKvEntity(0L, 0L, 2L, 0L, 0L, 5L);
+        entity.setTs(2L);
+        willReturn(List.of(entity)).given(aggregationRepository).findAllAndAggregate(any(), anyInt(), anyLong(), anyLong(), anyLong(), any());
+        willReturn(1).given(tsDao).getOrSaveKeyId(TEMP);
+        ReflectionTestUtils.setField(tsDao, "aggregationRepository", aggregationRepository);
+
+        List<Optional<? extends AbstractTsKvEntity>> result = tsDao.findAllAndAggregate(SYS_TENANT_ID, query);
+
+        verify(aggregationRepository, times(1)).findAllAndAggregate(SYS_TENANT_ID.getId(), 1, 1, 3000, 3, COUNT);
+        verify(tsDao, never()).findAndAggregateAsync(any(), any(), anyLong(), anyLong(), anyLong(), any());
+        assertThat(result).containsExactly(Optional.of(entity));
+        assertThat(entity.getStrKey()).isEqualTo(TEMP);
+    }
+
+    @Test
+    public void givenSingleQueryAggregation_whenNoData_thenResultIsNotNull() {
+        ReadTsKvQuery query = new BaseReadTsKvQuery(TEMP, 1, 3000, 3, LIMIT, COUNT, DESC);
+        TsKvAggregationRepository aggregationRepository = mock(TsKvAggregationRepository.class);
+        willReturn(Collections.emptyList()).given(aggregationRepository).findAllAndAggregate(any(), anyInt(), anyLong(), anyLong(), anyLong(), any());
+        willReturn(1).given(tsDao).getOrSaveKeyId(TEMP);
+        ReflectionTestUtils.setField(tsDao, "aggregationRepository", aggregationRepository);
+
+        assertThat(tsDao.findAllAndAggregate(SYS_TENANT_ID, query)).containsExactly(Optional.empty());
+    }
+
     long getTsForReadTsKvQuery(long startTs, long endTs) {
         return startTs + (endTs - startTs) / 2L;
     }
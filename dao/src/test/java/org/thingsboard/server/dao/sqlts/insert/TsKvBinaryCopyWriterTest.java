@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.junit.Test;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsKvBinaryCopyWriterTest {
+
+    private static final byte[] SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Test
+    public void givenEntityWithLongValue_whenWrite_thenBinaryCopyTupleIsWritten() throws IOException {
+        UUID entityId = UUID.randomUUID();
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId);
+        entity.setKey(7);
+        entity.setTs(1000L);
+        entity.setLongValue(42L);
+
+        ByteBuffer buf = write(entity, null, null);
+
+        byte[] signature = new byte[SIGNATURE.length];
+        buf.get(signature);
+        assertThat(signature).isEqualTo(SIGNATURE);
+        assertThat(buf.getInt()).isZero();
+        assertThat(buf.getInt()).isZero();
+
+        assertThat(buf.getShort()).isEqualTo((short) 8);
+        assertThat(buf.getInt()).isEqualTo(16);
+        assertThat(new UUID(buf.getLong(), buf.getLong())).isEqualTo(entityId);
+        assertThat(buf.getInt()).isEqualTo(4);
+        assertThat(buf.getInt()).isEqualTo(7);
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getLong()).isEqualTo(1000L);
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getLong()).isEqualTo(42L);
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getInt()).isEqualTo(-1);
+
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+        assertThat(buf.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void givenEntityWithBooleanDoubleAndStrings_whenWrite_thenValuesAreEncoded() throws IOException {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(UUID.randomUUID());
+        entity.setTs(1L);
+        entity.setBooleanValue(true);
+        entity.setDoubleValue(3.5);
+
+        ByteBuffer buf = write(entity, "ß", "{}");
+        buf.position(SIGNATURE.length + 8 + 2 + 20 + 8 + 12);
+
+        assertThat(buf.getInt()).isEqualTo(1);
+        assertThat(buf.get()).isEqualTo((byte) 1);
+        assertThat(buf.getInt()).isEqualTo(2);
+        assertThat(new String(new byte[]{buf.get(), buf.get()}, StandardCharsets.UTF_8)).isEqualTo("ß");
+        assertThat(buf.getInt()).isEqualTo(-1);
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getDouble()).isEqualTo(3.5);
+        assertThat(buf.getInt()).isEqualTo(2);
+        assertThat(new String(new byte[]{buf.get(), buf.get()}, StandardCharsets.UTF_8)).isEqualTo("{}");
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+    }
+
+    private ByteBuffer write(TsKvEntity entity, String strValue, String jsonValue) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TsKvBinaryCopyWriter writer = new TsKvBinaryCopyWriter(out)) {
+            writer.write(entity, strValue, jsonValue);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+}
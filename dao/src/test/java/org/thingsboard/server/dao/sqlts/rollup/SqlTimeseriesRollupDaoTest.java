@@ -0,0 +1,200 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.rollup;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+import org.thingsboard.server.dao.timeseries.TsRollupPeriod;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+
+@DaoSqlTest
+@TestPropertySource(properties = {
+        "sql.ts.rollup.enabled=true",
+        "sql.ts.rollup.maintenance_interval_ms=3600000"
+})
+public class SqlTimeseriesRollupDaoTest extends AbstractServiceTest {
+
+    private static final int MAX_TIMEOUT = 30;
+    private static final String KEY = "temperature";
+    private static final long HOUR = TsRollupPeriod.HOUR.getDurationMs();
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Autowired
+    private SqlTimeseriesRollupDao rollupDao;
+
+    @Autowired
+    private TimeseriesDao timeseriesDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TenantId tenantId;
+    private DeviceId deviceId;
+    private long base;
+
+    @Before
+    public void before() {
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        tenantId = tenantService.saveTenant(tenant).getId();
+        deviceId = new DeviceId(Uuids.timeBased());
+        base = TsRollupPeriod.DAY.truncate(System.currentTimeMillis()) - TsRollupPeriod.DAY.getDurationMs() * 2;
+    }
+
+    @After
+    public void after() {
+        tenantService.deleteTenant(tenantId);
+    }
+
+    @Test
+    public void testSavedDataIsRolledUp() throws Exception {
+        save(base + 10 * MINUTE, 10);
+        save(base + 20 * MINUTE, 20);
+        save(base + HOUR + 5 * MINUTE, 30);
+        save(base + 2 * HOUR + 30 * MINUTE, 40);
+        awaitDirtyRange(base, base + 3 * HOUR);
+
+        rollupDao.maintain();
+
+        assertEquals(0, countDirtyRanges());
+        assertEquals(3, countRollups(TsRollupPeriod.HOUR));
+        assertEquals(1, countRollups(TsRollupPeriod.DAY));
+        for (Aggregation aggregation : new Aggregation[]{Aggregation.SUM, Aggregation.AVG, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT}) {
+            ReadTsKvQuery hourQuery = new BaseReadTsKvQuery(KEY, base, base + 3 * HOUR, HOUR, 100, aggregation);
+            assertEquals(findRaw(hourQuery), rollupDao.findAllAsync(tenantId, deviceId, hourQuery, TsRollupPeriod.HOUR)
+                    .get(MAX_TIMEOUT, TimeUnit.SECONDS).getData());
+            ReadTsKvQuery dayQuery = new BaseReadTsKvQuery(KEY, base, base + TsRollupPeriod.DAY.getDurationMs(), TsRollupPeriod.DAY.getDurationMs(), 100, aggregation);
+            assertEquals(findRaw(dayQuery), rollupDao.findAllAsync(tenantId, deviceId, dayQuery, TsRollupPeriod.DAY)
+                    .get(MAX_TIMEOUT, TimeUnit.SECONDS).getData());
+        }
+    }
+
+    @Test
+    public void testRemovedDataIsRecomputed() throws Exception {
+        save(base + 10 * MINUTE, 10);
+        save(base + HOUR + 5 * MINUTE, 30);
+        awaitDirtyRange(base, base + 2 * HOUR);
+        rollupDao.maintain();
+        assertEquals(2, countRollups(TsRollupPeriod.HOUR));
+
+        tsService.remove(tenantId, deviceId, Collections.singletonList(new BaseDeleteTsKvQuery(KEY, base + HOUR, base + 2 * HOUR)))
+                .get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        awaitDirtyRange(base + HOUR, base + 2 * HOUR);
+        rollupDao.maintain();
+
+        assertEquals(0, countDirtyRanges());
+        assertEquals(1, countRollups(TsRollupPeriod.HOUR));
+        ReadTsKvQuery query = new BaseReadTsKvQuery(KEY, base, base + TsRollupPeriod.DAY.getDurationMs(), TsRollupPeriod.DAY.getDurationMs(), 100, Aggregation.SUM);
+        assertEquals(findRaw(query), rollupDao.findAllAsync(tenantId, deviceId, query, TsRollupPeriod.DAY).get(MAX_TIMEOUT, TimeUnit.SECONDS).getData());
+    }
+
+    @Test
+    public void testStoredDirtyRangesAreRecomputedAfterRestart() throws Exception {
+        // saved by the DAO directly, so the range is known only from the stored dirty range, as after a restart
+        timeseriesDao.savePartition(tenantId, deviceId, base, KEY).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        timeseriesDao.save(tenantId, deviceId, toTsEntry(base + 10 * MINUTE, 10), 0).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        timeseriesDao.save(tenantId, deviceId, toTsEntry(base + HOUR + 10 * MINUTE, 20), 0).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        jdbcTemplate.update("INSERT INTO ts_kv_rollup_dirty (entity_id, key, start_ts, end_ts, marked_ts) VALUES (?, ?, ?, ?, ?)",
+                deviceId.getId(), getKeyId(), base, base + 2 * HOUR, base);
+
+        rollupDao.loadDirtyRanges();
+        rollupDao.maintain();
+
+        assertEquals(0, countDirtyRanges());
+        assertEquals(2, countRollups(TsRollupPeriod.HOUR));
+    }
+
+    @Test
+    public void testAggregationMergesRollupsWithRawData() throws Exception {
+        save(base - 30 * MINUTE, 5);
+        save(base + 10 * MINUTE, 10);
+        save(base + HOUR + 5 * MINUTE, 30);
+        save(base + 2 * HOUR + 10 * MINUTE, 40);
+        awaitDirtyRange(base - HOUR, base + 3 * HOUR);
+        // as if the key was first marked at the base, so the rollups are used from the base and the hour before it is read from raw data
+        jdbcTemplate.update("UPDATE ts_kv_rollup_dirty SET marked_ts = ? WHERE entity_id = ?", base, deviceId.getId());
+        rollupDao.loadDirtyRanges();
+        rollupDao.maintain();
+
+        ReadTsKvQuery query = new BaseReadTsKvQuery(KEY, base - HOUR, base + 2 * HOUR + 30 * MINUTE, HOUR, 100, Aggregation.SUM);
+        List<TsKvEntry> expected = findRaw(query);
+        assertEquals(4, expected.size());
+        assertEquals(expected, tsService.findAll(tenantId, deviceId, Collections.singletonList(query)).get(MAX_TIMEOUT, TimeUnit.SECONDS));
+
+        // saved by the DAO directly, so the rollup of the first hour is not recomputed, and the merged result does not include it
+        timeseriesDao.save(tenantId, deviceId, toTsEntry(base + 20 * MINUTE, 100), 0).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        List<TsKvEntry> merged = tsService.findAll(tenantId, deviceId, Collections.singletonList(query)).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        Assert.assertNotEquals(findRaw(query), merged);
+        assertEquals(expected, merged);
+    }
+
+    private void save(long ts, long value) throws Exception {
+        tsService.save(tenantId, deviceId, toTsEntry(ts, value)).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private List<TsKvEntry> findRaw(ReadTsKvQuery query) throws Exception {
+        return timeseriesDao.findAllAsync(tenantId, deviceId, Collections.singletonList(query)).get(MAX_TIMEOUT, TimeUnit.SECONDS).get(0).getData();
+    }
+
+    private void awaitDirtyRange(long startTs, long endTs) {
+        await().atMost(MAX_TIMEOUT, TimeUnit.SECONDS).until(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM ts_kv_rollup_dirty WHERE entity_id = ? AND start_ts <= ? AND end_ts >= ?",
+                Long.class, deviceId.getId(), startTs, endTs) == 1);
+    }
+
+    private long countDirtyRanges() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv_rollup_dirty WHERE entity_id = ?", Long.class, deviceId.getId());
+    }
+
+    private long countRollups(TsRollupPeriod period) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv_rollup WHERE entity_id = ? AND period = ?",
+                Long.class, deviceId.getId(), period.getDurationMs());
+    }
+
+    private int getKeyId() {
+        return jdbcTemplate.queryForObject("SELECT key_id FROM ts_kv_dictionary WHERE key = ?", Integer.class, KEY);
+    }
+
+    private static TsKvEntry toTsEntry(long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(KEY, value));
+    }
+
+}
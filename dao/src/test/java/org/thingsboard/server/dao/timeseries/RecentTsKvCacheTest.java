@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.StatsCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RecentTsKvCacheTest {
+
+    private static final String KEY = "temperature";
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private RecentTsKvCache cache;
+    private long startTs;
+
+    @Before
+    public void setUp() {
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        when(statsFactory.createStatsCounter(anyString(), anyString())).thenReturn(mock(StatsCounter.class));
+        cache = new RecentTsKvCache();
+        ReflectionTestUtils.setField(cache, "statsFactory", statsFactory);
+        ReflectionTestUtils.setField(cache, "maxSizeBytes", 1024 * 1024L);
+        ReflectionTestUtils.setField(cache, "maxAgeMs", DAY);
+        ReflectionTestUtils.setField(cache, "chunkSize", 4);
+        ReflectionTestUtils.setField(cache, "statsPrintIntervalMs", 0L);
+        startTs = System.currentTimeMillis();
+        cache.init();
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void givenBackfilledFirstEntry_whenFind_thenRangeBeforeStartIsNotCovered() {
+        long now = System.currentTimeMillis();
+        cache.put(deviceId, entry(startTs - DAY));
+        cache.put(deviceId, entry(now + 1));
+
+        assertThat(cache.find(deviceId, query(startTs - DAY, now + DAY))).isEmpty();
+        assertThat(cache.find(deviceId, query(startTs - 1, now + DAY))).isEmpty();
+        assertThat(cache.find(deviceId, query(now, now + DAY))).hasValueSatisfying(result ->
+                assertThat(result.getData()).containsExactly(entry(now + 1)));
+    }
+
+    @Test
+    public void givenFirstEntryAfterStart_whenFind_thenCoveredFromFirstEntry() {
+        long now = System.currentTimeMillis();
+        cache.put(deviceId, entry(now + 100));
+        cache.put(deviceId, entry(now + 50));
+
+        assertThat(cache.find(deviceId, query(now + 50, now + DAY))).isEmpty();
+        assertThat(cache.find(deviceId, query(now + 100, now + DAY))).hasValueSatisfying(result ->
+                assertThat(result.getData()).containsExactly(entry(now + 100)));
+    }
+
+    private static BaseReadTsKvQuery query(long startTs, long endTs) {
+        return new BaseReadTsKvQuery(KEY, startTs, endTs, 100, "ASC");
+    }
+
+    private static TsKvEntry entry(long ts) {
+        return new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, ts / 10.0));
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecentTsKvSeriesTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void givenMixedEntries_whenEncodeAndDecode_thenSameEntries() {
+        Random random = new Random(42);
+        List<TsKvEntry> entries = new ArrayList<>();
+        long ts = 1_600_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            ts += 1000 + random.nextInt(3) * (random.nextBoolean() ? 1 : 100_000);
+            switch (i % 7) {
+                case 0:
+                    entries.add(new BasicTsKvEntry(ts, new LongDataEntry(KEY, random.nextLong())));
+                    break;
+                case 1:
+                    entries.add(new BasicTsKvEntry(ts, new BooleanDataEntry(KEY, random.nextBoolean())));
+                    break;
+                case 2:
+                    entries.add(new BasicTsKvEntry(ts, new StringDataEntry(KEY, "значение-" + i)));
+                    break;
+                case 3:
+                    entries.add(new BasicTsKvEntry(ts, new JsonDataEntry(KEY, "{\"a\":" + i + "}")));
+                    break;
+                default:
+                    entries.add(new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, random.nextInt(3) == 0 ? random.nextDouble() : 21.5 + (i % 3))));
+            }
+        }
+        entries.add(new BasicTsKvEntry(ts + 1, new DoubleDataEntry(KEY, Double.NaN)));
+        entries.add(new BasicTsKvEntry(ts + 2, new LongDataEntry(KEY, Long.MIN_VALUE)));
+        entries.add(new BasicTsKvEntry(ts + 3, new LongDataEntry(KEY, Long.MAX_VALUE)));
+        entries.add(new BasicTsKvEntry(-ts, new DoubleDataEntry(KEY, -0.0)));
+
+        CompressedTsKvChunk chunk = CompressedTsKvChunk.encode(entries);
+
+        assertThat(chunk.decode(KEY)).isEqualTo(entries);
+        assertThat(chunk.getFirstTs()).isEqualTo(entries.get(0).getTs());
+        assertThat(chunk.getLastTs()).isEqualTo(-ts);
+    }
+
+    @Test
+    public void givenRegularDoubles_whenEncode_thenCompressed() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 128; i++) {
+            entries.add(new BasicTsKvEntry(1_600_000_000_000L + i * 1000L, new DoubleDataEntry(KEY, 20.0 + (i % 4) * 0.5)));
+        }
+
+        CompressedTsKvChunk chunk = CompressedTsKvChunk.encode(entries);
+
+        assertThat(chunk.getSizeBytes()).isLessThan(entries.size() * 4);
+        assertThat(chunk.decode(KEY)).isEqualTo(entries);
+    }
+
+    @Test
+    public void givenEntries_whenFind_thenOnlyCoveredRangeIsServed() {
+        RecentTsKvSeries series = new RecentTsKvSeries(KEY, 1000, 4, 100_000);
+        for (long ts = 1000; ts < 2000; ts += 100) {
+            series.add(entry(ts));
+        }
+        series.add(entry(999));
+        series.add(entry(1950));
+
+        assertThat(series.find(999, 3000)).isEmpty();
+        assertThat(series.find(1000, 1300)).hasValueSatisfying(found -> assertThat(found).containsExactly(entry(1000), entry(1100), entry(1200)));
+        assertThat(series.find(1850, 3000)).hasValueSatisfying(found -> assertThat(found).containsExactly(entry(1900), entry(1950)));
+    }
+
+    @Test
+    public void givenLateEntryBeforeCompressedPart_whenAdd_thenSeriesIsReset() {
+        RecentTsKvSeries series = new RecentTsKvSeries(KEY, 1000, 2, 100_000);
+        series.add(entry(1000));
+        series.add(entry(1100));
+        series.add(entry(1200));
+
+        series.add(entry(1050));
+
+        assertThat(series.find(1000, 3000)).isEmpty();
+        assertThat(series.find(1201, 3000)).hasValueSatisfying(found -> assertThat(found).isEmpty());
+        series.add(entry(1300));
+        assertThat(series.find(1201, 3000)).hasValueSatisfying(found -> assertThat(found).containsExactly(entry(1300)));
+    }
+
+    @Test
+    public void givenOldChunks_whenAdd_thenChunksExpire() {
+        RecentTsKvSeries series = new RecentTsKvSeries(KEY, 0, 2, 1000);
+        for (long ts = 0; ts < 3000; ts += 100) {
+            series.add(entry(ts));
+        }
+
+        assertThat(series.find(1000, 3000)).isEmpty();
+        assertThat(series.find(2000, 3000)).hasValueSatisfying(found -> assertThat(found).hasSize(10));
+    }
+
+    private static TsKvEntry entry(long ts) {
+        return new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, ts / 10.0));
+    }
+
+}
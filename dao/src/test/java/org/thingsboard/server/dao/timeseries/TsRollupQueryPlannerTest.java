@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2016-2023 The Comm360 Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsRollupQueryPlannerTest {
+
+    private static final long HOUR = TsRollupPeriod.HOUR.getDurationMs();
+    private static final long DAY = TsRollupPeriod.DAY.getDurationMs();
+    private static final long START_TS = 100 * DAY;
+
+    @Test
+    public void givenNotAlignedQuery_whenGetPeriod_thenEmpty() {
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS + 1, START_TS + DAY, HOUR, Aggregation.AVG))).isEmpty();
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS, START_TS + DAY, HOUR / 2, Aggregation.AVG))).isEmpty();
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS, START_TS + DAY, HOUR, Aggregation.NONE))).isEmpty();
+    }
+
+    @Test
+    public void givenAlignedQuery_whenGetPeriod_thenLargestPeriodIsUsed() {
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS, START_TS + 7 * DAY, DAY, Aggregation.MAX))).contains(TsRollupPeriod.DAY);
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS + HOUR, START_TS + 7 * DAY, DAY, Aggregation.MAX))).contains(TsRollupPeriod.HOUR);
+        assertThat(TsRollupQueryPlanner.getPeriod(query(START_TS, START_TS + DAY, 2 * HOUR, Aggregation.MAX))).contains(TsRollupPeriod.HOUR);
+    }
+
+    @Test
+    public void givenRollupsCoverWholeQuery_whenPlan_thenNoRawQueries() {
+        ReadTsKvQuery query = query(START_TS, START_TS + DAY, HOUR, Aggregation.SUM);
+
+        TsRollupQueryPlanner.Plan plan = TsRollupQueryPlanner.plan(query, TsRollupPeriod.HOUR, START_TS - DAY, START_TS + 2 * DAY).orElseThrow();
+
+        assertThat(plan.getRollupQuery().getStartTs()).isEqualTo(START_TS);
+        assertThat(plan.getRollupQuery().getEndTs()).isEqualTo(START_TS + DAY);
+        assertThat(plan.getRollupQuery().getInterval()).isEqualTo(HOUR);
+        assertThat(plan.getRollupQuery().getId()).isEqualTo(query.getId());
+        assertThat(plan.getRawQueries()).isEmpty();
+    }
+
+    @Test
+    public void givenRollupsStartAndEndInsideQuery_whenPlan_thenRawQueriesAreSplitByIntervals() {
+        ReadTsKvQuery query = query(START_TS, START_TS + 10 * DAY + HOUR, 2 * DAY, Aggregation.AVG);
+
+        TsRollupQueryPlanner.Plan plan = TsRollupQueryPlanner.plan(query, TsRollupPeriod.DAY, START_TS + 3 * DAY + 5 * HOUR, START_TS + 9 * DAY).orElseThrow();
+
+        assertThat(plan.getRollupQuery().getStartTs()).isEqualTo(START_TS + 4 * DAY);
+        assertThat(plan.getRollupQuery().getEndTs()).isEqualTo(START_TS + 8 * DAY);
+        assertThat(plan.getRawQueries()).hasSize(2);
+        assertThat(plan.getRawQueries().get(0).getStartTs()).isEqualTo(START_TS);
+        assertThat(plan.getRawQueries().get(0).getEndTs()).isEqualTo(START_TS + 4 * DAY);
+        assertThat(plan.getRawQueries().get(1).getStartTs()).isEqualTo(START_TS + 8 * DAY);
+        assertThat(plan.getRawQueries().get(1).getEndTs()).isEqualTo(START_TS + 10 * DAY + HOUR);
+        assertThat(plan.getRawQueries().get(1).getInterval()).isEqualTo(2 * DAY);
+    }
+
+    @Test
+    public void givenNoCompleteIntervalInRollups_whenPlan_thenEmpty() {
+        ReadTsKvQuery query = query(START_TS, START_TS + DAY, DAY, Aggregation.COUNT);
+
+        Optional<TsRollupQueryPlanner.Plan> plan = TsRollupQueryPlanner.plan(query, TsRollupPeriod.DAY, START_TS, START_TS + DAY - HOUR);
+
+        assertThat(plan).isEmpty();
+    }
+
+    private static ReadTsKvQuery query(long startTs, long endTs, long interval, Aggregation aggregation) {
+        return new BaseReadTsKvQuery("temperature", startTs, endTs, interval, 1, aggregation);
+    }
+
+}
@@ -265,7 +265,11 @@ export class TelemetryWebsocketService implements TelemetryService {
 
     this.dataStream.subscribe((message) => {
         this.ngZone.runOutsideAngular(() => {
-          this.onMessage(message as WebsocketDataMsg);
+          if (Array.isArray(message)) {
+            message.forEach((msg) => this.onMessage(msg as WebsocketDataMsg));
+          } else {
+            this.onMessage(message as WebsocketDataMsg);
+          }
         });
     },
     (error) => {
@@ -30,7 +30,8 @@ export enum QueueSubmitStrategyTypes {
   SEQUENTIAL_BY_TENANT = 'SEQUENTIAL_BY_TENANT',
   SEQUENTIAL = 'SEQUENTIAL',
   BURST = 'BURST',
-  BATCH = 'BATCH'
+  BATCH = 'BATCH',
+  ORIGINATOR_LANES = 'ORIGINATOR_LANES'
 }
 
 export interface QueueStrategyData {
@@ -59,6 +60,10 @@ export const QueueSubmitStrategyTypesMap = new Map<QueueSubmitStrategyTypes, Que
     [QueueSubmitStrategyTypes.BATCH, {
       label: 'queue.strategies.batch-label',
       hint: 'queue.strategies.batch-hint',
+    }],
+    [QueueSubmitStrategyTypes.ORIGINATOR_LANES, {
+      label: 'queue.strategies.originator-lanes-label',
+      hint: 'queue.strategies.originator-lanes-hint',
     }]
   ]);
 